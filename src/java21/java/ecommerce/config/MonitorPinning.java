@@ -0,0 +1,92 @@
+package ecommerce.config;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordingStream;
+
+/**
+ * Detecta threads virtuais presas à thread portadora ("pinning") pelo evento JFR
+ * {@code jdk.VirtualThreadPinned}: bloqueio dentro de {@code synchronized} ou de código nativo,
+ * que volta a limitar a concorrência ao número de portadoras.
+ *
+ * Cada ocorrência acima do limite gera um aviso no log com o topo da pilha e incrementa
+ * {@code compra.threads.virtuais.pinning}, com a tag {@code origem=jdbc} quando a pilha passa
+ * pelo driver JDBC ou pelo pool de conexões e {@code origem=synchronized} nos demais casos.
+ */
+public class MonitorPinning
+{
+	public static final String EVENTO = "jdk.VirtualThreadPinned";
+	public static final String METRICA = "compra.threads.virtuais.pinning";
+
+	private static final Logger log = LoggerFactory.getLogger(MonitorPinning.class);
+
+	private static final int QUADROS_NO_LOG = 8;
+	private static final List<String> PACOTES_JDBC = List.of("java.sql.", "javax.sql.", "org.h2.",
+			"com.zaxxer.hikari.", "org.hibernate.engine.jdbc.");
+
+	private final MeterRegistry registry;
+	private final Duration limite;
+	private RecordingStream gravacao;
+
+	public MonitorPinning(MeterRegistry registry, Duration limite)
+	{
+		this.registry = registry;
+		this.limite = limite;
+	}
+
+	public void iniciar()
+	{
+		gravacao = new RecordingStream();
+		gravacao.enable(EVENTO).withThreshold(limite).withStackTrace();
+		gravacao.onEvent(EVENTO, this::registrar);
+		gravacao.startAsync();
+	}
+
+	public void parar()
+	{
+		if (gravacao != null)
+		{
+			gravacao.close();
+		}
+	}
+
+	void registrar(RecordedEvent evento)
+	{
+		List<RecordedFrame> quadros = evento.getStackTrace() != null ? evento.getStackTrace().getFrames() : List.of();
+		String origem = quadros.stream().anyMatch(MonitorPinning::isJdbc) ? "jdbc" : "synchronized";
+
+		contador(origem).increment();
+		log.warn("Thread virtual presa à portadora por {} ms ({}): {}", evento.getDuration().toMillis(), origem,
+				quadros.stream().limit(QUADROS_NO_LOG).map(MonitorPinning::descrever)
+						.collect(Collectors.joining(" <- ")));
+	}
+
+	Counter contador(String origem)
+	{
+		return Counter.builder(METRICA)
+				.description("Ocorrências de thread virtual presa à thread portadora")
+				.tag("origem", origem)
+				.register(registry);
+	}
+
+	private static boolean isJdbc(RecordedFrame quadro)
+	{
+		String classe = quadro.getMethod().getType().getName();
+		return PACOTES_JDBC.stream().anyMatch(classe::startsWith);
+	}
+
+	private static String descrever(RecordedFrame quadro)
+	{
+		return quadro.getMethod().getType().getName() + "." + quadro.getMethod().getName() + ":"
+				+ quadro.getLineNumber();
+	}
+}
@@ -0,0 +1,68 @@
+package ecommerce.config;
+
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.support.TaskExecutorAdapter;
+
+import ecommerce.external.protecao.ExecutoresChamadasExternas;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Threads virtuais (Java 21) para as requisições do Tomcat e para o pool de tarefas da aplicação.
+ *
+ * Cada requisição, inclusive {@code /finalizar}, roda em uma thread virtual nova: enquanto espera
+ * {@code IEstoqueExternal} e {@code IPagamentoExternal}, ela libera a thread portadora, então o
+ * número de compras em andamento deixa de ser limitado pelo pool do Tomcat. O
+ * {@code applicationTaskExecutor} (usado pela verificação de estoque no modo
+ * {@code CONCORRENTE} e pelas respostas assíncronas do Spring MVC) também passa a usar threads
+ * virtuais, assim como as chamadas protegidas a estoque e pagamento
+ * ({@link ExecutoresChamadasExternas}), limitadas só pelo bulkhead
+ * {@code compra.externo.<servico>.chamadas-simultaneas}.
+ *
+ * Só é compilada no perfil {@code java21}; desligue com
+ * {@code compra.threads.virtuais.habilitadas=false}.
+ */
+@Configuration(proxyBeanMethods = false)
+@ConditionalOnProperty(name = "compra.threads.virtuais.habilitadas", havingValue = "true", matchIfMissing = true)
+public class ThreadsVirtuaisConfig
+{
+	@Bean
+	public TomcatProtocolHandlerCustomizer<?> tomcatThreadsVirtuais()
+	{
+		return protocolHandler -> protocolHandler.setExecutor(criarExecutor("tomcat-"));
+	}
+
+	/** Substitui o pool padrão do Spring Boot (que só é criado sem outro Executor). */
+	@Bean(name = { "applicationTaskExecutor", "taskExecutor" })
+	public AsyncTaskExecutor applicationTaskExecutor()
+	{
+		return new TaskExecutorAdapter(criarExecutor("tarefa-"));
+	}
+
+	/** Uma thread virtual por chamada protegida; cada {@code ChamadasProtegidas} encerra o seu executor. */
+	@Bean
+	public ExecutoresChamadasExternas executoresChamadasExternas()
+	{
+		return servico -> criarExecutor("externo-" + servico + "-");
+	}
+
+	@Bean(initMethod = "iniciar", destroyMethod = "parar")
+	public MonitorPinning monitorPinning(MeterRegistry registry,
+			@Value("${compra.threads.virtuais.pinning.limite:20ms}") Duration limite)
+	{
+		return new MonitorPinning(registry, limite);
+	}
+
+	private static ExecutorService criarExecutor(String prefixo)
+	{
+		return Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name(prefixo, 0).factory());
+	}
+}
@@ -0,0 +1,116 @@
+package ecommerce.external.fake;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ecommerce.dto.DisponibilidadeDTO;
+import ecommerce.dto.EstoqueBaixaDTO;
+
+/**
+ * Vazão de {@link EstoqueSimulado} com todos os núcleos disputando o mesmo estoque.
+ *
+ * Com {@code produtos=1} todas as threads descontam o mesmo contador (pior caso de disputa por
+ * CAS ou pela mesma listra); com 100.000 produtos as baixas se espalham como em um catálogo real,
+ * em cada modo de {@link ConcorrenciaEstoque}. O saldo inicial é grande o bastante para nenhuma
+ * baixa ser recusada durante a medição.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(Threads.MAX)
+public class EstoqueSimuladoBenchmark
+{
+	private static final long SEMENTE = 2025L;
+	private static final int PEDIDOS_POR_THREAD = 1024;
+
+	@State(Scope.Benchmark)
+	public static class Estoque
+	{
+		@Param({"1", "100000"})
+		public int produtos;
+
+		@Param({"CAS", "LISTRAS"})
+		public ConcorrenciaEstoque concorrencia;
+
+		EstoqueSimulado estoque;
+
+		@Setup(Level.Trial)
+		public void criar()
+		{
+			estoque = new EstoqueSimulado(Long.MAX_VALUE / 2);
+			estoque.setConcorrencia(concorrencia);
+		}
+	}
+
+	@State(Scope.Thread)
+	public static class Pedidos
+	{
+		/** Produtos distintos por baixa. */
+		@Param({"1", "5"})
+		public int linhas;
+
+		private List<List<Long>> ids;
+		private List<Long> quantidades;
+		private int proximo;
+
+		@Setup(Level.Trial)
+		public void gerar(Estoque estoque)
+		{
+			Random aleatorio = new Random(SEMENTE + Thread.currentThread().getId());
+			int linhasPorPedido = Math.min(linhas, estoque.produtos);
+			ids = new ArrayList<>(PEDIDOS_POR_THREAD);
+			for (int i = 0; i < PEDIDOS_POR_THREAD; i++)
+			{
+				List<Long> pedido = new ArrayList<>(linhasPorPedido);
+				while (pedido.size() < linhasPorPedido)
+				{
+					long produtoId = aleatorio.nextInt(estoque.produtos);
+					if (!pedido.contains(produtoId))
+					{
+						pedido.add(produtoId);
+					}
+				}
+				ids.add(pedido);
+			}
+			quantidades = Collections.nCopies(linhasPorPedido, 1L);
+		}
+
+		List<Long> proximo()
+		{
+			List<Long> pedido = ids.get(proximo);
+			proximo = proximo + 1 == ids.size() ? 0 : proximo + 1;
+			return pedido;
+		}
+	}
+
+	@Benchmark
+	public EstoqueBaixaDTO darBaixa(Estoque estoque, Pedidos pedidos)
+	{
+		return estoque.estoque.darBaixa(pedidos.proximo(), pedidos.quantidades);
+	}
+
+	@Benchmark
+	public DisponibilidadeDTO verificarDisponibilidade(Estoque estoque, Pedidos pedidos)
+	{
+		return estoque.estoque.verificarDisponibilidade(pedidos.proximo(), pedidos.quantidades);
+	}
+}
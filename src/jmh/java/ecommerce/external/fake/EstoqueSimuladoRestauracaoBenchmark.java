@@ -0,0 +1,115 @@
+package ecommerce.external.fake;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Tempo para restaurar um {@link EstoqueSimulado} persistido com milhões de produtos, com uma baixa
+ * a cada {@value #INTERVALO} produtos espalhada pela faixa inteira.
+ *
+ * Cada medição abre uma cópia nova do diretório gravado no setup, então todas partem do mesmo
+ * snapshot.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 20)
+@Fork(1)
+public class EstoqueSimuladoRestauracaoBenchmark
+{
+	private static final long SALDO_INICIAL = 100;
+	private static final int INTERVALO = 1000;
+
+	@State(Scope.Benchmark)
+	public static class Diretorio
+	{
+		@Param({"4194304"})
+		public int produtos;
+
+		private Path original;
+		Path copia;
+		EstoqueSimulado estoque;
+
+		@Setup(Level.Trial)
+		public void gravar() throws IOException
+		{
+			original = Files.createTempDirectory("estoque-restauracao");
+			EstoqueSimulado gravado = abrir(original);
+			for (long produtoId = 0; produtoId < produtos; produtoId += INTERVALO)
+			{
+				gravado.darBaixa(List.of(produtoId), List.of(produtoId % 7 + 1));
+			}
+			gravado.close();
+		}
+
+		@Setup(Level.Iteration)
+		public void copiar() throws IOException
+		{
+			copia = Files.createTempDirectory("estoque-restauracao");
+			try (Stream<Path> arquivos = Files.list(original))
+			{
+				for (Path arquivo : arquivos.toList())
+				{
+					Files.copy(arquivo, copia.resolve(arquivo.getFileName()));
+				}
+			}
+		}
+
+		@TearDown(Level.Iteration)
+		public void fechar() throws IOException
+		{
+			estoque.close();
+			apagar(copia);
+		}
+
+		@TearDown(Level.Trial)
+		public void apagar() throws IOException
+		{
+			apagar(original);
+		}
+
+		EstoqueSimulado abrir(Path diretorio)
+		{
+			EstoqueSimulado aberto = new EstoqueSimulado(SALDO_INICIAL, produtos);
+			aberto.persistirEm(diretorio);
+			return aberto;
+		}
+
+		private static void apagar(Path diretorio) throws IOException
+		{
+			try (Stream<Path> arquivos = Files.walk(diretorio))
+			{
+				for (Path arquivo : arquivos.sorted(Comparator.reverseOrder()).toList())
+				{
+					Files.delete(arquivo);
+				}
+			}
+		}
+	}
+
+	@Benchmark
+	public EstoqueSimulado restaurar(Diretorio diretorio)
+	{
+		diretorio.estoque = diretorio.abrir(diretorio.copia);
+		return diretorio.estoque;
+	}
+}
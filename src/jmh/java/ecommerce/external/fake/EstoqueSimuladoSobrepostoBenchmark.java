@@ -0,0 +1,117 @@
+package ecommerce.external.fake;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ecommerce.dto.EstoqueBaixaDTO;
+
+/**
+ * Vazão de baixas de {@link EstoqueSimulado} com carrinhos que se sobrepõem: cada baixa leva de 2 a
+ * 5 produtos, quase sempre algum dos {@value #POPULARES} populares, misturados a uma cauda de
+ * {@value #CAUDA} produtos e em ordem aleatória (a carga de {@code EstoqueSimuladoConcorrenciaTest}).
+ *
+ * Com {@code listras=1} o modo LISTRAS equivale a uma trava global; o número de listras não
+ * afeta o modo CAS. Para ver a escala com os núcleos, compare com uma thread só:
+ * {@code -Djmh.args="EstoqueSimuladoSobrepostoBenchmark -t 1"}.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(Threads.MAX)
+public class EstoqueSimuladoSobrepostoBenchmark
+{
+	private static final int POPULARES = 10;
+	private static final int CAUDA = 1_000;
+	private static final int PEDIDOS_POR_THREAD = 1_024;
+
+	@State(Scope.Benchmark)
+	public static class Estoque
+	{
+		@Param({"CAS", "LISTRAS"})
+		public ConcorrenciaEstoque concorrencia;
+
+		@Param({"1", "64"})
+		public int listras;
+
+		EstoqueSimulado estoque;
+
+		@Setup(Level.Trial)
+		public void criar()
+		{
+			estoque = new EstoqueSimulado(Long.MAX_VALUE / 2);
+			estoque.setConcorrencia(concorrencia);
+			estoque.setListras(listras);
+		}
+	}
+
+	@State(Scope.Thread)
+	public static class Pedidos
+	{
+		private List<List<Long>> ids;
+		private List<List<Long>> quantidades;
+		private int proximo;
+
+		/** Pedidos de 2 a 5 produtos distintos, 9 em 10 com um produto popular, em ordem aleatória. */
+		@Setup(Level.Trial)
+		public void gerar()
+		{
+			Random aleatorio = new Random(Thread.currentThread().getId());
+			ids = new ArrayList<>(PEDIDOS_POR_THREAD);
+			quantidades = new ArrayList<>(PEDIDOS_POR_THREAD);
+			for (int i = 0; i < PEDIDOS_POR_THREAD; i++)
+			{
+				int linhas = 2 + aleatorio.nextInt(4);
+				List<Long> pedido = new ArrayList<>(linhas);
+				if (aleatorio.nextInt(10) != 0)
+				{
+					pedido.add((long) aleatorio.nextInt(POPULARES));
+				}
+				while (pedido.size() < linhas)
+				{
+					long produtoId = aleatorio.nextInt(4) == 0 ? aleatorio.nextInt(POPULARES)
+							: POPULARES + aleatorio.nextInt(CAUDA);
+					if (!pedido.contains(produtoId))
+					{
+						pedido.add(produtoId);
+					}
+				}
+				Collections.shuffle(pedido, aleatorio);
+				ids.add(pedido);
+				quantidades.add(Collections.nCopies(linhas, 1L));
+			}
+		}
+
+		int proximo()
+		{
+			int pedido = proximo;
+			proximo = proximo + 1 == ids.size() ? 0 : proximo + 1;
+			return pedido;
+		}
+	}
+
+	@Benchmark
+	public EstoqueBaixaDTO darBaixa(Estoque estoque, Pedidos pedidos)
+	{
+		int pedido = pedidos.proximo();
+		return estoque.estoque.darBaixa(pedidos.ids.get(pedido), pedidos.quantidades.get(pedido));
+	}
+}
@@ -0,0 +1,202 @@
+package ecommerce.service;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import ecommerce.entity.CarrinhoDeCompras;
+import ecommerce.entity.Cliente;
+import ecommerce.entity.ItemCompra;
+import ecommerce.entity.Produto;
+import ecommerce.entity.Regiao;
+import ecommerce.entity.TipoCliente;
+import ecommerce.entity.TipoProduto;
+
+/**
+ * Benchmarks dos métodos de precificação de {@link CompraService}.
+ *
+ * Cada execução alterna entre carrinhos de todas as combinações de {@link Regiao} e
+ * {@link TipoCliente}, com {@link TipoProduto} misturados, para que nenhum ramo fique
+ * artificialmente quente. Os carrinhos são gerados com semente fixa, então os números
+ * são comparáveis entre execuções.
+ *
+ * Executar com {@code ./mvnw -Pjmh verify -DskipTests}; o profiler de GC reporta a
+ * alocação por operação em {@code gc.alloc.rate.norm}.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CompraServiceBenchmark
+{
+	private static final long SEMENTE = 2025L;
+
+	@State(Scope.Thread)
+	public static class Carrinhos
+	{
+		/** Quantidade de linhas (itens) por carrinho. */
+		@Param({"1", "10", "100", "5000"})
+		public int linhas;
+
+		private CarrinhoDeCompras[] carrinhos;
+		private int proximo;
+
+		/** Os mesmos carrinhos já convertidos para o formato colunar. */
+		private CarrinhosColunares lote;
+
+		@Setup(Level.Trial)
+		public void gerar()
+		{
+			Random aleatorio = new Random(SEMENTE);
+			Regiao[] regioes = Regiao.values();
+			TipoCliente[] tiposCliente = TipoCliente.values();
+
+			carrinhos = new CarrinhoDeCompras[regioes.length * tiposCliente.length];
+			int i = 0;
+			for (Regiao regiao : regioes)
+			{
+				for (TipoCliente tipoCliente : tiposCliente)
+				{
+					carrinhos[i++] = gerarCarrinho(aleatorio, regiao, tipoCliente, linhas);
+				}
+			}
+			lote = CarrinhosColunares.de(Arrays.asList(carrinhos));
+		}
+
+		CarrinhoDeCompras proximo()
+		{
+			CarrinhoDeCompras carrinho = carrinhos[proximo];
+			proximo = proximo + 1 == carrinhos.length ? 0 : proximo + 1;
+			return carrinho;
+		}
+	}
+
+	@State(Scope.Benchmark)
+	public static class Servico
+	{
+		@Param({"BIG_DECIMAL", "CENTAVOS"})
+		public MotorPrecificacao motor;
+
+		CompraService compraService;
+
+		@Setup(Level.Trial)
+		public void criar()
+		{
+			compraService = new CompraService(null, null, null, null);
+			compraService.setMotorPrecificacao(motor);
+		}
+	}
+
+	@State(Scope.Benchmark)
+	public static class ServicoPadrao
+	{
+		final CompraService compraService = new CompraService(null, null, null, null);
+	}
+
+	@State(Scope.Benchmark)
+	public static class ServicoCentavos
+	{
+		final CompraService compraService = new CompraService(null, null, null, null);
+
+		@Setup(Level.Trial)
+		public void configurar()
+		{
+			compraService.setMotorPrecificacao(MotorPrecificacao.CENTAVOS);
+		}
+	}
+
+	@Benchmark
+	public BigDecimal calcularCustoTotal(Carrinhos carrinhos, Servico servico)
+	{
+		CarrinhoDeCompras carrinho = carrinhos.proximo();
+		Cliente cliente = carrinho.getCliente();
+		return servico.compraService.calcularCustoTotal(carrinho, cliente.getRegiao(), cliente.getTipo());
+	}
+
+	@Benchmark
+	public BigDecimal calcularFreteTotal(Carrinhos carrinhos, ServicoPadrao servico)
+	{
+		return servico.compraService.calcularFreteTotal(carrinhos.proximo());
+	}
+
+	@Benchmark
+	public BigDecimal calcularDescontoPorMultiplosItensMesmoTipo(Carrinhos carrinhos, ServicoPadrao servico)
+	{
+		return servico.compraService.calcularDescontoPorMultiplosItensMesmoTipo(carrinhos.proximo());
+	}
+
+	/** Linha de base do lote: todos os carrinhos, um a um, pelo cálculo em ponto fixo. */
+	@Benchmark
+	public void calcularCustoTotalTodosOsCarrinhos(Carrinhos carrinhos, ServicoCentavos servico, Blackhole blackhole)
+	{
+		for (CarrinhoDeCompras carrinho : carrinhos.carrinhos)
+		{
+			blackhole.consume(servico.compraService.calcularCustoTotal(carrinho, null, null));
+		}
+	}
+
+	/** Os mesmos carrinhos pelo kernel colunar (a conversão fica fora da medição). */
+	@Benchmark
+	public long[] calcularCustosTotaisColunar(Carrinhos carrinhos)
+	{
+		return CalculadoraCustoColunar.calcularCustosTotais(carrinhos.lote, TabelaFaixas.PADRAO);
+	}
+
+	// ============================================================================
+	// Geração de carrinhos
+	// ============================================================================
+
+	/**
+	 * Distribuição aproximada de um catálogo real: a maioria dos itens é barata e leve,
+	 * com uma cauda de itens caros e pesados; quantidades concentradas em 1 unidade e
+	 * cerca de 1 em cada 5 produtos frágil.
+	 */
+	private static CarrinhoDeCompras gerarCarrinho(Random aleatorio, Regiao regiao, TipoCliente tipoCliente,
+			int linhas)
+	{
+		TipoProduto[] tiposProduto = TipoProduto.values();
+
+		CarrinhoDeCompras carrinho = new CarrinhoDeCompras();
+		carrinho.setCliente(new Cliente(1L, "Cliente Benchmark", regiao, tipoCliente));
+		carrinho.setItens(new ArrayList<>(linhas));
+
+		for (int i = 0; i < linhas; i++)
+		{
+			boolean itemGrande = aleatorio.nextInt(10) == 0;
+			BigDecimal preco = BigDecimal.valueOf(itemGrande ? 50_000 + aleatorio.nextInt(450_000)
+					: 500 + aleatorio.nextInt(19_500), 2);
+			BigDecimal peso = BigDecimal.valueOf(itemGrande ? 2_000 + aleatorio.nextInt(28_000)
+					: 10 + aleatorio.nextInt(1_990), 3);
+
+			Produto produto = new Produto((long) i, "Produto " + i, "Descrição do Produto " + i, preco, peso,
+					BigDecimal.valueOf(5 + aleatorio.nextInt(itemGrande ? 95 : 30)),
+					BigDecimal.valueOf(5 + aleatorio.nextInt(itemGrande ? 75 : 25)),
+					BigDecimal.valueOf(1 + aleatorio.nextInt(itemGrande ? 60 : 15)),
+					aleatorio.nextInt(5) == 0,
+					tiposProduto[aleatorio.nextInt(tiposProduto.length)]);
+
+			ItemCompra item = new ItemCompra();
+			item.setProduto(produto);
+			item.setQuantidade(aleatorio.nextInt(4) == 0 ? 2L + aleatorio.nextInt(9) : 1L);
+			carrinho.getItens().add(item);
+		}
+		return carrinho;
+	}
+}
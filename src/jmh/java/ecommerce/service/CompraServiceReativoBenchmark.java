@@ -0,0 +1,106 @@
+package ecommerce.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ecommerce.dto.CompraDTO;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * Tempo para finalizar {@value #COMPRAS} compras simultâneas com serviços externos lentos e só
+ * {@value #THREADS} threads: em {@link CompraService}, cada compra ocupa uma thread enquanto espera
+ * estoque e pagamento; em {@link CompraServiceReativo}, as threads só carregam o carrinho.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class CompraServiceReativoBenchmark
+{
+	private static final int COMPRAS = 200;
+	private static final int THREADS = 8;
+
+	public enum Modelo
+	{
+		BLOQUEANTE, REATIVO
+	}
+
+	@State(Scope.Benchmark)
+	public static class Servidor
+	{
+		@Param({"BLOQUEANTE", "REATIVO"})
+		public Modelo modelo;
+
+		/** Latência de cada chamada externa. */
+		@Param({"50"})
+		public long latenciaMs;
+
+		ExecutorService executor;
+		Scheduler agendador;
+		CompraService compraService;
+		CompraServiceReativo compraServiceReativo;
+
+		@Setup(Level.Trial)
+		public void criar()
+		{
+			executor = Executors.newFixedThreadPool(THREADS);
+			agendador = Schedulers.fromExecutorService(executor);
+			compraService = DependenciasLentas.compraService(latenciaMs);
+			compraServiceReativo = new CompraServiceReativo(DependenciasLentas.compraService(null, null),
+					DependenciasLentas.estoqueReativo(latenciaMs), DependenciasLentas.pagamentoReativo(latenciaMs),
+					agendador);
+		}
+
+		@TearDown(Level.Trial)
+		public void encerrar()
+		{
+			agendador.dispose();
+		}
+	}
+
+	@Benchmark
+	public int finalizarCompras(Servidor servidor) throws Exception
+	{
+		List<Future<CompraDTO>> compras = new ArrayList<>(COMPRAS);
+		for (int i = 0; i < COMPRAS; i++)
+		{
+			if (servidor.modelo == Modelo.BLOQUEANTE)
+			{
+				compras.add(servidor.executor.submit(() -> servidor.compraService.finalizarCompra(1L, 1L)));
+			}
+			else
+			{
+				compras.add(servidor.compraServiceReativo.finalizarCompra(1L, 1L).toFuture());
+			}
+		}
+		int sucessos = 0;
+		for (Future<CompraDTO> compra : compras)
+		{
+			if (compra.get().sucesso())
+			{
+				sucessos++;
+			}
+		}
+		return sucessos;
+	}
+}
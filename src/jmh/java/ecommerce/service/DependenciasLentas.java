@@ -0,0 +1,222 @@
+package ecommerce.service;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import ecommerce.dto.DisponibilidadeDTO;
+import ecommerce.dto.EstoqueBaixaDTO;
+import ecommerce.dto.PagamentoDTO;
+import ecommerce.dto.ReservaDTO;
+import ecommerce.entity.CarrinhoDeCompras;
+import ecommerce.entity.Cliente;
+import ecommerce.entity.ItemCompra;
+import ecommerce.entity.Produto;
+import ecommerce.entity.Regiao;
+import ecommerce.entity.TipoCliente;
+import ecommerce.entity.TipoProduto;
+import ecommerce.external.IEstoqueExternal;
+import ecommerce.external.IEstoqueExternalReativo;
+import ecommerce.external.IPagamentoExternal;
+import ecommerce.external.IPagamentoExternalReativo;
+import reactor.core.publisher.Mono;
+
+/**
+ * {@link CompraService} dos benchmarks de finalização: carrinho e cliente em memória, e estoque e
+ * pagamento que esperam {@code latenciaMs} em cada chamada, como serviços remotos lentos. As
+ * variantes reativas esperam com {@link Mono#delay}, sem ocupar thread.
+ */
+final class DependenciasLentas
+{
+	private DependenciasLentas()
+	{
+	}
+
+	static CompraService compraService(long latenciaMs)
+	{
+		return compraService(estoque(latenciaMs), pagamento(latenciaMs));
+	}
+
+	static CompraService compraService(IEstoqueExternal estoque, IPagamentoExternal pagamento)
+	{
+		CarrinhoDeCompras carrinho = carrinho();
+		ClienteService clienteService = new ClienteService(null)
+		{
+			@Override
+			public Cliente buscarPorId(Long clienteId)
+			{
+				return carrinho.getCliente();
+			}
+		};
+		CarrinhoDeComprasService carrinhoService = new CarrinhoDeComprasService(null)
+		{
+			@Override
+			public CarrinhoDeCompras buscarPorCarrinhoIdEClienteId(Long carrinhoId, Cliente cliente)
+			{
+				return carrinho;
+			}
+		};
+		return new CompraService(carrinhoService, clienteService, estoque, pagamento);
+	}
+
+	static IEstoqueExternal estoque(long latenciaMs)
+	{
+		return new IEstoqueExternal()
+		{
+			@Override
+			public EstoqueBaixaDTO darBaixa(List<Long> produtosIds, List<Long> produtosQuantidades)
+			{
+				esperar(latenciaMs);
+				return new EstoqueBaixaDTO(true);
+			}
+
+			@Override
+			public DisponibilidadeDTO verificarDisponibilidade(List<Long> produtosIds, List<Long> produtosQuantidades)
+			{
+				esperar(latenciaMs);
+				return new DisponibilidadeDTO(true, List.of());
+			}
+
+			@Override
+			public ReservaDTO reservar(List<Long> produtosIds, List<Long> produtosQuantidades, Duration validade)
+			{
+				esperar(latenciaMs);
+				return new ReservaDTO(true, 1L, List.of());
+			}
+
+			@Override
+			public EstoqueBaixaDTO confirmarReserva(Long reservaId)
+			{
+				esperar(latenciaMs);
+				return new EstoqueBaixaDTO(true);
+			}
+
+			@Override
+			public void liberarReserva(Long reservaId)
+			{
+				esperar(latenciaMs);
+			}
+
+			@Override
+			public Map<Long, Long> consultarSaldos(List<Long> produtosIds)
+			{
+				esperar(latenciaMs);
+				Map<Long, Long> saldos = new HashMap<>();
+				produtosIds.forEach(produtoId -> saldos.put(produtoId, Long.MAX_VALUE));
+				return saldos;
+			}
+		};
+	}
+
+	static IPagamentoExternal pagamento(long latenciaMs)
+	{
+		return new IPagamentoExternal()
+		{
+			@Override
+			public PagamentoDTO autorizarPagamento(Long clienteId, Double custoTotal)
+			{
+				esperar(latenciaMs);
+				return new PagamentoDTO(true, 1L);
+			}
+
+			@Override
+			public void cancelarPagamento(Long clienteId, Long pagamentoTransacaoId)
+			{
+				esperar(latenciaMs);
+			}
+		};
+	}
+
+	static IEstoqueExternalReativo estoqueReativo(long latenciaMs)
+	{
+		Duration latencia = Duration.ofMillis(latenciaMs);
+		return new IEstoqueExternalReativo()
+		{
+			@Override
+			public Mono<EstoqueBaixaDTO> darBaixa(List<Long> produtosIds, List<Long> produtosQuantidades)
+			{
+				return Mono.delay(latencia).thenReturn(new EstoqueBaixaDTO(true));
+			}
+
+			@Override
+			public Mono<DisponibilidadeDTO> verificarDisponibilidade(List<Long> produtosIds,
+					List<Long> produtosQuantidades)
+			{
+				return Mono.delay(latencia).thenReturn(new DisponibilidadeDTO(true, List.of()));
+			}
+
+			@Override
+			public Mono<ReservaDTO> reservar(List<Long> produtosIds, List<Long> produtosQuantidades,
+					Duration validade)
+			{
+				return Mono.delay(latencia).thenReturn(new ReservaDTO(true, 1L, List.of()));
+			}
+
+			@Override
+			public Mono<EstoqueBaixaDTO> confirmarReserva(Long reservaId)
+			{
+				return Mono.delay(latencia).thenReturn(new EstoqueBaixaDTO(true));
+			}
+
+			@Override
+			public Mono<Void> liberarReserva(Long reservaId)
+			{
+				return Mono.delay(latencia).then();
+			}
+		};
+	}
+
+	static IPagamentoExternalReativo pagamentoReativo(long latenciaMs)
+	{
+		Duration latencia = Duration.ofMillis(latenciaMs);
+		return new IPagamentoExternalReativo()
+		{
+			@Override
+			public Mono<PagamentoDTO> autorizarPagamento(Long clienteId, Double custoTotal)
+			{
+				return Mono.delay(latencia).thenReturn(new PagamentoDTO(true, 1L));
+			}
+
+			@Override
+			public Mono<Void> cancelarPagamento(Long clienteId, Long pagamentoTransacaoId)
+			{
+				return Mono.delay(latencia).then();
+			}
+		};
+	}
+
+	/** Carrinho de 10 produtos de tipos variados. */
+	private static CarrinhoDeCompras carrinho()
+	{
+		CarrinhoDeCompras carrinho = new CarrinhoDeCompras();
+		carrinho.setId(1L);
+		carrinho.setCliente(new Cliente(1L, "Cliente Benchmark", Regiao.SUDESTE, TipoCliente.PRATA));
+		carrinho.setItens(new ArrayList<>());
+		BigDecimal dimensao = new BigDecimal("10.0");
+		TipoProduto[] tipos = TipoProduto.values();
+		for (long id = 1; id <= 10; id++)
+		{
+			Produto produto = new Produto(id, "Produto " + id, "Descrição do Produto " + id,
+					BigDecimal.valueOf(10 * id), new BigDecimal("0.5"), dimensao, dimensao, dimensao, false,
+					tipos[(int) id % tipos.length]);
+			carrinho.getItens().add(new ItemCompra(id, produto, 1L));
+		}
+		return carrinho;
+	}
+
+	private static void esperar(long latenciaMs)
+	{
+		try
+		{
+			Thread.sleep(latenciaMs);
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException(e);
+		}
+	}
+}
@@ -0,0 +1,81 @@
+package ecommerce.service;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+
+import ecommerce.dto.CompraDTO;
+
+/**
+ * Tempo de {@link CompraService#finalizarCompra} com {@value #THREADS} compras simultâneas
+ * disputando um pool Hikari (sobre H2) de só {@value #CONEXOES} conexões, para várias latências
+ * dos serviços externos.
+ *
+ * Como as chamadas externas rodam sem transação, cada compra segura a conexão só durante a carga
+ * do carrinho: o tempo por compra acompanha as 3 chamadas externas (verificação, autorização e
+ * baixa) e não a fila pelas conexões, que cresceria para {@value #THREADS}/{@value #CONEXOES}
+ * vezes isso se a conexão ficasse presa durante as chamadas.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(FinalizacaoPoolConexoesBenchmark.THREADS)
+public class FinalizacaoPoolConexoesBenchmark
+{
+	static final int THREADS = 40;
+	static final int CONEXOES = 2;
+
+	@State(Scope.Benchmark)
+	public static class Servico
+	{
+		/** Latência de cada chamada externa. */
+		@Param({"10", "200"})
+		public long latenciaMs;
+
+		HikariDataSource dataSource;
+		CompraService compraService;
+
+		@Setup(Level.Trial)
+		public void criar()
+		{
+			HikariConfig configuracao = new HikariConfig();
+			configuracao.setJdbcUrl("jdbc:h2:mem:finalizacao-pool-conexoes;DB_CLOSE_DELAY=-1");
+			configuracao.setMaximumPoolSize(CONEXOES);
+			dataSource = new HikariDataSource(configuracao);
+
+			compraService = DependenciasLentas.compraService(latenciaMs);
+			compraService.setGerenciadorTransacoes(new DataSourceTransactionManager(dataSource));
+		}
+
+		@TearDown(Level.Trial)
+		public void encerrar()
+		{
+			dataSource.close();
+		}
+	}
+
+	@Benchmark
+	public CompraDTO finalizarCompra(Servico servico)
+	{
+		return servico.compraService.finalizarCompra(1L, 1L);
+	}
+}
@@ -0,0 +1,108 @@
+package ecommerce.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ecommerce.dto.CompraDTO;
+
+/**
+ * Tempo para finalizar {@value #COMPRAS} compras simultâneas com serviços externos lentos, no
+ * modelo do Tomcat com threads de plataforma (pool de {@value #THREADS_TOMCAT}, o padrão de
+ * {@code server.tomcat.threads.max}) e com uma thread virtual por compra.
+ *
+ * Threads virtuais exigem Java 21: executar com {@code ./mvnw -Pjava21,jmh verify -DskipTests
+ * -Djmh.args="ThreadsVirtuaisBenchmark"}. Em Java 17 o modelo VIRTUAIS falha no setup.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ThreadsVirtuaisBenchmark
+{
+	private static final int COMPRAS = 5_000;
+	private static final int THREADS_TOMCAT = 200;
+
+	public enum Modelo
+	{
+		PLATAFORMA, VIRTUAIS
+	}
+
+	@State(Scope.Benchmark)
+	public static class Servidor
+	{
+		@Param({"PLATAFORMA", "VIRTUAIS"})
+		public Modelo modelo;
+
+		/** Latência de cada chamada externa (verificação, autorização e baixa). */
+		@Param({"50"})
+		public long latenciaMs;
+
+		ExecutorService executor;
+		CompraService compraService;
+
+		@Setup(Level.Trial)
+		public void criar()
+		{
+			compraService = DependenciasLentas.compraService(latenciaMs);
+			executor = modelo == Modelo.PLATAFORMA ? Executors.newFixedThreadPool(THREADS_TOMCAT)
+					: executorVirtual();
+		}
+
+		@TearDown(Level.Trial)
+		public void encerrar()
+		{
+			executor.shutdownNow();
+		}
+	}
+
+	@Benchmark
+	public int finalizarCompras(Servidor servidor) throws Exception
+	{
+		List<Future<CompraDTO>> compras = new ArrayList<>(COMPRAS);
+		for (int i = 0; i < COMPRAS; i++)
+		{
+			compras.add(servidor.executor.submit(() -> servidor.compraService.finalizarCompra(1L, 1L)));
+		}
+		int sucessos = 0;
+		for (Future<CompraDTO> compra : compras)
+		{
+			if (compra.get().sucesso())
+			{
+				sucessos++;
+			}
+		}
+		return sucessos;
+	}
+
+	/** {@code Executors.newVirtualThreadPerTaskExecutor()} por reflexão, para o profile compilar em Java 17. */
+	private static ExecutorService executorVirtual()
+	{
+		try
+		{
+			return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+		}
+		catch (ReflectiveOperationException e)
+		{
+			throw new IllegalStateException("Threads virtuais exigem Java 21 (profile java21).", e);
+		}
+	}
+}
@@ -0,0 +1,228 @@
+package ecommerce.config;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.env.Environment;
+
+import ecommerce.external.IEstoqueExternal;
+import ecommerce.external.IPagamentoExternal;
+import ecommerce.external.fake.EstoqueSimulado;
+import ecommerce.external.fake.PagamentoSimulado;
+import ecommerce.external.protecao.CadeiaDecoradores;
+import ecommerce.external.protecao.ChamadasProtegidas;
+import ecommerce.external.protecao.EstoqueComCacheDisponibilidade;
+import ecommerce.external.protecao.EstoqueComHedge;
+import ecommerce.external.protecao.EstoqueComLoteBaixas;
+import ecommerce.external.protecao.EstoqueExternoProtegido;
+import ecommerce.external.protecao.ExecutoresChamadasExternas;
+import ecommerce.external.protecao.PagamentoExternoProtegido;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerConfig;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerConfig.SlidingWindowType;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.github.resilience4j.micrometer.tagged.TaggedCircuitBreakerMetrics;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Monta os clientes de estoque e pagamento usados pela aplicação, que são {@link Primary}: é deles
+ * que CompraService e o despachante de compensações recebem as chamadas. Sobre o cliente simulado
+ * entram, nesta ordem:
+ * <ol>
+ * <li>hedge da consulta de disponibilidade ({@code compra.estoque.hedge.habilitado}); a reserva não é
+ * repetida, por não ser idempotente;</li>
+ * <li>timeout por operação e circuit breaker ({@code compra.externo.protecao.habilitada}); a consulta
+ * com hedge conta como uma chamada e o timeout vale para ela inteira;</li>
+ * <li>baixas de compras simultâneas juntadas em uma chamada {@code darBaixaEmLote}
+ * ({@code compra.estoque.lote.habilitado}); o lote inteiro conta como uma chamada protegida;</li>
+ * <li>cache local das verificações de disponibilidade ({@code compra.estoque.cache.habilitado}), por
+ * fora de tudo para que a resposta local não passe por lote, circuito nem hedge.</li>
+ * </ol>
+ *
+ * Os decoradores criados aqui são fechados juntos por {@link CadeiaDecoradores} no fim do contexto;
+ * o cliente simulado e o hedge, que são beans próprios, fecham com o Spring.
+ *
+ * Estado e chamadas dos circuitos ficam nas métricas {@code resilience4j.circuitbreaker.*} e em
+ * {@code /actuator/circuitos}; cada mudança de estado incrementa {@value #METRICA_TRANSICOES}.
+ */
+@Configuration(proxyBeanMethods = false)
+public class ClientesExternosConfig
+{
+	public static final String METRICA_TRANSICOES = "compra.externo.circuito.transicoes";
+
+	private static final Logger log = LoggerFactory.getLogger(ClientesExternosConfig.class);
+
+	private static final Duration TIMEOUT_PADRAO = Duration.ofSeconds(2);
+
+	@Bean
+	@ConditionalOnProperty(name = "compra.externo.protecao.habilitada", havingValue = "true", matchIfMissing = true)
+	public CircuitBreakerRegistry registroCircuitos(@Value("${compra.externo.circuito.janela:50}") int janela,
+			@Value("${compra.externo.circuito.minimo-chamadas:20}") int minimoChamadas,
+			@Value("${compra.externo.circuito.taxa-falhas:50}") float taxaFalhas,
+			@Value("${compra.externo.circuito.lenta-acima-de:1s}") Duration lentaAcimaDe,
+			@Value("${compra.externo.circuito.taxa-lentas:80}") float taxaLentas,
+			@Value("${compra.externo.circuito.espera-aberto:10s}") Duration esperaAberto,
+			@Value("${compra.externo.circuito.chamadas-meio-aberto:5}") int chamadasMeioAberto,
+			MeterRegistry registry)
+	{
+		CircuitBreakerConfig configuracao = CircuitBreakerConfig.custom()
+				.slidingWindowType(SlidingWindowType.COUNT_BASED)
+				.slidingWindowSize(janela)
+				.minimumNumberOfCalls(minimoChamadas)
+				.failureRateThreshold(taxaFalhas)
+				.slowCallDurationThreshold(lentaAcimaDe)
+				.slowCallRateThreshold(taxaLentas)
+				.waitDurationInOpenState(esperaAberto)
+				.permittedNumberOfCallsInHalfOpenState(chamadasMeioAberto)
+				// Pedido inválido é recusa de negócio, não sinal de serviço com problema
+				.ignoreExceptions(IllegalArgumentException.class)
+				.build();
+
+		CircuitBreakerRegistry circuitos = CircuitBreakerRegistry.of(configuracao);
+		TaggedCircuitBreakerMetrics.ofCircuitBreakerRegistry(circuitos).bindTo(registry);
+		return circuitos;
+	}
+
+	@Bean
+	@ConditionalOnProperty(name = "compra.estoque.hedge.habilitado", havingValue = "true")
+	public EstoqueComHedge estoqueComHedge(EstoqueSimulado estoque,
+			@Value("${compra.estoque.hedge.percentil:0.95}") double percentil,
+			@Value("${compra.estoque.hedge.orcamento:0.05}") double orcamento,
+			@Value("${compra.estoque.hedge.rajada:10}") int rajada,
+			@Value("${compra.estoque.hedge.janela:1000}") int janela,
+			@Value("${compra.estoque.hedge.minimo-amostras:100}") int minimoAmostras,
+			@Value("${compra.estoque.hedge.atraso-minimo:5ms}") Duration atrasoMinimo,
+			@Value("${compra.estoque.hedge.threads:100}") int threads,
+			MeterRegistry registry)
+	{
+		return new EstoqueComHedge(estoque, percentil, orcamento, rajada, janela, minimoAmostras, atrasoMinimo,
+				threads, registry);
+	}
+
+	@Bean(destroyMethod = "close")
+	public CadeiaDecoradores decoradoresExternos()
+	{
+		return new CadeiaDecoradores();
+	}
+
+	// Sem destroyMethod inferido: a cadeia fecha os decoradores, o Spring fecharia só o mais externo
+	@Bean(destroyMethod = "")
+	@Primary
+	public IEstoqueExternal estoqueExterno(EstoqueSimulado estoque, ObjectProvider<EstoqueComHedge> hedge,
+			ObjectProvider<CircuitBreakerRegistry> circuitos, ObjectProvider<ExecutoresChamadasExternas> executores,
+			CadeiaDecoradores decoradores, Environment ambiente, MeterRegistry registry,
+			@Value("${compra.estoque.lote.habilitado:false}") boolean loteHabilitado,
+			@Value("${compra.estoque.lote.janela:2ms}") Duration janelaLote,
+			@Value("${compra.estoque.lote.tamanho-maximo:50}") int tamanhoMaximoLote,
+			@Value("${compra.estoque.lote.envios-simultaneos:4}") int enviosSimultaneos,
+			@Value("${compra.estoque.cache.habilitado:false}") boolean cacheHabilitado,
+			@Value("${compra.estoque.cache.margem:10}") long margemCache,
+			@Value("${compra.estoque.cache.validade-positiva:1s}") Duration validadePositiva,
+			@Value("${compra.estoque.cache.validade-esgotado:2s}") Duration validadeEsgotado,
+			@Value("${compra.estoque.cache.tamanho-maximo:100000}") long tamanhoMaximoCache)
+	{
+		IEstoqueExternal cliente = estoque;
+		EstoqueComHedge comHedge = hedge.getIfAvailable();
+		if (comHedge != null)
+		{
+			cliente = comHedge;
+		}
+		CircuitBreakerRegistry registroCircuitos = circuitos.getIfAvailable();
+		if (registroCircuitos != null)
+		{
+			cliente = decoradores.registrar(new EstoqueExternoProtegido(cliente,
+					criarChamadas("estoque", EstoqueExternoProtegido.OPERACOES, registroCircuitos,
+							executores.getIfAvailable(), ambiente, registry)));
+		}
+		if (loteHabilitado)
+		{
+			cliente = decoradores.registrar(
+					new EstoqueComLoteBaixas(cliente, janelaLote, tamanhoMaximoLote, enviosSimultaneos, registry));
+		}
+		if (cacheHabilitado)
+		{
+			cliente = decoradores.registrar(new EstoqueComCacheDisponibilidade(cliente, margemCache, validadePositiva,
+					validadeEsgotado, tamanhoMaximoCache, registry));
+		}
+		return cliente;
+	}
+
+	@Bean(destroyMethod = "")
+	@Primary
+	public IPagamentoExternal pagamentoExterno(PagamentoSimulado pagamento,
+			ObjectProvider<CircuitBreakerRegistry> circuitos, ObjectProvider<ExecutoresChamadasExternas> executores,
+			CadeiaDecoradores decoradores, Environment ambiente, MeterRegistry registry)
+	{
+		CircuitBreakerRegistry registroCircuitos = circuitos.getIfAvailable();
+		if (registroCircuitos == null)
+		{
+			return pagamento;
+		}
+		return decoradores.registrar(new PagamentoExternoProtegido(pagamento,
+				criarChamadas("pagamento", PagamentoExternoProtegido.OPERACOES, registroCircuitos,
+						executores.getIfAvailable(), ambiente, registry)));
+	}
+
+	/**
+	 * Timeouts em {@code compra.externo.<servico>.timeouts.<operacao>}, com
+	 * {@code compra.externo.<servico>.timeout-padrao} para as operações sem timeout próprio; no máximo
+	 * {@code compra.externo.<servico>.chamadas-simultaneas} chamadas em andamento. Sem
+	 * {@code executores} (threads virtuais desligadas), as chamadas rodam em um pool de
+	 * {@code compra.externo.<servico>.threads} threads de plataforma.
+	 */
+	private static ChamadasProtegidas criarChamadas(String servico, List<String> operacoes,
+			CircuitBreakerRegistry circuitos, ExecutoresChamadasExternas executores, Environment ambiente,
+			MeterRegistry registry)
+	{
+		String prefixo = "compra.externo." + servico + ".";
+		Duration timeoutPadrao = ambiente.getProperty(prefixo + "timeout-padrao", Duration.class, TIMEOUT_PADRAO);
+		Map<String, Duration> timeouts = new HashMap<>();
+		for (String operacao : operacoes)
+		{
+			Duration timeout = ambiente.getProperty(prefixo + "timeouts." + operacao, Duration.class);
+			if (timeout != null)
+			{
+				timeouts.put(operacao, timeout);
+			}
+		}
+
+		int chamadasSimultaneas = ambiente.getProperty(prefixo + "chamadas-simultaneas", Integer.class,
+				ChamadasProtegidas.CHAMADAS_SIMULTANEAS_PADRAO);
+		ExecutorService executor;
+		if (executores != null)
+		{
+			executor = executores.criar(servico);
+		}
+		else
+		{
+			int threads = ambiente.getProperty(prefixo + "threads", Integer.class, ChamadasProtegidas.THREADS_PADRAO);
+			executor = ChamadasProtegidas.poolPlataforma(servico, threads, chamadasSimultaneas);
+		}
+
+		CircuitBreaker circuito = circuitos.circuitBreaker(servico);
+		circuito.getEventPublisher().onStateTransition(evento -> {
+			CircuitBreaker.StateTransition transicao = evento.getStateTransition();
+			log.warn("Circuito de {} passou de {} para {}", servico, transicao.getFromState(), transicao.getToState());
+			Counter.builder(METRICA_TRANSICOES)
+					.description("Mudanças de estado dos circuitos dos serviços externos")
+					.tag("circuito", servico)
+					.tag("de", transicao.getFromState().name())
+					.tag("para", transicao.getToState().name())
+					.register(registry)
+					.increment();
+		});
+		return new ChamadasProtegidas(servico, circuito, timeoutPadrao, timeouts, chamadasSimultaneas, executor);
+	}
+}
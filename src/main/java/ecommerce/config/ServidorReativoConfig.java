@@ -0,0 +1,91 @@
+package ecommerce.config;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.embedded.netty.NettyReactiveWebServerFactory;
+import org.springframework.boot.web.server.WebServer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.codec.json.Jackson2JsonDecoder;
+import org.springframework.http.codec.json.Jackson2JsonEncoder;
+import org.springframework.web.reactive.function.server.HandlerStrategies;
+import org.springframework.web.reactive.function.server.RouterFunction;
+import org.springframework.web.reactive.function.server.RouterFunctions;
+import org.springframework.web.reactive.function.server.ServerResponse;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import ecommerce.controller.CompraHandlerReativo;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+import reactor.netty.resources.LoopResources;
+
+/**
+ * Servidor WebFlux (Netty) em {@code compra.reativo.porta}, ao lado do servidor servlet da
+ * aplicação, com a finalização e a cotação reativas ({@link CompraHandlerReativo}). Os dois
+ * atendem as mesmas rotas sobre o mesmo banco e o mesmo estoque, para comparação sob a mesma
+ * carga.
+ *
+ * O servidor usa {@code compra.reativo.threads} threads de evento, fixas; o acesso ao banco roda
+ * à parte, nas {@code compra.reativo.threads-bloqueantes} threads do agendador bloqueante. Cada
+ * cotação em NDJSON ocupa uma thread enquanto o cliente consome a resposta, então as cotações têm
+ * agendador próprio, de {@code compra.reativo.threads-cotacao} threads: clientes lentos não tiram
+ * threads da finalização, e as cotações além desse número esperam a vez na fila do agendador.
+ *
+ * Desligado por padrão: as rotas reativas não passam pela idempotência, pela união de chamadas
+ * simultâneas nem pelos circuit breakers e bulkheads da finalização servlet.
+ */
+@Configuration(proxyBeanMethods = false)
+@ConditionalOnProperty(name = "compra.reativo.habilitado", havingValue = "true")
+public class ServidorReativoConfig
+{
+	@Bean(destroyMethod = "dispose")
+	public Scheduler agendadorBloqueanteReativo(@Value("${compra.reativo.threads-bloqueantes:10}") int threads)
+	{
+		return agendadorFixo("reativo-bloqueante", threads);
+	}
+
+	@Bean(destroyMethod = "dispose")
+	public Scheduler agendadorCotacoesReativo(@Value("${compra.reativo.threads-cotacao:4}") int threads)
+	{
+		return agendadorFixo("reativo-cotacao", threads);
+	}
+
+	@Bean(destroyMethod = "dispose")
+	public LoopResources lacosReativos(@Value("${compra.reativo.threads:4}") int threads)
+	{
+		return LoopResources.create("reativo", threads, true);
+	}
+
+	@Bean(initMethod = "start", destroyMethod = "stop")
+	public WebServer servidorReativo(CompraHandlerReativo handler, ObjectMapper objectMapper,
+			LoopResources lacosReativos, @Value("${compra.reativo.porta:8081}") int porta)
+	{
+		RouterFunction<ServerResponse> rotas = RouterFunctions.route()
+				.POST("/finalizar", handler::finalizar)
+				.POST("/cotacoes", handler::cotar)
+				.build();
+		// Mesmo ObjectMapper do servidor servlet: respostas idênticas nas duas portas
+		HandlerStrategies estrategias = HandlerStrategies.builder().codecs(codecs -> {
+			codecs.defaultCodecs().jackson2JsonEncoder(new Jackson2JsonEncoder(objectMapper));
+			codecs.defaultCodecs().jackson2JsonDecoder(new Jackson2JsonDecoder(objectMapper));
+		}).build();
+
+		NettyReactiveWebServerFactory fabrica = new NettyReactiveWebServerFactory(porta);
+		fabrica.addServerCustomizers(servidor -> servidor.runOn(lacosReativos));
+		return fabrica.getWebServer(RouterFunctions.toHttpHandler(rotas, estrategias));
+	}
+
+	private static Scheduler agendadorFixo(String nome, int threads)
+	{
+		AtomicInteger contador = new AtomicInteger();
+		return Schedulers.fromExecutorService(Executors.newFixedThreadPool(threads, tarefa -> {
+			Thread thread = new Thread(tarefa, nome + "-" + contador.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		}), nome);
+	}
+}
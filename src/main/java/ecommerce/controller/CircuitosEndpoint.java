@@ -0,0 +1,52 @@
+package ecommerce.controller;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+
+/**
+ * Endpoint do actuator ({@code /actuator/circuitos}) com o estado e a janela atual dos circuitos
+ * dos serviços externos.
+ */
+@Component
+@Endpoint(id = "circuitos")
+@ConditionalOnProperty(name = "compra.externo.protecao.habilitada", havingValue = "true", matchIfMissing = true)
+public class CircuitosEndpoint
+{
+	private final CircuitBreakerRegistry circuitos;
+
+	@Autowired
+	public CircuitosEndpoint(CircuitBreakerRegistry circuitos)
+	{
+		this.circuitos = circuitos;
+	}
+
+	@ReadOperation
+	public Map<String, Object> circuitos()
+	{
+		Map<String, Object> descricao = new LinkedHashMap<>();
+		for (CircuitBreaker circuito : circuitos.getAllCircuitBreakers())
+		{
+			CircuitBreaker.Metrics metricas = circuito.getMetrics();
+			Map<String, Object> estado = new LinkedHashMap<>();
+			estado.put("estado", circuito.getState().name());
+			// -1 enquanto a janela não tem o mínimo de chamadas
+			estado.put("taxaFalhas", metricas.getFailureRate());
+			estado.put("taxaLentas", metricas.getSlowCallRate());
+			estado.put("chamadasNaJanela", metricas.getNumberOfBufferedCalls());
+			estado.put("falhasNaJanela", metricas.getNumberOfFailedCalls());
+			estado.put("lentasNaJanela", metricas.getNumberOfSlowCalls());
+			estado.put("recusadas", metricas.getNumberOfNotPermittedCalls());
+			descricao.put(circuito.getName(), estado);
+		}
+		return descricao;
+	}
+}
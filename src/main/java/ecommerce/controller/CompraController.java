@@ -1,32 +1,86 @@
 package ecommerce.controller;
 
+import java.util.Optional;
+
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 import ecommerce.dto.CompraDTO;
-import ecommerce.service.CompraService;
+import ecommerce.entity.RespostaIdempotente;
+import ecommerce.external.ServicoExternoIndisponivelException;
+import ecommerce.service.CoalescedorFinalizacoes;
+import ecommerce.service.IdempotenciaService;
 
 @RestController
 @RequestMapping("/")
 public class CompraController
 {
+	public static final String CABECALHO_IDEMPOTENCIA = "Idempotency-Key";
+
+	private static final int TAMANHO_MAXIMO_CHAVE = 100;
 
-	private final CompraService compraService;
+	private final CoalescedorFinalizacoes coalescedor;
+	private final IdempotenciaService idempotenciaService;
 
 	@Autowired
-	public CompraController(CompraService compraService)
+	public CompraController(CoalescedorFinalizacoes coalescedor, IdempotenciaService idempotenciaService)
 	{
-		this.compraService = compraService;
+		this.coalescedor = coalescedor;
+		this.idempotenciaService = idempotenciaService;
 	}
 
+	/**
+	 * Com o cabeçalho {@value #CABECALHO_IDEMPOTENCIA}, a chave é reservada antes de a compra rodar
+	 * e a resposta é guardada ao final; as repetições da mesma chave a recebem de volta sem
+	 * consultar estoque nem pagamento. Repetições que chegam (a esta ou a outra instância) com a
+	 * compra ainda em andamento recebem 409 com {@code Retry-After}. Serviço externo indisponível
+	 * (503) libera a chave, para que a repetição tente de novo; erro interno (500) é guardado como
+	 * qualquer resposta, porque a compra pode ter ido até o pagamento.
+	 */
 	@PostMapping("/finalizar")
-	public ResponseEntity<CompraDTO> finalizarCompra(@RequestParam Long carrinhoId, @RequestParam Long clienteId)
+	public ResponseEntity<CompraDTO> finalizarCompra(@RequestParam Long carrinhoId, @RequestParam Long clienteId,
+			@RequestHeader(name = CABECALHO_IDEMPOTENCIA, required = false) String chave)
+	{
+		if (chave == null)
+		{
+			return executar(carrinhoId, clienteId);
+		}
+		if (chave.isBlank() || chave.length() > TAMANHO_MAXIMO_CHAVE)
+		{
+			return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+					.body(new CompraDTO(false, null, "Chave de idempotência inválida."));
+		}
+
+		Optional<RespostaIdempotente> gravada = idempotenciaService.buscar(chave);
+		if (gravada.isEmpty())
+		{
+			gravada = idempotenciaService.reservar(chave, carrinhoId, clienteId);
+		}
+		if (gravada.isPresent())
+		{
+			return repetir(gravada.get(), carrinhoId, clienteId);
+		}
+
+		ResponseEntity<CompraDTO> resposta = executar(carrinhoId, clienteId);
+		if (resposta.getStatusCode().value() == HttpStatus.SERVICE_UNAVAILABLE.value())
+		{
+			idempotenciaService.liberar(chave);
+			return resposta;
+		}
+		RespostaIdempotente registrada = idempotenciaService.concluir(chave, carrinhoId, clienteId,
+				resposta.getStatusCode().value(), resposta.getBody());
+		return repetir(registrada, carrinhoId, clienteId);
+	}
+
+	private ResponseEntity<CompraDTO> executar(Long carrinhoId, Long clienteId)
 	{
 		try
 		{
-			CompraDTO compraDTO = compraService.finalizarCompra(carrinhoId, clienteId);
+			// Requisições simultâneas para o mesmo carrinho compartilham uma única finalização
+			CompraDTO compraDTO = coalescedor.finalizarCompra(carrinhoId, clienteId);
 			return ResponseEntity.ok(compraDTO);
 		}
 		catch (IllegalArgumentException e)
@@ -37,10 +91,34 @@ public class CompraController
 		{
 			return ResponseEntity.status(HttpStatus.CONFLICT).body(new CompraDTO(false, null, e.getMessage()));
 		}
+		catch (ServicoExternoIndisponivelException e)
+		{
+			// Não é guardada para idempotência: a compra foi desfeita e a repetição tenta de novo
+			return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+					.body(new CompraDTO(false, null, "Serviço temporariamente indisponível. Tente novamente."));
+		}
 		catch (Exception e)
 		{
 			return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
 					.body(new CompraDTO(false, null, "Erro ao processar compra."));
 		}
 	}
+
+	private ResponseEntity<CompraDTO> repetir(RespostaIdempotente resposta, Long carrinhoId, Long clienteId)
+	{
+		if (!resposta.getCarrinhoId().equals(carrinhoId) || !resposta.getClienteId().equals(clienteId))
+		{
+			return ResponseEntity.status(HttpStatus.UNPROCESSABLE_ENTITY)
+					.body(new CompraDTO(false, null, "Chave de idempotência já usada em outra compra."));
+		}
+		if (resposta.isEmAndamento())
+		{
+			return ResponseEntity.status(HttpStatus.CONFLICT)
+					.header(HttpHeaders.RETRY_AFTER,
+							String.valueOf(Math.max(1, idempotenciaService.getRepetirApos().toSeconds())))
+					.body(new CompraDTO(false, null, "Compra com esta chave ainda em andamento."));
+		}
+		return ResponseEntity.status(resposta.getStatus()).body(new CompraDTO(resposta.getSucesso(),
+				resposta.getTransacaoPagamentoId(), resposta.getMensagem()));
+	}
 }
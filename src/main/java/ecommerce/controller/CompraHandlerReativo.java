@@ -0,0 +1,199 @@
+package ecommerce.controller;
+
+import java.util.Optional;
+import java.util.concurrent.CancellationException;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.server.ServerRequest;
+import org.springframework.web.reactive.function.server.ServerResponse;
+
+import ecommerce.dto.CompraDTO;
+import ecommerce.dto.CotacaoDTO;
+import ecommerce.dto.CotacaoRequestDTO;
+import ecommerce.external.ServicoExternoIndisponivelException;
+import ecommerce.service.CompraServiceReativo;
+import ecommerce.service.CotacaoService;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+
+/**
+ * Rotas do servidor reativo ({@code compra.reativo.porta}): as mesmas {@code POST /finalizar} e
+ * {@code POST /cotacoes} do {@link CompraController} e do {@link CotacaoController}, com os mesmos
+ * parâmetros, corpos e códigos de resposta. Ainda não aceitam {@code Idempotency-Key} nem unem
+ * chamadas simultâneas do mesmo carrinho.
+ */
+@Component
+@ConditionalOnProperty(name = "compra.reativo.habilitado", havingValue = "true")
+public class CompraHandlerReativo
+{
+	private final CompraServiceReativo compraService;
+	private final CotacaoService cotacaoService;
+	private final Scheduler agendadorCotacoes;
+
+	@Autowired
+	public CompraHandlerReativo(CompraServiceReativo compraService, CotacaoService cotacaoService,
+			@Qualifier("agendadorCotacoesReativo") Scheduler agendadorCotacoes)
+	{
+		this.compraService = compraService;
+		this.cotacaoService = cotacaoService;
+		this.agendadorCotacoes = agendadorCotacoes;
+	}
+
+	public Mono<ServerResponse> finalizar(ServerRequest requisicao)
+	{
+		Optional<Long> carrinhoId = parametro(requisicao, "carrinhoId");
+		Optional<Long> clienteId = parametro(requisicao, "clienteId");
+		if (carrinhoId.isEmpty() || clienteId.isEmpty())
+		{
+			return responder(HttpStatus.BAD_REQUEST, new CompraDTO(false, null, "Informe carrinhoId e clienteId."));
+		}
+
+		return compraService.finalizarCompra(carrinhoId.get(), clienteId.get())
+				.flatMap(compra -> responder(HttpStatus.OK, compra))
+				.onErrorResume(e -> responder(status(e), new CompraDTO(false, null, mensagem(e))));
+	}
+
+	/** Cotação em lote como NDJSON; a cotação só avança conforme o cliente consome a resposta. */
+	public Mono<ServerResponse> cotar(ServerRequest requisicao)
+	{
+		return requisicao.bodyToMono(CotacaoRequestDTO.class).flatMap(pedido -> {
+			try
+			{
+				cotacaoService.validar(pedido);
+			}
+			catch (IllegalArgumentException e)
+			{
+				return ServerResponse.status(HttpStatus.BAD_REQUEST).contentType(MediaType.APPLICATION_NDJSON)
+						.bodyValue(new CotacaoDTO(null, null, null, e.getMessage()));
+			}
+			return ServerResponse.ok().contentType(MediaType.APPLICATION_NDJSON)
+					.body(cotacoes(pedido), CotacaoDTO.class);
+		});
+	}
+
+	/**
+	 * {@link CotacaoService#cotar} entrega os resultados na thread que chamou, então roda no
+	 * agendador de cotações e espera a demanda do assinante antes de cada entrega: um cliente lento
+	 * segura a cotação em vez de acumular resultados em memória. A thread fica parada enquanto isso,
+	 * por isso as cotações não usam o agendador bloqueante da finalização.
+	 */
+	private Flux<CotacaoDTO> cotacoes(CotacaoRequestDTO pedido)
+	{
+		return Flux.<CotacaoDTO>create(saida -> {
+			Demanda demanda = new Demanda();
+			saida.onRequest(demanda::pedir);
+			saida.onCancel(demanda::cancelar);
+			try
+			{
+				cotacaoService.cotar(pedido, cotacao -> {
+					demanda.consumir();
+					saida.next(cotacao);
+				});
+				saida.complete();
+			}
+			catch (CancellationException e)
+			{
+				// Cliente desconectou: cotar já descartou o que faltava
+			}
+			catch (RuntimeException e)
+			{
+				saida.error(e);
+			}
+		}).subscribeOn(agendadorCotacoes);
+	}
+
+	private static Optional<Long> parametro(ServerRequest requisicao, String nome)
+	{
+		try
+		{
+			return requisicao.queryParam(nome).map(Long::valueOf);
+		}
+		catch (NumberFormatException e)
+		{
+			return Optional.empty();
+		}
+	}
+
+	/** Mesmos códigos do {@link CompraController}. */
+	private static HttpStatus status(Throwable erro)
+	{
+		if (erro instanceof IllegalArgumentException)
+		{
+			return HttpStatus.BAD_REQUEST;
+		}
+		if (erro instanceof IllegalStateException)
+		{
+			return HttpStatus.CONFLICT;
+		}
+		if (erro instanceof ServicoExternoIndisponivelException)
+		{
+			return HttpStatus.SERVICE_UNAVAILABLE;
+		}
+		return HttpStatus.INTERNAL_SERVER_ERROR;
+	}
+
+	private static String mensagem(Throwable erro)
+	{
+		return switch (status(erro))
+		{
+			case BAD_REQUEST, CONFLICT -> erro.getMessage();
+			case SERVICE_UNAVAILABLE -> "Serviço temporariamente indisponível. Tente novamente.";
+			default -> "Erro ao processar compra.";
+		};
+	}
+
+	private static Mono<ServerResponse> responder(HttpStatus status, CompraDTO compra)
+	{
+		return ServerResponse.status(status).contentType(MediaType.APPLICATION_JSON).bodyValue(compra);
+	}
+
+	/** Itens pedidos pelo assinante e ainda não entregues. */
+	private static final class Demanda
+	{
+		private long pedidos;
+		private boolean cancelada;
+
+		synchronized void pedir(long quantidade)
+		{
+			pedidos = pedidos + quantidade < 0 ? Long.MAX_VALUE : pedidos + quantidade;
+			notifyAll();
+		}
+
+		synchronized void cancelar()
+		{
+			cancelada = true;
+			notifyAll();
+		}
+
+		/** Espera haver demanda e consome uma unidade. */
+		synchronized void consumir()
+		{
+			try
+			{
+				while (pedidos == 0 && !cancelada)
+				{
+					wait();
+				}
+			}
+			catch (InterruptedException e)
+			{
+				Thread.currentThread().interrupt();
+				cancelada = true;
+			}
+			if (cancelada)
+			{
+				throw new CancellationException();
+			}
+			if (pedidos != Long.MAX_VALUE)
+			{
+				pedidos--;
+			}
+		}
+	}
+}
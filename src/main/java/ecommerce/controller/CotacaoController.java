@@ -0,0 +1,72 @@
+package ecommerce.controller;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import ecommerce.dto.CotacaoDTO;
+import ecommerce.dto.CotacaoRequestDTO;
+import ecommerce.service.CotacaoService;
+
+/**
+ * Cotação em lote, sem efeitos em estoque ou pagamento. A resposta é NDJSON: um {@link CotacaoDTO}
+ * por linha, na ordem em que cada carrinho termina de ser calculado.
+ */
+@RestController
+@RequestMapping("/")
+public class CotacaoController
+{
+	private final CotacaoService cotacaoService;
+	private final ObjectMapper objectMapper;
+
+	@Autowired
+	public CotacaoController(CotacaoService cotacaoService, ObjectMapper objectMapper)
+	{
+		this.cotacaoService = cotacaoService;
+		this.objectMapper = objectMapper;
+	}
+
+	@PostMapping("/cotacoes")
+	public ResponseEntity<StreamingResponseBody> cotar(@RequestBody CotacaoRequestDTO pedido)
+	{
+		try
+		{
+			cotacaoService.validar(pedido);
+		}
+		catch (IllegalArgumentException e)
+		{
+			CotacaoDTO erro = new CotacaoDTO(null, null, null, e.getMessage());
+			return ResponseEntity.status(HttpStatus.BAD_REQUEST).contentType(MediaType.APPLICATION_NDJSON)
+					.body(saida -> escrever(saida, erro));
+		}
+
+		return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON)
+				.body(saida -> cotacaoService.cotar(pedido, cotacao -> escrever(saida, cotacao)));
+	}
+
+	private void escrever(OutputStream saida, CotacaoDTO cotacao)
+	{
+		try
+		{
+			saida.write(objectMapper.writeValueAsBytes(cotacao));
+			saida.write('\n');
+			saida.flush();
+		}
+		catch (IOException e)
+		{
+			throw new UncheckedIOException(e);
+		}
+	}
+}
@@ -0,0 +1,47 @@
+package ecommerce.controller;
+
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.stereotype.Component;
+
+import ecommerce.service.ProvedorTabelaFaixas;
+
+/**
+ * Endpoint do actuator ({@code /actuator/faixas}) para consultar e recarregar as faixas de
+ * desconto e frete sem reiniciar a aplicação.
+ */
+@Component
+@Endpoint(id = "faixas")
+public class FaixasEndpoint
+{
+	private final ProvedorTabelaFaixas provedorFaixas;
+
+	@Autowired
+	public FaixasEndpoint(ProvedorTabelaFaixas provedorFaixas)
+	{
+		this.provedorFaixas = provedorFaixas;
+	}
+
+	@ReadOperation
+	public Map<String, Object> faixas()
+	{
+		return provedorFaixas.atual().descrever();
+	}
+
+	@WriteOperation
+	public Map<String, Object> recarregar()
+	{
+		try
+		{
+			return provedorFaixas.recarregar().descrever();
+		}
+		catch (IllegalArgumentException e)
+		{
+			return Map.of("erro", e.getMessage());
+		}
+	}
+}
@@ -0,0 +1,8 @@
+package ecommerce.dto;
+
+import java.util.List;
+
+/** Baixa de um pedido dentro de {@code darBaixaEmLote}. */
+public record BaixaEstoqueDTO(List<Long> produtosIds, List<Long> produtosQuantidades)
+{
+}
@@ -0,0 +1,12 @@
+package ecommerce.dto;
+
+import java.util.List;
+
+import ecommerce.entity.Regiao;
+import ecommerce.entity.TipoCliente;
+
+/** Carrinho informado diretamente na cotação, sem estar salvo no banco. */
+public record CarrinhoCotacaoDTO(String referencia, Regiao regiao, TipoCliente tipoCliente,
+		List<ItemCotacaoDTO> itens)
+{
+}
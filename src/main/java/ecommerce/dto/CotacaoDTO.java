@@ -0,0 +1,12 @@
+package ecommerce.dto;
+
+import java.math.BigDecimal;
+
+/**
+ * Resultado da cotação de um carrinho. Identificado por {@code carrinhoId} (carrinho salvo) ou
+ * {@code referencia} (carrinho informado no pedido); {@code erro} é preenchido quando o carrinho
+ * não pôde ser cotado.
+ */
+public record CotacaoDTO(Long carrinhoId, String referencia, BigDecimal custoTotal, String erro)
+{
+}
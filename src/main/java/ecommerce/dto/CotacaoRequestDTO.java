@@ -0,0 +1,8 @@
+package ecommerce.dto;
+
+import java.util.List;
+
+/** Pedido de cotação em lote: ids de carrinhos salvos e/ou carrinhos informados no próprio pedido. */
+public record CotacaoRequestDTO(List<Long> carrinhoIds, List<CarrinhoCotacaoDTO> carrinhos)
+{
+}
@@ -0,0 +1,5 @@
+package ecommerce.dto;
+
+public record ItemCotacaoDTO(Long produtoId, Long quantidade)
+{
+}
@@ -0,0 +1,7 @@
+package ecommerce.dto;
+
+import java.util.List;
+
+public record ReservaDTO(Boolean reservado, Long reservaId, List<Long> idsProdutosIndisponiveis)
+{
+}
@@ -1,8 +1,11 @@
 package ecommerce.entity;
 
 import java.time.LocalDate;
+import java.util.AbstractList;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.RandomAccess;
+import java.util.concurrent.locks.ReentrantLock;
 
 import jakarta.persistence.CascadeType;
 import jakarta.persistence.Entity;
@@ -12,7 +15,23 @@ import jakarta.persistence.Id;
 import jakarta.persistence.JoinColumn;
 import jakarta.persistence.ManyToOne;
 import jakarta.persistence.OneToMany;
+import jakarta.persistence.PostLoad;
+import jakarta.persistence.Transient;
 
+/**
+ * Carrinho de compras do cliente.
+ *
+ * Mantém os {@link TotaisCarrinho} dos itens incrementalmente: a lista devolvida por
+ * {@link #getItens()} e os setters de {@link ItemCompra} atualizam os totais a cada alteração,
+ * então {@link #getTotais()} custa O(1) independentemente do tamanho do carrinho. Os totais são
+ * recalculados do zero (uma vez) quando ainda não existem, quando a lista é trocada ou quando
+ * o {@link Produto} de algum item é alterado (cada produto avisa os itens que o usam). Alterações
+ * e leituras dos totais são serializadas por uma trava do carrinho.
+ *
+ * Alterações feitas diretamente na lista passada a {@link #setItens(List)}, sem passar por
+ * {@link #getItens()}, só são percebidas se mudarem o tamanho da lista;
+ * {@link #verificarTotais()} detecta e corrige qualquer outra divergência.
+ */
 @Entity
 public class CarrinhoDeCompras
 {
@@ -31,6 +50,31 @@ public class CarrinhoDeCompras
 
 	private LocalDate data;
 
+	@Transient
+	private final ReentrantLock trava = new ReentrantLock();
+
+	/** Totais dos itens, ou null enquanto precisam ser recalculados. */
+	@Transient
+	private TotaisCarrinho totais;
+
+	/** Lista a partir da qual {@link #totais} foi calculado. */
+	@Transient
+	private List<ItemCompra> itensDosTotais;
+
+	/** Marcado, sem a trava, quando o produto de algum item muda depois do cálculo de {@link #totais}. */
+	@Transient
+	private volatile boolean produtosAlterados;
+
+	/**
+	 * Incrementada a cada recálculo dos totais; só os itens vinculados na geração atual estão
+	 * somados em {@link #totais}.
+	 */
+	@Transient
+	private long geracaoVinculos;
+
+	@Transient
+	private ItensObservados itensObservados;
+
 	public CarrinhoDeCompras()
 	{
 	}
@@ -64,14 +108,43 @@ public class CarrinhoDeCompras
 		this.cliente = cliente;
 	}
 
+	/**
+	 * Itens do carrinho. Alterações feitas pela lista devolvida (inclusive pelo iterador)
+	 * atualizam os totais.
+	 */
 	public List<ItemCompra> getItens()
 	{
-		return itens;
+		if (itens == null)
+		{
+			return null;
+		}
+		ItensObservados observados = itensObservados;
+		if (observados == null)
+		{
+			observados = new ItensObservados();
+			itensObservados = observados;
+		}
+		return observados;
 	}
 
 	public void setItens(List<ItemCompra> itens)
 	{
-		this.itens = itens;
+		if (itens != null && itens == itensObservados)
+		{
+			// setItens(getItens()): a lista já é esta
+			return;
+		}
+
+		trava.lock();
+		try
+		{
+			this.itens = itens;
+			totais = null;
+		}
+		finally
+		{
+			trava.unlock();
+		}
 	}
 
 	public LocalDate getData()
@@ -83,4 +156,253 @@ public class CarrinhoDeCompras
 	{
 		this.data = data;
 	}
+
+	/** Cópia dos totais atuais dos itens. */
+	public TotaisCarrinho getTotais()
+	{
+		trava.lock();
+		try
+		{
+			return totaisAtualizados().copiar();
+		}
+		finally
+		{
+			trava.unlock();
+		}
+	}
+
+	/**
+	 * Recalcula os totais do zero e compara com os mantidos incrementalmente; em caso de
+	 * divergência, passa a usar os recalculados.
+	 *
+	 * @return true se os totais mantidos estavam corretos
+	 */
+	public boolean verificarTotais()
+	{
+		trava.lock();
+		try
+		{
+			if (totaisAtualizados().equivalente(TotaisCarrinho.calcular(itens)))
+			{
+				return true;
+			}
+			recalcularTotais();
+			return false;
+		}
+		finally
+		{
+			trava.unlock();
+		}
+	}
+
+	@PostLoad
+	void descartarTotais()
+	{
+		totais = null;
+	}
+
+	/**
+	 * Aplica a alteração de um item deste carrinho, subtraindo a contribuição antiga do item e
+	 * somando a nova.
+	 */
+	void alterarItem(ItemCompra item, Runnable alteracao)
+	{
+		trava.lock();
+		try
+		{
+			if (totais != null && item.isVinculadoA(this, geracaoVinculos))
+			{
+				totais.remover(item);
+				alteracao.run();
+				totais.adicionar(item);
+			}
+			else
+			{
+				alteracao.run();
+			}
+		}
+		finally
+		{
+			trava.unlock();
+		}
+	}
+
+	/** Deve ser chamado com a trava. */
+	private TotaisCarrinho totaisAtualizados()
+	{
+		if (totais == null || itensDosTotais != itens || produtosAlterados
+				|| totais.getQuantidadeItens() != itens.size())
+		{
+			recalcularTotais();
+		}
+		return totais;
+	}
+
+	private void recalcularTotais()
+	{
+		// Limpa antes de vincular e calcular: um produto alterado durante o recálculo força um novo
+		produtosAlterados = false;
+
+		geracaoVinculos++;
+		for (ItemCompra item : itens)
+		{
+			item.vincular(this, geracaoVinculos);
+		}
+		totais = TotaisCarrinho.calcular(itens);
+		itensDosTotais = itens;
+	}
+
+	/** Chamado pelos itens quando o produto deles é alterado. */
+	void produtoAlterado()
+	{
+		produtosAlterados = true;
+	}
+
+	/**
+	 * Visão da lista de itens que mantém os totais. {@link AbstractList} implementa iteradores,
+	 * {@code subList}, {@code removeIf}, {@code sort} etc. sobre {@code get}, {@code set},
+	 * {@code add} e {@code remove}, então toda alteração passa por estes métodos.
+	 */
+	private final class ItensObservados extends AbstractList<ItemCompra> implements RandomAccess
+	{
+		@Override
+		public ItemCompra get(int indice)
+		{
+			trava.lock();
+			try
+			{
+				return itens.get(indice);
+			}
+			finally
+			{
+				trava.unlock();
+			}
+		}
+
+		@Override
+		public int size()
+		{
+			trava.lock();
+			try
+			{
+				return itens.size();
+			}
+			finally
+			{
+				trava.unlock();
+			}
+		}
+
+		@Override
+		public ItemCompra set(int indice, ItemCompra item)
+		{
+			trava.lock();
+			try
+			{
+				TotaisCarrinho atuais = totaisAtualizados();
+				ItemCompra anterior = itens.set(indice, item);
+				atuais.remover(anterior);
+				anterior.desvincular(CarrinhoDeCompras.this);
+				atuais.adicionar(item);
+				item.vincular(CarrinhoDeCompras.this, geracaoVinculos);
+				return anterior;
+			}
+			finally
+			{
+				trava.unlock();
+			}
+		}
+
+		@Override
+		public boolean add(ItemCompra item)
+		{
+			trava.lock();
+			try
+			{
+				add(itens.size(), item);
+				return true;
+			}
+			finally
+			{
+				trava.unlock();
+			}
+		}
+
+		@Override
+		public void add(int indice, ItemCompra item)
+		{
+			trava.lock();
+			try
+			{
+				TotaisCarrinho atuais = totaisAtualizados();
+				itens.add(indice, item);
+				atuais.adicionar(item);
+				item.vincular(CarrinhoDeCompras.this, geracaoVinculos);
+				modCount++;
+			}
+			finally
+			{
+				trava.unlock();
+			}
+		}
+
+		@Override
+		public ItemCompra remove(int indice)
+		{
+			trava.lock();
+			try
+			{
+				TotaisCarrinho atuais = totaisAtualizados();
+				ItemCompra removido = itens.remove(indice);
+				atuais.remover(removido);
+				removido.desvincular(CarrinhoDeCompras.this);
+				modCount++;
+				return removido;
+			}
+			finally
+			{
+				trava.unlock();
+			}
+		}
+
+		@Override
+		public boolean remove(Object item)
+		{
+			trava.lock();
+			try
+			{
+				int indice = itens.indexOf(item);
+				if (indice < 0)
+				{
+					return false;
+				}
+				remove(indice);
+				return true;
+			}
+			finally
+			{
+				trava.unlock();
+			}
+		}
+
+		@Override
+		public void clear()
+		{
+			trava.lock();
+			try
+			{
+				for (ItemCompra item : itens)
+				{
+					item.desvincular(CarrinhoDeCompras.this);
+				}
+				itens.clear();
+				totais = null;
+				modCount++;
+			}
+			finally
+			{
+				trava.unlock();
+			}
+		}
+	}
 }
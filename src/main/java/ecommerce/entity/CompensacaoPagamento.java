@@ -0,0 +1,158 @@
+package ecommerce.entity;
+
+import java.time.Instant;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+import jakarta.persistence.UniqueConstraint;
+
+/**
+ * Cancelamento de pagamento pendente (outbox), gravado pela compra que falhou e enviado depois por
+ * {@code DespachanteCompensacoes}. Há no máximo uma por transação de pagamento.
+ */
+@Entity
+@Table(name = "compensacao_pagamento",
+		uniqueConstraints = @UniqueConstraint(name = "uk_compensacao_transacao", columnNames = "transacao_id"),
+		indexes = @Index(name = "idx_compensacao_pendente", columnList = "situacao, proxima_tentativa"))
+public class CompensacaoPagamento
+{
+
+	@Id
+	@GeneratedValue(strategy = GenerationType.IDENTITY)
+	private Long id;
+
+	@Column(name = "cliente_id", nullable = false)
+	private Long clienteId;
+
+	@Column(name = "transacao_id", nullable = false)
+	private Long transacaoId;
+
+	@Enumerated(EnumType.STRING)
+	@Column(name = "situacao", nullable = false)
+	private SituacaoCompensacao situacao;
+
+	private int tentativas;
+
+	@Column(name = "criada_em", nullable = false)
+	private Instant criadaEm;
+
+	@Column(name = "proxima_tentativa")
+	private Instant proximaTentativa;
+
+	@Column(name = "enviada_em")
+	private Instant enviadaEm;
+
+	@Column(name = "ultimo_erro", length = 500)
+	private String ultimoErro;
+
+	public CompensacaoPagamento()
+	{
+	}
+
+	public CompensacaoPagamento(Long clienteId, Long transacaoId, Instant criadaEm)
+	{
+		this.clienteId = clienteId;
+		this.transacaoId = transacaoId;
+		this.situacao = SituacaoCompensacao.PENDENTE;
+		this.criadaEm = criadaEm;
+		this.proximaTentativa = criadaEm;
+	}
+
+	// Getters e Setters
+	public Long getId()
+	{
+		return id;
+	}
+
+	public void setId(Long id)
+	{
+		this.id = id;
+	}
+
+	public Long getClienteId()
+	{
+		return clienteId;
+	}
+
+	public void setClienteId(Long clienteId)
+	{
+		this.clienteId = clienteId;
+	}
+
+	public Long getTransacaoId()
+	{
+		return transacaoId;
+	}
+
+	public void setTransacaoId(Long transacaoId)
+	{
+		this.transacaoId = transacaoId;
+	}
+
+	public SituacaoCompensacao getSituacao()
+	{
+		return situacao;
+	}
+
+	public void setSituacao(SituacaoCompensacao situacao)
+	{
+		this.situacao = situacao;
+	}
+
+	public int getTentativas()
+	{
+		return tentativas;
+	}
+
+	public void setTentativas(int tentativas)
+	{
+		this.tentativas = tentativas;
+	}
+
+	public Instant getCriadaEm()
+	{
+		return criadaEm;
+	}
+
+	public void setCriadaEm(Instant criadaEm)
+	{
+		this.criadaEm = criadaEm;
+	}
+
+	public Instant getProximaTentativa()
+	{
+		return proximaTentativa;
+	}
+
+	public void setProximaTentativa(Instant proximaTentativa)
+	{
+		this.proximaTentativa = proximaTentativa;
+	}
+
+	public Instant getEnviadaEm()
+	{
+		return enviadaEm;
+	}
+
+	public void setEnviadaEm(Instant enviadaEm)
+	{
+		this.enviadaEm = enviadaEm;
+	}
+
+	public String getUltimoErro()
+	{
+		return ultimoErro;
+	}
+
+	public void setUltimoErro(String ultimoErro)
+	{
+		this.ultimoErro = ultimoErro;
+	}
+}
@@ -6,6 +6,7 @@ import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
 import jakarta.persistence.JoinColumn;
 import jakarta.persistence.ManyToOne;
+import jakarta.persistence.Transient;
 
 @Entity
 public class ItemCompra
@@ -21,6 +22,15 @@ public class ItemCompra
 
 	private Long quantidade;
 
+	/**
+	 * Carrinho cujos totais incluem este item e geração do vínculo; as alterações do item são
+	 * repassadas a ele para manter os totais.
+	 */
+	@Transient
+	private volatile CarrinhoDeCompras carrinho;
+	@Transient
+	private long geracaoVinculo;
+
 	public ItemCompra()
 	{
 	}
@@ -50,7 +60,25 @@ public class ItemCompra
 
 	public void setProduto(Produto produto)
 	{
-		this.produto = produto;
+		CarrinhoDeCompras vinculado = carrinho;
+		if (vinculado != null)
+		{
+			vinculado.alterarItem(this, () -> {
+				if (this.produto != null)
+				{
+					this.produto.removerObservador(this);
+				}
+				this.produto = produto;
+				if (produto != null)
+				{
+					produto.adicionarObservador(this);
+				}
+			});
+		}
+		else
+		{
+			this.produto = produto;
+		}
 	}
 
 	public Long getQuantidade()
@@ -60,6 +88,52 @@ public class ItemCompra
 
 	public void setQuantidade(Long quantidade)
 	{
-		this.quantidade = quantidade;
+		CarrinhoDeCompras vinculado = carrinho;
+		if (vinculado != null)
+		{
+			vinculado.alterarItem(this, () -> this.quantidade = quantidade);
+		}
+		else
+		{
+			this.quantidade = quantidade;
+		}
+	}
+
+	// Chamados por CarrinhoDeCompras com a trava do carrinho
+	void vincular(CarrinhoDeCompras carrinho, long geracao)
+	{
+		this.carrinho = carrinho;
+		this.geracaoVinculo = geracao;
+		if (produto != null)
+		{
+			produto.adicionarObservador(this);
+		}
+	}
+
+	void desvincular(CarrinhoDeCompras carrinho)
+	{
+		if (this.carrinho == carrinho)
+		{
+			this.carrinho = null;
+			if (produto != null)
+			{
+				produto.removerObservador(this);
+			}
+		}
+	}
+
+	/** Chamado pelo produto, sem a trava do carrinho, quando um atributo de precificação muda. */
+	void produtoAlterado()
+	{
+		CarrinhoDeCompras vinculado = carrinho;
+		if (vinculado != null)
+		{
+			vinculado.produtoAlterado();
+		}
+	}
+
+	boolean isVinculadoA(CarrinhoDeCompras carrinho, long geracao)
+	{
+		return this.carrinho == carrinho && geracaoVinculo == geracao;
 	}
 }
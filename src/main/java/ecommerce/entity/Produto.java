@@ -1,6 +1,10 @@
 package ecommerce.entity;
 
 import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Collections;
+import java.util.Set;
+import java.util.WeakHashMap;
 
 import jakarta.persistence.Entity;
 import jakarta.persistence.EnumType;
@@ -8,10 +12,16 @@ import jakarta.persistence.Enumerated;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.PostUpdate;
+import jakarta.persistence.Transient;
 
 @Entity
 public class Produto
 {
+	/** Indica que o peso tributável tem mais de 3 casas em kg e não cabe em gramas. */
+	public static final long PESO_NAO_REPRESENTAVEL = Long.MIN_VALUE;
+
+	private static final BigDecimal DIVISOR_PESO_VOLUMETRICO = BigDecimal.valueOf(6000);
 
 	@Id
 	@GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -38,6 +48,19 @@ public class Produto
 	@Enumerated(EnumType.STRING)
 	private TipoProduto tipo;
 
+	/** Atributos de frete derivados do peso e das dimensões, calculados uma vez. */
+	@Transient
+	private volatile AtributosFrete atributosFrete;
+
+	/**
+	 * Itens somados nos totais de algum {@link CarrinhoDeCompras}, avisados a cada alteração de
+	 * atributo usado na precificação (preço, peso, dimensões, fragilidade ou tipo) deste produto.
+	 * Referências fracas: um carrinho descartado não fica preso ao produto.
+	 */
+	@Transient
+	private final Set<ItemCompra> itensObservadores = Collections.synchronizedSet(
+			Collections.newSetFromMap(new WeakHashMap<>()));
+
 	public Produto()
 	{
 	}
@@ -96,6 +119,7 @@ public class Produto
 	public void setPreco(BigDecimal preco)
 	{
 		this.preco = preco;
+		registrarAlteracao();
 	}
 
 	public BigDecimal getPesoFisico()
@@ -106,6 +130,7 @@ public class Produto
 	public void setPesoFisico(BigDecimal pesoFisico)
 	{
 		this.pesoFisico = pesoFisico;
+		registrarAlteracao();
 	}
 
 	public BigDecimal getComprimento()
@@ -116,6 +141,7 @@ public class Produto
 	public void setComprimento(BigDecimal comprimento)
 	{
 		this.comprimento = comprimento;
+		registrarAlteracao();
 	}
 
 	public BigDecimal getLargura()
@@ -126,6 +152,7 @@ public class Produto
 	public void setLargura(BigDecimal largura)
 	{
 		this.largura = largura;
+		registrarAlteracao();
 	}
 
 	public BigDecimal getAltura()
@@ -136,6 +163,62 @@ public class Produto
 	public void setAltura(BigDecimal altura)
 	{
 		this.altura = altura;
+		registrarAlteracao();
+	}
+
+	/**
+	 * Peso tributável de uma unidade, em kg: o maior entre o peso físico e o volumétrico
+	 * (comprimento × largura × altura / 6000, arredondado para 2 casas).
+	 */
+	public BigDecimal getPesoTributavelUnitario()
+	{
+		return obterAtributosFrete().pesoTributavel;
+	}
+
+	/** Peso tributável de uma unidade em gramas, ou {@link #PESO_NAO_REPRESENTAVEL}. */
+	public long getPesoTributavelUnitarioGramas()
+	{
+		return obterAtributosFrete().pesoTributavelGramas;
+	}
+
+	/** Alterações aplicadas pelo próprio JPA (ex.: merge) não passam pelos setters. */
+	@PostUpdate
+	void registrarAlteracao()
+	{
+		ItemCompra[] observadores;
+		synchronized (itensObservadores)
+		{
+			observadores = itensObservadores.toArray(new ItemCompra[0]);
+		}
+		for (ItemCompra item : observadores)
+		{
+			item.produtoAlterado();
+		}
+	}
+
+	void adicionarObservador(ItemCompra item)
+	{
+		itensObservadores.add(item);
+	}
+
+	void removerObservador(ItemCompra item)
+	{
+		itensObservadores.remove(item);
+	}
+
+	/**
+	 * Reaproveita os atributos calculados enquanto peso e dimensões forem os mesmos objetos;
+	 * qualquer alteração (por setter ou pelo próprio JPA, ex.: merge) força o recálculo.
+	 */
+	private AtributosFrete obterAtributosFrete()
+	{
+		AtributosFrete atributos = atributosFrete;
+		if (atributos == null || !atributos.calculadoCom(pesoFisico, comprimento, largura, altura))
+		{
+			atributos = new AtributosFrete(pesoFisico, comprimento, largura, altura);
+			atributosFrete = atributos;
+		}
+		return atributos;
 	}
 
 	public Boolean isFragil()
@@ -146,6 +229,7 @@ public class Produto
 	public void setFragil(Boolean fragil)
 	{
 		this.fragil = fragil;
+		registrarAlteracao();
 	}
 
 	public TipoProduto getTipo()
@@ -156,5 +240,49 @@ public class Produto
 	public void setTipo(TipoProduto tipo)
 	{
 		this.tipo = tipo;
+		registrarAlteracao();
+	}
+
+	private static final class AtributosFrete
+	{
+		private final BigDecimal pesoFisico;
+		private final BigDecimal comprimento;
+		private final BigDecimal largura;
+		private final BigDecimal altura;
+
+		private final BigDecimal pesoTributavel;
+		private final long pesoTributavelGramas;
+
+		private AtributosFrete(BigDecimal pesoFisico, BigDecimal comprimento, BigDecimal largura, BigDecimal altura)
+		{
+			this.pesoFisico = pesoFisico;
+			this.comprimento = comprimento;
+			this.largura = largura;
+			this.altura = altura;
+
+			BigDecimal pesoVolumetrico = comprimento.multiply(largura).multiply(altura)
+					.divide(DIVISOR_PESO_VOLUMETRICO, 2, RoundingMode.HALF_UP);
+			this.pesoTributavel = pesoFisico.max(pesoVolumetrico);
+			this.pesoTributavelGramas = emGramas(pesoTributavel);
+		}
+
+		private boolean calculadoCom(BigDecimal pesoFisico, BigDecimal comprimento, BigDecimal largura,
+				BigDecimal altura)
+		{
+			return this.pesoFisico == pesoFisico && this.comprimento == comprimento && this.largura == largura
+					&& this.altura == altura;
+		}
+
+		private static long emGramas(BigDecimal pesoKg)
+		{
+			try
+			{
+				return pesoKg.movePointRight(3).longValueExact();
+			}
+			catch (ArithmeticException e)
+			{
+				return PESO_NAO_REPRESENTAVEL;
+			}
+		}
 	}
-}
\ No newline at end of file
+}
@@ -0,0 +1,196 @@
+package ecommerce.entity;
+
+import java.time.Instant;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+import jakarta.persistence.UniqueConstraint;
+
+/**
+ * Resposta de {@code POST /finalizar} guardada pela chave de idempotência enviada pelo cliente,
+ * para que as repetições da mesma requisição recebam a mesma resposta sem refazer a compra.
+ *
+ * A linha é inserida {@link SituacaoRespostaIdempotente#EM_ANDAMENTO} antes de a compra rodar, o
+ * que reserva a chave em todas as instâncias pelo índice único, e atualizada com a resposta final
+ * ao terminar.
+ */
+@Entity
+@Table(name = "resposta_idempotente",
+		uniqueConstraints = @UniqueConstraint(name = "uk_resposta_idempotente_chave", columnNames = "chave"),
+		indexes = @Index(name = "idx_resposta_idempotente_expira_em", columnList = "expira_em"))
+public class RespostaIdempotente
+{
+
+	@Id
+	@GeneratedValue(strategy = GenerationType.IDENTITY)
+	private Long id;
+
+	@Column(name = "chave", nullable = false, length = 100)
+	private String chave;
+
+	@Enumerated(EnumType.STRING)
+	@Column(name = "situacao", nullable = false)
+	private SituacaoRespostaIdempotente situacao;
+
+	@Column(name = "carrinho_id", nullable = false)
+	private Long carrinhoId;
+
+	@Column(name = "cliente_id", nullable = false)
+	private Long clienteId;
+
+	/** Status HTTP da resposta original; 0 enquanto em andamento. */
+	@Column(name = "status", nullable = false)
+	private int status;
+
+	private Boolean sucesso;
+
+	@Column(name = "transacao_pagamento_id")
+	private Long transacaoPagamentoId;
+
+	@Column(name = "mensagem", length = 500)
+	private String mensagem;
+
+	@Column(name = "expira_em", nullable = false)
+	private Instant expiraEm;
+
+	public RespostaIdempotente()
+	{
+	}
+
+	/** Reserva da chave para a compra que vai rodar, válida até {@code expiraEm}. */
+	public RespostaIdempotente(String chave, Long carrinhoId, Long clienteId, Instant expiraEm)
+	{
+		this.chave = chave;
+		this.situacao = SituacaoRespostaIdempotente.EM_ANDAMENTO;
+		this.carrinhoId = carrinhoId;
+		this.clienteId = clienteId;
+		this.expiraEm = expiraEm;
+	}
+
+	public RespostaIdempotente(String chave, Long carrinhoId, Long clienteId, int status, Boolean sucesso,
+			Long transacaoPagamentoId, String mensagem, Instant expiraEm)
+	{
+		this.chave = chave;
+		this.situacao = SituacaoRespostaIdempotente.CONCLUIDA;
+		this.carrinhoId = carrinhoId;
+		this.clienteId = clienteId;
+		this.status = status;
+		this.sucesso = sucesso;
+		this.transacaoPagamentoId = transacaoPagamentoId;
+		this.mensagem = mensagem;
+		this.expiraEm = expiraEm;
+	}
+
+	// Getters e Setters
+	public Long getId()
+	{
+		return id;
+	}
+
+	public void setId(Long id)
+	{
+		this.id = id;
+	}
+
+	public String getChave()
+	{
+		return chave;
+	}
+
+	public void setChave(String chave)
+	{
+		this.chave = chave;
+	}
+
+	public SituacaoRespostaIdempotente getSituacao()
+	{
+		return situacao;
+	}
+
+	public void setSituacao(SituacaoRespostaIdempotente situacao)
+	{
+		this.situacao = situacao;
+	}
+
+	public boolean isEmAndamento()
+	{
+		return situacao == SituacaoRespostaIdempotente.EM_ANDAMENTO;
+	}
+
+	public Long getCarrinhoId()
+	{
+		return carrinhoId;
+	}
+
+	public void setCarrinhoId(Long carrinhoId)
+	{
+		this.carrinhoId = carrinhoId;
+	}
+
+	public Long getClienteId()
+	{
+		return clienteId;
+	}
+
+	public void setClienteId(Long clienteId)
+	{
+		this.clienteId = clienteId;
+	}
+
+	public int getStatus()
+	{
+		return status;
+	}
+
+	public void setStatus(int status)
+	{
+		this.status = status;
+	}
+
+	public Boolean getSucesso()
+	{
+		return sucesso;
+	}
+
+	public void setSucesso(Boolean sucesso)
+	{
+		this.sucesso = sucesso;
+	}
+
+	public Long getTransacaoPagamentoId()
+	{
+		return transacaoPagamentoId;
+	}
+
+	public void setTransacaoPagamentoId(Long transacaoPagamentoId)
+	{
+		this.transacaoPagamentoId = transacaoPagamentoId;
+	}
+
+	public String getMensagem()
+	{
+		return mensagem;
+	}
+
+	public void setMensagem(String mensagem)
+	{
+		this.mensagem = mensagem;
+	}
+
+	public Instant getExpiraEm()
+	{
+		return expiraEm;
+	}
+
+	public void setExpiraEm(Instant expiraEm)
+	{
+		this.expiraEm = expiraEm;
+	}
+}
@@ -0,0 +1,19 @@
+package ecommerce.entity;
+
+public enum SituacaoCompensacao
+{
+	/** Aguardando envio ou nova tentativa. */
+	PENDENTE,
+
+	/**
+	 * Tomada por um despachante, que está enviando o cancelamento; volta a ser tomada por outro se
+	 * o arrendamento vencer sem resultado gravado (instância que parou no meio do envio).
+	 */
+	EM_ENVIO,
+
+	/** Cancelamento aceito pelo serviço de pagamento. */
+	ENVIADA,
+
+	/** Tentativas esgotadas; exige intervenção manual. */
+	ABANDONADA
+}
@@ -0,0 +1,10 @@
+package ecommerce.entity;
+
+public enum SituacaoRespostaIdempotente
+{
+	/** Compra da chave em execução; as repetições recebem 409 até ela terminar ou expirar. */
+	EM_ANDAMENTO,
+
+	/** Resposta final gravada; as repetições a recebem de volta. */
+	CONCLUIDA
+}
@@ -0,0 +1,200 @@
+package ecommerce.entity;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Totais dos itens de um {@link CarrinhoDeCompras}: subtotal, quantidade e subtotal por tipo de
+ * produto, peso tributável e quantidade de itens frágeis.
+ *
+ * O carrinho mantém esses totais incrementalmente, somando ou subtraindo a contribuição de cada
+ * item adicionado, removido ou alterado, para que cotar ou finalizar a compra não precise percorrer
+ * os itens. Como soma e subtração de {@link BigDecimal} são exatas, os totais mantidos têm o mesmo
+ * valor que os recalculados do zero (a escala pode ser maior, por isso compare com
+ * {@code compareTo}).
+ *
+ * Itens inválidos (quantidade ≤ 0, preço ou peso negativos, atributos nulos) não entram nos
+ * totais, mas são contados em {@link #getQuantidadeItensInvalidos()} para que o cálculo rejeite o
+ * carrinho.
+ */
+public final class TotaisCarrinho
+{
+	private static final TipoProduto[] TIPOS = TipoProduto.values();
+
+	private int quantidadeItens;
+	private int quantidadeItensInvalidos;
+	private BigDecimal subtotal = BigDecimal.ZERO;
+	private final long[] quantidadePorTipo;
+	private final BigDecimal[] subtotalPorTipo;
+	private BigDecimal pesoTributavelTotal = BigDecimal.ZERO;
+	private long quantidadeFrageis;
+
+	TotaisCarrinho()
+	{
+		quantidadePorTipo = new long[TIPOS.length];
+		subtotalPorTipo = new BigDecimal[TIPOS.length];
+		Arrays.fill(subtotalPorTipo, BigDecimal.ZERO);
+	}
+
+	private TotaisCarrinho(TotaisCarrinho outro)
+	{
+		quantidadeItens = outro.quantidadeItens;
+		quantidadeItensInvalidos = outro.quantidadeItensInvalidos;
+		subtotal = outro.subtotal;
+		quantidadePorTipo = outro.quantidadePorTipo.clone();
+		subtotalPorTipo = outro.subtotalPorTipo.clone();
+		pesoTributavelTotal = outro.pesoTributavelTotal;
+		quantidadeFrageis = outro.quantidadeFrageis;
+	}
+
+	/** Calcula os totais do zero, percorrendo todos os itens. */
+	public static TotaisCarrinho calcular(List<ItemCompra> itens)
+	{
+		TotaisCarrinho totais = new TotaisCarrinho();
+		for (ItemCompra item : itens)
+		{
+			totais.adicionar(item);
+		}
+		return totais;
+	}
+
+	void adicionar(ItemCompra item)
+	{
+		acumular(item, 1);
+	}
+
+	void remover(ItemCompra item)
+	{
+		acumular(item, -1);
+	}
+
+	/** Cópia independente, que não muda com as alterações seguintes do carrinho. */
+	public TotaisCarrinho copiar()
+	{
+		return new TotaisCarrinho(this);
+	}
+
+	private void acumular(ItemCompra item, int sinal)
+	{
+		quantidadeItens += sinal;
+		if (!isValido(item))
+		{
+			quantidadeItensInvalidos += sinal;
+			return;
+		}
+
+		Produto produto = item.getProduto();
+		long quantidade = sinal * item.getQuantidade();
+		BigDecimal valorItem = produto.getPreco().multiply(BigDecimal.valueOf(quantidade));
+		BigDecimal pesoItem = produto.getPesoTributavelUnitario().multiply(BigDecimal.valueOf(quantidade));
+		int tipo = produto.getTipo().ordinal();
+
+		subtotal = subtotal.add(valorItem);
+		quantidadePorTipo[tipo] += quantidade;
+		subtotalPorTipo[tipo] = subtotalPorTipo[tipo].add(valorItem);
+		pesoTributavelTotal = pesoTributavelTotal.add(pesoItem);
+
+		if (produto.isFragil())
+		{
+			quantidadeFrageis += quantidade;
+		}
+	}
+
+	private static boolean isValido(ItemCompra item)
+	{
+		Produto produto = item.getProduto();
+		return produto != null && item.getQuantidade() != null && item.getQuantidade() > 0
+				&& produto.getPreco() != null && produto.getPreco().signum() >= 0
+				&& produto.getPesoFisico() != null && produto.getPesoFisico().signum() >= 0
+				&& produto.getComprimento() != null && produto.getLargura() != null && produto.getAltura() != null
+				&& produto.isFragil() != null && produto.getTipo() != null;
+	}
+
+	/** Indica se os dois totais têm os mesmos valores, independentemente da escala. */
+	public boolean equivalente(TotaisCarrinho outro)
+	{
+		if (quantidadeItens != outro.quantidadeItens || quantidadeItensInvalidos != outro.quantidadeItensInvalidos
+				|| quantidadeFrageis != outro.quantidadeFrageis
+				|| subtotal.compareTo(outro.subtotal) != 0
+				|| pesoTributavelTotal.compareTo(outro.pesoTributavelTotal) != 0
+				|| !Arrays.equals(quantidadePorTipo, outro.quantidadePorTipo))
+		{
+			return false;
+		}
+		for (int tipo = 0; tipo < TIPOS.length; tipo++)
+		{
+			if (subtotalPorTipo[tipo].compareTo(outro.subtotalPorTipo[tipo]) != 0)
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Indica se os dois totais levam à mesma cotação: mesmos valores em tudo o que entra na
+	 * precificação, independentemente da escala e do número de linhas (o mesmo produto em uma ou em
+	 * várias linhas). Carrinhos com itens inválidos nunca são equivalentes.
+	 */
+	public boolean mesmaPrecificacao(TotaisCarrinho outro)
+	{
+		return quantidadeItensInvalidos == 0 && outro.quantidadeItensInvalidos == 0
+				&& quantidadeFrageis == outro.quantidadeFrageis && subtotal.compareTo(outro.subtotal) == 0
+				&& pesoTributavelTotal.compareTo(outro.pesoTributavelTotal) == 0
+				&& Arrays.equals(quantidadePorTipo, outro.quantidadePorTipo)
+				&& Arrays.equals(subtotalPorTipo, outro.subtotalPorTipo, BigDecimal::compareTo);
+	}
+
+	/**
+	 * Hash coerente com {@link #mesmaPrecificacao}: os valores decimais entram pelo {@code double},
+	 * que é o mesmo para valores iguais em escalas diferentes. Custa O(tipos de produto).
+	 */
+	public int hashPrecificacao()
+	{
+		long hash = Long.hashCode(quantidadeFrageis);
+		hash = hash * 31 + Double.hashCode(subtotal.doubleValue());
+		hash = hash * 31 + Double.hashCode(pesoTributavelTotal.doubleValue());
+		for (int tipo = 0; tipo < TIPOS.length; tipo++)
+		{
+			hash = hash * 31 + Long.hashCode(quantidadePorTipo[tipo]);
+			hash = hash * 31 + Double.hashCode(subtotalPorTipo[tipo].doubleValue());
+		}
+		return Long.hashCode(hash);
+	}
+
+	public int getQuantidadeItens()
+	{
+		return quantidadeItens;
+	}
+
+	public int getQuantidadeItensInvalidos()
+	{
+		return quantidadeItensInvalidos;
+	}
+
+	public BigDecimal getSubtotal()
+	{
+		return subtotal;
+	}
+
+	public long getQuantidade(TipoProduto tipo)
+	{
+		return quantidadePorTipo[tipo.ordinal()];
+	}
+
+	public BigDecimal getSubtotal(TipoProduto tipo)
+	{
+		return subtotalPorTipo[tipo.ordinal()];
+	}
+
+	public BigDecimal getPesoTributavelTotal()
+	{
+		return pesoTributavelTotal;
+	}
+
+	public long getQuantidadeFrageis()
+	{
+		return quantidadeFrageis;
+	}
+}
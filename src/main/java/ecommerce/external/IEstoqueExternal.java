@@ -1,9 +1,14 @@
 package ecommerce.external;
 
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 
+import ecommerce.dto.BaixaEstoqueDTO;
 import ecommerce.dto.DisponibilidadeDTO;
 import ecommerce.dto.EstoqueBaixaDTO;
+import ecommerce.dto.ReservaDTO;
 
 public interface IEstoqueExternal
 {
@@ -12,4 +17,39 @@ public interface IEstoqueExternal
 
 	public DisponibilidadeDTO verificarDisponibilidade(List<Long> produtosIds, List<Long> produtosQuantidades);
 
+	/**
+	 * Baixa de vários pedidos em uma chamada. Cada pedido é tudo ou nada, independente dos demais;
+	 * os resultados vêm na ordem dos pedidos. Sem operação em lote no serviço, dá baixa um a um.
+	 */
+	public default List<EstoqueBaixaDTO> darBaixaEmLote(List<BaixaEstoqueDTO> baixas)
+	{
+		List<EstoqueBaixaDTO> resultados = new ArrayList<>(baixas.size());
+		for (BaixaEstoqueDTO baixa : baixas)
+		{
+			resultados.add(darBaixa(baixa.produtosIds(), baixa.produtosQuantidades()));
+		}
+		return resultados;
+	}
+
+	/**
+	 * Disponível atual de cada produto (saldo menos reservas em aberto), para caches locais. É só
+	 * uma leitura: a decisão de vender continua em {@link #darBaixa} e {@link #reservar}. Produtos
+	 * que o serviço não conhece podem ficar fora do mapa e contam como indisponíveis.
+	 */
+	public Map<Long, Long> consultarSaldos(List<Long> produtosIds);
+
+	/**
+	 * Separa as quantidades de todos os produtos ou de nenhum. A reserva é descontada do saldo
+	 * disponível para as demais compras até ser confirmada, liberada ou expirar após {@code validade}.
+	 */
+	public ReservaDTO reservar(List<Long> produtosIds, List<Long> produtosQuantidades, Duration validade);
+
+	/**
+	 * Dá baixa nas quantidades reservadas. Não tem sucesso se a reserva já expirou ou foi liberada.
+	 */
+	public EstoqueBaixaDTO confirmarReserva(Long reservaId);
+
+	/** Devolve as quantidades reservadas ao saldo disponível; ignora reservas já encerradas. */
+	public void liberarReserva(Long reservaId);
+
 }
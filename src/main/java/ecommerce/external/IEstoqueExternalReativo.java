@@ -0,0 +1,31 @@
+package ecommerce.external;
+
+import java.time.Duration;
+import java.util.List;
+
+import ecommerce.dto.DisponibilidadeDTO;
+import ecommerce.dto.EstoqueBaixaDTO;
+import ecommerce.dto.ReservaDTO;
+import reactor.core.publisher.Mono;
+
+/**
+ * Versão não bloqueante de {@link IEstoqueExternal}, com a mesma semântica por operação: nenhuma
+ * thread fica parada enquanto o serviço de estoque responde.
+ */
+public interface IEstoqueExternalReativo
+{
+
+	public Mono<EstoqueBaixaDTO> darBaixa(List<Long> produtosIds, List<Long> produtosQuantidades);
+
+	public Mono<DisponibilidadeDTO> verificarDisponibilidade(List<Long> produtosIds, List<Long> produtosQuantidades);
+
+	/** Ver {@link IEstoqueExternal#reservar}. */
+	public Mono<ReservaDTO> reservar(List<Long> produtosIds, List<Long> produtosQuantidades, Duration validade);
+
+	/** Ver {@link IEstoqueExternal#confirmarReserva}. */
+	public Mono<EstoqueBaixaDTO> confirmarReserva(Long reservaId);
+
+	/** Ver {@link IEstoqueExternal#liberarReserva}. */
+	public Mono<Void> liberarReserva(Long reservaId);
+
+}
@@ -0,0 +1,13 @@
+package ecommerce.external;
+
+import ecommerce.dto.PagamentoDTO;
+import reactor.core.publisher.Mono;
+
+/** Versão não bloqueante de {@link IPagamentoExternal}. */
+public interface IPagamentoExternalReativo
+{
+
+	Mono<PagamentoDTO> autorizarPagamento(Long clienteId, Double custoTotal);
+
+	Mono<Void> cancelarPagamento(Long clienteId, Long pagamentoTransacaoId);
+}
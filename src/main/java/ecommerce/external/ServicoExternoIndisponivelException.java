@@ -0,0 +1,20 @@
+package ecommerce.external;
+
+/**
+ * Serviço externo não respondeu dentro do timeout ou está com o circuito aberto. A chamada pode
+ * ou não ter tido efeito no serviço; quem chama decide se compensa.
+ */
+public class ServicoExternoIndisponivelException extends RuntimeException
+{
+	private static final long serialVersionUID = 1L;
+
+	public ServicoExternoIndisponivelException(String mensagem)
+	{
+		super(mensagem);
+	}
+
+	public ServicoExternoIndisponivelException(String mensagem, Throwable causa)
+	{
+		super(mensagem, causa);
+	}
+}
@@ -0,0 +1,20 @@
+package ecommerce.external.fake;
+
+/**
+ * Como o {@link EstoqueSimulado} desconta vários produtos de uma só vez.
+ */
+public enum ConcorrenciaEstoque
+{
+	/**
+	 * Sem travas: cada produto é descontado por CAS e, se algum faltar, os já descontados são
+	 * devolvidos. Uma baixa concorrente pode ver esse desconto provisório e ser recusada.
+	 */
+	CAS,
+
+	/**
+	 * Travas por listra de produtos, tomadas em ordem crescente de listra, o que impede deadlock:
+	 * a baixa verifica e desconta todos os produtos sem que outra baixa veja um estado
+	 * intermediário. Baixas de produtos em listras diferentes não se bloqueiam.
+	 */
+	LISTRAS
+}
@@ -0,0 +1,567 @@
+package ecommerce.external.fake;
+
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.TRUNCATE_EXISTING;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Persistência do {@link EstoqueSimulado} em um diretório: um snapshot com as páginas de disponível
+ * e diários, só de acréscimos, com as variações do estoque desde o snapshot (baixas, reservas
+ * confirmadas e ajustes de saldo). Reservas em aberto não entram nos diários: ao reiniciar, o
+ * estoque que seguravam volta ao disponível.
+ *
+ * Cada registro é a variação de um produto, então a ordem em que os registros chegam ao diário não
+ * importa: uma baixa e um ajuste simultâneos do mesmo produto somam o mesmo em qualquer ordem.
+ *
+ * Diários e snapshot têm geração: o snapshot de geração G contém os diários anteriores a G. Quando
+ * o diário ativo enche, o seguinte passa a receber os registros e, em segundo plano, o cheio é
+ * somado ao snapshot, que é trocado pelo da geração seguinte antes de o diário ser apagado. Na
+ * abertura o mesmo acontece com todos os diários que sobraram, e diários mais antigos que o
+ * snapshot (uma queda entre a troca e a remoção) são ignorados.
+ *
+ * O diário ativo é mapeado inteiro em memória e escrito direto nela, em registros de
+ * {@value #BYTES_REGISTRO} bytes cuja posição é reservada por um contador atômico; o registro
+ * sobrevive à queda do processo, mas só é garantido no disco quando o diário é fechado. Um diário
+ * só é desmapeado depois de selado e de todas as escritas já reservadas nele terminarem.
+ */
+final class DiarioEstoque implements AutoCloseable
+{
+	static final String ARQUIVO_SNAPSHOT = "estoque.snapshot";
+	/** Diários se chamam o prefixo seguido da geração. */
+	static final String PREFIXO_DIARIO = "estoque.diario.";
+	static final int REGISTROS_POR_DIARIO_PADRAO = 1 << 20;
+
+	private static final Logger log = LoggerFactory.getLogger(DiarioEstoque.class);
+	/** {@code Unsafe.invokeCleaner}, a única forma de desmapear um arquivo no Java 17. */
+	private static final MethodHandle DESMAPEAR = obterDesmapeador();
+
+	private static final long MAGICO_SNAPSHOT = 0x4553_5453_4E41_5031L;
+	private static final long MAGICO_DIARIO = 0x4553_5444_4941_5232L;
+	private static final ByteOrder ORDEM = ByteOrder.LITTLE_ENDIAN;
+
+	/** Mágico, geração, máximo de produtos e quantidade de páginas. */
+	private static final int BYTES_CABECALHO = 4 * Long.BYTES;
+	/** Índice da página seguido dos seus disponíveis. */
+	private static final long BYTES_PAGINA = (1L + EstoqueSimulado.TAMANHO_PAGINA) * Long.BYTES;
+	private static final int PAGINAS_POR_MAPA = 16_384;
+
+	/** Tipo e id + 1 (zero marca posição vazia), seguidos da variação. */
+	private static final int BYTES_REGISTRO = 2 * Long.BYTES;
+	private static final int BITS_TIPO = 56;
+	private static final long MASCARA_ID = (1L << BITS_TIPO) - 1;
+	private static final long TIPO_VARIACAO = 1;
+
+	private final Path diretorio;
+	private final int maximoProdutos;
+	private final long saldoInicial;
+	private final long bytesPorDiario;
+	private final ExecutorService compactador;
+	private volatile Diario ativo;
+
+	/** Um diário de uma geração, mapeado inteiro. */
+	private static final class Diario
+	{
+		/** Valor de {@link #proximo} que sela o diário: reservas a partir dele vão para o seguinte. */
+		private static final long SELADO = Long.MAX_VALUE / 2;
+
+		private final long geracao;
+		private final FileChannel canal;
+		private final MappedByteBuffer mapa;
+		/** Próximo byte livre; o primeiro registro é o cabeçalho. */
+		private final AtomicLong proximo = new AtomicLong(BYTES_REGISTRO);
+		/** Bytes reservados antes do selo já escritos ou abandonados. */
+		private final LongAdder concluidos = new LongAdder();
+
+		Diario(Path arquivo, long geracao, long capacidade) throws IOException
+		{
+			this.geracao = geracao;
+			this.canal = FileChannel.open(arquivo, CREATE, READ, WRITE, TRUNCATE_EXISTING);
+			this.mapa = canal.map(MapMode.READ_WRITE, 0, capacidade);
+			mapa.order(ORDEM);
+			mapa.putLong(Long.BYTES, geracao);
+			mapa.putLong(0, MAGICO_DIARIO);
+			concluidos.add(BYTES_REGISTRO);
+		}
+
+		/** Posição para {@code bytes} bytes, ou -1 se o diário está cheio ou selado. */
+		long reservar(long bytes)
+		{
+			long posicao = proximo.getAndAdd(bytes);
+			if (posicao + bytes <= mapa.capacity())
+			{
+				return posicao;
+			}
+			if (posicao < SELADO)
+			{
+				concluidos.add(bytes);
+			}
+			return -1;
+		}
+
+		void escrever(long posicao, long produtoId, long variacao)
+		{
+			// Escritas absolutas em posições distintas não disputam o estado do buffer. O cabeçalho vai
+			// por último: registro com cabeçalho já tem o valor
+			mapa.putLong((int) posicao + Long.BYTES, variacao);
+			mapa.putLong((int) posicao, (TIPO_VARIACAO << BITS_TIPO) | (produtoId + 1));
+		}
+
+		void concluir(long bytes)
+		{
+			concluidos.add(bytes);
+		}
+
+		/** Sela o diário, espera as escritas em andamento, grava no disco e o desmapeia. */
+		void encerrar() throws IOException
+		{
+			long reservados = proximo.getAndSet(SELADO);
+			while (concluidos.sum() < reservados)
+			{
+				Thread.yield();
+			}
+			mapa.force();
+			liberar(mapa);
+			canal.close();
+		}
+	}
+
+	private DiarioEstoque(Path diretorio, int maximoProdutos, long saldoInicial, long bytesPorDiario, Diario ativo)
+	{
+		this.diretorio = diretorio;
+		this.maximoProdutos = maximoProdutos;
+		this.saldoInicial = saldoInicial;
+		this.bytesPorDiario = bytesPorDiario;
+		this.ativo = ativo;
+		this.compactador = Executors.newSingleThreadExecutor(tarefa -> {
+			Thread thread = new Thread(tarefa, "estoque-diario-compactacao");
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	/**
+	 * Restaura em {@code paginas} o estoque gravado no diretório, grava o snapshot com tudo o que foi
+	 * restaurado e abre um diário novo.
+	 *
+	 * @param registrosPorDiario registros do diário ativo antes da troca e da compactação
+	 */
+	static DiarioEstoque abrir(Path diretorio, int maximoProdutos, long saldoInicial, int registrosPorDiario,
+			AtomicReferenceArray<AtomicLongArray> paginas) throws IOException
+	{
+		if (registrosPorDiario < 2 || registrosPorDiario > Integer.MAX_VALUE / BYTES_REGISTRO)
+		{
+			throw new IllegalArgumentException("Registros por diário fora da faixa aceita.");
+		}
+		long inicio = System.nanoTime();
+		Files.createDirectories(diretorio);
+
+		long geracao = restaurar(diretorio, Long.MAX_VALUE, maximoProdutos, saldoInicial, paginas);
+		int gravadas = gravarSnapshot(diretorio.resolve(ARQUIVO_SNAPSHOT), geracao, maximoProdutos, paginas);
+		apagarDiarios(diretorio, geracao);
+		Diario diario = new Diario(diretorio.resolve(PREFIXO_DIARIO + geracao), geracao,
+				(long) registrosPorDiario * BYTES_REGISTRO);
+
+		log.info("Estoque restaurado de {}: {} páginas, geração {}, {} ms.", diretorio, gravadas, geracao,
+				TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - inicio));
+		return new DiarioEstoque(diretorio, maximoProdutos, saldoInicial, (long) registrosPorDiario * BYTES_REGISTRO,
+				diario);
+	}
+
+	/** Baixa confirmada de todos os itens; ids e quantidades como em {@link EstoqueSimulado}. */
+	void registrarBaixa(long[] ids, long[] quantidades)
+	{
+		long bytes = (long) BYTES_REGISTRO * ids.length;
+		Diario diario;
+		while ((diario = ativo) != null)
+		{
+			long posicao = diario.reservar(bytes);
+			if (posicao >= 0)
+			{
+				for (int i = 0; i < ids.length; i++)
+				{
+					diario.escrever(posicao + (long) i * BYTES_REGISTRO, ids[i], -quantidades[i]);
+				}
+				diario.concluir(bytes);
+				return;
+			}
+			trocar(diario, bytes);
+		}
+	}
+
+	/** Variação do saldo físico do produto por ajuste. */
+	void registrarVariacao(long produtoId, long variacao)
+	{
+		Diario diario;
+		while ((diario = ativo) != null)
+		{
+			long posicao = diario.reservar(BYTES_REGISTRO);
+			if (posicao >= 0)
+			{
+				diario.escrever(posicao, produtoId, variacao);
+				diario.concluir(BYTES_REGISTRO);
+				return;
+			}
+			trocar(diario, BYTES_REGISTRO);
+		}
+	}
+
+	/**
+	 * Fecha o diário ativo e espera as compactações em andamento; registros feitos depois disso
+	 * são descartados. O diário ativo é compactado na próxima abertura.
+	 */
+	@Override
+	public void close()
+	{
+		Diario diario;
+		synchronized (this)
+		{
+			diario = ativo;
+			ativo = null;
+		}
+		if (diario == null)
+		{
+			return;
+		}
+		try
+		{
+			diario.encerrar();
+		}
+		catch (IOException e)
+		{
+			log.warn("Falha ao fechar o diário de estoque: {}", e.toString());
+		}
+		compactador.shutdown();
+		try
+		{
+			compactador.awaitTermination(1, TimeUnit.MINUTES);
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/** Troca o diário cheio pelo da geração seguinte e agenda a compactação do cheio. */
+	private synchronized void trocar(Diario cheio, long bytes)
+	{
+		if (ativo != cheio)
+		{
+			return;
+		}
+		if (bytes > bytesPorDiario - BYTES_REGISTRO)
+		{
+			throw new IllegalStateException("Baixa com mais itens do que cabem em um diário de estoque.");
+		}
+		long geracao = cheio.geracao + 1;
+		try
+		{
+			ativo = new Diario(diretorio.resolve(PREFIXO_DIARIO + geracao), geracao, bytesPorDiario);
+		}
+		catch (IOException e)
+		{
+			throw new IllegalStateException("Falha ao abrir o diário de estoque " + geracao + ".", e);
+		}
+		compactador.execute(() -> compactar(cheio));
+	}
+
+	/** Soma ao snapshot os diários até o cheio e apaga esses diários. */
+	private void compactar(Diario cheio)
+	{
+		try
+		{
+			cheio.encerrar();
+			AtomicReferenceArray<AtomicLongArray> paginas = new AtomicReferenceArray<>(
+					EstoqueSimulado.quantidadePaginas(maximoProdutos));
+			long geracao = restaurar(diretorio, cheio.geracao, maximoProdutos, saldoInicial, paginas);
+			gravarSnapshot(diretorio.resolve(ARQUIVO_SNAPSHOT), geracao, maximoProdutos, paginas);
+			apagarDiarios(diretorio, geracao);
+		}
+		catch (IOException | RuntimeException e)
+		{
+			// Os diários continuam no diretório e entram na próxima compactação ou abertura
+			log.warn("Falha ao compactar o diário de estoque {}: {}", cheio.geracao, e.toString());
+		}
+	}
+
+	/**
+	 * Carrega o snapshot e soma os diários da geração dele até {@code ultimaGeracao}; retorna a
+	 * geração do snapshot que conteria tudo o que foi carregado.
+	 */
+	private static long restaurar(Path diretorio, long ultimaGeracao, int maximoProdutos, long saldoInicial,
+			AtomicReferenceArray<AtomicLongArray> paginas) throws IOException
+	{
+		Path snapshot = diretorio.resolve(ARQUIVO_SNAPSHOT);
+		long geracao = Files.exists(snapshot) ? carregarSnapshot(snapshot, maximoProdutos, paginas) : 0;
+		for (var diario : diarios(diretorio).subMap(geracao, true, ultimaGeracao, true).entrySet())
+		{
+			reaplicar(diario.getValue(), diario.getKey(), maximoProdutos, saldoInicial, paginas);
+			geracao = diario.getKey() + 1;
+		}
+		return geracao;
+	}
+
+	/** Diários do diretório por geração. */
+	private static NavigableMap<Long, Path> diarios(Path diretorio) throws IOException
+	{
+		NavigableMap<Long, Path> diarios = new TreeMap<>();
+		try (Stream<Path> arquivos = Files.list(diretorio))
+		{
+			arquivos.forEach(arquivo -> {
+				String nome = arquivo.getFileName().toString();
+				if (nome.startsWith(PREFIXO_DIARIO))
+				{
+					try
+					{
+						diarios.put(Long.parseLong(nome.substring(PREFIXO_DIARIO.length())), arquivo);
+					}
+					catch (NumberFormatException e)
+					{
+						// Arquivo de outra origem com o mesmo prefixo
+					}
+				}
+			});
+		}
+		return diarios;
+	}
+
+	/** Apaga os diários já contidos no snapshot da geração. */
+	private static void apagarDiarios(Path diretorio, long geracao) throws IOException
+	{
+		for (Path diario : diarios(diretorio).headMap(geracao, false).values())
+		{
+			Files.deleteIfExists(diario);
+		}
+	}
+
+	/** Copia as páginas do snapshot e retorna a geração dele. */
+	private static long carregarSnapshot(Path arquivo, int maximoProdutos, AtomicReferenceArray<AtomicLongArray> paginas)
+			throws IOException
+	{
+		try (FileChannel canal = FileChannel.open(arquivo, READ))
+		{
+			long tamanho = canal.size();
+			if (tamanho < BYTES_CABECALHO)
+			{
+				throw snapshotInvalido(arquivo);
+			}
+			MappedByteBuffer mapaCabecalho = canal.map(MapMode.READ_ONLY, 0, BYTES_CABECALHO);
+			LongBuffer cabecalho = mapaCabecalho.order(ORDEM).asLongBuffer();
+			long magico = cabecalho.get(0);
+			long geracao = cabecalho.get(1);
+			long produtos = cabecalho.get(2);
+			long quantidade = cabecalho.get(3);
+			liberar(mapaCabecalho);
+			if (magico != MAGICO_SNAPSHOT || quantidade < 0 || tamanho != BYTES_CABECALHO + quantidade * BYTES_PAGINA)
+			{
+				throw snapshotInvalido(arquivo);
+			}
+			if (produtos != maximoProdutos)
+			{
+				throw new IllegalStateException(String.format("Snapshot de estoque para %d produtos; configurado para %d.",
+						produtos, maximoProdutos));
+			}
+
+			long[] valores = new long[EstoqueSimulado.TAMANHO_PAGINA];
+			for (long lidas = 0; lidas < quantidade;)
+			{
+				int lote = (int) Math.min(quantidade - lidas, PAGINAS_POR_MAPA);
+				MappedByteBuffer mapa = canal.map(MapMode.READ_ONLY, BYTES_CABECALHO + lidas * BYTES_PAGINA,
+						lote * BYTES_PAGINA);
+				try
+				{
+					LongBuffer longs = mapa.order(ORDEM).asLongBuffer();
+					for (int i = 0; i < lote; i++)
+					{
+						long indice = longs.get();
+						if (indice < 0 || indice >= paginas.length())
+						{
+							throw snapshotInvalido(arquivo);
+						}
+						longs.get(valores);
+						paginas.set((int) indice, new AtomicLongArray(valores));
+					}
+				}
+				finally
+				{
+					liberar(mapa);
+				}
+				lidas += lote;
+			}
+			return geracao;
+		}
+	}
+
+	/** Grava as páginas criadas em um arquivo temporário e o troca pelo snapshot. */
+	private static int gravarSnapshot(Path arquivo, long geracao, int maximoProdutos,
+			AtomicReferenceArray<AtomicLongArray> paginas) throws IOException
+	{
+		int[] indices = new int[paginas.length()];
+		int quantidade = 0;
+		for (int i = 0; i < paginas.length(); i++)
+		{
+			if (paginas.get(i) != null)
+			{
+				indices[quantidade++] = i;
+			}
+		}
+
+		Path temporario = arquivo.resolveSibling(arquivo.getFileName() + ".tmp");
+		try (FileChannel canal = FileChannel.open(temporario, CREATE, READ, WRITE, TRUNCATE_EXISTING))
+		{
+			long[] valores = new long[EstoqueSimulado.TAMANHO_PAGINA];
+			for (int gravadas = 0; gravadas < quantidade;)
+			{
+				int lote = Math.min(quantidade - gravadas, PAGINAS_POR_MAPA);
+				MappedByteBuffer mapa = canal.map(MapMode.READ_WRITE, BYTES_CABECALHO + gravadas * BYTES_PAGINA,
+						lote * BYTES_PAGINA);
+				LongBuffer longs = mapa.order(ORDEM).asLongBuffer();
+				for (int i = gravadas; i < gravadas + lote; i++)
+				{
+					AtomicLongArray pagina = paginas.get(indices[i]);
+					for (int j = 0; j < valores.length; j++)
+					{
+						valores[j] = pagina.get(j);
+					}
+					longs.put(indices[i]);
+					longs.put(valores);
+				}
+				mapa.force();
+				liberar(mapa);
+				gravadas += lote;
+			}
+
+			MappedByteBuffer cabecalho = canal.map(MapMode.READ_WRITE, 0, BYTES_CABECALHO);
+			cabecalho.order(ORDEM).asLongBuffer().put(MAGICO_SNAPSHOT).put(geracao).put(maximoProdutos).put(quantidade);
+			cabecalho.force();
+			liberar(cabecalho);
+		}
+		Files.move(temporario, arquivo, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		return quantidade;
+	}
+
+	/** Soma às páginas as variações de um diário. */
+	private static void reaplicar(Path arquivo, long geracao, int maximoProdutos, long saldoInicial,
+			AtomicReferenceArray<AtomicLongArray> paginas) throws IOException
+	{
+		try (FileChannel canal = FileChannel.open(arquivo, READ))
+		{
+			long tamanho = canal.size();
+			if (tamanho < BYTES_REGISTRO || tamanho > Integer.MAX_VALUE)
+			{
+				throw new IllegalStateException("Diário de estoque inválido: " + arquivo + ".");
+			}
+			MappedByteBuffer mapa = canal.map(MapMode.READ_ONLY, 0, tamanho);
+			try
+			{
+				LongBuffer registros = mapa.order(ORDEM).asLongBuffer();
+				if (registros.get(0) != MAGICO_DIARIO || registros.get(1) != geracao)
+				{
+					throw new IllegalStateException("Diário de estoque inválido: " + arquivo + ".");
+				}
+				for (int i = 2; i + 1 < registros.limit(); i += 2)
+				{
+					long cabecalho = registros.get(i);
+					if (cabecalho == 0)
+					{
+						// Posição reservada por quem não chegou a escrever, ou o fim do diário
+						continue;
+					}
+					long produtoId = (cabecalho & MASCARA_ID) - 1;
+					if (produtoId < 0 || produtoId >= maximoProdutos || cabecalho >>> BITS_TIPO != TIPO_VARIACAO)
+					{
+						throw new IllegalStateException("Registro inválido no diário de estoque " + arquivo + ".");
+					}
+					pagina(paginas, produtoId, saldoInicial).addAndGet(EstoqueSimulado.posicao(produtoId),
+							registros.get(i + 1));
+				}
+			}
+			finally
+			{
+				liberar(mapa);
+			}
+		}
+	}
+
+	private static AtomicLongArray pagina(AtomicReferenceArray<AtomicLongArray> paginas, long produtoId,
+			long saldoInicial)
+	{
+		int indice = (int) (produtoId >>> EstoqueSimulado.BITS_PAGINA);
+		AtomicLongArray pagina = paginas.get(indice);
+		if (pagina == null)
+		{
+			pagina = EstoqueSimulado.criarPagina(saldoInicial);
+			paginas.set(indice, pagina);
+		}
+		return pagina;
+	}
+
+	/** Desmapeia o buffer agora, sem esperar o coletor de lixo; ele não pode mais ser usado. */
+	private static void liberar(MappedByteBuffer mapa)
+	{
+		if (DESMAPEAR == null)
+		{
+			return;
+		}
+		try
+		{
+			DESMAPEAR.invokeExact((ByteBuffer) mapa);
+		}
+		catch (Throwable e)
+		{
+			throw new IllegalStateException("Falha ao desmapear arquivo de estoque.", e);
+		}
+	}
+
+	private static MethodHandle obterDesmapeador()
+	{
+		try
+		{
+			Class<?> unsafe = Class.forName("sun.misc.Unsafe");
+			Field instancia = unsafe.getDeclaredField("theUnsafe");
+			instancia.setAccessible(true);
+			return MethodHandles.lookup()
+					.findVirtual(unsafe, "invokeCleaner", MethodType.methodType(void.class, ByteBuffer.class))
+					.bindTo(instancia.get(null));
+		}
+		catch (ReflectiveOperationException | RuntimeException e)
+		{
+			LoggerFactory.getLogger(DiarioEstoque.class)
+					.warn("Arquivos do estoque serão desmapeados só pelo coletor de lixo: {}", e.toString());
+			return null;
+		}
+	}
+
+	private static IllegalStateException snapshotInvalido(Path arquivo)
+	{
+		return new IllegalStateException("Snapshot de estoque inválido: " + arquivo + ".");
+	}
+}
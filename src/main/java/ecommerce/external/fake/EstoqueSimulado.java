@@ -1,28 +1,568 @@
 package ecommerce.external.fake;
 
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReentrantLock;
 
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
 import ecommerce.dto.DisponibilidadeDTO;
 import ecommerce.dto.EstoqueBaixaDTO;
+import ecommerce.dto.ReservaDTO;
 import ecommerce.external.IEstoqueExternal;
 
+/**
+ * Estoque em memória com livro de reservas, sem travas.
+ *
+ * O disponível de cada produto (saldo físico menos reservas em aberto, inicialmente
+ * {@code compra.estoque.simulado.saldo-inicial}) é um contador em um {@link AtomicLongArray}
+ * indexado pelo id do produto, em páginas de {@value #TAMANHO_PAGINA} ids criadas na primeira
+ * consulta; ids vão de 0 a {@code compra.estoque.simulado.maximo-produtos} - 1. Baixas e reservas
+ * descontam cada produto por CAS, em ordem crescente de id, e devolvem o que já tinham descontado
+ * se algum faltar: ou tudo é descontado, ou nada. Nesse intervalo, outra compra pode ver o
+ * desconto que será devolvido e ser recusada, mas o disponível nunca fica negativo.
+ *
+ * Com {@code compra.estoque.simulado.concorrencia=LISTRAS}, as baixas e reservas travam as listras
+ * dos seus produtos (id módulo {@code compra.estoque.simulado.listras}) em ordem crescente, então
+ * verificam e descontam tudo sem desconto provisório. Só quem desconta trava: devoluções somam ao
+ * contador sem trava, e uma soma não invalida a verificação feita sob a trava.
+ *
+ * Confirmar uma reserva não mexe nos contadores, que já a descontaram. Reservas vencidas são
+ * devolvidas ao disponível antes de cada operação e periodicamente, então uma compra abandonada
+ * não segura o estoque além da validade pedida.
+ *
+ * Com {@code compra.estoque.simulado.persistencia.diretorio}, o estoque é restaurado desse diretório
+ * na inicialização e as baixas, reservas confirmadas e ajustes de saldo passam a ser registrados
+ * nele (ver {@link DiarioEstoque}); reservas em aberto não sobrevivem a uma reinicialização.
+ */
 @Service
-public class EstoqueSimulado implements IEstoqueExternal
+public class EstoqueSimulado implements IEstoqueExternal, AutoCloseable
 {
+	public static final long SALDO_INICIAL_PADRAO = 1000;
+	public static final int MAXIMO_PRODUTOS_PADRAO = 1 << 20;
+
+	static final int BITS_PAGINA = 10;
+	static final int TAMANHO_PAGINA = 1 << BITS_PAGINA;
+	private static final int LISTRAS_PADRAO = 64;
+
+	/** Produtos distintos, em ordem crescente de id, e a quantidade somada de cada um. */
+	private record Itens(long[] ids, long[] quantidades)
+	{
+	}
+
+	private record Reserva(long id, Itens itens, Instant expiraEm)
+	{
+	}
+
+	private final long saldoInicial;
+	private final int maximoProdutos;
+	private final Clock relogio;
+
+	private final AtomicReferenceArray<AtomicLongArray> disponiveis;
+	private final Map<Long, Reserva> reservas = new ConcurrentHashMap<>();
+	/** Reservas em aberto por vencimento; quem tira a reserva de {@link #reservas} a encerra. */
+	private final ConcurrentNavigableMap<Reserva, Boolean> vencimentos = new ConcurrentSkipListMap<>(
+			Comparator.comparing(Reserva::expiraEm).thenComparingLong(Reserva::id));
+	private final AtomicLong ultimaReserva = new AtomicLong();
+
+	private ConcorrenciaEstoque concorrencia = ConcorrenciaEstoque.CAS;
+	private ReentrantLock[] listras = criarListras(LISTRAS_PADRAO);
+	private volatile DiarioEstoque diario;
+
+	/** Estoque com o saldo inicial padrão, para uso fora do Spring. */
+	public EstoqueSimulado()
+	{
+		this(SALDO_INICIAL_PADRAO, MAXIMO_PRODUTOS_PADRAO, Clock.systemUTC());
+	}
+
+	/** Estoque com a faixa de ids padrão, para uso fora do Spring. */
+	public EstoqueSimulado(long saldoInicial)
+	{
+		this(saldoInicial, MAXIMO_PRODUTOS_PADRAO, Clock.systemUTC());
+	}
+
+	@Autowired
+	public EstoqueSimulado(@Value("${compra.estoque.simulado.saldo-inicial:1000}") long saldoInicial,
+			@Value("${compra.estoque.simulado.maximo-produtos:1048576}") int maximoProdutos)
+	{
+		this(saldoInicial, maximoProdutos, Clock.systemUTC());
+	}
+
+	EstoqueSimulado(long saldoInicial, Clock relogio)
+	{
+		this(saldoInicial, MAXIMO_PRODUTOS_PADRAO, relogio);
+	}
+
+	EstoqueSimulado(long saldoInicial, int maximoProdutos, Clock relogio)
+	{
+		if (maximoProdutos <= 0)
+		{
+			throw new IllegalArgumentException("Quantidade máxima de produtos deve ser positiva.");
+		}
+		this.saldoInicial = saldoInicial;
+		this.maximoProdutos = maximoProdutos;
+		this.relogio = relogio;
+		this.disponiveis = new AtomicReferenceArray<>(quantidadePaginas(maximoProdutos));
+	}
+
+	@Value("${compra.estoque.simulado.concorrencia:CAS}")
+	public void setConcorrencia(ConcorrenciaEstoque concorrencia)
+	{
+		this.concorrencia = concorrencia;
+	}
+
+	@Value("${compra.estoque.simulado.listras:64}")
+	public void setListras(int quantidade)
+	{
+		this.listras = criarListras(quantidade);
+	}
+
+	/** Sem diretório, o estoque fica só em memória. */
+	@Autowired
+	public void configurarPersistencia(@Value("${compra.estoque.simulado.persistencia.diretorio:}") String diretorio,
+			@Value("${compra.estoque.simulado.persistencia.registros-por-diario:1048576}") int registrosPorDiario)
+	{
+		if (!diretorio.isBlank())
+		{
+			persistirEm(Path.of(diretorio), registrosPorDiario);
+		}
+	}
+
+	/**
+	 * Restaura o estoque gravado em {@code diretorio} e passa a registrar nele o que muda o estoque;
+	 * deve ser chamado antes da primeira operação.
+	 */
+	public void persistirEm(Path diretorio)
+	{
+		persistirEm(diretorio, DiarioEstoque.REGISTROS_POR_DIARIO_PADRAO);
+	}
+
+	/** @param registrosPorDiario registros de cada diário antes de ele ser somado ao snapshot */
+	public synchronized void persistirEm(Path diretorio, int registrosPorDiario)
+	{
+		if (diario != null)
+		{
+			throw new IllegalStateException("Estoque simulado já é persistido.");
+		}
+		try
+		{
+			diario = DiarioEstoque.abrir(diretorio, maximoProdutos, saldoInicial, registrosPorDiario, disponiveis);
+		}
+		catch (IOException e)
+		{
+			throw new IllegalStateException("Falha ao restaurar o estoque de " + diretorio + ".", e);
+		}
+	}
 
 	@Override
 	public EstoqueBaixaDTO darBaixa(List<Long> produtosIds, List<Long> produtosQuantidades)
 	{
-		// TODO Auto-generated method stub
-		return null;
+		Itens itens = agrupar(produtosIds, produtosQuantidades);
+		expirarVencidas();
+		boolean sucesso = retirar(itens) < 0;
+		if (sucesso)
+		{
+			registrarBaixa(itens);
+		}
+		return new EstoqueBaixaDTO(sucesso);
 	}
 
 	@Override
 	public DisponibilidadeDTO verificarDisponibilidade(List<Long> produtosIds, List<Long> produtosQuantidades)
 	{
-		// TODO Auto-generated method stub
-		return null;
+		Itens itens = agrupar(produtosIds, produtosQuantidades);
+		expirarVencidas();
+		List<Long> indisponiveis = indisponiveis(itens);
+		return new DisponibilidadeDTO(indisponiveis.isEmpty(), indisponiveis);
+	}
+
+	@Override
+	public Map<Long, Long> consultarSaldos(List<Long> produtosIds)
+	{
+		expirarVencidas();
+		Map<Long, Long> saldos = new LinkedHashMap<>();
+		for (Long produtoId : produtosIds)
+		{
+			if (produtoId == null)
+			{
+				throw new IllegalArgumentException("Produto ou quantidade inválidos.");
+			}
+			verificarFaixa(produtoId);
+			saldos.put(produtoId, pagina(produtoId).get(posicao(produtoId)));
+		}
+		return saldos;
+	}
+
+	@Override
+	public ReservaDTO reservar(List<Long> produtosIds, List<Long> produtosQuantidades, Duration validade)
+	{
+		Itens itens = agrupar(produtosIds, produtosQuantidades);
+		expirarVencidas();
+
+		int faltante = retirar(itens);
+		if (faltante >= 0)
+		{
+			List<Long> indisponiveis = indisponiveis(itens);
+			// O que faltou pode ter sido devolvido por outra compra logo depois
+			return new ReservaDTO(false, null, indisponiveis.isEmpty() ? List.of(itens.ids()[faltante]) : indisponiveis);
+		}
+
+		Reserva reserva = new Reserva(ultimaReserva.incrementAndGet(), itens, relogio.instant().plus(validade));
+		reservas.put(reserva.id(), reserva);
+		vencimentos.put(reserva, Boolean.TRUE);
+		return new ReservaDTO(true, reserva.id(), List.of());
+	}
+
+	@Override
+	public EstoqueBaixaDTO confirmarReserva(Long reservaId)
+	{
+		expirarVencidas();
+		Reserva reserva = reservaId != null ? reservas.remove(reservaId) : null;
+		if (reserva == null)
+		{
+			return new EstoqueBaixaDTO(false);
+		}
+		vencimentos.remove(reserva);
+		registrarBaixa(reserva.itens());
+		return new EstoqueBaixaDTO(true);
+	}
+
+	@Override
+	public void liberarReserva(Long reservaId)
+	{
+		Reserva reserva = reservaId != null ? reservas.remove(reservaId) : null;
+		if (reserva != null)
+		{
+			vencimentos.remove(reserva);
+			devolver(reserva.itens(), reserva.itens().ids().length);
+		}
+	}
+
+	/** Devolve ao disponível as reservas vencidas que ninguém confirmou nem liberou. */
+	@Scheduled(fixedDelayString = "${compra.estoque.reserva.limpeza-ms:5000}")
+	public void expirarReservas()
+	{
+		expirarVencidas();
+	}
+
+	/**
+	 * Ajuste administrativo do saldo físico; o disponível passa a ser o saldo menos as reservas em
+	 * aberto do produto. Não é atômico em relação a reservas simultâneas do mesmo produto, nem a
+	 * baixas no modo {@link ConcorrenciaEstoque#CAS}.
+	 */
+	public void definirSaldo(Long produtoId, long saldo)
+	{
+		verificarFaixa(produtoId);
+		expirarVencidas();
+		long reservado = 0;
+		for (Reserva reserva : reservas.values())
+		{
+			int posicao = Arrays.binarySearch(reserva.itens().ids(), produtoId);
+			if (posicao >= 0)
+			{
+				reservado += reserva.itens().quantidades()[posicao];
+			}
+		}
+		ReentrantLock trava = listras[listra(produtoId)];
+		trava.lock();
+		try
+		{
+			long anterior = pagina(produtoId).getAndSet(posicao(produtoId), saldo - reservado);
+			// Variação, não o saldo: soma o mesmo com baixas simultâneas em qualquer ordem no diário
+			DiarioEstoque aberto = diario;
+			if (aberto != null && saldo - reservado != anterior)
+			{
+				aberto.registrarVariacao(produtoId, saldo - reservado - anterior);
+			}
+		}
+		finally
+		{
+			trava.unlock();
+		}
+	}
+
+	/** Saldo físico menos as reservas em aberto. */
+	public long disponivel(Long produtoId)
+	{
+		verificarFaixa(produtoId);
+		expirarVencidas();
+		return pagina(produtoId).get(posicao(produtoId));
+	}
+
+	public int reservasEmAberto()
+	{
+		expirarVencidas();
+		return reservas.size();
+	}
+
+	/**
+	 * Grava no disco o diário de persistência, se houver, e para de registrar nele; o estoque em
+	 * memória continua valendo.
+	 */
+	@Override
+	public synchronized void close()
+	{
+		DiarioEstoque aberto = diario;
+		diario = null;
+		if (aberto != null)
+		{
+			aberto.close();
+		}
+	}
+
+	/** Registra no diário, se houver, o desconto definitivo dos itens. */
+	private void registrarBaixa(Itens itens)
+	{
+		DiarioEstoque aberto = diario;
+		if (aberto != null)
+		{
+			aberto.registrarBaixa(itens.ids(), itens.quantidades());
+		}
+	}
+
+	/** Desconta todos os itens ou nenhum; retorna o índice do item que faltou, ou -1. */
+	private int retirar(Itens itens)
+	{
+		return concorrencia == ConcorrenciaEstoque.LISTRAS ? retirarComListras(itens) : retirarPorCas(itens);
+	}
+
+	private int retirarComListras(Itens itens)
+	{
+		long[] ids = itens.ids();
+		long[] quantidades = itens.quantidades();
+		int[] travadas = listrasEmOrdem(ids);
+		for (int listra : travadas)
+		{
+			listras[listra].lock();
+		}
+		try
+		{
+			for (int i = 0; i < ids.length; i++)
+			{
+				if (quantidades[i] > pagina(ids[i]).get(posicao(ids[i])))
+				{
+					return i;
+				}
+			}
+			for (int i = 0; i < ids.length; i++)
+			{
+				pagina(ids[i]).addAndGet(posicao(ids[i]), -quantidades[i]);
+			}
+			return -1;
+		}
+		finally
+		{
+			for (int i = travadas.length - 1; i >= 0; i--)
+			{
+				listras[travadas[i]].unlock();
+			}
+		}
+	}
+
+	private int retirarPorCas(Itens itens)
+	{
+		long[] ids = itens.ids();
+		long[] quantidades = itens.quantidades();
+		for (int i = 0; i < ids.length; i++)
+		{
+			AtomicLongArray pagina = pagina(ids[i]);
+			int posicao = posicao(ids[i]);
+			long atual;
+			do
+			{
+				atual = pagina.get(posicao);
+				if (atual < quantidades[i])
+				{
+					devolver(itens, i);
+					return i;
+				}
+			}
+			while (!pagina.compareAndSet(posicao, atual, atual - quantidades[i]));
+		}
+		return -1;
+	}
+
+	/** Devolve ao disponível os {@code quantidade} primeiros itens. */
+	private void devolver(Itens itens, int quantidade)
+	{
+		for (int i = 0; i < quantidade; i++)
+		{
+			pagina(itens.ids()[i]).addAndGet(posicao(itens.ids()[i]), itens.quantidades()[i]);
+		}
+	}
+
+	private List<Long> indisponiveis(Itens itens)
+	{
+		List<Long> indisponiveis = new ArrayList<>();
+		for (int i = 0; i < itens.ids().length; i++)
+		{
+			if (itens.quantidades()[i] > pagina(itens.ids()[i]).get(posicao(itens.ids()[i])))
+			{
+				indisponiveis.add(itens.ids()[i]);
+			}
+		}
+		return indisponiveis;
+	}
+
+	private void expirarVencidas()
+	{
+		Instant agora = relogio.instant();
+		Map.Entry<Reserva, Boolean> primeira;
+		while ((primeira = vencimentos.firstEntry()) != null && !primeira.getKey().expiraEm().isAfter(agora))
+		{
+			Reserva reserva = primeira.getKey();
+			vencimentos.remove(reserva);
+			if (reservas.remove(reserva.id(), reserva))
+			{
+				devolver(reserva.itens(), reserva.itens().ids().length);
+			}
+		}
+	}
+
+	/** Página do produto, criada com o saldo inicial na primeira consulta. */
+	private AtomicLongArray pagina(long produtoId)
+	{
+		int indice = (int) (produtoId >>> BITS_PAGINA);
+		AtomicLongArray pagina = disponiveis.get(indice);
+		if (pagina == null)
+		{
+			AtomicLongArray nova = criarPagina(saldoInicial);
+			pagina = disponiveis.compareAndExchange(indice, null, nova);
+			if (pagina == null)
+			{
+				pagina = nova;
+			}
+		}
+		return pagina;
+	}
+
+	static AtomicLongArray criarPagina(long saldo)
+	{
+		AtomicLongArray pagina = new AtomicLongArray(TAMANHO_PAGINA);
+		for (int i = 0; i < TAMANHO_PAGINA; i++)
+		{
+			pagina.set(i, saldo);
+		}
+		return pagina;
+	}
+
+	static int quantidadePaginas(int maximoProdutos)
+	{
+		return (maximoProdutos + TAMANHO_PAGINA - 1) >>> BITS_PAGINA;
+	}
+
+	/** Listras distintas dos produtos, em ordem crescente: a ordem canônica de travamento. */
+	private int[] listrasEmOrdem(long[] ids)
+	{
+		int[] travadas = new int[ids.length];
+		for (int i = 0; i < ids.length; i++)
+		{
+			travadas[i] = listra(ids[i]);
+		}
+		Arrays.sort(travadas);
+		int distintas = 0;
+		for (int i = 0; i < travadas.length; i++)
+		{
+			if (i == 0 || travadas[i] != travadas[i - 1])
+			{
+				travadas[distintas++] = travadas[i];
+			}
+		}
+		return distintas < travadas.length ? Arrays.copyOf(travadas, distintas) : travadas;
+	}
+
+	private int listra(long produtoId)
+	{
+		return (int) (produtoId % listras.length);
+	}
+
+	private static ReentrantLock[] criarListras(int quantidade)
+	{
+		if (quantidade <= 0)
+		{
+			throw new IllegalArgumentException("Quantidade de listras deve ser positiva.");
+		}
+		ReentrantLock[] listras = new ReentrantLock[quantidade];
+		for (int i = 0; i < quantidade; i++)
+		{
+			listras[i] = new ReentrantLock();
+		}
+		return listras;
+	}
+
+	private void verificarFaixa(long produtoId)
+	{
+		if (produtoId < 0 || produtoId >= maximoProdutos)
+		{
+			throw new IllegalArgumentException("Produto fora da faixa do estoque simulado.");
+		}
+	}
+
+	static int posicao(long produtoId)
+	{
+		return (int) (produtoId & (TAMANHO_PAGINA - 1));
+	}
+
+	/**
+	 * Soma as quantidades de produtos repetidos e ordena por id: com todos descontando na mesma
+	 * ordem, duas compras que disputam os mesmos produtos não se recusam mutuamente.
+	 */
+	private Itens agrupar(List<Long> produtosIds, List<Long> produtosQuantidades)
+	{
+		if (produtosIds.size() != produtosQuantidades.size())
+		{
+			throw new IllegalArgumentException("Listas de produtos e quantidades com tamanhos diferentes.");
+		}
+
+		long[] ids = new long[produtosIds.size()];
+		long[] quantidades = new long[produtosIds.size()];
+		int distintos = 0;
+		for (int i = 0; i < produtosIds.size(); i++)
+		{
+			Long produtoId = produtosIds.get(i);
+			Long quantidade = produtosQuantidades.get(i);
+			if (produtoId == null || quantidade == null || quantidade <= 0)
+			{
+				throw new IllegalArgumentException("Produto ou quantidade inválidos.");
+			}
+			verificarFaixa(produtoId);
+
+			int posicao = Arrays.binarySearch(ids, 0, distintos, produtoId);
+			if (posicao >= 0)
+			{
+				quantidades[posicao] = Math.addExact(quantidades[posicao], quantidade);
+				continue;
+			}
+			posicao = -posicao - 1;
+			System.arraycopy(ids, posicao, ids, posicao + 1, distintos - posicao);
+			System.arraycopy(quantidades, posicao, quantidades, posicao + 1, distintos - posicao);
+			ids[posicao] = produtoId;
+			quantidades[posicao] = quantidade;
+			distintos++;
+		}
+		if (distintos < ids.length)
+		{
+			ids = Arrays.copyOf(ids, distintos);
+			quantidades = Arrays.copyOf(quantidades, distintos);
+		}
+		return new Itens(ids, quantidades);
 	}
 }
@@ -0,0 +1,60 @@
+package ecommerce.external.fake;
+
+import java.time.Duration;
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import ecommerce.dto.DisponibilidadeDTO;
+import ecommerce.dto.EstoqueBaixaDTO;
+import ecommerce.dto.ReservaDTO;
+import ecommerce.external.IEstoqueExternalReativo;
+import reactor.core.publisher.Mono;
+
+/**
+ * {@link IEstoqueExternalReativo} sobre o mesmo livro do {@link EstoqueSimulado}: as duas
+ * finalizações vendem o mesmo estoque. As operações do livro são em memória e curtas, então rodam
+ * na thread de quem assina.
+ */
+@Service
+public class EstoqueSimuladoReativo implements IEstoqueExternalReativo
+{
+	private final EstoqueSimulado estoque;
+
+	@Autowired
+	public EstoqueSimuladoReativo(EstoqueSimulado estoque)
+	{
+		this.estoque = estoque;
+	}
+
+	@Override
+	public Mono<EstoqueBaixaDTO> darBaixa(List<Long> produtosIds, List<Long> produtosQuantidades)
+	{
+		return Mono.fromCallable(() -> estoque.darBaixa(produtosIds, produtosQuantidades));
+	}
+
+	@Override
+	public Mono<DisponibilidadeDTO> verificarDisponibilidade(List<Long> produtosIds, List<Long> produtosQuantidades)
+	{
+		return Mono.fromCallable(() -> estoque.verificarDisponibilidade(produtosIds, produtosQuantidades));
+	}
+
+	@Override
+	public Mono<ReservaDTO> reservar(List<Long> produtosIds, List<Long> produtosQuantidades, Duration validade)
+	{
+		return Mono.fromCallable(() -> estoque.reservar(produtosIds, produtosQuantidades, validade));
+	}
+
+	@Override
+	public Mono<EstoqueBaixaDTO> confirmarReserva(Long reservaId)
+	{
+		return Mono.fromCallable(() -> estoque.confirmarReserva(reservaId));
+	}
+
+	@Override
+	public Mono<Void> liberarReserva(Long reservaId)
+	{
+		return Mono.fromRunnable(() -> estoque.liberarReserva(reservaId));
+	}
+}
@@ -0,0 +1,33 @@
+package ecommerce.external.fake;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import ecommerce.dto.PagamentoDTO;
+import ecommerce.external.IPagamentoExternalReativo;
+import reactor.core.publisher.Mono;
+
+/** {@link IPagamentoExternalReativo} que responde como o {@link PagamentoSimulado}. */
+@Service
+public class PagamentoSimuladoReativo implements IPagamentoExternalReativo
+{
+	private final PagamentoSimulado pagamento;
+
+	@Autowired
+	public PagamentoSimuladoReativo(PagamentoSimulado pagamento)
+	{
+		this.pagamento = pagamento;
+	}
+
+	@Override
+	public Mono<PagamentoDTO> autorizarPagamento(Long clienteId, Double custoTotal)
+	{
+		return Mono.fromCallable(() -> pagamento.autorizarPagamento(clienteId, custoTotal));
+	}
+
+	@Override
+	public Mono<Void> cancelarPagamento(Long clienteId, Long pagamentoTransacaoId)
+	{
+		return Mono.fromRunnable(() -> pagamento.cancelarPagamento(clienteId, pagamentoTransacaoId));
+	}
+}
@@ -0,0 +1,47 @@
+package ecommerce.external.protecao;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Decoradores criados para montar os clientes externos, fechados juntos no fim do contexto, do
+ * mais externo para o mais interno: o que um decorador ainda envia ao fechar passa pelos de dentro
+ * antes de eles fecharem. O cliente decorado não entra, porque tem ciclo de vida próprio e pode ser
+ * compartilhado.
+ */
+public class CadeiaDecoradores implements AutoCloseable
+{
+	private static final Logger log = LoggerFactory.getLogger(CadeiaDecoradores.class);
+
+	private final Deque<AutoCloseable> decoradores = new ArrayDeque<>();
+
+	/** Guarda o decorador para fechar com a cadeia, se ele tiver o que fechar, e o devolve. */
+	public synchronized <T> T registrar(T decorador)
+	{
+		if (decorador instanceof AutoCloseable fechavel)
+		{
+			decoradores.push(fechavel);
+		}
+		return decorador;
+	}
+
+	@Override
+	public synchronized void close()
+	{
+		while (!decoradores.isEmpty())
+		{
+			AutoCloseable decorador = decoradores.pop();
+			try
+			{
+				decorador.close();
+			}
+			catch (Exception e)
+			{
+				log.warn("Falha ao fechar {}", decorador.getClass().getSimpleName(), e);
+			}
+		}
+	}
+}
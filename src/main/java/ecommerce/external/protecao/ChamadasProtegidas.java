@@ -0,0 +1,199 @@
+package ecommerce.external.protecao;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+
+import ecommerce.external.ServicoExternoIndisponivelException;
+
+/**
+ * Executa as chamadas a um serviço externo com timeout por operação e atrás de um circuit breaker.
+ *
+ * A chamada roda em uma thread do próprio serviço e a requisição espera no máximo o timeout da
+ * operação; ao estourar, a thread é interrompida e a falha conta para o circuito. Com o circuito
+ * aberto, as chamadas falham na hora, sem ocupar threads nem esperar o serviço. Em ambos os casos
+ * quem chama recebe {@link ServicoExternoIndisponivelException}; as demais exceções do serviço
+ * passam como vieram.
+ *
+ * No máximo {@code chamadasSimultaneas} chamadas ficam em andamento (bulkhead): a seguinte falha na
+ * hora, sem passar pelo circuito, porque a fila é da aplicação e não do serviço. O limite não depende
+ * do executor: com threads virtuais ({@link ExecutoresChamadasExternas}) ele é o único; no pool de
+ * threads de plataforma, as chamadas acima do número de threads esperam na fila, dentro do timeout
+ * da operação. Se o executor recusar a chamada (threads presas depois do timeout), ela falha e conta
+ * para o circuito.
+ */
+public class ChamadasProtegidas implements AutoCloseable
+{
+	public static final int CHAMADAS_SIMULTANEAS_PADRAO = 200;
+
+	public static final int THREADS_PADRAO = 50;
+
+	private final String servico;
+	private final CircuitBreaker circuito;
+	private final Duration timeoutPadrao;
+	private final Map<String, Duration> timeouts;
+	private final int chamadasSimultaneas;
+	private final Semaphore vagas;
+	private final ExecutorService executor;
+
+	public ChamadasProtegidas(String servico, CircuitBreaker circuito, Duration timeoutPadrao,
+			Map<String, Duration> timeouts)
+	{
+		this(servico, circuito, timeoutPadrao, timeouts, CHAMADAS_SIMULTANEAS_PADRAO);
+	}
+
+	/** Pool de threads de plataforma com uma thread por vaga do bulkhead. */
+	public ChamadasProtegidas(String servico, CircuitBreaker circuito, Duration timeoutPadrao,
+			Map<String, Duration> timeouts, int chamadasSimultaneas)
+	{
+		this(servico, circuito, timeoutPadrao, timeouts, chamadasSimultaneas,
+				poolPlataforma(servico, chamadasSimultaneas, chamadasSimultaneas));
+	}
+
+	/**
+	 * @param timeouts timeout de cada operação; as ausentes usam {@code timeoutPadrao}
+	 * @param executor onde as chamadas rodam; é encerrado em {@link #close()}
+	 */
+	public ChamadasProtegidas(String servico, CircuitBreaker circuito, Duration timeoutPadrao,
+			Map<String, Duration> timeouts, int chamadasSimultaneas, ExecutorService executor)
+	{
+		if (chamadasSimultaneas < 1)
+		{
+			throw new IllegalArgumentException("Chamadas simultâneas deve ser positivo.");
+		}
+		this.servico = servico;
+		this.circuito = circuito;
+		this.timeoutPadrao = timeoutPadrao;
+		this.timeouts = Map.copyOf(timeouts);
+		this.chamadasSimultaneas = chamadasSimultaneas;
+		this.vagas = new Semaphore(chamadasSimultaneas);
+		this.executor = executor;
+	}
+
+	/**
+	 * Pool de {@code threads} threads de plataforma (daemon, encerradas após 60 s ociosas) com fila de
+	 * {@code fila} chamadas; dimensione a fila pelo bulkhead para que só threads presas depois do
+	 * timeout levem à recusa.
+	 */
+	public static ExecutorService poolPlataforma(String servico, int threads, int fila)
+	{
+		if (threads < 1 || fila < 1)
+		{
+			throw new IllegalArgumentException("Threads e fila devem ser positivos.");
+		}
+		AtomicInteger contador = new AtomicInteger();
+		ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+				new ArrayBlockingQueue<>(fila), tarefa -> {
+					Thread thread = new Thread(tarefa, "externo-" + servico + "-" + contador.incrementAndGet());
+					thread.setDaemon(true);
+					return thread;
+				});
+		pool.allowCoreThreadTimeOut(true);
+		return pool;
+	}
+
+	public <T> T executar(String operacao, Supplier<T> chamada)
+	{
+		if (!vagas.tryAcquire())
+		{
+			throw new ServicoExternoIndisponivelException(String.format(
+					"Serviço de %s sem vagas (%d chamadas em andamento).", servico, chamadasSimultaneas));
+		}
+		try
+		{
+			return circuito.executeCallable(() -> comTimeout(operacao, chamada));
+		}
+		catch (CallNotPermittedException e)
+		{
+			throw new ServicoExternoIndisponivelException(
+					String.format("Serviço de %s indisponível (circuito %s).", servico, circuito.getState()), e);
+		}
+		catch (RuntimeException e)
+		{
+			throw e;
+		}
+		catch (Exception e)
+		{
+			// comTimeout só lança exceções não verificadas
+			throw new IllegalStateException(e);
+		}
+		finally
+		{
+			vagas.release();
+		}
+	}
+
+	public Duration timeout(String operacao)
+	{
+		return timeouts.getOrDefault(operacao, timeoutPadrao);
+	}
+
+	public CircuitBreaker getCircuito()
+	{
+		return circuito;
+	}
+
+	@Override
+	public void close()
+	{
+		executor.shutdownNow();
+	}
+
+	private <T> T comTimeout(String operacao, Supplier<T> chamada)
+	{
+		Duration timeout = timeout(operacao);
+		Future<T> futuro;
+		try
+		{
+			futuro = executor.submit(chamada::get);
+		}
+		catch (RejectedExecutionException e)
+		{
+			throw new ServicoExternoIndisponivelException(
+					String.format("%s.%s recusada: threads presas em chamadas anteriores.", servico, operacao), e);
+		}
+		try
+		{
+			return futuro.get(timeout.toNanos(), TimeUnit.NANOSECONDS);
+		}
+		catch (TimeoutException e)
+		{
+			futuro.cancel(true);
+			throw new ServicoExternoIndisponivelException(
+					String.format("%s.%s não respondeu em %d ms.", servico, operacao, timeout.toMillis()), e);
+		}
+		catch (InterruptedException e)
+		{
+			futuro.cancel(true);
+			Thread.currentThread().interrupt();
+			throw new ServicoExternoIndisponivelException(
+					String.format("%s.%s interrompida.", servico, operacao), e);
+		}
+		catch (ExecutionException e)
+		{
+			// Mesma exceção que a chamada direta lançaria
+			if (e.getCause() instanceof RuntimeException causa)
+			{
+				throw causa;
+			}
+			if (e.getCause() instanceof Error erro)
+			{
+				throw erro;
+			}
+			throw new IllegalStateException(e.getCause());
+		}
+	}
+}
@@ -0,0 +1,320 @@
+package ecommerce.external.protecao;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import ecommerce.dto.BaixaEstoqueDTO;
+import ecommerce.dto.DisponibilidadeDTO;
+import ecommerce.dto.EstoqueBaixaDTO;
+import ecommerce.dto.ReservaDTO;
+import ecommerce.external.IEstoqueExternal;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * {@link IEstoqueExternal} que responde localmente as verificações de estoque que já sabe
+ * responder. Para cada produto, guarda uma faixa do disponível (pelo menos {@code minimo}, menos
+ * que {@code teto}) obtida de {@link IEstoqueExternal#consultarSaldos} ou das reservas recusadas:
+ * <ul>
+ * <li>pedido a partir do teto (produto esgotado, por exemplo) é recusado sem chamar o serviço,
+ * também em {@link #reservar}; vale por {@code validadeNegativa};</li>
+ * <li>pedido até {@code minimo - margem} é aprovado sem chamar o serviço; vale por
+ * {@code validadePositiva}, e só para saldos acima da margem;</li>
+ * <li>os demais produtos vão ao serviço.</li>
+ * </ul>
+ *
+ * A margem cobre o que outros nós e compras vendem enquanto a entrada vale. Baixas e reservas
+ * passam sempre pelo serviço, que continua decidindo a venda, e removem as entradas dos seus
+ * produtos. Reservas liberadas devolvem estoque sem remover entradas: um produto recusado pode
+ * continuar recusado localmente até {@code validadeNegativa}.
+ *
+ * Produto ausente da resposta de {@code consultarSaldos} é guardado como esgotado. Uma recusa local
+ * lista só os produtos que o cache já sabe que faltam.
+ */
+public class EstoqueComCacheDisponibilidade implements IEstoqueExternal
+{
+	public static final String METRICA_CONSULTAS = "compra.estoque.cache.consultas";
+	public static final String METRICA_LOCAIS = "compra.estoque.cache.locais";
+	public static final String METRICA_TAXA = "compra.estoque.cache.taxa-acertos";
+
+	/** Disponível de um produto: pelo menos {@code minimo} e menos que {@code teto}. */
+	private record Saldo(long minimo, long teto, Instant expiraEm)
+	{
+	}
+
+	private final IEstoqueExternal estoque;
+	private final long margem;
+	private final Duration validadePositiva;
+	private final Duration validadeNegativa;
+	private final Clock relogio;
+	private final Cache<Long, Saldo> saldos;
+
+	private final LongAdder consultas = new LongAdder();
+	private final LongAdder locais = new LongAdder();
+
+	/**
+	 * @param margem unidades descontadas do saldo guardado antes de aprovar localmente
+	 * @param validadePositiva validade de saldos acima da margem
+	 * @param validadeNegativa validade de saldos até a margem, inclusive esgotados
+	 * @param registry métricas; null para uso fora do Spring
+	 */
+	public EstoqueComCacheDisponibilidade(IEstoqueExternal estoque, long margem, Duration validadePositiva,
+			Duration validadeNegativa, long tamanhoMaximo, MeterRegistry registry)
+	{
+		this(estoque, margem, validadePositiva, validadeNegativa, tamanhoMaximo, registry, Clock.systemUTC());
+	}
+
+	EstoqueComCacheDisponibilidade(IEstoqueExternal estoque, long margem, Duration validadePositiva,
+			Duration validadeNegativa, long tamanhoMaximo, MeterRegistry registry, Clock relogio)
+	{
+		if (margem < 0)
+		{
+			throw new IllegalArgumentException("Margem do cache de estoque não pode ser negativa.");
+		}
+		this.estoque = estoque;
+		this.margem = margem;
+		this.validadePositiva = validadePositiva;
+		this.validadeNegativa = validadeNegativa;
+		this.relogio = relogio;
+		// Cada entrada tem sua validade; a expiração do Caffeine só libera a memória das vencidas
+		this.saldos = Caffeine.newBuilder()
+				.maximumSize(tamanhoMaximo)
+				.expireAfterWrite(validadePositiva.compareTo(validadeNegativa) > 0 ? validadePositiva : validadeNegativa)
+				.build();
+
+		if (registry != null)
+		{
+			FunctionCounter.builder(METRICA_CONSULTAS, consultas, LongAdder::sum)
+					.description("Verificações e reservas que passaram pelo cache de estoque")
+					.register(registry);
+			FunctionCounter.builder(METRICA_LOCAIS, locais, LongAdder::sum)
+					.description("Verificações e reservas respondidas sem chamar o serviço de estoque")
+					.register(registry);
+			Gauge.builder(METRICA_TAXA, this, EstoqueComCacheDisponibilidade::taxaAcertos)
+					.description("Fração das verificações e reservas respondidas localmente")
+					.register(registry);
+		}
+	}
+
+	@Override
+	public DisponibilidadeDTO verificarDisponibilidade(List<Long> produtosIds, List<Long> produtosQuantidades)
+	{
+		consultas.increment();
+		Map<Long, Long> quantidades = agrupar(produtosIds, produtosQuantidades);
+		Instant agora = relogio.instant();
+
+		List<Long> indisponiveis = new ArrayList<>();
+		List<Long> pendentes = new ArrayList<>();
+		quantidades.forEach((produtoId, quantidade) -> {
+			Boolean local = consultarLocal(produtoId, quantidade, agora);
+			if (local == null)
+			{
+				pendentes.add(produtoId);
+			}
+			else if (!local)
+			{
+				indisponiveis.add(produtoId);
+			}
+		});
+		if (!indisponiveis.isEmpty() || pendentes.isEmpty())
+		{
+			locais.increment();
+			return new DisponibilidadeDTO(indisponiveis.isEmpty(), indisponiveis);
+		}
+
+		indisponiveis.addAll(consultarServico(pendentes, quantidades));
+		return new DisponibilidadeDTO(indisponiveis.isEmpty(), indisponiveis);
+	}
+
+	@Override
+	public ReservaDTO reservar(List<Long> produtosIds, List<Long> produtosQuantidades, Duration validade)
+	{
+		consultas.increment();
+		Map<Long, Long> quantidades = agrupar(produtosIds, produtosQuantidades);
+		Instant agora = relogio.instant();
+
+		List<Long> esgotados = new ArrayList<>();
+		quantidades.forEach((produtoId, quantidade) -> {
+			if (Boolean.FALSE.equals(consultarLocal(produtoId, quantidade, agora)))
+			{
+				esgotados.add(produtoId);
+			}
+		});
+		if (!esgotados.isEmpty())
+		{
+			locais.increment();
+			return new ReservaDTO(false, null, esgotados);
+		}
+
+		ReservaDTO reserva = estoque.reservar(produtosIds, produtosQuantidades, validade);
+		if (reserva.reservado())
+		{
+			invalidar(quantidades.keySet());
+		}
+		else
+		{
+			for (Long produtoId : reserva.idsProdutosIndisponiveis())
+			{
+				Long quantidade = quantidades.get(produtoId);
+				if (quantidade != null)
+				{
+					guardar(produtoId, 0, quantidade, agora);
+				}
+			}
+		}
+		return reserva;
+	}
+
+	@Override
+	public EstoqueBaixaDTO darBaixa(List<Long> produtosIds, List<Long> produtosQuantidades)
+	{
+		try
+		{
+			return estoque.darBaixa(produtosIds, produtosQuantidades);
+		}
+		finally
+		{
+			invalidar(produtosIds);
+		}
+	}
+
+	@Override
+	public List<EstoqueBaixaDTO> darBaixaEmLote(List<BaixaEstoqueDTO> baixas)
+	{
+		try
+		{
+			return estoque.darBaixaEmLote(baixas);
+		}
+		finally
+		{
+			baixas.forEach(baixa -> invalidar(baixa.produtosIds()));
+		}
+	}
+
+	@Override
+	public Map<Long, Long> consultarSaldos(List<Long> produtosIds)
+	{
+		return estoque.consultarSaldos(produtosIds);
+	}
+
+	@Override
+	public EstoqueBaixaDTO confirmarReserva(Long reservaId)
+	{
+		return estoque.confirmarReserva(reservaId);
+	}
+
+	@Override
+	public void liberarReserva(Long reservaId)
+	{
+		estoque.liberarReserva(reservaId);
+	}
+
+	/** Fração das verificações e reservas respondidas sem chamar o serviço. */
+	public double taxaAcertos()
+	{
+		long total = consultas.sum();
+		return total == 0 ? 0 : (double) locais.sum() / total;
+	}
+
+	public long getConsultas()
+	{
+		return consultas.sum();
+	}
+
+	public long getLocais()
+	{
+		return locais.sum();
+	}
+
+	/** true ou false se o cache responde pelo produto; null se é preciso consultar o serviço. */
+	private Boolean consultarLocal(Long produtoId, long quantidade, Instant agora)
+	{
+		Saldo saldo = saldos.getIfPresent(produtoId);
+		if (saldo == null)
+		{
+			return null;
+		}
+		if (!saldo.expiraEm().isAfter(agora))
+		{
+			saldos.asMap().remove(produtoId, saldo);
+			return null;
+		}
+		if (quantidade >= saldo.teto())
+		{
+			return false;
+		}
+		if (quantidade <= saldo.minimo() - margem)
+		{
+			return true;
+		}
+		return null;
+	}
+
+	/** Consulta os saldos dos produtos pendentes no serviço, guarda-os e retorna os que faltam. */
+	private List<Long> consultarServico(List<Long> pendentes, Map<Long, Long> quantidades)
+	{
+		Instant agora = relogio.instant();
+		Map<Long, Long> disponiveis = estoque.consultarSaldos(pendentes);
+		List<Long> indisponiveis = new ArrayList<>();
+		for (Long produtoId : pendentes)
+		{
+			// Produto que o serviço não conhece: esgotado
+			Long saldo = disponiveis.get(produtoId);
+			long disponivel = saldo != null ? Math.max(0, saldo) : 0;
+			guardar(produtoId, disponivel, disponivel == Long.MAX_VALUE ? disponivel : disponivel + 1, agora);
+			if (quantidades.get(produtoId) > disponivel)
+			{
+				indisponiveis.add(produtoId);
+			}
+		}
+		return indisponiveis;
+	}
+
+	private void guardar(Long produtoId, long minimo, long teto, Instant agora)
+	{
+		boolean positiva = minimo > margem;
+		saldos.put(produtoId, new Saldo(minimo, teto, agora.plus(positiva ? validadePositiva : validadeNegativa)));
+	}
+
+	private void invalidar(Iterable<Long> produtosIds)
+	{
+		for (Long produtoId : produtosIds)
+		{
+			if (produtoId != null)
+			{
+				saldos.invalidate(produtoId);
+			}
+		}
+	}
+
+	/** Soma as quantidades de produtos repetidos, mantendo a ordem da primeira ocorrência. */
+	private static Map<Long, Long> agrupar(List<Long> produtosIds, List<Long> produtosQuantidades)
+	{
+		if (produtosIds.size() != produtosQuantidades.size())
+		{
+			throw new IllegalArgumentException("Listas de produtos e quantidades com tamanhos diferentes.");
+		}
+
+		Map<Long, Long> quantidades = new LinkedHashMap<>();
+		for (int i = 0; i < produtosIds.size(); i++)
+		{
+			Long quantidade = produtosQuantidades.get(i);
+			if (produtosIds.get(i) == null || quantidade == null || quantidade <= 0)
+			{
+				throw new IllegalArgumentException("Produto ou quantidade inválidos.");
+			}
+			quantidades.merge(produtosIds.get(i), quantidade, Long::sum);
+		}
+		return quantidades;
+	}
+}
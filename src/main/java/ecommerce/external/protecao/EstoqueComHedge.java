@@ -0,0 +1,401 @@
+package ecommerce.external.protecao;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import ecommerce.dto.BaixaEstoqueDTO;
+import ecommerce.dto.DisponibilidadeDTO;
+import ecommerce.dto.EstoqueBaixaDTO;
+import ecommerce.dto.ReservaDTO;
+import ecommerce.external.IEstoqueExternal;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * {@link IEstoqueExternal} que repete a consulta de disponibilidade quando ela demora: se a
+ * primeira chamada não respondeu até o percentil observado (p95 por padrão), dispara uma segunda
+ * e usa a que responder primeiro com sucesso. As demais operações alteram o estoque e passam
+ * direto, sem repetição.
+ *
+ * A reserva ({@link #reservar}), usada na finalização quando {@code compra.estoque.reserva.habilitada},
+ * também não é repetida: ela não é idempotente. Duas chamadas separariam o estoque duas vezes, e
+ * com o último item disputado a repetição seria recusada pela própria reserva original. Liberar a
+ * perdedora depois não resolve, porque até lá ela já recusou outras compras. Por isso o hedge só
+ * acelera a finalização com as reservas desligadas, que consulta a disponibilidade antes da baixa.
+ *
+ * As repetições saem de um orçamento: cada consulta credita {@code orcamento} de repetição (0,05 =
+ * no máximo 5% de chamadas a mais), acumulando até {@code rajada}; sem saldo, a consulta só espera
+ * a primeira chamada. A chamada perdedora não é interrompida e sua latência também entra na janela,
+ * para o percentil não ficar otimista.
+ *
+ * As chamadas rodam em no máximo {@code threads} threads, contando as perdedoras ainda em
+ * andamento. Com todas ocupadas, a consulta roda na thread de quem chamou, sem repetição, e a
+ * repetição que não encontra thread é negada como se faltasse orçamento.
+ */
+public class EstoqueComHedge implements IEstoqueExternal, AutoCloseable
+{
+	public static final String METRICA_CONSULTAS = "compra.estoque.hedge.consultas";
+	public static final String METRICA_DISPARADOS = "compra.estoque.hedge.disparados";
+	public static final String METRICA_NEGADOS = "compra.estoque.hedge.negados";
+	public static final String METRICA_VENCEDORES = "compra.estoque.hedge.vencedores";
+	public static final String METRICA_TAXA = "compra.estoque.hedge.taxa";
+	public static final String METRICA_ATRASO = "compra.estoque.hedge.atraso";
+	public static final String METRICA_GANHO = "compra.estoque.hedge.ganho";
+
+	/** Saldo do orçamento em milésimos de repetição. */
+	private static final long UNIDADE = 1000;
+
+	private final IEstoqueExternal estoque;
+	private final JanelaLatencias latencias;
+	private final long atrasoMinimoNanos;
+	private final long creditoPorConsulta;
+	private final long saldoMaximo;
+	private final AtomicLong saldo = new AtomicLong();
+	private final ExecutorService executor;
+
+	private final LongAdder consultas = new LongAdder();
+	private final LongAdder disparados = new LongAdder();
+	private final LongAdder negados = new LongAdder();
+	private final LongAdder vencedores = new LongAdder();
+	private final LongAdder ganhoNanos = new LongAdder();
+	private final Timer ganho;
+
+	/**
+	 * @param percentil percentil da latência a partir do qual a consulta é repetida (ex.: 0.95)
+	 * @param orcamento fração máxima de consultas repetidas (ex.: 0.05)
+	 * @param rajada repetições que podem ser acumuladas no orçamento
+	 * @param janela quantidade de latências recentes usadas no percentil
+	 * @param minimoAmostras latências necessárias antes da primeira repetição
+	 * @param atrasoMinimo espera mínima antes de repetir, mesmo com percentil menor
+	 * @param threads chamadas em andamento no máximo, originais e repetições
+	 * @param registry métricas; null para uso fora do Spring
+	 */
+	public EstoqueComHedge(IEstoqueExternal estoque, double percentil, double orcamento, int rajada, int janela,
+			int minimoAmostras, Duration atrasoMinimo, int threads, MeterRegistry registry)
+	{
+		if (orcamento < 0 || orcamento > 1 || rajada <= 0)
+		{
+			throw new IllegalArgumentException("Orçamento de repetições inválido.");
+		}
+		if (threads < 1)
+		{
+			throw new IllegalArgumentException("Threads do hedge deve ser positivo.");
+		}
+		this.estoque = estoque;
+		this.latencias = new JanelaLatencias(janela, percentil, minimoAmostras);
+		this.atrasoMinimoNanos = atrasoMinimo.toNanos();
+		this.creditoPorConsulta = Math.round(orcamento * UNIDADE);
+		this.saldoMaximo = rajada * UNIDADE;
+
+		AtomicInteger contador = new AtomicInteger();
+		ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+				new SynchronousQueue<>(), tarefa -> {
+					Thread thread = new Thread(tarefa, "estoque-hedge-" + contador.incrementAndGet());
+					thread.setDaemon(true);
+					return thread;
+				});
+		pool.allowCoreThreadTimeOut(true);
+		this.executor = pool;
+
+		if (registry != null)
+		{
+			FunctionCounter.builder(METRICA_CONSULTAS, consultas, LongAdder::sum)
+					.description("Consultas de disponibilidade com hedge")
+					.register(registry);
+			FunctionCounter.builder(METRICA_DISPARADOS, disparados, LongAdder::sum)
+					.description("Consultas repetidas por demorarem mais que o percentil")
+					.register(registry);
+			FunctionCounter.builder(METRICA_NEGADOS, negados, LongAdder::sum)
+					.description("Repetições não feitas por falta de orçamento ou de threads")
+					.register(registry);
+			FunctionCounter.builder(METRICA_VENCEDORES, vencedores, LongAdder::sum)
+					.description("Repetições que responderam antes da chamada original")
+					.register(registry);
+			Gauge.builder(METRICA_TAXA, this, EstoqueComHedge::taxaHedge)
+					.description("Fração das consultas que foram repetidas")
+					.register(registry);
+			Gauge.builder(METRICA_ATRASO, latencias, j -> j.percentilNanos() / 1_000_000.0)
+					.description("Espera atual antes de repetir, em ms (-1 antes do mínimo de amostras)")
+					.register(registry);
+			this.ganho = Timer.builder(METRICA_GANHO)
+					.description("Tempo economizado quando a repetição responde antes da chamada original")
+					.register(registry);
+		}
+		else
+		{
+			this.ganho = null;
+		}
+	}
+
+	@Override
+	public DisponibilidadeDTO verificarDisponibilidade(List<Long> produtosIds, List<Long> produtosQuantidades)
+	{
+		consultas.increment();
+		creditar();
+
+		CompletableFuture<DisponibilidadeDTO> original;
+		try
+		{
+			original = consultar(produtosIds, produtosQuantidades);
+		}
+		catch (RejectedExecutionException e)
+		{
+			// Todas as threads ocupadas: consulta aqui mesmo, sem repetição
+			negados.increment();
+			return medir(produtosIds, produtosQuantidades);
+		}
+		long percentil = latencias.percentilNanos();
+		if (percentil < 0)
+		{
+			return aguardar(original);
+		}
+
+		try
+		{
+			return original.get(Math.max(percentil, atrasoMinimoNanos), TimeUnit.NANOSECONDS);
+		}
+		catch (TimeoutException e)
+		{
+			// Demorou mais que o percentil: tenta repetir abaixo
+		}
+		catch (ExecutionException e)
+		{
+			throw desembrulhar(e.getCause());
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Consulta de disponibilidade interrompida.", e);
+		}
+
+		if (!debitar())
+		{
+			negados.increment();
+			return aguardar(original);
+		}
+
+		CompletableFuture<DisponibilidadeDTO> repeticao;
+		try
+		{
+			repeticao = consultar(produtosIds, produtosQuantidades);
+		}
+		catch (RejectedExecutionException e)
+		{
+			creditar(UNIDADE);
+			negados.increment();
+			return aguardar(original);
+		}
+		disparados.increment();
+		repeticao.thenAccept(resposta -> {
+			if (!original.isDone())
+			{
+				vencedores.increment();
+				long respondeuEm = System.nanoTime();
+				original.thenAccept(r -> registrarGanho(System.nanoTime() - respondeuEm));
+			}
+		});
+		return aguardar(primeiraComSucesso(original, repeticao));
+	}
+
+	@Override
+	public EstoqueBaixaDTO darBaixa(List<Long> produtosIds, List<Long> produtosQuantidades)
+	{
+		return estoque.darBaixa(produtosIds, produtosQuantidades);
+	}
+
+	@Override
+	public List<EstoqueBaixaDTO> darBaixaEmLote(List<BaixaEstoqueDTO> baixas)
+	{
+		return estoque.darBaixaEmLote(baixas);
+	}
+
+	@Override
+	public Map<Long, Long> consultarSaldos(List<Long> produtosIds)
+	{
+		return estoque.consultarSaldos(produtosIds);
+	}
+
+	@Override
+	public ReservaDTO reservar(List<Long> produtosIds, List<Long> produtosQuantidades, Duration validade)
+	{
+		return estoque.reservar(produtosIds, produtosQuantidades, validade);
+	}
+
+	@Override
+	public EstoqueBaixaDTO confirmarReserva(Long reservaId)
+	{
+		return estoque.confirmarReserva(reservaId);
+	}
+
+	@Override
+	public void liberarReserva(Long reservaId)
+	{
+		estoque.liberarReserva(reservaId);
+	}
+
+	/** Fração das consultas que foram repetidas. */
+	public double taxaHedge()
+	{
+		long total = consultas.sum();
+		return total == 0 ? 0 : (double) disparados.sum() / total;
+	}
+
+	public long getDisparados()
+	{
+		return disparados.sum();
+	}
+
+	public long getNegados()
+	{
+		return negados.sum();
+	}
+
+	public long getVencedores()
+	{
+		return vencedores.sum();
+	}
+
+	/** Soma do tempo economizado pelas repetições vencedoras. */
+	public Duration getGanhoTotal()
+	{
+		return Duration.ofNanos(ganhoNanos.sum());
+	}
+
+	/** Espera atual antes de repetir, ou null antes do mínimo de amostras. */
+	public Duration getAtraso()
+	{
+		long percentil = latencias.percentilNanos();
+		return percentil < 0 ? null : Duration.ofNanos(Math.max(percentil, atrasoMinimoNanos));
+	}
+
+	@Override
+	public void close()
+	{
+		executor.shutdownNow();
+	}
+
+	/** @throws RejectedExecutionException se todas as threads estiverem ocupadas */
+	private CompletableFuture<DisponibilidadeDTO> consultar(List<Long> produtosIds, List<Long> produtosQuantidades)
+	{
+		return CompletableFuture.supplyAsync(() -> medir(produtosIds, produtosQuantidades), executor);
+	}
+
+	private DisponibilidadeDTO medir(List<Long> produtosIds, List<Long> produtosQuantidades)
+	{
+		long inicio = System.nanoTime();
+		try
+		{
+			return estoque.verificarDisponibilidade(produtosIds, produtosQuantidades);
+		}
+		finally
+		{
+			latencias.registrar(System.nanoTime() - inicio);
+		}
+	}
+
+	/** Conclui com a primeira resposta com sucesso, ou com o erro da última se ambas falharem. */
+	private static CompletableFuture<DisponibilidadeDTO> primeiraComSucesso(
+			CompletableFuture<DisponibilidadeDTO> original, CompletableFuture<DisponibilidadeDTO> repeticao)
+	{
+		CompletableFuture<DisponibilidadeDTO> resultado = new CompletableFuture<>();
+		AtomicInteger falhas = new AtomicInteger();
+		for (CompletableFuture<DisponibilidadeDTO> chamada : List.of(original, repeticao))
+		{
+			chamada.whenComplete((resposta, erro) -> {
+				if (erro == null)
+				{
+					resultado.complete(resposta);
+				}
+				else if (falhas.incrementAndGet() == 2)
+				{
+					resultado.completeExceptionally(erro);
+				}
+			});
+		}
+		return resultado;
+	}
+
+	private void creditar()
+	{
+		creditar(creditoPorConsulta);
+	}
+
+	private void creditar(long credito)
+	{
+		saldo.accumulateAndGet(credito, (atual, valor) -> Math.min(saldoMaximo, atual + valor));
+	}
+
+	private boolean debitar()
+	{
+		long atual;
+		do
+		{
+			atual = saldo.get();
+			if (atual < UNIDADE)
+			{
+				return false;
+			}
+		}
+		while (!saldo.compareAndSet(atual, atual - UNIDADE));
+		return true;
+	}
+
+	private void registrarGanho(long nanos)
+	{
+		ganhoNanos.add(nanos);
+		if (ganho != null)
+		{
+			ganho.record(nanos, TimeUnit.NANOSECONDS);
+		}
+	}
+
+	private static DisponibilidadeDTO aguardar(CompletableFuture<DisponibilidadeDTO> consulta)
+	{
+		try
+		{
+			return consulta.get();
+		}
+		catch (ExecutionException e)
+		{
+			throw desembrulhar(e.getCause());
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Consulta de disponibilidade interrompida.", e);
+		}
+	}
+
+	/** Mesma exceção que a chamada direta lançaria. */
+	private static RuntimeException desembrulhar(Throwable causa)
+	{
+		if (causa instanceof CompletionException && causa.getCause() != null)
+		{
+			causa = causa.getCause();
+		}
+		if (causa instanceof RuntimeException runtime)
+		{
+			return runtime;
+		}
+		if (causa instanceof Error erro)
+		{
+			throw erro;
+		}
+		return new IllegalStateException(causa);
+	}
+}
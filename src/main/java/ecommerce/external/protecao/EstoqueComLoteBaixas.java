@@ -0,0 +1,307 @@
+package ecommerce.external.protecao;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import ecommerce.dto.BaixaEstoqueDTO;
+import ecommerce.dto.DisponibilidadeDTO;
+import ecommerce.dto.EstoqueBaixaDTO;
+import ecommerce.dto.ReservaDTO;
+import ecommerce.external.IEstoqueExternal;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * {@link IEstoqueExternal} que junta as baixas de compras simultâneas em uma única chamada
+ * {@link IEstoqueExternal#darBaixaEmLote}: o lote sai quando completa {@code tamanhoMaximo}
+ * pedidos ou quando a primeira baixa dele já esperou {@code janela}. Cada compra recebe o
+ * resultado do seu próprio pedido, então a compensação de {@code finalizarCompra} continua por
+ * compra; se a chamada em lote falha, todas as compras do lote recebem a mesma exceção.
+ *
+ * No máximo {@code enviosSimultaneos} lotes ficam em voo; enquanto isso as baixas se acumulam e o
+ * próximo lote sai maior. A espera de cada compra é limitada pelo timeout da chamada em lote, por
+ * isso este decorador fica por fora do {@link EstoqueExternoProtegido}. As demais operações passam
+ * direto, inclusive {@link #confirmarReserva}: o serviço não tem confirmação em lote, e a
+ * confirmação só efetiva o que a reserva já separou.
+ */
+public class EstoqueComLoteBaixas implements IEstoqueExternal, AutoCloseable
+{
+	public static final String METRICA_TAMANHO = "compra.estoque.lote.tamanho";
+	public static final String METRICA_FILA = "compra.estoque.lote.fila";
+
+	private static final Logger log = LoggerFactory.getLogger(EstoqueComLoteBaixas.class);
+
+	private record Pendente(BaixaEstoqueDTO baixa, CompletableFuture<EstoqueBaixaDTO> resultado, long chegada)
+	{
+	}
+
+	private final IEstoqueExternal estoque;
+	private final long janelaNanos;
+	private final int tamanhoMaximo;
+	private final BlockingQueue<Pendente> fila = new LinkedBlockingQueue<>();
+	private final Semaphore envios;
+	private final ExecutorService executor;
+	private final Thread coletor;
+	private final DistributionSummary tamanhos;
+	private volatile boolean fechado;
+
+	/**
+	 * @param janela espera máxima da primeira baixa de um lote antes do envio
+	 * @param tamanhoMaximo pedidos por chamada em lote
+	 * @param enviosSimultaneos lotes em voo ao mesmo tempo
+	 * @param registry métricas; null para uso fora do Spring
+	 */
+	public EstoqueComLoteBaixas(IEstoqueExternal estoque, Duration janela, int tamanhoMaximo, int enviosSimultaneos,
+			MeterRegistry registry)
+	{
+		if (tamanhoMaximo <= 0 || enviosSimultaneos <= 0)
+		{
+			throw new IllegalArgumentException("Tamanho do lote e envios simultâneos devem ser positivos.");
+		}
+		this.estoque = estoque;
+		this.janelaNanos = janela.toNanos();
+		this.tamanhoMaximo = tamanhoMaximo;
+		this.envios = new Semaphore(enviosSimultaneos);
+
+		AtomicInteger contador = new AtomicInteger();
+		this.executor = Executors.newFixedThreadPool(enviosSimultaneos, tarefa -> {
+			Thread thread = new Thread(tarefa, "estoque-lote-" + contador.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		});
+
+		if (registry != null)
+		{
+			this.tamanhos = DistributionSummary.builder(METRICA_TAMANHO)
+					.description("Baixas por chamada em lote ao serviço de estoque")
+					.register(registry);
+			Gauge.builder(METRICA_FILA, fila, BlockingQueue::size)
+					.description("Baixas esperando a formação de um lote")
+					.register(registry);
+		}
+		else
+		{
+			this.tamanhos = null;
+		}
+
+		this.coletor = new Thread(this::coletar, "estoque-lote-coletor");
+		this.coletor.setDaemon(true);
+		this.coletor.start();
+	}
+
+	@Override
+	public EstoqueBaixaDTO darBaixa(List<Long> produtosIds, List<Long> produtosQuantidades)
+	{
+		if (fechado)
+		{
+			return estoque.darBaixa(produtosIds, produtosQuantidades);
+		}
+
+		Pendente pendente = new Pendente(new BaixaEstoqueDTO(List.copyOf(produtosIds), List.copyOf(produtosQuantidades)),
+				new CompletableFuture<>(), System.nanoTime());
+		fila.add(pendente);
+		// Fechado depois de entrar na fila: se close() não a levou, a baixa vai direto
+		if (fechado && fila.remove(pendente))
+		{
+			return estoque.darBaixa(produtosIds, produtosQuantidades);
+		}
+		return aguardar(pendente.resultado());
+	}
+
+	@Override
+	public List<EstoqueBaixaDTO> darBaixaEmLote(List<BaixaEstoqueDTO> baixas)
+	{
+		return estoque.darBaixaEmLote(baixas);
+	}
+
+	@Override
+	public DisponibilidadeDTO verificarDisponibilidade(List<Long> produtosIds, List<Long> produtosQuantidades)
+	{
+		return estoque.verificarDisponibilidade(produtosIds, produtosQuantidades);
+	}
+
+	@Override
+	public Map<Long, Long> consultarSaldos(List<Long> produtosIds)
+	{
+		return estoque.consultarSaldos(produtosIds);
+	}
+
+	@Override
+	public ReservaDTO reservar(List<Long> produtosIds, List<Long> produtosQuantidades, Duration validade)
+	{
+		return estoque.reservar(produtosIds, produtosQuantidades, validade);
+	}
+
+	@Override
+	public EstoqueBaixaDTO confirmarReserva(Long reservaId)
+	{
+		return estoque.confirmarReserva(reservaId);
+	}
+
+	@Override
+	public void liberarReserva(Long reservaId)
+	{
+		estoque.liberarReserva(reservaId);
+	}
+
+	/**
+	 * Para de formar lotes e envia as baixas que ainda estavam na fila. O estoque decorado não é
+	 * encerrado: ele pertence a quem montou a cadeia ({@code CadeiaDecoradores}).
+	 */
+	@Override
+	public void close() throws Exception
+	{
+		fechado = true;
+		coletor.interrupt();
+		coletor.join(TimeUnit.SECONDS.toMillis(5));
+		executor.shutdown();
+		executor.awaitTermination(5, TimeUnit.SECONDS);
+
+		List<Pendente> restantes = new ArrayList<>();
+		fila.drainTo(restantes);
+		if (!restantes.isEmpty())
+		{
+			enviar(restantes);
+		}
+	}
+
+	private void coletar()
+	{
+		while (!fechado)
+		{
+			try
+			{
+				envios.acquire();
+			}
+			catch (InterruptedException e)
+			{
+				return;
+			}
+
+			List<Pendente> lote = formarLote();
+			if (lote.isEmpty())
+			{
+				envios.release();
+				continue;
+			}
+			try
+			{
+				executor.execute(() -> {
+					try
+					{
+						enviar(lote);
+					}
+					finally
+					{
+						envios.release();
+					}
+				});
+			}
+			catch (RuntimeException e)
+			{
+				// Executor já encerrado: envia aqui mesmo para nenhuma compra ficar sem resposta
+				envios.release();
+				enviar(lote);
+			}
+		}
+	}
+
+	/** Espera a primeira baixa e junta as que chegarem até a janela dela vencer ou o lote encher. */
+	private List<Pendente> formarLote()
+	{
+		List<Pendente> lote = new ArrayList<>();
+		try
+		{
+			Pendente primeira = fila.take();
+			lote.add(primeira);
+			long limite = primeira.chegada() + janelaNanos;
+			while (lote.size() < tamanhoMaximo)
+			{
+				long restante = limite - System.nanoTime();
+				Pendente proxima = restante > 0 ? fila.poll(restante, TimeUnit.NANOSECONDS) : fila.poll();
+				if (proxima == null)
+				{
+					break;
+				}
+				lote.add(proxima);
+			}
+		}
+		catch (InterruptedException e)
+		{
+			// close(): o que já foi retirado da fila sai neste lote
+			Thread.currentThread().interrupt();
+		}
+		return lote;
+	}
+
+	private void enviar(List<Pendente> lote)
+	{
+		List<BaixaEstoqueDTO> baixas = new ArrayList<>(lote.size());
+		for (Pendente pendente : lote)
+		{
+			baixas.add(pendente.baixa());
+		}
+
+		List<EstoqueBaixaDTO> resultados;
+		try
+		{
+			resultados = estoque.darBaixaEmLote(baixas);
+			if (resultados == null || resultados.size() != lote.size())
+			{
+				throw new IllegalStateException(String.format("Lote de %d baixas respondido com %s resultados.",
+						lote.size(), resultados == null ? "nenhum" : resultados.size()));
+			}
+		}
+		catch (RuntimeException | Error e)
+		{
+			log.warn("Falha na baixa em lote de {} pedidos: {}", lote.size(), e.toString());
+			lote.forEach(pendente -> pendente.resultado().completeExceptionally(e));
+			return;
+		}
+
+		if (tamanhos != null)
+		{
+			tamanhos.record(lote.size());
+		}
+		for (int i = 0; i < lote.size(); i++)
+		{
+			lote.get(i).resultado().complete(resultados.get(i));
+		}
+	}
+
+	private static EstoqueBaixaDTO aguardar(CompletableFuture<EstoqueBaixaDTO> resultado)
+	{
+		try
+		{
+			return resultado.join();
+		}
+		catch (CompletionException e)
+		{
+			// Mesma exceção da chamada em lote
+			if (e.getCause() instanceof RuntimeException causa)
+			{
+				throw causa;
+			}
+			if (e.getCause() instanceof Error erro)
+			{
+				throw erro;
+			}
+			throw e;
+		}
+	}
+}
@@ -0,0 +1,79 @@
+package ecommerce.external.protecao;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+import ecommerce.dto.BaixaEstoqueDTO;
+import ecommerce.dto.DisponibilidadeDTO;
+import ecommerce.dto.EstoqueBaixaDTO;
+import ecommerce.dto.ReservaDTO;
+import ecommerce.external.IEstoqueExternal;
+
+/** {@link IEstoqueExternal} com timeout por operação e circuit breaker (ver {@link ChamadasProtegidas}). */
+public class EstoqueExternoProtegido implements IEstoqueExternal, AutoCloseable
+{
+	public static final List<String> OPERACOES = List.of("darBaixa", "darBaixaEmLote", "verificarDisponibilidade",
+			"consultarSaldos", "reservar", "confirmarReserva", "liberarReserva");
+
+	private final IEstoqueExternal estoque;
+	private final ChamadasProtegidas chamadas;
+
+	public EstoqueExternoProtegido(IEstoqueExternal estoque, ChamadasProtegidas chamadas)
+	{
+		this.estoque = estoque;
+		this.chamadas = chamadas;
+	}
+
+	@Override
+	public EstoqueBaixaDTO darBaixa(List<Long> produtosIds, List<Long> produtosQuantidades)
+	{
+		return chamadas.executar("darBaixa", () -> estoque.darBaixa(produtosIds, produtosQuantidades));
+	}
+
+	@Override
+	public List<EstoqueBaixaDTO> darBaixaEmLote(List<BaixaEstoqueDTO> baixas)
+	{
+		return chamadas.executar("darBaixaEmLote", () -> estoque.darBaixaEmLote(baixas));
+	}
+
+	@Override
+	public DisponibilidadeDTO verificarDisponibilidade(List<Long> produtosIds, List<Long> produtosQuantidades)
+	{
+		return chamadas.executar("verificarDisponibilidade",
+				() -> estoque.verificarDisponibilidade(produtosIds, produtosQuantidades));
+	}
+
+	@Override
+	public Map<Long, Long> consultarSaldos(List<Long> produtosIds)
+	{
+		return chamadas.executar("consultarSaldos", () -> estoque.consultarSaldos(produtosIds));
+	}
+
+	@Override
+	public ReservaDTO reservar(List<Long> produtosIds, List<Long> produtosQuantidades, Duration validade)
+	{
+		return chamadas.executar("reservar", () -> estoque.reservar(produtosIds, produtosQuantidades, validade));
+	}
+
+	@Override
+	public EstoqueBaixaDTO confirmarReserva(Long reservaId)
+	{
+		return chamadas.executar("confirmarReserva", () -> estoque.confirmarReserva(reservaId));
+	}
+
+	@Override
+	public void liberarReserva(Long reservaId)
+	{
+		chamadas.executar("liberarReserva", () -> {
+			estoque.liberarReserva(reservaId);
+			return null;
+		});
+	}
+
+	@Override
+	public void close()
+	{
+		chamadas.close();
+	}
+}
@@ -0,0 +1,16 @@
+package ecommerce.external.protecao;
+
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Cria o executor em que {@link ChamadasProtegidas} roda as chamadas de um serviço externo. Sem um
+ * bean deste tipo, cada serviço usa um pool limitado de threads de plataforma
+ * ({@link ChamadasProtegidas#poolPlataforma}); com threads virtuais, cada chamada ganha a sua.
+ *
+ * O executor criado passa a ser de {@link ChamadasProtegidas}, que o encerra ao fechar.
+ */
+@FunctionalInterface
+public interface ExecutoresChamadasExternas
+{
+	ExecutorService criar(String servico);
+}
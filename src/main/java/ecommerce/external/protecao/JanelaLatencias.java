@@ -0,0 +1,60 @@
+package ecommerce.external.protecao;
+
+import java.util.Arrays;
+
+/**
+ * Últimas latências observadas e um percentil delas. O percentil é recalculado a cada
+ * {@code recalcularACada} amostras, não a cada leitura, então ler custa só um campo volátil.
+ */
+class JanelaLatencias
+{
+	private final long[] amostras;
+	private final double percentil;
+	private final int minimoAmostras;
+	private final int recalcularACada;
+
+	private int proxima;
+	private int quantidade;
+	private int desdeUltimoCalculo;
+	private volatile long percentilNanos = -1;
+
+	/**
+	 * @param percentil entre 0 e 1 (ex.: 0.95)
+	 */
+	JanelaLatencias(int tamanho, double percentil, int minimoAmostras)
+	{
+		if (tamanho <= 0 || percentil <= 0 || percentil > 1 || minimoAmostras <= 0 || minimoAmostras > tamanho)
+		{
+			throw new IllegalArgumentException("Janela de latências inválida.");
+		}
+		this.amostras = new long[tamanho];
+		this.percentil = percentil;
+		this.minimoAmostras = minimoAmostras;
+		this.recalcularACada = Math.max(1, tamanho / 10);
+	}
+
+	synchronized void registrar(long nanos)
+	{
+		amostras[proxima] = nanos;
+		proxima = (proxima + 1) % amostras.length;
+		if (quantidade < amostras.length)
+		{
+			quantidade++;
+		}
+
+		desdeUltimoCalculo++;
+		if (quantidade >= minimoAmostras && (percentilNanos < 0 || desdeUltimoCalculo >= recalcularACada))
+		{
+			long[] ordenadas = Arrays.copyOf(amostras, quantidade);
+			Arrays.sort(ordenadas);
+			percentilNanos = ordenadas[(int) Math.ceil(percentil * quantidade) - 1];
+			desdeUltimoCalculo = 0;
+		}
+	}
+
+	/** Percentil das amostras atuais, ou -1 com menos de {@code minimoAmostras}. */
+	long percentilNanos()
+	{
+		return percentilNanos;
+	}
+}
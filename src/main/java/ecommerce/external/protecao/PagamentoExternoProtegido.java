@@ -0,0 +1,46 @@
+package ecommerce.external.protecao;
+
+import java.util.List;
+
+import ecommerce.dto.PagamentoDTO;
+import ecommerce.external.IPagamentoExternal;
+
+/**
+ * {@link IPagamentoExternal} com timeout por operação e circuit breaker (ver
+ * {@link ChamadasProtegidas}). Um timeout em autorizarPagamento não garante que o pagamento não
+ * foi autorizado do outro lado.
+ */
+public class PagamentoExternoProtegido implements IPagamentoExternal, AutoCloseable
+{
+	public static final List<String> OPERACOES = List.of("autorizarPagamento", "cancelarPagamento");
+
+	private final IPagamentoExternal pagamento;
+	private final ChamadasProtegidas chamadas;
+
+	public PagamentoExternoProtegido(IPagamentoExternal pagamento, ChamadasProtegidas chamadas)
+	{
+		this.pagamento = pagamento;
+		this.chamadas = chamadas;
+	}
+
+	@Override
+	public PagamentoDTO autorizarPagamento(Long clienteId, Double custoTotal)
+	{
+		return chamadas.executar("autorizarPagamento", () -> pagamento.autorizarPagamento(clienteId, custoTotal));
+	}
+
+	@Override
+	public void cancelarPagamento(Long clienteId, Long pagamentoTransacaoId)
+	{
+		chamadas.executar("cancelarPagamento", () -> {
+			pagamento.cancelarPagamento(clienteId, pagamentoTransacaoId);
+			return null;
+		});
+	}
+
+	@Override
+	public void close()
+	{
+		chamadas.close();
+	}
+}
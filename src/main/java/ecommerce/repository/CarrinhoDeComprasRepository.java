@@ -1,8 +1,12 @@
 package ecommerce.repository;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import ecommerce.entity.CarrinhoDeCompras;
@@ -13,4 +17,14 @@ public interface CarrinhoDeComprasRepository extends JpaRepository<CarrinhoDeCom
 {
 
 	Optional<CarrinhoDeCompras> findByIdAndCliente(Long id, Cliente cliente);
+
+	/** Carrega o carrinho com itens e produtos, para ser usado depois de encerrada a transação. */
+	@Query("select distinct c from CarrinhoDeCompras c left join fetch c.itens i left join fetch i.produto "
+			+ "where c.id = :id and c.cliente = :cliente")
+	Optional<CarrinhoDeCompras> findComItensByIdAndCliente(@Param("id") Long id, @Param("cliente") Cliente cliente);
+
+	/** Carrega os carrinhos com cliente, itens e produtos em uma única consulta. */
+	@Query("select distinct c from CarrinhoDeCompras c join fetch c.cliente left join fetch c.itens i "
+			+ "left join fetch i.produto where c.id in :ids")
+	List<CarrinhoDeCompras> findAllComItensByIdIn(@Param("ids") Collection<Long> ids);
 }
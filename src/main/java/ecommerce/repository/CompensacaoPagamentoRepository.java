@@ -0,0 +1,39 @@
+package ecommerce.repository;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import ecommerce.entity.CompensacaoPagamento;
+import ecommerce.entity.SituacaoCompensacao;
+
+@Repository
+public interface CompensacaoPagamentoRepository extends JpaRepository<CompensacaoPagamento, Long>
+{
+
+	boolean existsByTransacaoId(Long transacaoId);
+
+	/** Usa o índice (situacao, proxima_tentativa). */
+	List<CompensacaoPagamento> findBySituacaoInAndProximaTentativaLessThanEqualOrderByProximaTentativa(
+			Collection<SituacaoCompensacao> situacoes, Instant agora, Pageable pagina);
+
+	/**
+	 * Passa a compensação para {@code emEnvio} até {@code arrendadaAte}, se ela ainda estiver em uma
+	 * das situações e vencida: de dois despachantes que a leram, só um altera a linha.
+	 */
+	@Transactional
+	@Modifying
+	@Query("update CompensacaoPagamento c set c.situacao = :emEnvio, c.proximaTentativa = :arrendadaAte "
+			+ "where c.id = :id and c.situacao in :situacoes and c.proximaTentativa <= :agora")
+	int reivindicar(@Param("id") Long id, @Param("situacoes") Collection<SituacaoCompensacao> situacoes,
+			@Param("agora") Instant agora, @Param("emEnvio") SituacaoCompensacao emEnvio,
+			@Param("arrendadaAte") Instant arrendadaAte);
+}
@@ -0,0 +1,38 @@
+package ecommerce.repository;
+
+import java.time.Instant;
+import java.util.Optional;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import ecommerce.entity.RespostaIdempotente;
+import ecommerce.entity.SituacaoRespostaIdempotente;
+
+@Repository
+public interface RespostaIdempotenteRepository extends JpaRepository<RespostaIdempotente, Long>
+{
+
+	Optional<RespostaIdempotente> findByChaveAndExpiraEmAfter(String chave, Instant agora);
+
+	Optional<RespostaIdempotente> findByChave(String chave);
+
+	@Transactional
+	@Modifying
+	@Query("delete from RespostaIdempotente r where r.expiraEm <= :agora")
+	int excluirExpiradas(@Param("agora") Instant agora);
+
+	@Transactional
+	@Modifying
+	@Query("delete from RespostaIdempotente r where r.chave = :chave and r.expiraEm <= :agora")
+	int excluirExpirada(@Param("chave") String chave, @Param("agora") Instant agora);
+
+	@Transactional
+	@Modifying
+	@Query("delete from RespostaIdempotente r where r.chave = :chave and r.situacao = :situacao")
+	int excluirPorSituacao(@Param("chave") String chave, @Param("situacao") SituacaoRespostaIdempotente situacao);
+}
@@ -0,0 +1,82 @@
+package ecommerce.service;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+
+/**
+ * Cache de cotações na frente de {@link CompraService#calcularCustoTotal}, com limite de tamanho
+ * e expiração após a escrita.
+ *
+ * A chave ({@link ChaveCotacao}) são os totais mantidos pelo carrinho, a região e o tipo do
+ * cliente e a geração das faixas, então alterar um produto ou recarregar as faixas gera chaves
+ * novas e as cotações antigas deixam de ser usadas, sem invalidação: saem pelo limite de tamanho
+ * ou pela expiração. Acertos, falhas e remoções ficam em
+ * {@code /actuator/metrics/cache.gets?tag=cache:cotacoes}.
+ */
+@Component
+@ConditionalOnProperty(name = "compra.cotacao.cache.habilitado", havingValue = "true", matchIfMissing = true)
+public class CacheCotacoes
+{
+	public static final String NOME = "cotacoes";
+
+	private final Cache<ChaveCotacao, BigDecimal> cache;
+
+	/** Cache sem métricas, para uso fora do Spring. */
+	public CacheCotacoes(long tamanhoMaximo, Duration expiracao)
+	{
+		this.cache = Caffeine.newBuilder()
+				.maximumSize(tamanhoMaximo)
+				.expireAfterWrite(expiracao)
+				.recordStats()
+				.build();
+	}
+
+	@Autowired
+	public CacheCotacoes(@Value("${compra.cotacao.cache.tamanho-maximo:10000}") long tamanhoMaximo,
+			@Value("${compra.cotacao.cache.expiracao:5m}") Duration expiracao, MeterRegistry registry)
+	{
+		this(tamanhoMaximo, expiracao);
+		CaffeineCacheMetrics.monitor(registry, cache, NOME);
+	}
+
+	/**
+	 * Retorna a cotação cacheada ou calcula e guarda o resultado; só nesse caso os totais da chave
+	 * são copiados. Chamadas simultâneas com a mesma chave esperam o mesmo cálculo. Exceções do
+	 * cálculo são repassadas e nada é guardado.
+	 */
+	BigDecimal obter(ChaveCotacao chave, Supplier<BigDecimal> calculo)
+	{
+		return cache.get(chave, guardada -> {
+			guardada.fixar();
+			return calculo.get();
+		});
+	}
+
+	public void invalidarTudo()
+	{
+		cache.invalidateAll();
+	}
+
+	public CacheStats estatisticas()
+	{
+		return cache.stats();
+	}
+
+	public long tamanho()
+	{
+		return cache.estimatedSize();
+	}
+}
@@ -0,0 +1,163 @@
+package ecommerce.service;
+
+import java.math.BigDecimal;
+
+import ecommerce.entity.CarrinhoDeCompras;
+import ecommerce.entity.Regiao;
+import ecommerce.entity.TipoCliente;
+import ecommerce.entity.TipoProduto;
+import ecommerce.entity.TotaisCarrinho;
+
+/**
+ * Calcula o custo total do carrinho em ponto fixo, a partir dos {@link TotaisCarrinho} mantidos
+ * pelo carrinho (sem percorrer os itens).
+ *
+ * Produz exatamente o mesmo valor que o cálculo em {@link BigDecimal} de {@link CompraService}:
+ * cada etapa trabalha em uma escala inteira grande o bastante para não perder casas decimais,
+ * e só o resultado final é arredondado (HALF_UP, 2 casas). Quando algum total do carrinho ou
+ * das faixas não cabe nessas escalas (ex.: subtotal com mais de 2 casas) ou há estouro de
+ * {@code long}, retorna {@link #NAO_REPRESENTAVEL} e o chamador deve usar o cálculo em
+ * {@link BigDecimal}.
+ *
+ * Unidades usadas:
+ * - preço: centavos (10^-2 R$);
+ * - peso: gramas (10^-3 kg), a partir do peso tributável total;
+ * - percentuais e multiplicadores: milésimos, conforme {@link TabelaFaixas}.
+ */
+public class CalculadoraCustoCentavos
+{
+	/** Indica que o carrinho não pode ser calculado em ponto fixo sem perda de precisão. */
+	public static final long NAO_REPRESENTAVEL = Long.MIN_VALUE;
+
+	private static final TipoProduto[] TIPOS = TipoProduto.values();
+
+	/** Taxa de manuseio de produto frágil, em 10^-5 R$. */
+	private static final long TAXA_FRAGIL_POR_ITEM = 500_000L;
+
+	/** Divisor de 10^-9 R$ para centavos. */
+	private static final long DIVISOR_CENTAVOS = 10_000_000L;
+
+	/**
+	 * Calcula o custo total do carrinho em centavos.
+	 *
+	 * @return custo total em centavos, ou {@link #NAO_REPRESENTAVEL}
+	 * @throws IllegalArgumentException se algum item tiver quantidade, peso ou preço inválidos
+	 */
+	public long calcularCustoTotal(CarrinhoDeCompras carrinho, Regiao regiao, TipoCliente tipoCliente,
+			TabelaFaixas faixas)
+	{
+		return calcularCustoTotal(carrinho.getTotais(), regiao, tipoCliente, faixas);
+	}
+
+	/**
+	 * Calcula o custo total em centavos a partir dos totais mantidos pelo carrinho.
+	 *
+	 * @return custo total em centavos, ou {@link #NAO_REPRESENTAVEL}
+	 * @throws IllegalArgumentException se algum item tiver quantidade, peso ou preço inválidos
+	 */
+	public long calcularCustoTotal(TotaisCarrinho totais, Regiao regiao, TipoCliente tipoCliente,
+			TabelaFaixas faixas)
+	{
+		try
+		{
+			return calcular(totais, regiao, tipoCliente, faixas);
+		}
+		catch (ArithmeticException e)
+		{
+			// Estouro de long ou valor com casas demais
+			return NAO_REPRESENTAVEL;
+		}
+	}
+
+	private long calcular(TotaisCarrinho totais, Regiao regiao, TipoCliente tipoCliente, TabelaFaixas faixas)
+	{
+		if (totais.getQuantidadeItensInvalidos() > 0)
+		{
+			throw new IllegalArgumentException();
+		}
+		if (!faixas.isRepresentavelEmPontoFixo())
+		{
+			return NAO_REPRESENTAVEL;
+		}
+
+		long[] subtotalPorTipo = new long[TIPOS.length];
+		long[] quantidadePorTipo = new long[TIPOS.length];
+		for (TipoProduto tipo : TIPOS)
+		{
+			subtotalPorTipo[tipo.ordinal()] = escalar(totais.getSubtotal(tipo), 2);
+			quantidadePorTipo[tipo.ordinal()] = totais.getQuantidade(tipo);
+		}
+
+		return calcularCustoTotal(escalar(totais.getSubtotal(), 2), subtotalPorTipo, quantidadePorTipo,
+				escalar(totais.getPesoTributavelTotal(), 3), totais.getQuantidadeFrageis(), regiao, tipoCliente,
+				faixas);
+	}
+
+	/**
+	 * Aplica descontos e frete sobre os totais já acumulados do carrinho.
+	 *
+	 * @param subtotal subtotal dos itens em centavos
+	 * @param subtotalPorTipo subtotal em centavos, indexado pelo ordinal de {@link TipoProduto}
+	 * @param quantidadePorTipo quantidade, indexada pelo ordinal de {@link TipoProduto}
+	 * @param pesoTotal peso tributável total em gramas
+	 * @param quantidadeFrageis quantidade de unidades frágeis
+	 * @return custo total em centavos
+	 * @throws ArithmeticException em caso de estouro de {@code long}
+	 */
+	static long calcularCustoTotal(long subtotal, long[] subtotalPorTipo, long[] quantidadePorTipo, long pesoTotal,
+			long quantidadeFrageis, Regiao regiao, TipoCliente tipoCliente, TabelaFaixas faixas)
+	{
+		// Subtotal após desconto por tipo, em 10^-5 R$ (centavos × milésimos)
+		long descontoMultiplosItens = 0;
+		for (int tipo = 0; tipo < subtotalPorTipo.length; tipo++)
+		{
+			descontoMultiplosItens = Math.addExact(descontoMultiplosItens, Math.multiplyExact(subtotalPorTipo[tipo],
+					faixas.percentualDescontoPorQuantidadeMilesimos(quantidadePorTipo[tipo])));
+		}
+		long subtotalComDescontoMultiplosItens = Math.subtractExact(Math.multiplyExact(subtotal, 1_000L),
+				descontoMultiplosItens);
+
+		// Subtotal final em 10^-8 R$: subtotal × (1000 - milésimos de desconto)
+		long percentualDescontoValor = faixas.percentualDescontoPorValorMilesimos(subtotalComDescontoMultiplosItens);
+		long subtotalFinal = Math.multiplyExact(subtotalComDescontoMultiplosItens, 1_000L - percentualDescontoValor);
+
+		// Frete em 10^-5 R$, depois × multiplicador da região → 10^-8 R$
+		long frete = Math.addExact(faixas.calcularFretePorPesoE5(pesoTotal),
+				Math.multiplyExact(TAXA_FRAGIL_POR_ITEM, quantidadeFrageis));
+		long freteComRegiao = Math.multiplyExact(frete, faixas.multiplicadorRegiaoMilesimos(regiao));
+
+		// Frete final em 10^-9 R$
+		long freteFinal = switch (tipoCliente)
+		{
+			case BRONZE -> Math.multiplyExact(freteComRegiao, 10L);
+			case PRATA -> Math.multiplyExact(freteComRegiao, 5L);
+			case OURO -> 0L;
+		};
+
+		long custoTotal = Math.addExact(Math.multiplyExact(subtotalFinal, 10L), freteFinal);
+
+		return arredondarHalfUp(custoTotal, DIVISOR_CENTAVOS);
+	}
+
+	/**
+	 * Converte o valor para um inteiro com a quantidade de casas indicada.
+	 *
+	 * @throws ArithmeticException se o valor tiver mais casas ou não couber em um long
+	 */
+	static long escalar(BigDecimal valor, int casas)
+	{
+		return valor.movePointRight(casas).longValueExact();
+	}
+
+	/** Divide arredondando HALF_UP (metade se afasta do zero). */
+	static long arredondarHalfUp(long valor, long divisor)
+	{
+		long quociente = valor / divisor;
+		long resto = valor % divisor;
+		if (Math.abs(resto) * 2 >= divisor)
+		{
+			quociente += Long.signum(valor);
+		}
+		return quociente;
+	}
+}
@@ -0,0 +1,147 @@
+package ecommerce.service;
+
+import java.util.Arrays;
+
+import ecommerce.entity.Regiao;
+import ecommerce.entity.TipoCliente;
+import ecommerce.entity.TipoProduto;
+
+/**
+ * Precifica um lote de {@link CarrinhosColunares} em ponto fixo, com o mesmo resultado de
+ * {@link CompraService#calcularCustoTotal}.
+ *
+ * O cálculo tem duas fases:
+ * - por linha: laços simples sobre os arrays do lote inteiro, sem desvios nem aritmética exata,
+ *   que o JIT consegue vetorizar (os limites de {@link CarrinhosColunares} garantem que não há
+ *   estouro);
+ * - por carrinho: soma as linhas de cada carrinho por tipo de produto e aplica descontos e frete
+ *   com {@link CalculadoraCustoCentavos#calcularCustoTotal(long, long[], long[], long, long, Regiao,
+ *   TipoCliente, TabelaFaixas)}.
+ */
+public final class CalculadoraCustoColunar
+{
+	private static final Regiao[] REGIOES = Regiao.values();
+	private static final TipoCliente[] TIPOS_CLIENTE = TipoCliente.values();
+	private static final int QUANTIDADE_TIPOS = TipoProduto.values().length;
+
+	/** Peso volumétrico: c × l × a (10^-6 cm³) / 6000 arredondado para 10^-2 kg, HALF_UP. */
+	private static final long DIVISOR_VOLUME = 60_000_000L;
+	private static final long METADE_DIVISOR_VOLUME = DIVISOR_VOLUME / 2;
+
+	private CalculadoraCustoColunar()
+	{
+	}
+
+	/**
+	 * Calcula o custo total de cada carrinho do lote.
+	 *
+	 * @return custo em centavos por carrinho, na ordem do lote, ou
+	 *         {@link CalculadoraCustoCentavos#NAO_REPRESENTAVEL} para os carrinhos que devem ser
+	 *         calculados pelo caminho normal
+	 */
+	public static long[] calcularCustosTotais(CarrinhosColunares lote, TabelaFaixas faixas)
+	{
+		int carrinhos = lote.getQuantidadeCarrinhos();
+		long[] custos = new long[carrinhos];
+		if (!faixas.isRepresentavelEmPontoFixo())
+		{
+			Arrays.fill(custos, CalculadoraCustoCentavos.NAO_REPRESENTAVEL);
+			return custos;
+		}
+
+		int linhas = lote.getQuantidadeLinhas();
+		long[] valorLinha = new long[linhas];
+		long[] pesoLinha = new long[linhas];
+		long[] frageisLinha = new long[linhas];
+		calcularLinhas(lote, linhas, valorLinha, pesoLinha, frageisLinha);
+
+		int[] inicio = lote.inicio();
+		int[] tipoProduto = lote.tipoProduto();
+		long[] quantidade = lote.quantidade();
+		int[] regiao = lote.regiao();
+		int[] tipoCliente = lote.tipoCliente();
+
+		long[] subtotalPorTipo = new long[QUANTIDADE_TIPOS];
+		long[] quantidadePorTipo = new long[QUANTIDADE_TIPOS];
+		for (int carrinho = 0; carrinho < carrinhos; carrinho++)
+		{
+			if (!lote.isRepresentavel(carrinho))
+			{
+				custos[carrinho] = CalculadoraCustoCentavos.NAO_REPRESENTAVEL;
+				continue;
+			}
+
+			Arrays.fill(subtotalPorTipo, 0L);
+			Arrays.fill(quantidadePorTipo, 0L);
+			try
+			{
+				long subtotal = 0;
+				long pesoTotal = 0;
+				long quantidadeFrageis = 0;
+				for (int linha = inicio[carrinho]; linha < inicio[carrinho + 1]; linha++)
+				{
+					int tipo = tipoProduto[linha];
+					subtotal = Math.addExact(subtotal, valorLinha[linha]);
+					subtotalPorTipo[tipo] = Math.addExact(subtotalPorTipo[tipo], valorLinha[linha]);
+					quantidadePorTipo[tipo] += quantidade[linha];
+					pesoTotal = Math.addExact(pesoTotal, pesoLinha[linha]);
+					quantidadeFrageis += frageisLinha[linha];
+				}
+
+				custos[carrinho] = CalculadoraCustoCentavos.calcularCustoTotal(subtotal, subtotalPorTipo,
+						quantidadePorTipo, pesoTotal, quantidadeFrageis, REGIOES[regiao[carrinho]],
+						TIPOS_CLIENTE[tipoCliente[carrinho]], faixas);
+			}
+			catch (ArithmeticException e)
+			{
+				custos[carrinho] = CalculadoraCustoCentavos.NAO_REPRESENTAVEL;
+			}
+		}
+		return custos;
+	}
+
+	/**
+	 * Fase por linha. Cada laço faz uma única operação sobre arrays contíguos, para que o JIT possa
+	 * vetorizá-lo; a divisão do peso volumétrico fica isolada porque divisão de long não é vetorizada.
+	 */
+	private static void calcularLinhas(CarrinhosColunares lote, int linhas, long[] valorLinha, long[] pesoLinha,
+			long[] frageisLinha)
+	{
+		long[] preco = lote.precoCentavos();
+		long[] quantidade = lote.quantidade();
+		long[] pesoFisico = lote.pesoFisicoGramas();
+		long[] comprimento = lote.comprimento();
+		long[] largura = lote.largura();
+		long[] altura = lote.altura();
+		int[] fragil = lote.fragil();
+
+		// Valor da linha em centavos: < 2^40 × 2^20
+		for (int i = 0; i < linhas; i++)
+		{
+			valorLinha[i] = preco[i] * quantidade[i];
+		}
+
+		// Volume em 10^-6 cm³: < 2^60
+		for (int i = 0; i < linhas; i++)
+		{
+			pesoLinha[i] = comprimento[i] * largura[i] * altura[i];
+		}
+
+		// Peso volumétrico em gramas (múltiplo de 10, pois é arredondado em 10^-2 kg)
+		for (int i = 0; i < linhas; i++)
+		{
+			pesoLinha[i] = (pesoLinha[i] + METADE_DIVISOR_VOLUME) / DIVISOR_VOLUME * 10;
+		}
+
+		// Peso tributável da linha: max(físico, volumétrico) × quantidade, < 2^38 × 2^20
+		for (int i = 0; i < linhas; i++)
+		{
+			pesoLinha[i] = Math.max(pesoFisico[i], pesoLinha[i]) * quantidade[i];
+		}
+
+		for (int i = 0; i < linhas; i++)
+		{
+			frageisLinha[i] = fragil[i] * quantidade[i];
+		}
+	}
+}
@@ -1,5 +1,8 @@
 package ecommerce.service;
 
+import java.util.Collection;
+import java.util.List;
+
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
@@ -18,9 +21,15 @@ public class CarrinhoDeComprasService
 		this.repository = repository;
 	}
 
+	/** Carrinho com itens e produtos já carregados. */
 	public CarrinhoDeCompras buscarPorCarrinhoIdEClienteId(Long carrinhoId, Cliente cliente)
 	{
-		return repository.findByIdAndCliente(carrinhoId, cliente)
+		return repository.findComItensByIdAndCliente(carrinhoId, cliente)
 				.orElseThrow(() -> new IllegalArgumentException("Carrinho não encontrado."));
 	}
+
+	public List<CarrinhoDeCompras> buscarComItens(Collection<Long> carrinhoIds)
+	{
+		return repository.findAllComItensByIdIn(carrinhoIds);
+	}
 }
@@ -0,0 +1,282 @@
+package ecommerce.service;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.List;
+
+import ecommerce.entity.CarrinhoDeCompras;
+import ecommerce.entity.Cliente;
+import ecommerce.entity.ItemCompra;
+import ecommerce.entity.Produto;
+
+/**
+ * Lote de carrinhos em forma colunar (struct of arrays), para precificação em massa.
+ *
+ * As linhas de todos os carrinhos ficam em arrays paralelos de primitivos; as linhas do carrinho
+ * {@code c} ocupam o intervalo {@code [inicio[c], inicio[c + 1])}. Assim a precificação percorre
+ * memória contígua, sem passar por {@link ItemCompra}, {@link Produto} e {@link BigDecimal}.
+ *
+ * Unidades: preço em centavos, peso físico em gramas, dimensões em centésimos de cm. Cada valor
+ * tem um limite que garante que os produtos calculados por linha em
+ * {@link CalculadoraCustoColunar} não estouram {@code long}; carrinhos com algum valor fora
+ * desses limites, com casas decimais demais ou inválido (quantidade ≤ 0, preço ou peso negativos)
+ * são marcados como não representáveis, sem linhas, e devem ser calculados pelo caminho normal.
+ */
+public final class CarrinhosColunares
+{
+	static final long LIMITE_PRECO = 1L << 40;
+	static final long LIMITE_QUANTIDADE = 1L << 20;
+	static final long LIMITE_PESO = 1L << 31;
+	static final long LIMITE_DIMENSAO = 1L << 20;
+
+	/** Id usado nas linhas de produtos sem id. */
+	private static final long SEM_ID = Long.MIN_VALUE;
+
+	private int quantidadeCarrinhos;
+	private int[] inicio;
+	private int[] regiao;
+	private int[] tipoCliente;
+	private boolean[] representavel;
+
+	private int quantidadeLinhas;
+	private long[] produtoId;
+	private long[] precoCentavos;
+	private long[] quantidade;
+	private long[] pesoFisicoGramas;
+	private long[] comprimento;
+	private long[] largura;
+	private long[] altura;
+	private int[] tipoProduto;
+	private int[] fragil;
+
+	public CarrinhosColunares(int capacidadeCarrinhos, int capacidadeLinhas)
+	{
+		inicio = new int[Math.max(capacidadeCarrinhos, 1) + 1];
+		regiao = new int[Math.max(capacidadeCarrinhos, 1)];
+		tipoCliente = new int[regiao.length];
+		representavel = new boolean[regiao.length];
+
+		int linhas = Math.max(capacidadeLinhas, 1);
+		produtoId = new long[linhas];
+		precoCentavos = new long[linhas];
+		quantidade = new long[linhas];
+		pesoFisicoGramas = new long[linhas];
+		comprimento = new long[linhas];
+		largura = new long[linhas];
+		altura = new long[linhas];
+		tipoProduto = new int[linhas];
+		fragil = new int[linhas];
+	}
+
+	public static CarrinhosColunares de(List<CarrinhoDeCompras> carrinhos)
+	{
+		int linhas = 0;
+		for (CarrinhoDeCompras carrinho : carrinhos)
+		{
+			linhas += carrinho.getItens().size();
+		}
+
+		CarrinhosColunares colunas = new CarrinhosColunares(carrinhos.size(), linhas);
+		for (CarrinhoDeCompras carrinho : carrinhos)
+		{
+			colunas.adicionar(carrinho);
+		}
+		return colunas;
+	}
+
+	/**
+	 * Acrescenta o carrinho ao lote.
+	 *
+	 * @return índice do carrinho no lote
+	 */
+	public int adicionar(CarrinhoDeCompras carrinho)
+	{
+		garantirCapacidade(quantidadeCarrinhos + 1, quantidadeLinhas + carrinho.getItens().size());
+
+		int indice = quantidadeCarrinhos++;
+		Cliente cliente = carrinho.getCliente();
+		boolean valido = cliente.getRegiao() != null && cliente.getTipo() != null;
+		regiao[indice] = valido ? cliente.getRegiao().ordinal() : 0;
+		tipoCliente[indice] = valido ? cliente.getTipo().ordinal() : 0;
+
+		int primeiraLinha = quantidadeLinhas;
+		for (ItemCompra item : carrinho.getItens())
+		{
+			if (!valido || !adicionarLinha(item))
+			{
+				valido = false;
+				break;
+			}
+		}
+
+		if (!valido)
+		{
+			quantidadeLinhas = primeiraLinha;
+		}
+		representavel[indice] = valido;
+		inicio[indice + 1] = quantidadeLinhas;
+		return indice;
+	}
+
+	private boolean adicionarLinha(ItemCompra item)
+	{
+		Produto produto = item.getProduto();
+		long precoLinha = escalar(produto.getPreco(), 2, LIMITE_PRECO);
+		long pesoLinha = escalar(produto.getPesoFisico(), 3, LIMITE_PESO);
+		long comprimentoLinha = escalar(produto.getComprimento(), 2, LIMITE_DIMENSAO);
+		long larguraLinha = escalar(produto.getLargura(), 2, LIMITE_DIMENSAO);
+		long alturaLinha = escalar(produto.getAltura(), 2, LIMITE_DIMENSAO);
+		Long quantidadeLinha = item.getQuantidade();
+
+		if (precoLinha < 0 || pesoLinha < 0 || comprimentoLinha < 0 || larguraLinha < 0 || alturaLinha < 0
+				|| quantidadeLinha == null || quantidadeLinha <= 0 || quantidadeLinha >= LIMITE_QUANTIDADE
+				|| produto.getTipo() == null || produto.isFragil() == null)
+		{
+			return false;
+		}
+
+		int linha = quantidadeLinhas++;
+		produtoId[linha] = produto.getId() != null ? produto.getId() : SEM_ID;
+		precoCentavos[linha] = precoLinha;
+		quantidade[linha] = quantidadeLinha;
+		pesoFisicoGramas[linha] = pesoLinha;
+		comprimento[linha] = comprimentoLinha;
+		largura[linha] = larguraLinha;
+		altura[linha] = alturaLinha;
+		tipoProduto[linha] = produto.getTipo().ordinal();
+		fragil[linha] = produto.isFragil() ? 1 : 0;
+		return true;
+	}
+
+	/** Valor na escala indicada, ou -1 se for nulo, negativo, tiver casas demais ou passar do limite. */
+	private static long escalar(BigDecimal valor, int casas, long limite)
+	{
+		if (valor == null || valor.signum() < 0)
+		{
+			return -1;
+		}
+		try
+		{
+			long escalado = valor.movePointRight(casas).longValueExact();
+			return escalado < limite ? escalado : -1;
+		}
+		catch (ArithmeticException e)
+		{
+			return -1;
+		}
+	}
+
+	private void garantirCapacidade(int carrinhos, int linhas)
+	{
+		if (carrinhos > regiao.length)
+		{
+			int capacidade = Math.max(carrinhos, regiao.length * 2);
+			inicio = Arrays.copyOf(inicio, capacidade + 1);
+			regiao = Arrays.copyOf(regiao, capacidade);
+			tipoCliente = Arrays.copyOf(tipoCliente, capacidade);
+			representavel = Arrays.copyOf(representavel, capacidade);
+		}
+		if (linhas > precoCentavos.length)
+		{
+			int capacidade = Math.max(linhas, precoCentavos.length * 2);
+			produtoId = Arrays.copyOf(produtoId, capacidade);
+			precoCentavos = Arrays.copyOf(precoCentavos, capacidade);
+			quantidade = Arrays.copyOf(quantidade, capacidade);
+			pesoFisicoGramas = Arrays.copyOf(pesoFisicoGramas, capacidade);
+			comprimento = Arrays.copyOf(comprimento, capacidade);
+			largura = Arrays.copyOf(largura, capacidade);
+			altura = Arrays.copyOf(altura, capacidade);
+			tipoProduto = Arrays.copyOf(tipoProduto, capacidade);
+			fragil = Arrays.copyOf(fragil, capacidade);
+		}
+	}
+
+	public int getQuantidadeCarrinhos()
+	{
+		return quantidadeCarrinhos;
+	}
+
+	public int getQuantidadeLinhas()
+	{
+		return quantidadeLinhas;
+	}
+
+	public boolean isRepresentavel(int carrinho)
+	{
+		return representavel[carrinho];
+	}
+
+	/**
+	 * Troca o preço do produto em todas as linhas do lote, ex.: para simular o impacto de uma
+	 * mudança de preço sem recarregar os carrinhos.
+	 */
+	public void alterarPreco(long produtoId, long precoCentavos)
+	{
+		if (precoCentavos < 0 || precoCentavos >= LIMITE_PRECO)
+		{
+			throw new IllegalArgumentException("Preço fora do limite do lote colunar.");
+		}
+
+		long[] ids = this.produtoId;
+		long[] precos = this.precoCentavos;
+		for (int linha = 0; linha < quantidadeLinhas; linha++)
+		{
+			precos[linha] = ids[linha] == produtoId ? precoCentavos : precos[linha];
+		}
+	}
+
+	int[] inicio()
+	{
+		return inicio;
+	}
+
+	int[] regiao()
+	{
+		return regiao;
+	}
+
+	int[] tipoCliente()
+	{
+		return tipoCliente;
+	}
+
+	long[] precoCentavos()
+	{
+		return precoCentavos;
+	}
+
+	long[] quantidade()
+	{
+		return quantidade;
+	}
+
+	long[] pesoFisicoGramas()
+	{
+		return pesoFisicoGramas;
+	}
+
+	long[] comprimento()
+	{
+		return comprimento;
+	}
+
+	long[] largura()
+	{
+		return largura;
+	}
+
+	long[] altura()
+	{
+		return altura;
+	}
+
+	int[] tipoProduto()
+	{
+		return tipoProduto;
+	}
+
+	int[] fragil()
+	{
+		return fragil;
+	}
+}
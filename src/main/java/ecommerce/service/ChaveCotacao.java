@@ -0,0 +1,79 @@
+package ecommerce.service;
+
+import ecommerce.entity.Cliente;
+import ecommerce.entity.Regiao;
+import ecommerce.entity.TipoCliente;
+import ecommerce.entity.TotaisCarrinho;
+
+/**
+ * Chave do cache de cotações: a geração das faixas, a região e o tipo do cliente e os
+ * {@link TotaisCarrinho} que o carrinho já mantém. A cotação é calculada só a partir desses
+ * valores, então carrinhos com os mesmos totais, em qualquer ordem ou divisão em linhas, têm a
+ * mesma cotação. A comparação é feita sobre os totais inteiros, então colisões de hash não geram
+ * cotações erradas.
+ *
+ * Montar a chave custa O(tipos de produto), sem percorrer os itens. Alterar um produto muda os
+ * totais dos carrinhos que o usam (o produto avisa os itens), e recarregar as faixas muda a
+ * geração: em ambos os casos a chave é nova e as cotações antigas saem do cache pela expiração.
+ *
+ * A chave aponta para os totais do próprio carrinho, sem copiá-los, o que basta para a consulta;
+ * só quando ela vai ser guardada no cache {@link #fixar()} troca os totais por uma cópia.
+ */
+final class ChaveCotacao
+{
+	private final long geracaoFaixas;
+	private final Regiao regiao;
+	private final TipoCliente tipoCliente;
+	private TotaisCarrinho totais;
+	private final int hash;
+
+	private ChaveCotacao(long geracaoFaixas, Regiao regiao, TipoCliente tipoCliente, TotaisCarrinho totais, int hash)
+	{
+		this.geracaoFaixas = geracaoFaixas;
+		this.regiao = regiao;
+		this.tipoCliente = tipoCliente;
+		this.totais = totais;
+		this.hash = hash;
+	}
+
+	/**
+	 * Monta a chave de consulta, ou retorna null se a cotação não puder ser cacheada: cliente sem
+	 * região ou tipo, ou carrinho com itens inválidos (esses devem falhar no cálculo).
+	 */
+	static ChaveCotacao de(Cliente cliente, TotaisCarrinho totais, TabelaFaixas faixas)
+	{
+		if (cliente.getRegiao() == null || cliente.getTipo() == null || totais.getQuantidadeItensInvalidos() > 0)
+		{
+			return null;
+		}
+		int hash = Long.hashCode(faixas.getGeracao());
+		hash = hash * 31 + cliente.getRegiao().ordinal();
+		hash = hash * 31 + cliente.getTipo().ordinal();
+		hash = hash * 31 + totais.hashPrecificacao();
+		return new ChaveCotacao(faixas.getGeracao(), cliente.getRegiao(), cliente.getTipo(), totais, hash);
+	}
+
+	/**
+	 * Troca os totais por uma cópia, que não muda com as alterações seguintes do carrinho. Chamado
+	 * ao guardar a chave, dentro do cálculo da cotação: a cópia tem os mesmos valores, então hash
+	 * e igualdade não mudam, e o cache publica a chave para as outras threads só depois disso.
+	 */
+	void fixar()
+	{
+		totais = totais.copiar();
+	}
+
+	@Override
+	public boolean equals(Object outro)
+	{
+		return outro instanceof ChaveCotacao chave && hash == chave.hash && geracaoFaixas == chave.geracaoFaixas
+				&& regiao == chave.regiao && tipoCliente == chave.tipoCliente
+				&& totais.mesmaPrecificacao(chave.totais);
+	}
+
+	@Override
+	public int hashCode()
+	{
+		return hash;
+	}
+}
@@ -0,0 +1,138 @@
+package ecommerce.service;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import ecommerce.dto.CompraDTO;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Une chamadas simultâneas de {@link CompraService#finalizarCompra} para o mesmo carrinho e
+ * cliente (cliques duplos, repetições do cliente): só a primeira executa, as demais esperam e
+ * recebem o mesmo resultado ou a mesma exceção.
+ *
+ * Só compras em andamento ficam no mapa, e cada uma sai dele ao terminar, com sucesso ou falha;
+ * a chamada seguinte executa de novo. Com {@code maximo} compras em andamento, novas chaves
+ * executam sem união, o que limita a memória.
+ */
+@Component
+public class CoalescedorFinalizacoes
+{
+	public static final String METRICA_UNIDAS = "compra.finalizacao.coalescidas";
+	public static final String METRICA_EM_ANDAMENTO = "compra.finalizacao.em-andamento";
+
+	private record Chave(Long carrinhoId, Long clienteId)
+	{
+	}
+
+	private final CompraService compraService;
+	private final int maximo;
+	private final ConcurrentMap<Chave, CompletableFuture<CompraDTO>> emAndamento = new ConcurrentHashMap<>();
+	private final Counter unidas;
+
+	/** Coalescedor sem métricas, para uso fora do Spring. */
+	public CoalescedorFinalizacoes(CompraService compraService, int maximo)
+	{
+		this(compraService, maximo, null);
+	}
+
+	@Autowired
+	public CoalescedorFinalizacoes(CompraService compraService,
+			@Value("${compra.finalizacao.coalescencia.maximo:10000}") int maximo, MeterRegistry registry)
+	{
+		this.compraService = compraService;
+		this.maximo = maximo;
+		if (registry != null)
+		{
+			this.unidas = Counter.builder(METRICA_UNIDAS)
+					.description("Chamadas de finalizarCompra que esperaram outra já em andamento")
+					.register(registry);
+			Gauge.builder(METRICA_EM_ANDAMENTO, emAndamento, ConcurrentMap::size).register(registry);
+		}
+		else
+		{
+			this.unidas = null;
+		}
+	}
+
+	public CompraDTO finalizarCompra(Long carrinhoId, Long clienteId)
+	{
+		Chave chave = new Chave(carrinhoId, clienteId);
+
+		CompletableFuture<CompraDTO> existente = emAndamento.get(chave);
+		if (existente == null)
+		{
+			if (emAndamento.size() >= maximo)
+			{
+				return compraService.finalizarCompra(carrinhoId, clienteId);
+			}
+
+			CompletableFuture<CompraDTO> nova = new CompletableFuture<>();
+			existente = emAndamento.putIfAbsent(chave, nova);
+			if (existente == null)
+			{
+				return executar(chave, nova);
+			}
+		}
+
+		if (unidas != null)
+		{
+			unidas.increment();
+		}
+		return aguardar(existente);
+	}
+
+	/** Quantidade de compras em andamento no mapa. */
+	public int emAndamento()
+	{
+		return emAndamento.size();
+	}
+
+	private CompraDTO executar(Chave chave, CompletableFuture<CompraDTO> resultado)
+	{
+		try
+		{
+			CompraDTO compra = compraService.finalizarCompra(chave.carrinhoId(), chave.clienteId());
+			resultado.complete(compra);
+			return compra;
+		}
+		catch (RuntimeException | Error e)
+		{
+			resultado.completeExceptionally(e);
+			throw e;
+		}
+		finally
+		{
+			emAndamento.remove(chave, resultado);
+		}
+	}
+
+	private static CompraDTO aguardar(CompletableFuture<CompraDTO> resultado)
+	{
+		try
+		{
+			return resultado.join();
+		}
+		catch (CompletionException e)
+		{
+			// Mesma exceção que a chamada que executou recebeu
+			if (e.getCause() instanceof RuntimeException causa)
+			{
+				throw causa;
+			}
+			if (e.getCause() instanceof Error erro)
+			{
+				throw erro;
+			}
+			throw e;
+		}
+	}
+}
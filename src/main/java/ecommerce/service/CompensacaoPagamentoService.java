@@ -0,0 +1,92 @@
+package ecommerce.service;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Set;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+
+import ecommerce.entity.CompensacaoPagamento;
+import ecommerce.entity.SituacaoCompensacao;
+import ecommerce.repository.CompensacaoPagamentoRepository;
+
+/**
+ * Outbox de cancelamentos de pagamento: {@link CompraService#finalizarCompra} só grava a
+ * compensação, em uma transação curta, e {@link DespachanteCompensacoes} a envia depois.
+ *
+ * Antes de enviar, o despachante toma cada compensação para si ({@link #reivindicar}) com um
+ * arrendamento: outra instância, ou outra execução do despachante, não envia o mesmo cancelamento
+ * enquanto ele durar. Se a instância parar no meio do envio, a compensação volta a ser enviada
+ * quando o arrendamento vencer, então o serviço de pagamento pode receber o mesmo cancelamento
+ * mais de uma vez, mas só nesse caso.
+ */
+@Service
+@ConditionalOnProperty(name = "compra.compensacao.outbox.habilitada", havingValue = "true", matchIfMissing = true)
+public class CompensacaoPagamentoService
+{
+	private static final Set<SituacaoCompensacao> A_ENVIAR = Set.of(SituacaoCompensacao.PENDENTE,
+			SituacaoCompensacao.EM_ENVIO);
+
+	private final CompensacaoPagamentoRepository repository;
+	private final Clock relogio;
+
+	@Autowired
+	public CompensacaoPagamentoService(CompensacaoPagamentoRepository repository)
+	{
+		this(repository, Clock.systemUTC());
+	}
+
+	CompensacaoPagamentoService(CompensacaoPagamentoRepository repository, Clock relogio)
+	{
+		this.repository = repository;
+		this.relogio = relogio;
+	}
+
+	/** Grava o cancelamento da transação, se ainda não houver um; participa da transação atual. */
+	public void registrar(Long clienteId, Long transacaoId)
+	{
+		if (!repository.existsByTransacaoId(transacaoId))
+		{
+			repository.save(new CompensacaoPagamento(clienteId, transacaoId, relogio.instant()));
+		}
+	}
+
+	/**
+	 * Compensações a enviar, da mais antiga para a mais nova: as pendentes cuja próxima tentativa já
+	 * venceu e as em envio cujo arrendamento acabou.
+	 */
+	public List<CompensacaoPagamento> buscarPendentes(Instant agora, int limite)
+	{
+		return repository.findBySituacaoInAndProximaTentativaLessThanEqualOrderByProximaTentativa(
+				A_ENVIAR, agora, PageRequest.of(0, limite));
+	}
+
+	/**
+	 * Toma a compensação para envio até {@code agora + arrendamento}, se ninguém a tomou depois
+	 * da busca; em caso de sucesso, atualiza também a entidade.
+	 *
+	 * @return false se outro despachante já a tomou ou gravou o resultado
+	 */
+	public boolean reivindicar(CompensacaoPagamento compensacao, Instant agora, Duration arrendamento)
+	{
+		Instant arrendadaAte = agora.plus(arrendamento);
+		if (repository.reivindicar(compensacao.getId(), A_ENVIAR, agora, SituacaoCompensacao.EM_ENVIO,
+				arrendadaAte) == 0)
+		{
+			return false;
+		}
+		compensacao.setSituacao(SituacaoCompensacao.EM_ENVIO);
+		compensacao.setProximaTentativa(arrendadaAte);
+		return true;
+	}
+
+	public void salvar(CompensacaoPagamento compensacao)
+	{
+		repository.save(compensacao);
+	}
+}
@@ -2,36 +2,69 @@ package ecommerce.service;
 
 import java.math.BigDecimal;
 import java.math.RoundingMode;
+import java.time.Duration;
 import java.util.List;
-import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import ecommerce.dto.CompraDTO;
 import ecommerce.dto.DisponibilidadeDTO;
 import ecommerce.dto.EstoqueBaixaDTO;
 import ecommerce.dto.PagamentoDTO;
+import ecommerce.dto.ReservaDTO;
 import ecommerce.entity.CarrinhoDeCompras;
 import ecommerce.entity.Cliente;
 import ecommerce.entity.ItemCompra;
 import ecommerce.entity.Regiao;
 import ecommerce.entity.TipoCliente;
 import ecommerce.entity.TipoProduto;
+import ecommerce.entity.TotaisCarrinho;
 import ecommerce.external.IEstoqueExternal;
 import ecommerce.external.IPagamentoExternal;
-import jakarta.transaction.Transactional;
 
 @Service
 public class CompraService {
 
+	private static final Logger log = LoggerFactory.getLogger(CompraService.class);
+
+	private static final TipoProduto[] TIPOS_PRODUTO = TipoProduto.values();
+
+	private static final BigDecimal TAXA_FRAGIL_POR_ITEM = BigDecimal.valueOf(5.0);
+
 	private final CarrinhoDeComprasService carrinhoService;
 	private final ClienteService clienteService;
 
 	private final IEstoqueExternal estoqueExternal;
 	private final IPagamentoExternal pagamentoExternal;
 
+	private final CalculadoraCustoCentavos calculadoraCentavos = new CalculadoraCustoCentavos();
+	private MotorPrecificacao motorPrecificacao = MotorPrecificacao.BIG_DECIMAL;
+	private ProvedorTabelaFaixas provedorFaixas = new ProvedorTabelaFaixas();
+	private CacheCotacoes cacheCotacoes;
+	/** Outbox dos cancelamentos de pagamento; sem ele, o cancelamento é feito na própria requisição. */
+	private CompensacaoPagamentoService compensacoes;
+	/** Transações curtas de finalizarCompra; sem gerenciador (fora do Spring), as fases rodam direto. */
+	private TransactionTemplate transacaoLeitura;
+	private TransactionTemplate transacaoEscrita;
+	private boolean verificarTotais;
+	private ModoFinalizacao modoFinalizacao = ModoFinalizacao.SEQUENCIAL;
+	/** Executor da verificação de estoque no modo concorrente; sem executor, roda na própria thread. */
+	private Executor executorFinalizacao;
+	private boolean reservaHabilitada;
+	private Duration validadeReserva = Duration.ofSeconds(30);
+
 	@Autowired
 	public CompraService(CarrinhoDeComprasService carrinhoService, ClienteService clienteService,
 			IEstoqueExternal estoqueExternal, IPagamentoExternal pagamentoExternal) {
@@ -42,66 +75,318 @@ public class CompraService {
 		this.pagamentoExternal = pagamentoExternal;
 	}
 
-	@Transactional
+	@Value("${compra.precificacao.motor:BIG_DECIMAL}")
+	public void setMotorPrecificacao(MotorPrecificacao motorPrecificacao) {
+		this.motorPrecificacao = motorPrecificacao;
+	}
+
+	@Autowired
+	public void setProvedorTabelaFaixas(ProvedorTabelaFaixas provedorFaixas) {
+		this.provedorFaixas = provedorFaixas;
+	}
+
+	/**
+	 * Liga a verificação dos totais mantidos pelo carrinho: a cada cálculo, os totais são
+	 * recalculados do zero e qualquer divergência é registrada e corrigida. Custa O(itens).
+	 */
+	@Value("${compra.carrinho.totais.verificar:false}")
+	public void setVerificarTotais(boolean verificarTotais) {
+		this.verificarTotais = verificarTotais;
+	}
+
+	@Value("${compra.finalizacao.modo:SEQUENCIAL}")
+	public void setModoFinalizacao(ModoFinalizacao modoFinalizacao) {
+		this.modoFinalizacao = modoFinalizacao;
+	}
+
+	/**
+	 * Troca a verificação de disponibilidade por uma reserva com validade, confirmada depois do
+	 * pagamento: duas compras disputando o último item não passam ambas da verificação, e a
+	 * perdedora é recusada antes de tentar o pagamento.
+	 */
+	@Value("${compra.estoque.reserva.habilitada:false}")
+	public void setReservaHabilitada(boolean reservaHabilitada) {
+		this.reservaHabilitada = reservaHabilitada;
+	}
+
+	@Value("${compra.estoque.reserva.validade:30s}")
+	public void setValidadeReserva(Duration validadeReserva) {
+		this.validadeReserva = validadeReserva;
+	}
+
+	boolean isReservaHabilitada() {
+		return reservaHabilitada;
+	}
+
+	Duration getValidadeReserva() {
+		return validadeReserva;
+	}
+
+	@Autowired(required = false)
+	public void setExecutorFinalizacao(@Qualifier("applicationTaskExecutor") Executor executorFinalizacao) {
+		this.executorFinalizacao = executorFinalizacao;
+	}
+
+	@Autowired(required = false)
+	public void setCacheCotacoes(CacheCotacoes cacheCotacoes) {
+		this.cacheCotacoes = cacheCotacoes;
+	}
+
+	@Autowired(required = false)
+	public void setCompensacoes(CompensacaoPagamentoService compensacoes) {
+		this.compensacoes = compensacoes;
+	}
+
+	@Autowired(required = false)
+	public void setGerenciadorTransacoes(PlatformTransactionManager gerenciadorTransacoes) {
+		this.transacaoLeitura = new TransactionTemplate(gerenciadorTransacoes);
+		this.transacaoLeitura.setReadOnly(true);
+		this.transacaoEscrita = new TransactionTemplate(gerenciadorTransacoes);
+	}
+
+	/**
+	 * Finaliza a compra em fases, sem manter conexão com o banco durante as chamadas externas:
+	 * <ol>
+	 * <li>carrega cliente, carrinho, itens e produtos em uma transação somente leitura;</li>
+	 * <li>verifica o estoque, calcula o custo, autoriza o pagamento e dá baixa no estoque, sem
+	 * transação aberta;</li>
+	 * <li>se a baixa falhar, grava a compensação do pagamento em uma transação própria.</li>
+	 * </ol>
+	 */
 	public CompraDTO finalizarCompra(Long carrinhoId, Long clienteId) {
+		DadosCompra dados = carregarEmTransacao(carrinhoId, clienteId);
+		Cliente cliente = dados.cliente();
+		CarrinhoDeCompras carrinho = dados.carrinho();
+		List<Long> produtosIds = dados.produtosIds();
+		List<Long> produtosQtds = dados.produtosQtds();
+
+		EstoqueECusto estoqueECusto;
+		if (modoFinalizacao == ModoFinalizacao.CONCORRENTE) {
+			estoqueECusto = verificarEstoqueECalcularCusto(carrinho, cliente, produtosIds, produtosQtds);
+		} else {
+			Long reservaId = verificarEstoque(produtosIds, produtosQtds);
+			try {
+				estoqueECusto = new EstoqueECusto(reservaId,
+						calcularCustoTotal(carrinho, cliente.getRegiao(), cliente.getTipo()));
+			} catch (RuntimeException e) {
+				liberarReserva(reservaId);
+				throw e;
+			}
+		}
+		Long reservaId = estoqueECusto.reservaId();
+
+		PagamentoDTO pagamento;
+		try {
+			pagamento = pagamentoExternal.autorizarPagamento(cliente.getId(),
+					estoqueECusto.custoTotal().doubleValue());
+		} catch (RuntimeException e) {
+			liberarReserva(reservaId);
+			throw e;
+		}
+
+		if (!pagamento.autorizado()) {
+			liberarReserva(reservaId);
+			throw new IllegalStateException("Pagamento não autorizado.");
+		}
+
+		// Uma reserva que venceu durante o pagamento não é confirmada e cai na compensação abaixo
+		EstoqueBaixaDTO baixaDTO;
+		try {
+			baixaDTO = reservaId != null ? estoqueExternal.confirmarReserva(reservaId)
+					: estoqueExternal.darBaixa(produtosIds, produtosQtds);
+		} catch (RuntimeException e) {
+			// Sem resposta do estoque (timeout, circuito aberto): o pagamento não pode ficar cobrado
+			cancelarPagamento(cliente.getId(), pagamento.transacaoId());
+			liberarReserva(reservaId);
+			throw e;
+		}
+
+		if (!baixaDTO.sucesso()) {
+			cancelarPagamento(cliente.getId(), pagamento.transacaoId());
+			throw new IllegalStateException("Erro ao dar baixa no estoque.");
+		}
+
+		CompraDTO compraDTO = new CompraDTO(true, pagamento.transacaoId(), "Compra finalizada com sucesso.");
+
+		return compraDTO;
+	}
+
+	/** Entidades carregadas na primeira fase, usadas depois de encerrada a transação. */
+	record DadosCompra(Cliente cliente, CarrinhoDeCompras carrinho, List<Long> produtosIds,
+			List<Long> produtosQtds) {
+	}
+
+	/** Primeira fase da finalização, também usada por {@link CompraServiceReativo}. */
+	DadosCompra carregarEmTransacao(Long carrinhoId, Long clienteId) {
+		return emTransacao(transacaoLeitura, () -> carregar(carrinhoId, clienteId));
+	}
+
+	private DadosCompra carregar(Long carrinhoId, Long clienteId) {
 		Cliente cliente = clienteService.buscarPorId(clienteId);
 		CarrinhoDeCompras carrinho = carrinhoService.buscarPorCarrinhoIdEClienteId(carrinhoId, cliente);
 
 		List<Long> produtosIds = carrinho.getItens().stream().map(i -> i.getProduto().getId())
 				.collect(Collectors.toList());
 		List<Long> produtosQtds = carrinho.getItens().stream().map(i -> i.getQuantidade()).collect(Collectors.toList());
+		return new DadosCompra(cliente, carrinho, produtosIds, produtosQtds);
+	}
+
+	private static <T> T emTransacao(TransactionTemplate transacao, Supplier<T> fase) {
+		return transacao != null ? transacao.execute(status -> fase.get()) : fase.get();
+	}
+
+	/** Reserva do estoque (null sem reserva) e custo total calculados antes do pagamento. */
+	private record EstoqueECusto(Long reservaId, BigDecimal custoTotal) {
+	}
+
+	/**
+	 * Verifica (ou reserva) o estoque em outra thread enquanto calcula o custo na thread atual,
+	 * com os itens já carregados. Espera a verificação mesmo se o cálculo falhar,
+	 * para que a indisponibilidade de estoque continue tendo precedência como no modo sequencial.
+	 */
+	private EstoqueECusto verificarEstoqueECalcularCusto(CarrinhoDeCompras carrinho, Cliente cliente,
+			List<Long> produtosIds, List<Long> produtosQtds) {
+		Executor executor = executorFinalizacao != null ? executorFinalizacao : Runnable::run;
+		CompletableFuture<Long> verificacao = CompletableFuture
+				.supplyAsync(() -> verificarEstoque(produtosIds, produtosQtds), executor);
+
+		BigDecimal custoTotal = null;
+		RuntimeException erroCalculo = null;
+		try {
+			custoTotal = calcularCustoTotal(carrinho, cliente.getRegiao(), cliente.getTipo());
+		} catch (RuntimeException e) {
+			erroCalculo = e;
+		}
+
+		Long reservaId;
+		try {
+			reservaId = verificacao.join();
+		} catch (CompletionException e) {
+			// Mesma exceção que a chamada direta lançaria
+			if (e.getCause() instanceof RuntimeException causa) {
+				throw causa;
+			}
+			if (e.getCause() instanceof Error erro) {
+				throw erro;
+			}
+			throw e;
+		}
+
+		if (erroCalculo != null) {
+			liberarReserva(reservaId);
+			throw erroCalculo;
+		}
+		return new EstoqueECusto(reservaId, custoTotal);
+	}
 
-		DisponibilidadeDTO disponibilidade = estoqueExternal.verificarDisponibilidade(produtosIds, produtosQtds);
+	/**
+	 * Verifica a disponibilidade ou, com reservas habilitadas, reserva os itens.
+	 *
+	 * @return id da reserva, ou null sem reserva
+	 * @throws IllegalStateException se algum item estiver fora de estoque
+	 */
+	private Long verificarEstoque(List<Long> produtosIds, List<Long> produtosQtds) {
+		if (!reservaHabilitada) {
+			verificarDisponibilidade(estoqueExternal.verificarDisponibilidade(produtosIds, produtosQtds));
+			return null;
+		}
 
+		ReservaDTO reserva = estoqueExternal.reservar(produtosIds, produtosQtds, validadeReserva);
+		if (!reserva.reservado()) {
+			throw new IllegalStateException("Itens fora de estoque.");
+		}
+		return reserva.reservaId();
+	}
+
+	private void verificarDisponibilidade(DisponibilidadeDTO disponibilidade) {
 		if (!disponibilidade.disponivel()) {
 			throw new IllegalStateException("Itens fora de estoque.");
 		}
+	}
 
-		BigDecimal custoTotal = calcularCustoTotal(carrinho, cliente.getRegiao(), cliente.getTipo());
+	private void cancelarPagamento(Long clienteId, Long transacaoId) {
+		if (!registrarCompensacao(clienteId, transacaoId)) {
+			pagamentoExternal.cancelarPagamento(clienteId, transacaoId);
+		}
+	}
 
-		PagamentoDTO pagamento = pagamentoExternal.autorizarPagamento(cliente.getId(), custoTotal.doubleValue());
+	/**
+	 * Grava o cancelamento do pagamento no outbox, em transação própria.
+	 *
+	 * @return false sem outbox; aí quem chama cancela o pagamento diretamente
+	 */
+	boolean registrarCompensacao(Long clienteId, Long transacaoId) {
+		if (compensacoes == null) {
+			return false;
+		}
+		emTransacao(transacaoEscrita, () -> {
+			compensacoes.registrar(clienteId, transacaoId);
+			return null;
+		});
+		return true;
+	}
 
-		if (!pagamento.autorizado()) {
-			throw new IllegalStateException("Pagamento não autorizado.");
+	/** Libera a reserva de uma compra que não vai adiante; se falhar, ela ainda vence sozinha. */
+	private void liberarReserva(Long reservaId) {
+		if (reservaId == null) {
+			return;
+		}
+		try {
+			estoqueExternal.liberarReserva(reservaId);
+		} catch (RuntimeException e) {
+			log.warn("Não foi possível liberar a reserva de estoque {}: {}", reservaId, e.getMessage());
 		}
+	}
 
-		EstoqueBaixaDTO baixaDTO = estoqueExternal.darBaixa(produtosIds, produtosQtds);
+	public BigDecimal calcularCustoTotal(CarrinhoDeCompras carrinho, Regiao regiao, TipoCliente tipoCliente) {
+		// A cotação inteira usa a mesma tabela, mesmo que ela seja trocada durante o cálculo
+		TabelaFaixas faixas = provedorFaixas.atual();
 
-		if (!baixaDTO.sucesso()) {
-			pagamentoExternal.cancelarPagamento(cliente.getId(), pagamento.transacaoId());
-			throw new IllegalStateException("Erro ao dar baixa no estoque.");
+		// Totais mantidos pelo carrinho: nem a chave do cache nem o cálculo percorrem os itens
+		TotaisCarrinho totais = obterTotais(carrinho);
+
+		if (cacheCotacoes != null) {
+			ChaveCotacao chave = ChaveCotacao.de(carrinho.getCliente(), totais, faixas);
+			if (chave != null) {
+				return cacheCotacoes.obter(chave, () -> calcularCustoTotal(carrinho, totais, faixas));
+			}
 		}
 
-		CompraDTO compraDTO = new CompraDTO(true, pagamento.transacaoId(), "Compra finalizada com sucesso.");
+		return calcularCustoTotal(carrinho, totais, faixas);
+	}
 
-		return compraDTO;
+	private BigDecimal calcularCustoTotal(CarrinhoDeCompras carrinho, TabelaFaixas faixas) {
+		return calcularCustoTotal(carrinho, obterTotais(carrinho), faixas);
 	}
 
-	public BigDecimal calcularCustoTotal(CarrinhoDeCompras carrinho, Regiao regiao, TipoCliente tipoCliente) {
-		carrinho.getItens().forEach(produto -> {
-			if(produto.getQuantidade()<=0 ||
-					produto.getProduto().getPesoFisico().compareTo(BigDecimal.ZERO) < 0 ||
-					produto.getProduto().getPreco().compareTo(BigDecimal.ZERO) < 0) {
-				throw new IllegalArgumentException();
+	private BigDecimal calcularCustoTotal(CarrinhoDeCompras carrinho, TotaisCarrinho totais, TabelaFaixas faixas) {
+		if (motorPrecificacao == MotorPrecificacao.CENTAVOS) {
+			// Assim como calcularFreteTotal, o frete usa a região e o tipo do cliente do carrinho
+			long centavos = calculadoraCentavos.calcularCustoTotal(totais, carrinho.getCliente().getRegiao(),
+					carrinho.getCliente().getTipo(), faixas);
+			if (centavos != CalculadoraCustoCentavos.NAO_REPRESENTAVEL) {
+				return BigDecimal.valueOf(centavos, 2);
 			}
-		});
-		// Calcula o subtotal dos itens
-		BigDecimal subtotalItens = carrinho.getItens().stream()
-				.map(item -> item.getProduto().getPreco().multiply(BigDecimal.valueOf(item.getQuantidade())))
-				.reduce(BigDecimal.ZERO, BigDecimal::add);
+		}
+
+		ResumoCarrinho resumo = resumir(totais);
+
+		BigDecimal subtotalItens = resumo.getSubtotal();
 
 		// Calcula o desconto por múltiplos itens do mesmo tipo
-		BigDecimal descontoMultiplosItens = calcularDescontoPorMultiplosItensMesmoTipo(carrinho);
+		BigDecimal descontoMultiplosItens = calcularDescontoPorMultiplosItensMesmoTipo(resumo, faixas);
 
 		// Aplica o desconto ao subtotal
 		BigDecimal subtotalComDescontoMultiplosItens = subtotalItens.subtract(descontoMultiplosItens);
 
-		BigDecimal descontoValorCarrinho = calcularDescontoPorValorCarrinho(subtotalComDescontoMultiplosItens);
+		BigDecimal descontoValorCarrinho = calcularDescontoPorValorCarrinho(subtotalComDescontoMultiplosItens,
+				faixas);
 
 		BigDecimal subtotalComDescontoFinal = subtotalComDescontoMultiplosItens.subtract(descontoValorCarrinho);
 
 		// Calcula o frete total
-		BigDecimal freteTotal = calcularFreteTotal(carrinho);
+		BigDecimal freteTotal = calcularFreteTotal(resumo, carrinho.getCliente().getRegiao(),
+				carrinho.getCliente().getTipo(), faixas);
 
 		// Calcula o custo total (subtotal com desconto + frete)
 		BigDecimal custoTotal = subtotalComDescontoFinal.add(freteTotal);
@@ -110,39 +395,69 @@ public class CompraService {
 		return custoTotal.setScale(2, RoundingMode.HALF_UP);
 	}
 
+	/**
+	 * Calcula o custo total de muitos carrinhos de uma vez, com o mesmo resultado de
+	 * {@link #calcularCustoTotal} para cada um. Os carrinhos são convertidos para
+	 * {@link CarrinhosColunares} e precificados em lote; os que não cabem no formato colunar
+	 * (ex.: preço com mais de 2 casas) são calculados individualmente, inclusive lançando as
+	 * mesmas exceções para carrinhos inválidos.
+	 */
+	public BigDecimal[] calcularCustosTotais(List<CarrinhoDeCompras> carrinhos) {
+		TabelaFaixas faixas = provedorFaixas.atual();
+
+		long[] centavos = CalculadoraCustoColunar.calcularCustosTotais(CarrinhosColunares.de(carrinhos), faixas);
+
+		BigDecimal[] custos = new BigDecimal[centavos.length];
+		for (int i = 0; i < centavos.length; i++) {
+			custos[i] = centavos[i] != CalculadoraCustoCentavos.NAO_REPRESENTAVEL
+					? BigDecimal.valueOf(centavos[i], 2)
+					: calcularCustoTotal(carrinhos.get(i), faixas);
+		}
+		return custos;
+	}
+
+	/**
+	 * Resume subtotal, quantidade e subtotal por tipo, peso tributável e quantidade de itens
+	 * frágeis a partir dos totais mantidos pelo carrinho, sem percorrer os itens.
+	 *
+	 * @throws IllegalArgumentException se algum item tiver quantidade, peso ou preço inválidos
+	 */
+	public ResumoCarrinho resumirCarrinho(CarrinhoDeCompras carrinho) {
+		return resumir(obterTotais(carrinho));
+	}
+
+	private ResumoCarrinho resumir(TotaisCarrinho totais) {
+		if (totais.getQuantidadeItensInvalidos() > 0) {
+			throw new IllegalArgumentException();
+		}
+		return new ResumoCarrinho(totais);
+	}
+
+	private TotaisCarrinho obterTotais(CarrinhoDeCompras carrinho) {
+		if (verificarTotais && !carrinho.verificarTotais()) {
+			log.warn("Totais do carrinho {} divergiam dos itens e foram recalculados.", carrinho.getId());
+		}
+		return carrinho.getTotais();
+	}
+
 	public BigDecimal calcularDescontoPorMultiplosItensMesmoTipo(CarrinhoDeCompras carrinho) {
-		// Agrupa os itens por tipo de produto e soma as quantidades
-		Map<TipoProduto, Long> quantidadePorTipo = carrinho.getItens().stream()
-				.collect(Collectors.groupingBy(
-						item -> item.getProduto().getTipo(),
-						Collectors.summingLong(ItemCompra::getQuantidade)));
+		return calcularDescontoPorMultiplosItensMesmoTipo(resumirCarrinho(carrinho));
+	}
 
+	public BigDecimal calcularDescontoPorMultiplosItensMesmoTipo(ResumoCarrinho resumo) {
+		return calcularDescontoPorMultiplosItensMesmoTipo(resumo, provedorFaixas.atual());
+	}
+
+	public BigDecimal calcularDescontoPorMultiplosItensMesmoTipo(ResumoCarrinho resumo, TabelaFaixas faixas) {
 		BigDecimal descontoTotal = BigDecimal.ZERO;
 
 		// Para cada tipo de produto, calcula o desconto baseado na quantidade total
-		for (Map.Entry<TipoProduto, Long> entrada : quantidadePorTipo.entrySet()) {
-			TipoProduto tipo = entrada.getKey();
-			Long quantidadeTotal = entrada.getValue();
-
-			// Determina a porcentagem de desconto baseado na quantidade
-			BigDecimal percentualDesconto = BigDecimal.ZERO;
-			if (quantidadeTotal >= 8) {
-				percentualDesconto = BigDecimal.valueOf(0.15); // 15%
-			} else if (quantidadeTotal >= 5) {
-				percentualDesconto = BigDecimal.valueOf(0.10); // 10%
-			} else if (quantidadeTotal >= 3) {
-				percentualDesconto = BigDecimal.valueOf(0.05); // 5%
-			}
+		for (TipoProduto tipo : TIPOS_PRODUTO) {
+			BigDecimal percentualDesconto = faixas.percentualDescontoPorQuantidade(resumo.getQuantidade(tipo));
 
 			// Calcula o valor do desconto para esse tipo de produto
-			if (percentualDesconto.compareTo(BigDecimal.ZERO) > 0) {
-				BigDecimal subtotalTipo = carrinho.getItens().stream()
-						.filter(item -> item.getProduto().getTipo() == tipo)
-						.map(item -> item.getProduto().getPreco()
-								.multiply(BigDecimal.valueOf(item.getQuantidade())))
-						.reduce(BigDecimal.ZERO, BigDecimal::add);
-
-				BigDecimal descontoTipo = subtotalTipo.multiply(percentualDesconto);
+			if (percentualDesconto.signum() > 0) {
+				BigDecimal descontoTipo = resumo.getSubtotal(tipo).multiply(percentualDesconto);
 				descontoTotal = descontoTotal.add(descontoTipo);
 			}
 		}
@@ -151,78 +466,41 @@ public class CompraService {
 	}
 
 	public BigDecimal calcularDescontoPorValorCarrinho(BigDecimal subtotal) {
-    BigDecimal MIL_REAIS = BigDecimal.valueOf(1000.0);
-    BigDecimal QUINHENTOS_REAIS = BigDecimal.valueOf(500.0);
-    
-    BigDecimal desconto = BigDecimal.ZERO;
-    
-    if (subtotal.compareTo(MIL_REAIS) > 0) {
-        desconto = subtotal.multiply(BigDecimal.valueOf(0.20));
-    } else if (subtotal.compareTo(QUINHENTOS_REAIS) > 0) {
-        desconto = subtotal.multiply(BigDecimal.valueOf(0.10));
-    }
-    
-    return desconto;
-}
-
-	public BigDecimal calcularPesoTributavelTotal(ItemCompra item) {
-		BigDecimal pesoFisico = item.getProduto().getPesoFisico();
-		BigDecimal comprimento = item.getProduto().getComprimento();
-		BigDecimal largura = item.getProduto().getLargura();
-		BigDecimal altura = item.getProduto().getAltura();
+		return calcularDescontoPorValorCarrinho(subtotal, provedorFaixas.atual());
+	}
 
-		BigDecimal pesoVolumetrico = (comprimento.multiply(largura).multiply(altura))
-				.divide(BigDecimal.valueOf(6000), 2, RoundingMode.HALF_UP);
+	public BigDecimal calcularDescontoPorValorCarrinho(BigDecimal subtotal, TabelaFaixas faixas) {
+		BigDecimal percentualDesconto = faixas.percentualDescontoPorValor(subtotal);
 
-		BigDecimal pesoTributavel = pesoFisico.max(pesoVolumetrico).multiply(BigDecimal.valueOf(item.getQuantidade()));
+		if (percentualDesconto.signum() == 0) {
+			return BigDecimal.ZERO;
+		}
+		return subtotal.multiply(percentualDesconto);
+	}
 
-		return pesoTributavel;
+	public BigDecimal calcularPesoTributavelTotal(ItemCompra item) {
+		// Peso tributável unitário já vem calculado do produto; aqui só multiplica pela quantidade
+		return item.getProduto().getPesoTributavelUnitario().multiply(BigDecimal.valueOf(item.getQuantidade()));
 	}
 
 	public BigDecimal calcularFretePorRegiao(BigDecimal freteTotal, Regiao regiao) {
-		BigDecimal multiplicador = BigDecimal.ZERO;
-
-		switch (regiao) {
-			case SUDESTE -> multiplicador = BigDecimal.valueOf(1.00);
-			case SUL -> multiplicador = BigDecimal.valueOf(1.05);
-			case NORDESTE -> multiplicador = BigDecimal.valueOf(1.10);
-			case CENTRO_OESTE -> multiplicador = BigDecimal.valueOf(1.20);
-			case NORTE -> multiplicador = BigDecimal.valueOf(1.30);
-		}
+		return calcularFretePorRegiao(freteTotal, regiao, provedorFaixas.atual());
+	}
 
-		return freteTotal.multiply(multiplicador);
+	public BigDecimal calcularFretePorRegiao(BigDecimal freteTotal, Regiao regiao, TabelaFaixas faixas) {
+		return freteTotal.multiply(faixas.multiplicadorRegiao(regiao));
 	}
 
 	public BigDecimal calcularFretePorPeso(BigDecimal pesoTotal) {
-		BigDecimal CINCO_KG = BigDecimal.valueOf(5);
-    BigDecimal DEZ_KG = BigDecimal.valueOf(10);
-    BigDecimal CINQUENTA_KG = BigDecimal.valueOf(50);
-
-		BigDecimal taxaMinima = BigDecimal.valueOf(12.0);
-
-		if (pesoTotal.compareTo(CINCO_KG) <= 0) {
-			return BigDecimal.ZERO;
-		} 
-		else if (pesoTotal.compareTo(DEZ_KG) <= 0) {
-			BigDecimal valorPorKG = BigDecimal.valueOf(2.0);
-			return valorPorKG.multiply(pesoTotal).add(taxaMinima);
-		} 
-		else if (pesoTotal.compareTo(CINQUENTA_KG) <= 0) {
-			BigDecimal valorPorKG = BigDecimal.valueOf(4.0);
-			return valorPorKG.multiply(pesoTotal).add(taxaMinima);
-		} 
-		else {
-			BigDecimal valorPorKG = BigDecimal.valueOf(7.0);
-			return valorPorKG.multiply(pesoTotal).add(taxaMinima);
-		}
+		return provedorFaixas.atual().calcularFretePorPeso(pesoTotal);
 	}
 
 	public BigDecimal calcularTaxaProdutoFragil(CarrinhoDeCompras carrinho) {
-		BigDecimal taxaFragil = carrinho.getItens().stream()
-				.filter(item -> item.getProduto().isFragil())
-				.map(item -> BigDecimal.valueOf(5.0).multiply(BigDecimal.valueOf(item.getQuantidade())))
-				.reduce(BigDecimal.ZERO, BigDecimal::add);
-		return taxaFragil;
+		return calcularTaxaProdutoFragil(resumirCarrinho(carrinho));
+	}
+
+	public BigDecimal calcularTaxaProdutoFragil(ResumoCarrinho resumo) {
+		return TAXA_FRAGIL_POR_ITEM.multiply(BigDecimal.valueOf(resumo.getQuantidadeFrageis()));
 	}
 
 	public BigDecimal aplicarDescontoPorTipoCliente(BigDecimal freteTotal, TipoCliente tipoCliente) {
@@ -238,20 +516,25 @@ public class CompraService {
 	}
 
 	public BigDecimal calcularFreteTotal(CarrinhoDeCompras carrinho) {
-		BigDecimal pesoTotal = carrinho.getItens().stream()
-				.map(this::calcularPesoTributavelTotal)
-				.reduce(BigDecimal.ZERO, BigDecimal::add);
+		return calcularFreteTotal(resumirCarrinho(carrinho), carrinho.getCliente().getRegiao(),
+				carrinho.getCliente().getTipo());
+	}
+
+	public BigDecimal calcularFreteTotal(ResumoCarrinho resumo, Regiao regiao, TipoCliente tipoCliente) {
+		return calcularFreteTotal(resumo, regiao, tipoCliente, provedorFaixas.atual());
+	}
 
-		BigDecimal fretePorPeso = calcularFretePorPeso(pesoTotal);
+	public BigDecimal calcularFreteTotal(ResumoCarrinho resumo, Regiao regiao, TipoCliente tipoCliente,
+			TabelaFaixas faixas) {
+		BigDecimal fretePorPeso = faixas.calcularFretePorPeso(resumo.getPesoTributavelTotal());
 
-		BigDecimal taxaProdutoFragil = calcularTaxaProdutoFragil(carrinho);
+		BigDecimal taxaProdutoFragil = calcularTaxaProdutoFragil(resumo);
 
 		BigDecimal freteTotal = fretePorPeso.add(taxaProdutoFragil);
 
-		BigDecimal freteComTaxaPorRegiao = calcularFretePorRegiao(freteTotal, carrinho.getCliente().getRegiao());
+		BigDecimal freteComTaxaPorRegiao = calcularFretePorRegiao(freteTotal, regiao, faixas);
 
-		BigDecimal freteFinal = aplicarDescontoPorTipoCliente(freteComTaxaPorRegiao,
-				carrinho.getCliente().getTipo());
+		BigDecimal freteFinal = aplicarDescontoPorTipoCliente(freteComTaxaPorRegiao, tipoCliente);
 
 		return freteFinal;
 	}
@@ -0,0 +1,156 @@
+package ecommerce.service;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Optional;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import ecommerce.dto.CompraDTO;
+import ecommerce.dto.EstoqueBaixaDTO;
+import ecommerce.dto.PagamentoDTO;
+import ecommerce.entity.Cliente;
+import ecommerce.external.IEstoqueExternalReativo;
+import ecommerce.external.IPagamentoExternalReativo;
+import ecommerce.external.ServicoExternoIndisponivelException;
+import ecommerce.service.CompraService.DadosCompra;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+
+/**
+ * Mesma finalização de {@link CompraService#finalizarCompra}, sem bloquear threads nas chamadas a
+ * estoque e pagamento: enquanto esperam os serviços externos, as compras não ocupam thread
+ * nenhuma. Só o acesso ao banco (carga do carrinho e gravação da compensação) bloqueia, e roda no
+ * {@code agendadorBloqueante}, do tamanho do pool de conexões.
+ *
+ * Reserva, preço, liberação da reserva e compensação do pagamento seguem as mesmas regras e
+ * configurações do {@link CompraService}, que faz a carga e o cálculo do custo.
+ */
+@Service
+@ConditionalOnProperty(name = "compra.reativo.habilitado", havingValue = "true")
+public class CompraServiceReativo
+{
+	private static final Logger log = LoggerFactory.getLogger(CompraServiceReativo.class);
+
+	private final CompraService compraService;
+	private final IEstoqueExternalReativo estoqueExternal;
+	private final IPagamentoExternalReativo pagamentoExternal;
+	private final Scheduler agendadorBloqueante;
+
+	@Autowired
+	public CompraServiceReativo(CompraService compraService, IEstoqueExternalReativo estoqueExternal,
+			IPagamentoExternalReativo pagamentoExternal,
+			@Qualifier("agendadorBloqueanteReativo") Scheduler agendadorBloqueante)
+	{
+		this.compraService = compraService;
+		this.estoqueExternal = estoqueExternal;
+		this.pagamentoExternal = pagamentoExternal;
+		this.agendadorBloqueante = agendadorBloqueante;
+	}
+
+	public Mono<CompraDTO> finalizarCompra(Long carrinhoId, Long clienteId)
+	{
+		return Mono.fromCallable(() -> compraService.carregarEmTransacao(carrinhoId, clienteId))
+				.subscribeOn(agendadorBloqueante)
+				.flatMap(dados -> verificarEstoque(dados.produtosIds(), dados.produtosQtds())
+						.flatMap(reserva -> pagarEConfirmar(dados, reserva)));
+	}
+
+	private Mono<CompraDTO> pagarEConfirmar(DadosCompra dados, Optional<Long> reserva)
+	{
+		Cliente cliente = dados.cliente();
+		BigDecimal custoTotal;
+		try
+		{
+			custoTotal = compraService.calcularCustoTotal(dados.carrinho(), cliente.getRegiao(), cliente.getTipo());
+		}
+		catch (RuntimeException e)
+		{
+			return liberarReserva(reserva).then(Mono.error(e));
+		}
+
+		return pagamentoExternal.autorizarPagamento(cliente.getId(), custoTotal.doubleValue())
+				.switchIfEmpty(Mono.error(() -> new ServicoExternoIndisponivelException("Pagamento sem resposta.")))
+				.onErrorResume(e -> liberarReserva(reserva).then(Mono.error(e)))
+				.flatMap(pagamento -> {
+					if (!pagamento.autorizado())
+					{
+						return liberarReserva(reserva)
+								.then(Mono.error(new IllegalStateException("Pagamento não autorizado.")));
+					}
+					return confirmar(dados, reserva, pagamento);
+				});
+	}
+
+	private Mono<CompraDTO> confirmar(DadosCompra dados, Optional<Long> reserva, PagamentoDTO pagamento)
+	{
+		Long clienteId = dados.cliente().getId();
+		// Uma reserva que venceu durante o pagamento não é confirmada e cai na compensação abaixo
+		Mono<EstoqueBaixaDTO> baixa = reserva.isPresent() ? estoqueExternal.confirmarReserva(reserva.get())
+				: estoqueExternal.darBaixa(dados.produtosIds(), dados.produtosQtds());
+
+		return baixa
+				.onErrorResume(e -> cancelarPagamento(clienteId, pagamento.transacaoId())
+						.then(liberarReserva(reserva))
+						.then(Mono.error(e)))
+				.flatMap(baixaDTO -> {
+					if (!baixaDTO.sucesso())
+					{
+						return cancelarPagamento(clienteId, pagamento.transacaoId())
+								.then(Mono.error(new IllegalStateException("Erro ao dar baixa no estoque.")));
+					}
+					return Mono.just(new CompraDTO(true, pagamento.transacaoId(), "Compra finalizada com sucesso."));
+				});
+	}
+
+	/** Id da reserva, ou vazio sem reserva; falha com IllegalStateException se faltar estoque. */
+	private Mono<Optional<Long>> verificarEstoque(List<Long> produtosIds, List<Long> produtosQtds)
+	{
+		if (!compraService.isReservaHabilitada())
+		{
+			return estoqueExternal.verificarDisponibilidade(produtosIds, produtosQtds).map(disponibilidade -> {
+				if (!disponibilidade.disponivel())
+				{
+					throw new IllegalStateException("Itens fora de estoque.");
+				}
+				return Optional.<Long>empty();
+			});
+		}
+
+		return estoqueExternal.reservar(produtosIds, produtosQtds, compraService.getValidadeReserva())
+				.map(reserva -> {
+					if (!reserva.reservado())
+					{
+						throw new IllegalStateException("Itens fora de estoque.");
+					}
+					return Optional.of(reserva.reservaId());
+				});
+	}
+
+	/** Outbox (no agendador bloqueante) ou, sem ele, cancelamento direto no pagamento. */
+	private Mono<Void> cancelarPagamento(Long clienteId, Long transacaoId)
+	{
+		return Mono.fromCallable(() -> compraService.registrarCompensacao(clienteId, transacaoId))
+				.subscribeOn(agendadorBloqueante)
+				.flatMap(registrada -> registrada ? Mono.<Void>empty()
+						: pagamentoExternal.cancelarPagamento(clienteId, transacaoId));
+	}
+
+	/** Libera a reserva de uma compra que não vai adiante; se falhar, ela ainda vence sozinha. */
+	private Mono<Void> liberarReserva(Optional<Long> reserva)
+	{
+		if (reserva.isEmpty())
+		{
+			return Mono.empty();
+		}
+		return estoqueExternal.liberarReserva(reserva.get()).onErrorResume(e -> {
+			log.warn("Não foi possível liberar a reserva de estoque {}: {}", reserva.get(), e.getMessage());
+			return Mono.empty();
+		});
+	}
+}
@@ -0,0 +1,315 @@
+package ecommerce.service;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import ecommerce.dto.CarrinhoCotacaoDTO;
+import ecommerce.dto.CotacaoDTO;
+import ecommerce.dto.CotacaoRequestDTO;
+import ecommerce.dto.ItemCotacaoDTO;
+import ecommerce.entity.CarrinhoDeCompras;
+import ecommerce.entity.Cliente;
+import ecommerce.entity.ItemCompra;
+import ecommerce.entity.Produto;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Cotação em lote: calcula o custo total de muitos carrinhos sem consultar estoque nem pagamento.
+ *
+ * Os carrinhos são carregados em lotes (uma consulta por lote, já com itens e produtos) e
+ * precificados em paralelo em um pool de tamanho fixo. Os resultados são entregues ao consumidor
+ * na ordem em que ficam prontos, sempre na thread que chamou {@link #cotar}. Cada pedido mantém no
+ * máximo dois lotes em andamento, então a memória não cresce com o tamanho do pedido.
+ */
+@Service
+public class CotacaoService
+{
+	private final CompraService compraService;
+	private final CarrinhoDeComprasService carrinhoService;
+	private final ProdutoService produtoService;
+
+	private final ExecutorService executor;
+	private final int tamanhoLote;
+	private final int maximoCarrinhos;
+
+	@Autowired
+	public CotacaoService(CompraService compraService, CarrinhoDeComprasService carrinhoService,
+			ProdutoService produtoService, @Value("${compra.cotacao.threads:0}") int threads,
+			@Value("${compra.cotacao.tamanho-lote:500}") int tamanhoLote,
+			@Value("${compra.cotacao.maximo-carrinhos:100000}") int maximoCarrinhos)
+	{
+		this.compraService = compraService;
+		this.carrinhoService = carrinhoService;
+		this.produtoService = produtoService;
+
+		this.tamanhoLote = tamanhoLote;
+		this.maximoCarrinhos = maximoCarrinhos;
+
+		AtomicInteger contador = new AtomicInteger();
+		this.executor = Executors.newFixedThreadPool(
+				threads > 0 ? threads : Runtime.getRuntime().availableProcessors(), tarefa -> {
+					Thread thread = new Thread(tarefa, "cotacao-" + contador.incrementAndGet());
+					thread.setDaemon(true);
+					return thread;
+				});
+	}
+
+	@PreDestroy
+	public void encerrar()
+	{
+		executor.shutdownNow();
+	}
+
+	/**
+	 * @throws IllegalArgumentException se o pedido estiver vazio ou tiver carrinhos demais
+	 */
+	public void validar(CotacaoRequestDTO pedido)
+	{
+		int quantidade = tamanho(pedido.carrinhoIds()) + tamanho(pedido.carrinhos());
+		if (quantidade == 0)
+		{
+			throw new IllegalArgumentException("Informe ao menos um carrinho.");
+		}
+		if (quantidade > maximoCarrinhos)
+		{
+			throw new IllegalArgumentException("Máximo de " + maximoCarrinhos + " carrinhos por cotação.");
+		}
+	}
+
+	/**
+	 * Cota todos os carrinhos do pedido, entregando cada resultado assim que fica pronto. Carrinhos
+	 * inexistentes ou inválidos geram um resultado com {@code erro}, sem interromper os demais.
+	 *
+	 * @throws IllegalArgumentException se o pedido for inválido (ver {@link #validar})
+	 */
+	public void cotar(CotacaoRequestDTO pedido, Consumer<CotacaoDTO> consumidor)
+	{
+		validar(pedido);
+
+		Entrega entrega = new Entrega(new ExecutorCompletionService<>(executor), consumidor);
+		try
+		{
+			if (pedido.carrinhoIds() != null)
+			{
+				List<Long> ids = new ArrayList<>(new LinkedHashSet<>(pedido.carrinhoIds()));
+				for (int inicio = 0; inicio < ids.size(); inicio += tamanhoLote)
+				{
+					cotarSalvos(ids.subList(inicio, Math.min(inicio + tamanhoLote, ids.size())), entrega);
+				}
+			}
+
+			if (pedido.carrinhos() != null)
+			{
+				List<CarrinhoCotacaoDTO> carrinhos = pedido.carrinhos();
+				for (int inicio = 0; inicio < carrinhos.size(); inicio += tamanhoLote)
+				{
+					cotarInformados(carrinhos.subList(inicio, Math.min(inicio + tamanhoLote, carrinhos.size())),
+							entrega);
+				}
+			}
+
+			entrega.aguardarAte(0);
+		}
+		finally
+		{
+			// Consumidor falhou (ex.: cliente desconectou): descarta o que ainda não rodou
+			entrega.cancelarPendentes();
+		}
+	}
+
+	private void cotarSalvos(List<Long> ids, Entrega entrega)
+	{
+		Map<Long, CarrinhoDeCompras> encontrados = new HashMap<>();
+		for (CarrinhoDeCompras carrinho : carrinhoService.buscarComItens(ids))
+		{
+			encontrados.put(carrinho.getId(), carrinho);
+		}
+
+		for (Long id : ids)
+		{
+			CarrinhoDeCompras carrinho = encontrados.get(id);
+			if (carrinho == null)
+			{
+				entrega.entregar(new CotacaoDTO(id, null, null, "Carrinho não encontrado."));
+			}
+			else
+			{
+				entrega.enviar(() -> precificar(id, null, carrinho));
+			}
+		}
+
+		entrega.aguardarAte(tamanhoLote);
+	}
+
+	private void cotarInformados(List<CarrinhoCotacaoDTO> carrinhos, Entrega entrega)
+	{
+		Set<Long> produtoIds = new LinkedHashSet<>();
+		for (CarrinhoCotacaoDTO carrinho : carrinhos)
+		{
+			if (carrinho.itens() != null)
+			{
+				for (ItemCotacaoDTO item : carrinho.itens())
+				{
+					if (item.produtoId() != null)
+					{
+						produtoIds.add(item.produtoId());
+					}
+				}
+			}
+		}
+		Map<Long, Produto> produtos = produtoService.buscarPorIds(produtoIds);
+
+		for (CarrinhoCotacaoDTO informado : carrinhos)
+		{
+			try
+			{
+				CarrinhoDeCompras carrinho = montarCarrinho(informado, produtos);
+				entrega.enviar(() -> precificar(null, informado.referencia(), carrinho));
+			}
+			catch (IllegalArgumentException e)
+			{
+				entrega.entregar(new CotacaoDTO(null, informado.referencia(), null, e.getMessage()));
+			}
+		}
+
+		entrega.aguardarAte(tamanhoLote);
+	}
+
+	private CarrinhoDeCompras montarCarrinho(CarrinhoCotacaoDTO informado, Map<Long, Produto> produtos)
+	{
+		if (informado.regiao() == null || informado.tipoCliente() == null)
+		{
+			throw new IllegalArgumentException("Região e tipo do cliente são obrigatórios.");
+		}
+
+		List<ItemCompra> itens = new ArrayList<>();
+		if (informado.itens() != null)
+		{
+			for (ItemCotacaoDTO item : informado.itens())
+			{
+				if (item.quantidade() == null)
+				{
+					throw new IllegalArgumentException("Quantidade é obrigatória.");
+				}
+				Produto produto = item.produtoId() == null ? null : produtos.get(item.produtoId());
+				if (produto == null)
+				{
+					throw new IllegalArgumentException("Produto não encontrado: " + item.produtoId());
+				}
+				itens.add(new ItemCompra(null, produto, item.quantidade()));
+			}
+		}
+
+		Cliente cliente = new Cliente(null, null, informado.regiao(), informado.tipoCliente());
+		return new CarrinhoDeCompras(null, cliente, itens, null);
+	}
+
+	private CotacaoDTO precificar(Long carrinhoId, String referencia, CarrinhoDeCompras carrinho)
+	{
+		try
+		{
+			Cliente cliente = carrinho.getCliente();
+			BigDecimal custoTotal = compraService.calcularCustoTotal(carrinho, cliente.getRegiao(),
+					cliente.getTipo());
+			return new CotacaoDTO(carrinhoId, referencia, custoTotal, null);
+		}
+		catch (IllegalArgumentException e)
+		{
+			return new CotacaoDTO(carrinhoId, referencia, null,
+					e.getMessage() != null ? e.getMessage() : "Carrinho inválido.");
+		}
+		catch (RuntimeException e)
+		{
+			return new CotacaoDTO(carrinhoId, referencia, null, "Erro ao calcular cotação.");
+		}
+	}
+
+	private static int tamanho(List<?> lista)
+	{
+		return lista == null ? 0 : lista.size();
+	}
+
+	/** Tarefas em andamento de um pedido e entrega dos resultados ao consumidor. */
+	private static final class Entrega
+	{
+		private final CompletionService<CotacaoDTO> conclusoes;
+		private final Consumer<CotacaoDTO> consumidor;
+		private final Set<Future<CotacaoDTO>> pendentes = new HashSet<>();
+
+		Entrega(CompletionService<CotacaoDTO> conclusoes, Consumer<CotacaoDTO> consumidor)
+		{
+			this.conclusoes = conclusoes;
+			this.consumidor = consumidor;
+		}
+
+		void enviar(Callable<CotacaoDTO> tarefa)
+		{
+			pendentes.add(conclusoes.submit(tarefa));
+		}
+
+		void entregar(CotacaoDTO cotacao)
+		{
+			consumidor.accept(cotacao);
+		}
+
+		/** Entrega o que já terminou e espera até restarem no máximo {@code limite} pendentes. */
+		void aguardarAte(int limite)
+		{
+			try
+			{
+				Future<CotacaoDTO> pronta;
+				while (!pendentes.isEmpty() && (pronta = conclusoes.poll()) != null)
+				{
+					concluir(pronta);
+				}
+				while (pendentes.size() > limite)
+				{
+					concluir(conclusoes.take());
+				}
+			}
+			catch (InterruptedException e)
+			{
+				Thread.currentThread().interrupt();
+				throw new IllegalStateException("Cotação interrompida.", e);
+			}
+			catch (ExecutionException e)
+			{
+				throw new IllegalStateException("Erro ao calcular cotação.", e.getCause());
+			}
+		}
+
+		void cancelarPendentes()
+		{
+			for (Future<CotacaoDTO> tarefa : pendentes)
+			{
+				tarefa.cancel(false);
+			}
+			pendentes.clear();
+		}
+
+		private void concluir(Future<CotacaoDTO> pronta) throws InterruptedException, ExecutionException
+		{
+			pendentes.remove(pronta);
+			entregar(pronta.get());
+		}
+	}
+}
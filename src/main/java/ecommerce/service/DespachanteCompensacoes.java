@@ -0,0 +1,171 @@
+package ecommerce.service;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import ecommerce.entity.CompensacaoPagamento;
+import ecommerce.entity.SituacaoCompensacao;
+import ecommerce.external.IPagamentoExternal;
+
+/**
+ * Envia os cancelamentos gravados por {@link CompensacaoPagamentoService}, em lotes e fora de
+ * qualquer requisição. Uma falha reagenda a compensação com espera exponencial (dobrando a partir
+ * de {@code espera-inicial} até {@code espera-maxima}); depois de {@code maximo-tentativas} ela é
+ * abandonada e registrada como erro.
+ *
+ * Cada compensação é tomada por {@code arrendamento} logo antes do envio, para que duas instâncias
+ * ou execuções sobrepostas não mandem o mesmo cancelamento, e o resultado é gravado logo depois: uma
+ * queda no meio do lote não faz reenviar os cancelamentos já aceitos. O arrendamento deve ser maior
+ * que o timeout de {@code cancelarPagamento}.
+ */
+@Component
+@ConditionalOnProperty(name = "compra.compensacao.outbox.habilitada", havingValue = "true", matchIfMissing = true)
+public class DespachanteCompensacoes
+{
+	private static final Logger log = LoggerFactory.getLogger(DespachanteCompensacoes.class);
+
+	private static final int TAMANHO_MAXIMO_ERRO = 500;
+
+	private final CompensacaoPagamentoService compensacoes;
+	private final IPagamentoExternal pagamentoExternal;
+	private final int tamanhoLote;
+	private final Duration esperaInicial;
+	private final Duration esperaMaxima;
+	private final int maximoTentativas;
+	private final Duration arrendamento;
+	private final Clock relogio;
+
+	@Autowired
+	public DespachanteCompensacoes(CompensacaoPagamentoService compensacoes, IPagamentoExternal pagamentoExternal,
+			@Value("${compra.compensacao.tamanho-lote:100}") int tamanhoLote,
+			@Value("${compra.compensacao.espera-inicial:1s}") Duration esperaInicial,
+			@Value("${compra.compensacao.espera-maxima:5m}") Duration esperaMaxima,
+			@Value("${compra.compensacao.maximo-tentativas:10}") int maximoTentativas,
+			@Value("${compra.compensacao.arrendamento:1m}") Duration arrendamento)
+	{
+		this(compensacoes, pagamentoExternal, tamanhoLote, esperaInicial, esperaMaxima, maximoTentativas,
+				arrendamento, Clock.systemUTC());
+	}
+
+	DespachanteCompensacoes(CompensacaoPagamentoService compensacoes, IPagamentoExternal pagamentoExternal,
+			int tamanhoLote, Duration esperaInicial, Duration esperaMaxima, int maximoTentativas,
+			Duration arrendamento, Clock relogio)
+	{
+		if (tamanhoLote <= 0 || maximoTentativas <= 0)
+		{
+			throw new IllegalArgumentException("Tamanho do lote e máximo de tentativas devem ser positivos.");
+		}
+		if (arrendamento.isNegative() || arrendamento.isZero())
+		{
+			throw new IllegalArgumentException("Arrendamento das compensações deve ser positivo.");
+		}
+		this.compensacoes = compensacoes;
+		this.pagamentoExternal = pagamentoExternal;
+		this.tamanhoLote = tamanhoLote;
+		this.esperaInicial = esperaInicial;
+		this.esperaMaxima = esperaMaxima;
+		this.maximoTentativas = maximoTentativas;
+		this.arrendamento = arrendamento;
+		this.relogio = relogio;
+	}
+
+	/**
+	 * Envia lotes de compensações vencidas até esvaziar a fila. As reagendadas ficam para uma
+	 * próxima execução, então cada uma é tentada no máximo uma vez por chamada; as que outro
+	 * despachante tomou depois da busca são puladas.
+	 *
+	 * @return quantidade de cancelamentos aceitos
+	 */
+	@Scheduled(fixedDelayString = "${compra.compensacao.despacho-ms:1000}")
+	public int despachar()
+	{
+		int enviadas = 0;
+		List<CompensacaoPagamento> lote;
+		do
+		{
+			lote = compensacoes.buscarPendentes(relogio.instant(), tamanhoLote);
+			for (CompensacaoPagamento compensacao : lote)
+			{
+				if (!compensacoes.reivindicar(compensacao, relogio.instant(), arrendamento))
+				{
+					continue;
+				}
+				if (enviar(compensacao))
+				{
+					enviadas++;
+				}
+				compensacoes.salvar(compensacao);
+			}
+		}
+		while (lote.size() == tamanhoLote);
+		return enviadas;
+	}
+
+	private boolean enviar(CompensacaoPagamento compensacao)
+	{
+		try
+		{
+			pagamentoExternal.cancelarPagamento(compensacao.getClienteId(), compensacao.getTransacaoId());
+		}
+		catch (RuntimeException e)
+		{
+			registrarFalha(compensacao, e);
+			return false;
+		}
+
+		compensacao.setSituacao(SituacaoCompensacao.ENVIADA);
+		compensacao.setEnviadaEm(relogio.instant());
+		compensacao.setProximaTentativa(null);
+		compensacao.setTentativas(compensacao.getTentativas() + 1);
+		return true;
+	}
+
+	private void registrarFalha(CompensacaoPagamento compensacao, RuntimeException erro)
+	{
+		int tentativas = compensacao.getTentativas() + 1;
+		compensacao.setTentativas(tentativas);
+		compensacao.setUltimoErro(resumir(erro));
+
+		if (tentativas >= maximoTentativas)
+		{
+			compensacao.setSituacao(SituacaoCompensacao.ABANDONADA);
+			compensacao.setProximaTentativa(null);
+			log.error("Cancelamento do pagamento {} abandonado após {} tentativas: {}", compensacao.getTransacaoId(),
+					tentativas, compensacao.getUltimoErro());
+			return;
+		}
+
+		compensacao.setSituacao(SituacaoCompensacao.PENDENTE);
+		compensacao.setProximaTentativa(relogio.instant().plus(espera(tentativas)));
+		log.warn("Falha ao cancelar o pagamento {} (tentativa {}), nova tentativa em {}: {}",
+				compensacao.getTransacaoId(), tentativas, compensacao.getProximaTentativa(),
+				compensacao.getUltimoErro());
+	}
+
+	/** Espera antes da tentativa seguinte à de número {@code tentativas}: 1x, 2x, 4x... a inicial. */
+	Duration espera(int tentativas)
+	{
+		Duration espera = esperaInicial;
+		for (int i = 1; i < tentativas && espera.compareTo(esperaMaxima) < 0; i++)
+		{
+			espera = espera.multipliedBy(2);
+		}
+		return espera.compareTo(esperaMaxima) < 0 ? espera : esperaMaxima;
+	}
+
+	private static String resumir(RuntimeException erro)
+	{
+		String mensagem = erro.getClass().getSimpleName() + ": " + erro.getMessage();
+		return mensagem.length() > TAMANHO_MAXIMO_ERRO ? mensagem.substring(0, TAMANHO_MAXIMO_ERRO) : mensagem;
+	}
+}
@@ -0,0 +1,173 @@
+package ecommerce.service;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.function.Supplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import ecommerce.dto.CompraDTO;
+import ecommerce.entity.RespostaIdempotente;
+import ecommerce.entity.SituacaoRespostaIdempotente;
+import ecommerce.repository.RespostaIdempotenteRepository;
+
+/**
+ * Respostas de {@code POST /finalizar} por chave de idempotência, válidas por
+ * {@code compra.idempotencia.validade}. Uma repetição custa uma consulta pela chave (índice
+ * único); as expiradas são ignoradas e excluídas periodicamente.
+ *
+ * Antes de a compra rodar, a chave é reservada com uma linha em andamento, válida por
+ * {@code compra.idempotencia.andamento.validade}: repetições simultâneas, em qualquer instância,
+ * encontram a reserva em vez de refazer estoque e pagamento. Se a instância cair no meio da
+ * compra, a reserva expira e a chave pode ser usada de novo.
+ */
+@Service
+public class IdempotenciaService
+{
+	public static final Duration VALIDADE_ANDAMENTO_PADRAO = Duration.ofMinutes(2);
+	public static final Duration REPETIR_APOS_PADRAO = Duration.ofSeconds(1);
+
+	private static final Logger log = LoggerFactory.getLogger(IdempotenciaService.class);
+
+	private final RespostaIdempotenteRepository repository;
+	private final Duration validade;
+	private final Duration validadeAndamento;
+	private final Duration repetirApos;
+	private final Clock relogio;
+
+	private TransactionTemplate transacao;
+
+	/** Serviço com a validade e a espera padrão das reservas, para uso fora do Spring. */
+	public IdempotenciaService(RespostaIdempotenteRepository repository, Duration validade)
+	{
+		this(repository, validade, VALIDADE_ANDAMENTO_PADRAO, REPETIR_APOS_PADRAO, Clock.systemUTC());
+	}
+
+	@Autowired
+	public IdempotenciaService(RespostaIdempotenteRepository repository,
+			@Value("${compra.idempotencia.validade:24h}") Duration validade,
+			@Value("${compra.idempotencia.andamento.validade:2m}") Duration validadeAndamento,
+			@Value("${compra.idempotencia.andamento.repetir-apos:1s}") Duration repetirApos)
+	{
+		this(repository, validade, validadeAndamento, repetirApos, Clock.systemUTC());
+	}
+
+	IdempotenciaService(RespostaIdempotenteRepository repository, Duration validade, Duration validadeAndamento,
+			Duration repetirApos, Clock relogio)
+	{
+		this.repository = repository;
+		this.validade = validade;
+		this.validadeAndamento = validadeAndamento;
+		this.repetirApos = repetirApos;
+		this.relogio = relogio;
+	}
+
+	@Autowired(required = false)
+	public void setGerenciadorTransacoes(PlatformTransactionManager gerenciadorTransacoes)
+	{
+		this.transacao = new TransactionTemplate(gerenciadorTransacoes);
+	}
+
+	public Optional<RespostaIdempotente> buscar(String chave)
+	{
+		return repository.findByChaveAndExpiraEmAfter(chave, relogio.instant());
+	}
+
+	/**
+	 * Reserva a chave para uma compra que vai rodar. Retorna vazio se a reserva é de quem chamou;
+	 * senão, a linha que já ocupa a chave: a resposta final ou a reserva de outra requisição ainda
+	 * em andamento.
+	 *
+	 * Uma linha expirada da mesma chave que a limpeza ainda não excluiu (inclusive a reserva de
+	 * uma compra que nunca terminou) é substituída na mesma transação da inserção: sem isso a
+	 * inserção esbarraria no índice único e a busca, que ignora as expiradas, não acharia nada.
+	 */
+	public Optional<RespostaIdempotente> reservar(String chave, Long carrinhoId, Long clienteId)
+	{
+		RespostaIdempotente reserva = new RespostaIdempotente(chave, carrinhoId, clienteId,
+				relogio.instant().plus(validadeAndamento));
+		try
+		{
+			emTransacao(() -> {
+				repository.excluirExpirada(chave, relogio.instant());
+				return repository.saveAndFlush(reserva);
+			});
+			return Optional.empty();
+		}
+		catch (DataIntegrityViolationException e)
+		{
+			// A outra linha pode ter expirado desde a inserção; trata como compra ainda em andamento
+			return Optional.of(buscar(chave).orElse(reserva));
+		}
+	}
+
+	/**
+	 * Grava a resposta final da chave reservada por {@link #reservar}. Se a reserva expirou e outra
+	 * requisição já concluiu a mesma chave, mantém e retorna a resposta dela, para que todas as
+	 * repetições seguintes vejam a mesma.
+	 */
+	public RespostaIdempotente concluir(String chave, Long carrinhoId, Long clienteId, int status, CompraDTO compra)
+	{
+		try
+		{
+			return emTransacao(() -> {
+				RespostaIdempotente resposta = repository.findByChave(chave)
+						.orElseGet(() -> new RespostaIdempotente(chave, carrinhoId, clienteId, relogio.instant()));
+				if (!resposta.isEmAndamento())
+				{
+					return resposta;
+				}
+				resposta.setSituacao(SituacaoRespostaIdempotente.CONCLUIDA);
+				resposta.setCarrinhoId(carrinhoId);
+				resposta.setClienteId(clienteId);
+				resposta.setStatus(status);
+				resposta.setSucesso(compra.sucesso());
+				resposta.setTransacaoPagamentoId(compra.transacaoPagamentoId());
+				resposta.setMensagem(compra.mensagem());
+				resposta.setExpiraEm(relogio.instant().plus(validade));
+				return repository.saveAndFlush(resposta);
+			});
+		}
+		catch (DataIntegrityViolationException e)
+		{
+			// Reserva expirada e excluída, e a chave gravada de novo por outra requisição
+			return buscar(chave).orElseThrow(() -> e);
+		}
+	}
+
+	/** Desfaz a reserva de uma compra que pode ser repetida (serviço externo indisponível). */
+	public void liberar(String chave)
+	{
+		repository.excluirPorSituacao(chave, SituacaoRespostaIdempotente.EM_ANDAMENTO);
+	}
+
+	/** Intervalo sugerido às repetições que encontram a compra da chave em andamento. */
+	public Duration getRepetirApos()
+	{
+		return repetirApos;
+	}
+
+	private <T> T emTransacao(Supplier<T> operacao)
+	{
+		return transacao != null ? transacao.execute(status -> operacao.get()) : operacao.get();
+	}
+
+	@Scheduled(fixedDelayString = "${compra.idempotencia.limpeza-ms:600000}")
+	public void excluirExpiradas()
+	{
+		int excluidas = repository.excluirExpiradas(relogio.instant());
+		if (excluidas > 0)
+		{
+			log.debug("{} respostas idempotentes expiradas excluídas.", excluidas);
+		}
+	}
+}
@@ -0,0 +1,17 @@
+package ecommerce.service;
+
+/**
+ * Orquestração das etapas de {@link CompraService#finalizarCompra}.
+ */
+public enum ModoFinalizacao
+{
+	/** Uma etapa após a outra: verificação de estoque, depois cálculo do custo. */
+	SEQUENCIAL,
+
+	/**
+	 * A verificação de estoque (remota) roda em paralelo com o cálculo do custo (local). Falhas e
+	 * compensações são as mesmas do modo sequencial: indisponibilidade de estoque tem precedência
+	 * sobre erros do cálculo.
+	 */
+	CONCORRENTE
+}
@@ -0,0 +1,13 @@
+package ecommerce.service;
+
+/**
+ * Motor usado por {@link CompraService#calcularCustoTotal} para precificar o carrinho.
+ */
+public enum MotorPrecificacao
+{
+	/** Cálculo original, inteiramente em {@link java.math.BigDecimal}. */
+	BIG_DECIMAL,
+
+	/** Cálculo em ponto fixo ({@code long}), em centavos e gramas. */
+	CENTAVOS
+}
@@ -0,0 +1,30 @@
+package ecommerce.service;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import ecommerce.entity.Produto;
+import ecommerce.repository.ProdutoRepository;
+
+@Service
+public class ProdutoService
+{
+	private final ProdutoRepository repository;
+
+	@Autowired
+	public ProdutoService(ProdutoRepository repository)
+	{
+		this.repository = repository;
+	}
+
+	/** Busca os produtos em uma única consulta, indexados pelo id; ids inexistentes ficam de fora. */
+	public Map<Long, Produto> buscarPorIds(Collection<Long> ids)
+	{
+		return repository.findAllById(ids).stream().collect(Collectors.toMap(Produto::getId, Function.identity()));
+	}
+}
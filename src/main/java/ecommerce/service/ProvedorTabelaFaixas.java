@@ -0,0 +1,150 @@
+package ecommerce.service;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Mantém a {@link TabelaFaixas} vigente e permite trocá-la em tempo de execução.
+ *
+ * A tabela é montada a partir das propriedades {@code compra.faixas.*} do application.properties,
+ * sobrescritas pelo arquivo apontado em {@code compra.faixas.arquivo}, se houver. O arquivo é
+ * verificado periodicamente e, quando muda, uma nova tabela é montada e trocada de forma atômica;
+ * cotações em andamento continuam com a tabela que já tinham lido. Se o arquivo novo for inválido,
+ * a tabela atual é mantida.
+ */
+@Component
+public class ProvedorTabelaFaixas
+{
+	private static final Logger log = LoggerFactory.getLogger(ProvedorTabelaFaixas.class);
+
+	private final AtomicReference<TabelaFaixas> atual;
+
+	private final Environment ambiente;
+	private final Path arquivo;
+	private volatile FileTime ultimaModificacao;
+
+	/** Provedor fixo com as faixas padrão, para uso fora do Spring. */
+	public ProvedorTabelaFaixas()
+	{
+		this(TabelaFaixas.PADRAO);
+	}
+
+	/** Provedor que começa com a tabela informada, para uso fora do Spring. */
+	public ProvedorTabelaFaixas(TabelaFaixas tabela)
+	{
+		this.ambiente = null;
+		this.arquivo = null;
+		this.atual = new AtomicReference<>(tabela);
+	}
+
+	@Autowired
+	public ProvedorTabelaFaixas(Environment ambiente, @Value("${compra.faixas.arquivo:}") String arquivo)
+	{
+		this.ambiente = ambiente;
+		this.arquivo = arquivo.isBlank() ? null : Path.of(arquivo);
+		this.ultimaModificacao = lerUltimaModificacao();
+		this.atual = new AtomicReference<>(carregar());
+	}
+
+	public TabelaFaixas atual()
+	{
+		return atual.get();
+	}
+
+	public void substituir(TabelaFaixas tabela)
+	{
+		atual.set(tabela);
+	}
+
+	/**
+	 * Monta uma nova tabela a partir das propriedades e do arquivo e a torna vigente.
+	 *
+	 * @throws IllegalArgumentException se as faixas forem inválidas; a tabela atual é mantida
+	 */
+	public TabelaFaixas recarregar()
+	{
+		ultimaModificacao = lerUltimaModificacao();
+		TabelaFaixas tabela = carregar();
+		atual.set(tabela);
+		log.info("Tabela de faixas recarregada: {}", tabela.descrever());
+		return tabela;
+	}
+
+	@Scheduled(fixedDelayString = "${compra.faixas.verificacao-ms:10000}")
+	public void verificarArquivo()
+	{
+		if (arquivo == null)
+		{
+			return;
+		}
+
+		FileTime modificacao = lerUltimaModificacao();
+		if (modificacao == null || modificacao.equals(ultimaModificacao))
+		{
+			return;
+		}
+
+		try
+		{
+			recarregar();
+		}
+		catch (IllegalArgumentException e)
+		{
+			log.error("Arquivo de faixas {} inválido, mantendo a tabela atual: {}", arquivo, e.getMessage());
+		}
+	}
+
+	private TabelaFaixas carregar()
+	{
+		Properties doArquivo = lerArquivo();
+		return TabelaFaixas.carregar(chave -> {
+			String valor = doArquivo.getProperty(chave);
+			return valor != null || ambiente == null ? valor : ambiente.getProperty(chave);
+		});
+	}
+
+	private Properties lerArquivo()
+	{
+		Properties propriedades = new Properties();
+		if (arquivo == null || !Files.exists(arquivo))
+		{
+			return propriedades;
+		}
+
+		try (Reader leitor = Files.newBufferedReader(arquivo, StandardCharsets.UTF_8))
+		{
+			propriedades.load(leitor);
+			return propriedades;
+		}
+		catch (IOException e)
+		{
+			throw new IllegalArgumentException("Não foi possível ler o arquivo de faixas " + arquivo, e);
+		}
+	}
+
+	private FileTime lerUltimaModificacao()
+	{
+		try
+		{
+			return arquivo != null && Files.exists(arquivo) ? Files.getLastModifiedTime(arquivo) : null;
+		}
+		catch (IOException e)
+		{
+			return null;
+		}
+	}
+}
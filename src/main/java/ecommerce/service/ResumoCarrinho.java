@@ -0,0 +1,61 @@
+package ecommerce.service;
+
+import java.math.BigDecimal;
+
+import ecommerce.entity.TipoProduto;
+import ecommerce.entity.TotaisCarrinho;
+
+/**
+ * Cópia dos {@link TotaisCarrinho} usada por uma cotação em BigDecimal, montada sem percorrer os
+ * itens: a cotação inteira lê os mesmos valores, mesmo que o carrinho mude durante o cálculo.
+ *
+ * Quantidade e subtotal por tipo de produto ficam em arrays indexados pelo ordinal de
+ * {@link TipoProduto}, evitando o agrupamento em HashMap a cada cotação.
+ */
+public class ResumoCarrinho
+{
+	private static final TipoProduto[] TIPOS = TipoProduto.values();
+
+	private final BigDecimal subtotal;
+	private final long[] quantidadePorTipo = new long[TIPOS.length];
+	private final BigDecimal[] subtotalPorTipo = new BigDecimal[TIPOS.length];
+	private final BigDecimal pesoTributavelTotal;
+	private final long quantidadeFrageis;
+
+	public ResumoCarrinho(TotaisCarrinho totais)
+	{
+		subtotal = totais.getSubtotal();
+		for (TipoProduto tipo : TIPOS)
+		{
+			quantidadePorTipo[tipo.ordinal()] = totais.getQuantidade(tipo);
+			subtotalPorTipo[tipo.ordinal()] = totais.getSubtotal(tipo);
+		}
+		pesoTributavelTotal = totais.getPesoTributavelTotal();
+		quantidadeFrageis = totais.getQuantidadeFrageis();
+	}
+
+	public BigDecimal getSubtotal()
+	{
+		return subtotal;
+	}
+
+	public long getQuantidade(TipoProduto tipo)
+	{
+		return quantidadePorTipo[tipo.ordinal()];
+	}
+
+	public BigDecimal getSubtotal(TipoProduto tipo)
+	{
+		return subtotalPorTipo[tipo.ordinal()];
+	}
+
+	public BigDecimal getPesoTributavelTotal()
+	{
+		return pesoTributavelTotal;
+	}
+
+	public long getQuantidadeFrageis()
+	{
+		return quantidadeFrageis;
+	}
+}
@@ -0,0 +1,415 @@
+package ecommerce.service;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+import ecommerce.entity.Regiao;
+
+/**
+ * Faixas de desconto e de frete usadas na precificação, imutáveis e pré-compiladas.
+ *
+ * As faixas são guardadas em arrays ordenados e consultadas por busca binária; os multiplicadores
+ * de região ficam indexados pelo ordinal de {@link Regiao}. Além dos valores em {@link BigDecimal},
+ * a tabela guarda as mesmas faixas em ponto fixo para {@link CalculadoraCustoCentavos}:
+ * percentuais e multiplicadores em milésimos, limites de valor em 10^-5 R$, limites de peso em
+ * gramas, valores por kg em centavos e taxas fixas em 10^-5 R$.
+ *
+ * Propriedades lidas (com os valores padrão):
+ * <pre>
+ * compra.faixas.quantidade.minimos=3,5,8
+ * compra.faixas.quantidade.percentuais=0.05,0.10,0.15
+ * compra.faixas.valor.limites=500,1000
+ * compra.faixas.valor.percentuais=0.10,0.20
+ * compra.faixas.peso.limites=5,10,50
+ * compra.faixas.peso.valores-por-kg=0,2.0,4.0,7.0
+ * compra.faixas.peso.taxas-fixas=0,12.0,12.0,12.0
+ * compra.faixas.regiao.multiplicadores=SUDESTE:1.00,SUL:1.05,NORDESTE:1.10,CENTRO_OESTE:1.20,NORTE:1.30
+ * </pre>
+ */
+public final class TabelaFaixas
+{
+	public static final String PREFIXO = "compra.faixas.";
+
+	private static final Map<String, String> VALORES_PADRAO = Map.of(
+			"quantidade.minimos", "3,5,8",
+			"quantidade.percentuais", "0.05,0.10,0.15",
+			"valor.limites", "500,1000",
+			"valor.percentuais", "0.10,0.20",
+			"peso.limites", "5,10,50",
+			"peso.valores-por-kg", "0,2.0,4.0,7.0",
+			"peso.taxas-fixas", "0,12.0,12.0,12.0",
+			"regiao.multiplicadores", "SUDESTE:1.00,SUL:1.05,NORDESTE:1.10,CENTRO_OESTE:1.20,NORTE:1.30");
+
+	private static final AtomicLong GERACOES = new AtomicLong();
+
+	/** Faixas originais das regras de negócio. */
+	public static final TabelaFaixas PADRAO = carregar(chave -> null);
+
+	/** Identifica esta instância; cada tabela carregada recebe uma geração nova. */
+	private final long geracao = GERACOES.incrementAndGet();
+
+	// Desconto por quantidade do mesmo tipo: quantidade >= minimo
+	private final long[] quantidadesMinimas;
+	private final BigDecimal[] percentuaisQuantidade;
+
+	// Desconto por valor do carrinho: subtotal > limite
+	private final BigDecimal[] limitesValor;
+	private final BigDecimal[] percentuaisValor;
+
+	// Frete por peso: peso <= limite; a última faixa não tem limite
+	private final BigDecimal[] limitesPeso;
+	private final BigDecimal[] valoresPorKg;
+	private final BigDecimal[] taxasFixas;
+
+	private final BigDecimal[] multiplicadoresRegiao;
+
+	// Mesmas faixas em ponto fixo
+	private final boolean representavelEmPontoFixo;
+	private final long[] percentuaisQuantidadeMilesimos;
+	private final long[] limitesValorE5;
+	private final long[] percentuaisValorMilesimos;
+	private final long[] limitesPesoGramas;
+	private final long[] valoresPorKgCentavos;
+	private final long[] taxasFixasE5;
+	private final long[] multiplicadoresRegiaoMilesimos;
+
+	private TabelaFaixas(long[] quantidadesMinimas, BigDecimal[] percentuaisQuantidade, BigDecimal[] limitesValor,
+			BigDecimal[] percentuaisValor, BigDecimal[] limitesPeso, BigDecimal[] valoresPorKg, BigDecimal[] taxasFixas,
+			BigDecimal[] multiplicadoresRegiao)
+	{
+		exigir(quantidadesMinimas.length == percentuaisQuantidade.length,
+				"quantidade.minimos e quantidade.percentuais devem ter o mesmo tamanho");
+		exigir(limitesValor.length == percentuaisValor.length,
+				"valor.limites e valor.percentuais devem ter o mesmo tamanho");
+		exigir(valoresPorKg.length == limitesPeso.length + 1 && taxasFixas.length == limitesPeso.length + 1,
+				"peso.valores-por-kg e peso.taxas-fixas devem ter uma faixa a mais que peso.limites");
+		for (int i = 1; i < quantidadesMinimas.length; i++)
+		{
+			exigir(quantidadesMinimas[i - 1] < quantidadesMinimas[i], "quantidade.minimos deve ser crescente");
+		}
+		exigirCrescente(limitesValor, "valor.limites");
+		exigirCrescente(limitesPeso, "peso.limites");
+		exigirNaoNegativos(percentuaisQuantidade, "quantidade.percentuais");
+		exigirNaoNegativos(percentuaisValor, "valor.percentuais");
+		exigirNaoNegativos(valoresPorKg, "peso.valores-por-kg");
+		exigirNaoNegativos(taxasFixas, "peso.taxas-fixas");
+		exigirNaoNegativos(multiplicadoresRegiao, "regiao.multiplicadores");
+
+		this.quantidadesMinimas = quantidadesMinimas;
+		this.percentuaisQuantidade = percentuaisQuantidade;
+		this.limitesValor = limitesValor;
+		this.percentuaisValor = percentuaisValor;
+		this.limitesPeso = limitesPeso;
+		this.valoresPorKg = valoresPorKg;
+		this.taxasFixas = taxasFixas;
+		this.multiplicadoresRegiao = multiplicadoresRegiao;
+
+		this.percentuaisQuantidadeMilesimos = escalar(percentuaisQuantidade, 3);
+		this.limitesValorE5 = escalar(limitesValor, 5);
+		this.percentuaisValorMilesimos = escalar(percentuaisValor, 3);
+		this.limitesPesoGramas = escalar(limitesPeso, 3);
+		this.valoresPorKgCentavos = escalar(valoresPorKg, 2);
+		this.taxasFixasE5 = escalar(taxasFixas, 5);
+		this.multiplicadoresRegiaoMilesimos = escalar(multiplicadoresRegiao, 3);
+		this.representavelEmPontoFixo = percentuaisQuantidadeMilesimos != null && limitesValorE5 != null
+				&& percentuaisValorMilesimos != null && limitesPesoGramas != null && valoresPorKgCentavos != null
+				&& taxasFixasE5 != null && multiplicadoresRegiaoMilesimos != null;
+	}
+
+	/**
+	 * Monta a tabela a partir de propriedades {@code compra.faixas.*}; as ausentes usam o valor padrão.
+	 *
+	 * @throws IllegalArgumentException se alguma faixa for inválida
+	 */
+	public static TabelaFaixas carregar(Function<String, String> propriedades)
+	{
+		Function<String, String> valor = chave -> {
+			String configurado = propriedades.apply(PREFIXO + chave);
+			return configurado != null && !configurado.isBlank() ? configurado : VALORES_PADRAO.get(chave);
+		};
+
+		BigDecimal[] multiplicadores = new BigDecimal[Regiao.values().length];
+		for (Map.Entry<Regiao, BigDecimal> entrada : lerMultiplicadores(valor, "regiao.multiplicadores").entrySet())
+		{
+			multiplicadores[entrada.getKey().ordinal()] = entrada.getValue();
+		}
+		for (Regiao regiao : Regiao.values())
+		{
+			exigir(multiplicadores[regiao.ordinal()] != null, "regiao.multiplicadores sem valor para " + regiao);
+		}
+
+		return new TabelaFaixas(
+				lerInteiros(valor, "quantidade.minimos"),
+				lerDecimais(valor, "quantidade.percentuais"),
+				lerDecimais(valor, "valor.limites"),
+				lerDecimais(valor, "valor.percentuais"),
+				lerDecimais(valor, "peso.limites"),
+				lerDecimais(valor, "peso.valores-por-kg"),
+				lerDecimais(valor, "peso.taxas-fixas"),
+				multiplicadores);
+	}
+
+	/** Geração da tabela, usada para não reaproveitar cotações calculadas com outras faixas. */
+	public long getGeracao()
+	{
+		return geracao;
+	}
+
+	// ============================================================================
+	// Consultas em BigDecimal
+	// ============================================================================
+
+	public BigDecimal percentualDescontoPorQuantidade(long quantidade)
+	{
+		int faixa = ultimaFaixaAtingida(quantidadesMinimas, quantidade);
+		return faixa < 0 ? BigDecimal.ZERO : percentuaisQuantidade[faixa];
+	}
+
+	public BigDecimal percentualDescontoPorValor(BigDecimal subtotal)
+	{
+		int faixa = quantidadeDeLimitesAbaixo(limitesValor, subtotal) - 1;
+		return faixa < 0 ? BigDecimal.ZERO : percentuaisValor[faixa];
+	}
+
+	public BigDecimal calcularFretePorPeso(BigDecimal pesoTotal)
+	{
+		int faixa = quantidadeDeLimitesAbaixo(limitesPeso, pesoTotal);
+		if (valoresPorKg[faixa].signum() == 0 && taxasFixas[faixa].signum() == 0)
+		{
+			return BigDecimal.ZERO;
+		}
+		return valoresPorKg[faixa].multiply(pesoTotal).add(taxasFixas[faixa]);
+	}
+
+	public BigDecimal multiplicadorRegiao(Regiao regiao)
+	{
+		return multiplicadoresRegiao[regiao.ordinal()];
+	}
+
+	// ============================================================================
+	// Consultas em ponto fixo
+	// ============================================================================
+
+	/** Indica se todas as faixas cabem nas escalas usadas por {@link CalculadoraCustoCentavos}. */
+	public boolean isRepresentavelEmPontoFixo()
+	{
+		return representavelEmPontoFixo;
+	}
+
+	/** Percentual de desconto por quantidade, em milésimos. */
+	public long percentualDescontoPorQuantidadeMilesimos(long quantidade)
+	{
+		int faixa = ultimaFaixaAtingida(quantidadesMinimas, quantidade);
+		return faixa < 0 ? 0L : percentuaisQuantidadeMilesimos[faixa];
+	}
+
+	/** Percentual de desconto por valor, em milésimos, para um subtotal em 10^-5 R$. */
+	public long percentualDescontoPorValorMilesimos(long subtotalE5)
+	{
+		int faixa = quantidadeDeLimitesAbaixo(limitesValorE5, subtotalE5) - 1;
+		return faixa < 0 ? 0L : percentuaisValorMilesimos[faixa];
+	}
+
+	/** Frete por peso em 10^-5 R$, para um peso em gramas. */
+	public long calcularFretePorPesoE5(long pesoGramas)
+	{
+		int faixa = quantidadeDeLimitesAbaixo(limitesPesoGramas, pesoGramas);
+		return Math.addExact(Math.multiplyExact(valoresPorKgCentavos[faixa], pesoGramas), taxasFixasE5[faixa]);
+	}
+
+	/** Multiplicador de frete da região, em milésimos. */
+	public long multiplicadorRegiaoMilesimos(Regiao regiao)
+	{
+		return multiplicadoresRegiaoMilesimos[regiao.ordinal()];
+	}
+
+	/** Resumo legível das faixas, usado no endpoint de administração. */
+	public Map<String, Object> descrever()
+	{
+		Map<Regiao, BigDecimal> regioes = new EnumMap<>(Regiao.class);
+		for (Regiao regiao : Regiao.values())
+		{
+			regioes.put(regiao, multiplicadorRegiao(regiao));
+		}
+		return Map.of(
+				"quantidade", Map.of("minimos", quantidadesMinimas, "percentuais", percentuaisQuantidade),
+				"valor", Map.of("limites", limitesValor, "percentuais", percentuaisValor),
+				"peso", Map.of("limites", limitesPeso, "valoresPorKg", valoresPorKg, "taxasFixas", taxasFixas),
+				"regiao", regioes,
+				"representavelEmPontoFixo", representavelEmPontoFixo);
+	}
+
+	// ============================================================================
+	// Busca binária
+	// ============================================================================
+
+	/** Índice da maior faixa com mínimo <= valor, ou -1 se nenhuma foi atingida. */
+	private static int ultimaFaixaAtingida(long[] minimos, long valor)
+	{
+		int inicio = 0;
+		int fim = minimos.length - 1;
+		int encontrada = -1;
+		while (inicio <= fim)
+		{
+			int meio = (inicio + fim) >>> 1;
+			if (minimos[meio] <= valor)
+			{
+				encontrada = meio;
+				inicio = meio + 1;
+			}
+			else
+			{
+				fim = meio - 1;
+			}
+		}
+		return encontrada;
+	}
+
+	/** Quantidade de limites estritamente menores que o valor. */
+	private static int quantidadeDeLimitesAbaixo(long[] limites, long valor)
+	{
+		int inicio = 0;
+		int fim = limites.length;
+		while (inicio < fim)
+		{
+			int meio = (inicio + fim) >>> 1;
+			if (limites[meio] < valor)
+			{
+				inicio = meio + 1;
+			}
+			else
+			{
+				fim = meio;
+			}
+		}
+		return inicio;
+	}
+
+	/** Quantidade de limites estritamente menores que o valor. */
+	private static int quantidadeDeLimitesAbaixo(BigDecimal[] limites, BigDecimal valor)
+	{
+		int inicio = 0;
+		int fim = limites.length;
+		while (inicio < fim)
+		{
+			int meio = (inicio + fim) >>> 1;
+			if (limites[meio].compareTo(valor) < 0)
+			{
+				inicio = meio + 1;
+			}
+			else
+			{
+				fim = meio;
+			}
+		}
+		return inicio;
+	}
+
+	// ============================================================================
+	// Leitura e validação
+	// ============================================================================
+
+	private static BigDecimal[] lerDecimais(Function<String, String> valores, String chave)
+	{
+		String valor = valores.apply(chave);
+		if (valor.isBlank())
+		{
+			return new BigDecimal[0];
+		}
+		try
+		{
+			return Arrays.stream(valor.split(",")).map(String::trim).map(BigDecimal::new).toArray(BigDecimal[]::new);
+		}
+		catch (NumberFormatException e)
+		{
+			throw new IllegalArgumentException("Faixas inválidas: " + PREFIXO + chave + " com valor não numérico: "
+					+ valor, e);
+		}
+	}
+
+	private static long[] lerInteiros(Function<String, String> valores, String chave)
+	{
+		BigDecimal[] decimais = lerDecimais(valores, chave);
+		long[] inteiros = new long[decimais.length];
+		for (int i = 0; i < decimais.length; i++)
+		{
+			try
+			{
+				inteiros[i] = decimais[i].longValueExact();
+			}
+			catch (ArithmeticException e)
+			{
+				throw new IllegalArgumentException("Faixas inválidas: " + PREFIXO + chave + " deve ter só inteiros: "
+						+ decimais[i].toPlainString(), e);
+			}
+		}
+		return inteiros;
+	}
+
+	private static Map<Regiao, BigDecimal> lerMultiplicadores(Function<String, String> valores, String chave)
+	{
+		Map<Regiao, BigDecimal> multiplicadores = new EnumMap<>(Regiao.class);
+		for (String par : valores.apply(chave).split(","))
+		{
+			String[] partes = par.trim().split(":");
+			exigir(partes.length == 2, PREFIXO + chave + " com multiplicador inválido: " + par);
+			try
+			{
+				multiplicadores.put(Regiao.valueOf(partes[0].trim()), new BigDecimal(partes[1].trim()));
+			}
+			catch (IllegalArgumentException e)
+			{
+				// Região desconhecida ou número inválido (NumberFormatException)
+				throw new IllegalArgumentException("Faixas inválidas: " + PREFIXO + chave
+						+ " com multiplicador inválido: " + par, e);
+			}
+		}
+		return multiplicadores;
+	}
+
+	/** Converte para inteiros na escala indicada, ou null se algum valor tiver casas demais. */
+	private static long[] escalar(BigDecimal[] valores, int casas)
+	{
+		long[] escalados = new long[valores.length];
+		try
+		{
+			for (int i = 0; i < valores.length; i++)
+			{
+				escalados[i] = valores[i].movePointRight(casas).longValueExact();
+			}
+		}
+		catch (ArithmeticException e)
+		{
+			return null;
+		}
+		return escalados;
+	}
+
+	private static void exigirCrescente(BigDecimal[] valores, String nome)
+	{
+		for (int i = 1; i < valores.length; i++)
+		{
+			exigir(valores[i - 1].compareTo(valores[i]) < 0, nome + " deve ser crescente");
+		}
+	}
+
+	private static void exigirNaoNegativos(BigDecimal[] valores, String nome)
+	{
+		for (BigDecimal valor : valores)
+		{
+			exigir(valor.signum() >= 0, nome + " não pode ter valores negativos");
+		}
+	}
+
+	private static void exigir(boolean condicao, String mensagem)
+	{
+		if (!condicao)
+		{
+			throw new IllegalArgumentException("Faixas inválidas: " + mensagem);
+		}
+	}
+}
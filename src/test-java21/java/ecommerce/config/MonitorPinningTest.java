@@ -0,0 +1,86 @@
+package ecommerce.config;
+
+import java.time.Duration;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+@DisplayName("Testes do Monitor de Pinning de Threads Virtuais")
+public class MonitorPinningTest {
+
+    private static final Duration ESPERA_EVENTOS = Duration.ofSeconds(10);
+
+    private SimpleMeterRegistry registry;
+    private MonitorPinning monitor;
+
+    @BeforeEach
+    void setUp() {
+        registry = new SimpleMeterRegistry();
+        monitor = new MonitorPinning(registry, Duration.ofMillis(10));
+        monitor.iniciar();
+    }
+
+    @AfterEach
+    void tearDown() {
+        monitor.parar();
+    }
+
+    @Test
+    @DisplayName("Bloquear dentro de synchronized em thread virtual deve ser detectado")
+    void testSynchronizedDetectado() throws Exception {
+        Object monitorObjeto = new Object();
+
+        Thread.ofVirtual().start(() -> {
+            synchronized (monitorObjeto) {
+                dormir(50);
+            }
+        }).join();
+
+        assertThat(aguardarOcorrencias("synchronized")).isGreaterThanOrEqualTo(1.0);
+    }
+
+    @Test
+    @DisplayName("Bloquear com ReentrantLock em thread virtual não deve ser detectado")
+    void testReentrantLockNaoDetectado() throws Exception {
+        ReentrantLock trava = new ReentrantLock();
+
+        Thread.ofVirtual().start(() -> {
+            trava.lock();
+            try {
+                dormir(50);
+            } finally {
+                trava.unlock();
+            }
+        }).join();
+        dormir(2_000);
+
+        assertThat(monitor.contador("synchronized").count()).isZero();
+    }
+
+    // ============================================================================
+    // MÉTODOS AUXILIARES
+    // ============================================================================
+
+    /** O JFR entrega os eventos em lotes, cerca de uma vez por segundo. */
+    private double aguardarOcorrencias(String origem) {
+        long limite = System.nanoTime() + ESPERA_EVENTOS.toNanos();
+        while (monitor.contador(origem).count() == 0 && System.nanoTime() < limite) {
+            dormir(100);
+        }
+        return monitor.contador(origem).count();
+    }
+
+    private static void dormir(long milissegundos) {
+        try {
+            Thread.sleep(milissegundos);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
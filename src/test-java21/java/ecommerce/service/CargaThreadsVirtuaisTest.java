@@ -0,0 +1,209 @@
+package ecommerce.service;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.web.embedded.tomcat.TomcatWebServer;
+import org.springframework.boot.web.servlet.context.ServletWebServerApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.http.ResponseEntity;
+
+import ecommerce.config.MonitorPinning;
+import ecommerce.controller.CompraController;
+import ecommerce.dto.CompraDTO;
+import ecommerce.dto.PagamentoDTO;
+import ecommerce.dto.ReservaDTO;
+import ecommerce.entity.CarrinhoDeCompras;
+import ecommerce.entity.Cliente;
+import ecommerce.entity.ItemCompra;
+import ecommerce.entity.Produto;
+import ecommerce.entity.Regiao;
+import ecommerce.entity.TipoCliente;
+import ecommerce.entity.TipoProduto;
+import ecommerce.external.IEstoqueExternal;
+import ecommerce.external.IPagamentoExternal;
+import ecommerce.external.fake.EstoqueSimulado;
+import ecommerce.external.fake.PagamentoSimulado;
+import ecommerce.external.protecao.EstoqueExternoProtegido;
+import ecommerce.external.protecao.PagamentoExternoProtegido;
+import ecommerce.repository.CarrinhoDeComprasRepository;
+import ecommerce.repository.ClienteRepository;
+import ecommerce.repository.ProdutoRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Teste de carga da aplicação inteira com threads virtuais: {@value #COMPRAS} compras, cada uma em
+ * uma thread do executor que {@code ThreadsVirtuaisConfig} entrega ao Tomcat, passam por
+ * CompraController, pela carga do carrinho no H2 (pool Hikari padrão, bem menor que o número de
+ * compras) e pelos clientes {@code @Primary} protegidos por timeout, circuito e bulkhead.
+ *
+ * O estoque simulado só responde à reserva depois que todas as compras estão esperando por ela ao
+ * mesmo tempo, então o resultado não depende do relógio: com threads de plataforma em algum ponto
+ * da cadeia (Tomcat, chamadas protegidas), as compras ficariam limitadas ao tamanho do pool. Durante
+ * a carga, {@link MonitorPinning} observa as threads virtuais presas à portadora no JDBC. O tempo
+ * de cada modelo com latência externa é medido em {@code ThreadsVirtuaisBenchmark} (profile jmh).
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "spring.main.allow-bean-definition-overriding=true",
+        "compra.threads.virtuais.habilitadas=true",
+        "compra.externo.estoque.chamadas-simultaneas=" + CargaThreadsVirtuaisTest.COMPRAS,
+        "compra.externo.pagamento.chamadas-simultaneas=" + CargaThreadsVirtuaisTest.COMPRAS,
+        "compra.externo.estoque.timeout-padrao=" + CargaThreadsVirtuaisTest.ESPERA_MAXIMA_S + "s",
+        "compra.externo.pagamento.timeout-padrao=" + CargaThreadsVirtuaisTest.ESPERA_MAXIMA_S + "s",
+        "compra.externo.circuito.lenta-acima-de=" + CargaThreadsVirtuaisTest.ESPERA_MAXIMA_S + "s" })
+@DisplayName("Teste de Carga com Threads Virtuais - Aplicação")
+public class CargaThreadsVirtuaisTest {
+
+    static final int COMPRAS = 2_000;
+    /** Espera máxima pelas compras simultâneas antes de dar o teste por travado. */
+    static final long ESPERA_MAXIMA_S = 60;
+    /** O JFR entrega os eventos em lotes, cerca de uma vez por segundo. */
+    private static final long ESPERA_EVENTOS_MS = 2_000;
+
+    @Autowired
+    private ServletWebServerApplicationContext contexto;
+
+    @Autowired
+    private CompraController compraController;
+
+    @Autowired
+    private IEstoqueExternal estoqueExterno;
+
+    @Autowired
+    private IPagamentoExternal pagamentoExterno;
+
+    @Autowired
+    private EstoqueRetido estoqueRetido;
+
+    /** Só para exigir o monitor ativo: sem ele, a métrica de pinning ficaria zerada de qualquer jeito. */
+    @Autowired
+    private MonitorPinning monitorPinning;
+
+    @Autowired
+    private MeterRegistry registry;
+
+    @Autowired
+    private ClienteRepository clienteRepository;
+
+    @Autowired
+    private ProdutoRepository produtoRepository;
+
+    @Autowired
+    private CarrinhoDeComprasRepository carrinhoRepository;
+
+    @Test
+    @DisplayName("Todas as compras devem esperar a reserva ao mesmo tempo, em threads virtuais e sem pinning no JDBC")
+    void testComprasEmAndamento() throws Exception {
+        assertThat(estoqueExterno).isInstanceOf(EstoqueExternoProtegido.class);
+        assertThat(pagamentoExterno).isInstanceOf(PagamentoExternoProtegido.class);
+        Cliente cliente = clienteRepository.save(new Cliente(null, "Cliente Teste", Regiao.SUDESTE, TipoCliente.PRATA));
+        List<Long> carrinhos = criarCarrinhos(cliente);
+        Executor executorTomcat = ((TomcatWebServer) contexto.getWebServer()).getTomcat().getConnector()
+                .getProtocolHandler().getExecutor();
+
+        List<CompletableFuture<ResponseEntity<CompraDTO>>> compras = new ArrayList<>(COMPRAS);
+        for (Long carrinhoId : carrinhos) {
+            compras.add(CompletableFuture.supplyAsync(
+                    () -> compraController.finalizarCompra(carrinhoId, cliente.getId(), null), executorTomcat));
+        }
+        for (CompletableFuture<ResponseEntity<CompraDTO>> compra : compras) {
+            ResponseEntity<CompraDTO> resposta = compra.get(ESPERA_MAXIMA_S, TimeUnit.SECONDS);
+            assertThat(resposta.getStatusCode().value()).isEqualTo(200);
+            assertThat(resposta.getBody().sucesso()).isTrue();
+        }
+        Thread.sleep(ESPERA_EVENTOS_MS);
+
+        assertThat(estoqueRetido.pico.get()).isEqualTo(COMPRAS);
+        assertThat(estoqueRetido.chamadasEmPlataforma.get()).isZero();
+        assertThat(registry.counter(MonitorPinning.METRICA, "origem", "jdbc").count()).isZero();
+    }
+
+    // ============================================================================
+    // MÉTODOS AUXILIARES
+    // ============================================================================
+
+    /** Um carrinho por compra, para que o coalescedor não una as finalizações. */
+    private List<Long> criarCarrinhos(Cliente cliente) {
+        BigDecimal dimensao = new BigDecimal("10.0");
+        Produto produto = produtoRepository.save(new Produto(null, "Produto 1", "Descrição do Produto 1",
+                new BigDecimal("45.90"), new BigDecimal("0.5"), dimensao, dimensao, dimensao, false,
+                TipoProduto.LIVRO));
+        List<CarrinhoDeCompras> novos = new ArrayList<>(COMPRAS);
+        for (int i = 0; i < COMPRAS; i++) {
+            CarrinhoDeCompras carrinho = new CarrinhoDeCompras();
+            carrinho.setCliente(cliente);
+            carrinho.setData(LocalDate.now());
+            carrinho.setItens(new ArrayList<>(List.of(new ItemCompra(null, produto, 1L))));
+            novos.add(carrinho);
+        }
+        return carrinhoRepository.saveAll(novos).stream().map(CarrinhoDeCompras::getId).toList();
+    }
+
+    @TestConfiguration
+    static class ServicosRetidos {
+
+        /** Substitui o bean do estoque simulado, por baixo da cadeia de proteção. */
+        @Bean(name = "estoqueSimulado")
+        EstoqueRetido estoqueSimulado() {
+            return new EstoqueRetido();
+        }
+
+        @Bean(name = "pagamentoSimulado")
+        PagamentoSimulado pagamentoSimulado() {
+            AtomicInteger transacoes = new AtomicInteger();
+            return new PagamentoSimulado() {
+                @Override
+                public PagamentoDTO autorizarPagamento(Long clienteId, Double custoTotal) {
+                    return new PagamentoDTO(true, (long) transacoes.incrementAndGet());
+                }
+            };
+        }
+    }
+
+    /** Estoque simulado que só reserva quando {@value #COMPRAS} reservas estão em andamento. */
+    static class EstoqueRetido extends EstoqueSimulado {
+
+        final AtomicInteger emAndamento = new AtomicInteger();
+        final AtomicInteger pico = new AtomicInteger();
+        final AtomicInteger chamadasEmPlataforma = new AtomicInteger();
+        private final CountDownLatch simultaneas = new CountDownLatch(COMPRAS);
+
+        EstoqueRetido() {
+            super(1_000_000, MAXIMO_PRODUTOS_PADRAO);
+        }
+
+        @Override
+        public ReservaDTO reservar(List<Long> produtosIds, List<Long> produtosQuantidades, Duration validade) {
+            if (!Thread.currentThread().isVirtual()) {
+                chamadasEmPlataforma.incrementAndGet();
+            }
+            pico.accumulateAndGet(emAndamento.incrementAndGet(), Math::max);
+            simultaneas.countDown();
+            try {
+                if (!simultaneas.await(ESPERA_MAXIMA_S, TimeUnit.SECONDS)) {
+                    throw new IllegalStateException("Compras simultâneas esperadas não chegaram à reserva.");
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException(e);
+            } finally {
+                emAndamento.decrementAndGet();
+            }
+            return super.reservar(produtosIds, produtosQuantidades, validade);
+        }
+    }
+}
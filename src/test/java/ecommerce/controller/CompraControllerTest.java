@@ -0,0 +1,185 @@
+package ecommerce.controller;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import ecommerce.dto.CompraDTO;
+import ecommerce.entity.RespostaIdempotente;
+import ecommerce.external.ServicoExternoIndisponivelException;
+import ecommerce.service.CoalescedorFinalizacoes;
+import ecommerce.service.CompraService;
+import ecommerce.service.IdempotenciaService;
+
+@DisplayName("Testes de Idempotência - CompraController")
+public class CompraControllerTest {
+
+    private Map<String, RespostaIdempotente> respostasGravadas;
+    private AtomicInteger execucoes;
+    private Supplier<CompraDTO> compra;
+
+    private CompraController controller;
+
+    @BeforeEach
+    void setUp() {
+        respostasGravadas = new HashMap<>();
+        execucoes = new AtomicInteger();
+        compra = () -> new CompraDTO(true, execucoes.get() * 100L, "Compra finalizada com sucesso.");
+
+        CompraService compraService = new CompraService(null, null, null, null) {
+            @Override
+            public CompraDTO finalizarCompra(Long carrinhoId, Long clienteId) {
+                execucoes.incrementAndGet();
+                return compra.get();
+            }
+        };
+        IdempotenciaService idempotenciaService = new IdempotenciaService(null, Duration.ofHours(24)) {
+            @Override
+            public Optional<RespostaIdempotente> buscar(String chave) {
+                return Optional.ofNullable(respostasGravadas.get(chave));
+            }
+
+            @Override
+            public Optional<RespostaIdempotente> reservar(String chave, Long carrinhoId, Long clienteId) {
+                RespostaIdempotente existente = respostasGravadas.putIfAbsent(chave,
+                        new RespostaIdempotente(chave, carrinhoId, clienteId, Instant.now().plus(Duration.ofMinutes(2))));
+                return Optional.ofNullable(existente);
+            }
+
+            @Override
+            public RespostaIdempotente concluir(String chave, Long carrinhoId, Long clienteId, int status,
+                    CompraDTO compraDTO) {
+                return respostasGravadas.compute(chave, (c, reserva) -> reserva != null && !reserva.isEmAndamento()
+                        ? reserva
+                        : new RespostaIdempotente(c, carrinhoId, clienteId, status, compraDTO.sucesso(),
+                                compraDTO.transacaoPagamentoId(), compraDTO.mensagem(),
+                                Instant.now().plus(Duration.ofHours(24))));
+            }
+
+            @Override
+            public void liberar(String chave) {
+                respostasGravadas.computeIfPresent(chave, (c, reserva) -> reserva.isEmAndamento() ? null : reserva);
+            }
+        };
+        controller = new CompraController(new CoalescedorFinalizacoes(compraService, 100), idempotenciaService);
+    }
+
+    @Test
+    @DisplayName("Sem chave, cada requisição deve finalizar a compra de novo")
+    void testSemChave() {
+        controller.finalizarCompra(1L, 1L, null);
+        controller.finalizarCompra(1L, 1L, null);
+
+        assertThat(execucoes.get()).isEqualTo(2);
+        assertThat(respostasGravadas).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Repetição com a mesma chave deve receber a resposta gravada sem refazer a compra")
+    void testRepeticaoDaResposta() {
+        ResponseEntity<CompraDTO> primeira = controller.finalizarCompra(1L, 1L, "chave-1");
+        ResponseEntity<CompraDTO> segunda = controller.finalizarCompra(1L, 1L, "chave-1");
+
+        assertThat(execucoes.get()).isEqualTo(1);
+        assertThat(segunda.getStatusCode().value()).isEqualTo(200);
+        assertThat(segunda.getBody()).isEqualTo(primeira.getBody());
+        assertThat(segunda.getBody().transacaoPagamentoId()).isEqualTo(100L);
+    }
+
+    @Test
+    @DisplayName("Recusa de negócio deve ser gravada e repetida com o mesmo status")
+    void testRecusaGravada() {
+        compra = () -> {
+            throw new IllegalStateException("Pagamento não autorizado.");
+        };
+
+        controller.finalizarCompra(1L, 1L, "chave-1");
+        ResponseEntity<CompraDTO> repeticao = controller.finalizarCompra(1L, 1L, "chave-1");
+
+        assertThat(execucoes.get()).isEqualTo(1);
+        assertThat(repeticao.getStatusCode().value()).isEqualTo(HttpStatus.CONFLICT.value());
+        assertThat(repeticao.getBody().mensagem()).isEqualTo("Pagamento não autorizado.");
+    }
+
+    @Test
+    @DisplayName("Erro interno deve ser gravado, porque a compra pode ter chegado ao pagamento")
+    void testErroInternoGravado() {
+        compra = () -> {
+            throw new RuntimeException("Falha inesperada");
+        };
+        ResponseEntity<CompraDTO> primeira = controller.finalizarCompra(1L, 1L, "chave-1");
+
+        compra = () -> new CompraDTO(true, 7L, "Compra finalizada com sucesso.");
+        ResponseEntity<CompraDTO> segunda = controller.finalizarCompra(1L, 1L, "chave-1");
+
+        assertThat(primeira.getStatusCode().value()).isEqualTo(500);
+        assertThat(segunda.getStatusCode().value()).isEqualTo(500);
+        assertThat(execucoes.get()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Serviço externo indisponível deve liberar a chave, para que a repetição tente de novo")
+    void testServicoIndisponivelLiberaChave() {
+        compra = () -> {
+            throw new ServicoExternoIndisponivelException("Serviço de estoque indisponível.");
+        };
+        ResponseEntity<CompraDTO> primeira = controller.finalizarCompra(1L, 1L, "chave-1");
+
+        compra = () -> new CompraDTO(true, 7L, "Compra finalizada com sucesso.");
+        ResponseEntity<CompraDTO> segunda = controller.finalizarCompra(1L, 1L, "chave-1");
+
+        assertThat(primeira.getStatusCode().value()).isEqualTo(503);
+        assertThat(segunda.getStatusCode().value()).isEqualTo(200);
+        assertThat(execucoes.get()).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("Repetição com a compra da chave em andamento deve receber 409 com Retry-After sem refazer a compra")
+    void testRepeticaoEmAndamento() {
+        AtomicReference<ResponseEntity<CompraDTO>> repeticao = new AtomicReference<>();
+        compra = () -> {
+            repeticao.set(controller.finalizarCompra(1L, 1L, "chave-1"));
+            return new CompraDTO(true, 7L, "Compra finalizada com sucesso.");
+        };
+
+        ResponseEntity<CompraDTO> original = controller.finalizarCompra(1L, 1L, "chave-1");
+
+        assertThat(execucoes.get()).isEqualTo(1);
+        assertThat(repeticao.get().getStatusCode().value()).isEqualTo(HttpStatus.CONFLICT.value());
+        assertThat(repeticao.get().getHeaders().getFirst(HttpHeaders.RETRY_AFTER)).isEqualTo("1");
+        assertThat(original.getStatusCode().value()).isEqualTo(200);
+        assertThat(controller.finalizarCompra(1L, 1L, "chave-1").getBody().transacaoPagamentoId()).isEqualTo(7L);
+    }
+
+    @Test
+    @DisplayName("Chave já usada em outra compra deve ser rejeitada")
+    void testChaveDeOutraCompra() {
+        controller.finalizarCompra(1L, 1L, "chave-1");
+        ResponseEntity<CompraDTO> outraCompra = controller.finalizarCompra(2L, 1L, "chave-1");
+
+        assertThat(execucoes.get()).isEqualTo(1);
+        assertThat(outraCompra.getStatusCode().value()).isEqualTo(HttpStatus.UNPROCESSABLE_ENTITY.value());
+        assertThat(outraCompra.getBody().sucesso()).isFalse();
+    }
+
+    @Test
+    @DisplayName("Chave em branco ou longa demais deve ser rejeitada sem finalizar a compra")
+    void testChaveInvalida() {
+        assertThat(controller.finalizarCompra(1L, 1L, " ").getStatusCode().value()).isEqualTo(400);
+        assertThat(controller.finalizarCompra(1L, 1L, "x".repeat(101)).getStatusCode().value()).isEqualTo(400);
+        assertThat(execucoes.get()).isZero();
+    }
+}
@@ -0,0 +1,165 @@
+package ecommerce.external.fake;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Carga com carrinhos que se sobrepõem: cada baixa leva de 2 a 5 produtos, quase sempre algum dos
+ * {@value #POPULARES} populares, misturados a uma cauda de {@value #CAUDA} produtos e em ordem
+ * aleatória, o pior caso para travas tomadas na ordem do pedido. A vazão com essa mesma carga é
+ * medida em {@code EstoqueSimuladoSobrepostoBenchmark} (profile jmh).
+ */
+@DisplayName("Testes de Concorrência das Baixas - EstoqueSimulado")
+public class EstoqueSimuladoConcorrenciaTest {
+
+    private static final int THREADS = 8;
+    private static final int POPULARES = 10;
+    private static final int CAUDA = 1_000;
+    private static final int PEDIDOS_POR_THREAD = 1_024;
+    private static final long SALDO = 20_000;
+
+    private ExecutorService executor;
+
+    @BeforeEach
+    void setUp() {
+        executor = Executors.newFixedThreadPool(Math.max(THREADS, Runtime.getRuntime().availableProcessors()));
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    @DisplayName("Baixas sobrepostas em ordens aleatórias devem terminar sem deadlock e conservar o estoque")
+    void testBaixasSobrepostasConservamEstoque() throws Exception {
+        for (ConcorrenciaEstoque concorrencia : ConcorrenciaEstoque.values()) {
+            EstoqueSimulado estoque = criarEstoque(concorrencia, 16);
+            AtomicLongArray vendidos = new AtomicLongArray(POPULARES + CAUDA);
+
+            List<Future<Long>> threads = iniciar(THREADS, semente -> {
+                List<List<Long>> pedidos = gerarPedidos(semente);
+                long sucessos = 0;
+                for (int rodada = 0; rodada < 5; rodada++) {
+                    for (List<Long> pedido : pedidos) {
+                        if (estoque.darBaixa(pedido, Collections.nCopies(pedido.size(), 1L)).sucesso()) {
+                            pedido.forEach(produtoId -> vendidos.incrementAndGet(produtoId.intValue()));
+                            sucessos++;
+                        }
+                    }
+                }
+                return sucessos;
+            });
+
+            assertThat(somar(threads)).as("%s: baixas com sucesso", concorrencia).isPositive();
+            for (int produtoId = 0; produtoId < POPULARES + CAUDA; produtoId++) {
+                assertThat(estoque.disponivel((long) produtoId))
+                        .as("%s: disponível do produto %d", concorrencia, produtoId)
+                        .isEqualTo(SALDO - vendidos.get(produtoId))
+                        .isNotNegative();
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("Com listras, baixa com estoque suficiente não deve ser recusada por desconto provisório")
+    void testListrasSemRecusaPorDescontoProvisorio() throws Exception {
+        // Metade das baixas pede o produto 1 e o 2, que está zerado: descontam o 1 e desistem.
+        // A outra metade pede só o produto 1, cujo saldo cobre exatamente todas elas.
+        int porThread = 2_000;
+        EstoqueSimulado estoque = criarEstoque(ConcorrenciaEstoque.LISTRAS, 16);
+        estoque.definirSaldo(1L, (long) THREADS * porThread);
+        estoque.definirSaldo(2L, 0);
+
+        List<Future<Long>> threads = iniciar(THREADS, semente -> {
+            long recusadas = 0;
+            for (int i = 0; i < porThread; i++) {
+                estoque.darBaixa(List.of(1L, 2L), List.of(1L, 1L));
+                if (!estoque.darBaixa(List.of(1L), List.of(1L)).sucesso()) {
+                    recusadas++;
+                }
+            }
+            return recusadas;
+        });
+
+        assertThat(somar(threads)).isZero();
+        assertThat(estoque.disponivel(1L)).isZero();
+    }
+
+    // ============================================================================
+    // MÉTODOS AUXILIARES
+    // ============================================================================
+
+    private static EstoqueSimulado criarEstoque(ConcorrenciaEstoque concorrencia, int listras) {
+        EstoqueSimulado estoque = new EstoqueSimulado(SALDO);
+        estoque.setConcorrencia(concorrencia);
+        estoque.setListras(listras);
+        return estoque;
+    }
+
+    /** Pedidos de 2 a 5 produtos distintos, 9 em 10 com um produto popular, em ordem aleatória. */
+    private static List<List<Long>> gerarPedidos(long semente) {
+        Random aleatorio = new Random(semente);
+        List<List<Long>> pedidos = new ArrayList<>(PEDIDOS_POR_THREAD);
+        for (int i = 0; i < PEDIDOS_POR_THREAD; i++) {
+            int linhas = 2 + aleatorio.nextInt(4);
+            List<Long> pedido = new ArrayList<>(linhas);
+            if (aleatorio.nextInt(10) != 0) {
+                pedido.add((long) aleatorio.nextInt(POPULARES));
+            }
+            while (pedido.size() < linhas) {
+                long produtoId = aleatorio.nextInt(4) == 0 ? aleatorio.nextInt(POPULARES)
+                        : POPULARES + aleatorio.nextInt(CAUDA);
+                if (!pedido.contains(produtoId)) {
+                    pedido.add(produtoId);
+                }
+            }
+            Collections.shuffle(pedido, aleatorio);
+            pedidos.add(pedido);
+        }
+        return pedidos;
+    }
+
+    private interface Tarefa {
+        long executar(long semente) throws Exception;
+    }
+
+    /** Roda a tarefa em {@code threads} threads liberadas ao mesmo tempo, cada uma com sua semente. */
+    private List<Future<Long>> iniciar(int threads, Tarefa tarefa) {
+        CountDownLatch largada = new CountDownLatch(1);
+        List<Future<Long>> futuros = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            long semente = i;
+            Callable<Long> chamada = () -> {
+                largada.await();
+                return tarefa.executar(semente);
+            };
+            futuros.add(executor.submit(chamada));
+        }
+        largada.countDown();
+        return futuros;
+    }
+
+    private static long somar(List<Future<Long>> futuros) throws Exception {
+        long total = 0;
+        for (Future<Long> futuro : futuros) {
+            total += futuro.get(60, TimeUnit.SECONDS);
+        }
+        return total;
+    }
+}
@@ -0,0 +1,205 @@
+package ecommerce.external.fake;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+@DisplayName("Testes da Persistência do Estoque - EstoqueSimulado")
+public class EstoqueSimuladoPersistenciaTest {
+
+    private static final long SALDO_INICIAL = 100;
+    private static final Duration VALIDADE = Duration.ofSeconds(30);
+
+    private Path raiz;
+    private Path diretorio;
+    private EstoqueSimulado estoque;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        raiz = Files.createTempDirectory("estoque-simulado");
+        diretorio = raiz;
+        estoque = abrir(EstoqueSimulado.MAXIMO_PRODUTOS_PADRAO);
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        estoque.close();
+        try (Stream<Path> arquivos = Files.walk(raiz)) {
+            for (Path arquivo : arquivos.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(arquivo);
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("Baixas, reservas confirmadas e ajustes de saldo devem sobreviver à reinicialização")
+    void testRestauraEstoqueComprometido() {
+        estoque.darBaixa(List.of(1L, 2L), List.of(10L, 20L));
+        estoque.definirSaldo(3L, 7);
+        Long confirmada = estoque.reservar(List.of(1L), List.of(5L), VALIDADE).reservaId();
+        estoque.confirmarReserva(confirmada);
+        estoque.reservar(List.of(2L), List.of(30L), VALIDADE);
+        Long liberada = estoque.reservar(List.of(3L), List.of(7L), VALIDADE).reservaId();
+        estoque.liberarReserva(liberada);
+        estoque.darBaixa(List.of(3L), List.of(8L));
+
+        reiniciar();
+
+        assertThat(estoque.disponivel(1L)).isEqualTo(85);
+        assertThat(estoque.disponivel(2L)).isEqualTo(80);
+        assertThat(estoque.disponivel(3L)).isEqualTo(7);
+        assertThat(estoque.disponivel(4L)).isEqualTo(SALDO_INICIAL);
+        assertThat(estoque.reservasEmAberto()).isZero();
+    }
+
+    @Test
+    @DisplayName("Reinicializações seguidas devem partir do snapshot novo sem reaplicar o diário antigo")
+    void testReinicializacoesSeguidas() {
+        estoque.darBaixa(List.of(1L), List.of(10L));
+        reiniciar();
+        estoque.darBaixa(List.of(1L), List.of(10L));
+        reiniciar();
+        reiniciar();
+
+        assertThat(estoque.disponivel(1L)).isEqualTo(80);
+    }
+
+    @Test
+    @DisplayName("Diário de uma geração anterior ao snapshot deve ser ignorado")
+    void testDiarioDeOutraGeracao() throws IOException {
+        estoque.darBaixa(List.of(1L), List.of(10L));
+        estoque.close();
+        Path copia = diretorio.resolve("diario.copia");
+        Files.copy(diretorio.resolve(DiarioEstoque.PREFIXO_DIARIO + 0), copia);
+        estoque = abrir(EstoqueSimulado.MAXIMO_PRODUTOS_PADRAO);
+        estoque.close();
+
+        // Queda entre gravar o snapshot novo e recomeçar o diário
+        Files.move(copia, diretorio.resolve(DiarioEstoque.PREFIXO_DIARIO + 0), StandardCopyOption.REPLACE_EXISTING);
+        estoque = abrir(EstoqueSimulado.MAXIMO_PRODUTOS_PADRAO);
+
+        assertThat(estoque.disponivel(1L)).isEqualTo(90);
+    }
+
+    @Test
+    @DisplayName("Baixas registradas devem ser restauradas mesmo sem fechar o estoque, como numa queda do processo")
+    void testRestauraSemFechar() {
+        estoque.darBaixa(List.of(1L), List.of(10L));
+        estoque.darBaixa(List.of(1L, 2L), List.of(1L, 1L));
+
+        // O diário fica na memória mapeada do arquivo, não no processo
+        estoque = abrir(EstoqueSimulado.MAXIMO_PRODUTOS_PADRAO);
+
+        assertThat(estoque.disponivel(1L)).isEqualTo(89);
+        assertThat(estoque.disponivel(2L)).isEqualTo(99);
+    }
+
+    @Test
+    @DisplayName("Ajustes de saldo simultâneos a baixas do mesmo produto devem ser restaurados como estavam")
+    void testAjustesSimultaneosABaixas() throws Exception {
+        for (ConcorrenciaEstoque concorrencia : ConcorrenciaEstoque.values()) {
+            estoque.setConcorrencia(concorrencia);
+            Thread ajustes = new Thread(() -> {
+                for (int i = 0; i < 2_000; i++) {
+                    estoque.definirSaldo(1L, 1_000 + i % 50);
+                }
+            });
+            ajustes.start();
+            for (int i = 0; i < 2_000; i++) {
+                estoque.darBaixa(List.of(1L), List.of(1L));
+            }
+            ajustes.join();
+            long antes = estoque.disponivel(1L);
+
+            reiniciar();
+
+            assertThat(estoque.disponivel(1L)).as("Modo %s", concorrencia).isEqualTo(antes);
+        }
+    }
+
+    @Test
+    @DisplayName("Diários cheios devem ser somados ao snapshot e apagados")
+    void testCompactacaoDosDiarios() throws IOException {
+        estoque.close();
+        estoque = new EstoqueSimulado(SALDO_INICIAL, EstoqueSimulado.MAXIMO_PRODUTOS_PADRAO);
+        estoque.persistirEm(diretorio, 8);
+        for (long produtoId = 0; produtoId < 50; produtoId++) {
+            estoque.darBaixa(List.of(produtoId, produtoId + 5_000), List.of(produtoId % 3 + 1, 1L));
+        }
+        estoque.close();
+
+        assertThat(diarios()).hasSize(1);
+
+        reiniciar();
+
+        for (long produtoId = 0; produtoId < 50; produtoId++) {
+            assertThat(estoque.disponivel(produtoId)).isEqualTo(SALDO_INICIAL - produtoId % 3 - 1);
+            assertThat(estoque.disponivel(produtoId + 5_000)).isEqualTo(SALDO_INICIAL - 1);
+        }
+        assertThat(diarios()).hasSize(1);
+    }
+
+    @Test
+    @DisplayName("Snapshot de outra faixa de produtos deve ser recusado")
+    void testFaixaDiferente() {
+        estoque.darBaixa(List.of(1L), List.of(10L));
+        estoque.close();
+
+        IllegalStateException erro = assertThrows(IllegalStateException.class, () -> abrir(2048));
+
+        assertThat(erro.getMessage()).isEqualTo("Snapshot de estoque para 1048576 produtos; configurado para 2048.");
+    }
+
+    @Test
+    @DisplayName("Estoque com milhões de produtos deve ser restaurado com as baixas espalhadas pela faixa")
+    void testRestauraMilhoesDeProdutos() {
+        int produtos = 4 * EstoqueSimulado.MAXIMO_PRODUTOS_PADRAO;
+        estoque.close();
+        diretorio = diretorio.resolve("milhoes");
+        estoque = abrir(produtos);
+        for (long produtoId = 0; produtoId < produtos; produtoId += 1000) {
+            estoque.darBaixa(List.of(produtoId), List.of(produtoId % 7 + 1));
+        }
+        estoque.close();
+
+        estoque = abrir(produtos);
+
+        assertThat(estoque.disponivel(7_000L)).isEqualTo(SALDO_INICIAL - 1);
+        assertThat(estoque.disponivel(4_193_000L)).isEqualTo(SALDO_INICIAL - 4_193_000L % 7 - 1);
+        assertThat(estoque.disponivel(4_193_001L)).isEqualTo(SALDO_INICIAL);
+    }
+
+    // ============================================================================
+    // MÉTODOS AUXILIARES
+    // ============================================================================
+
+    private EstoqueSimulado abrir(int maximoProdutos) {
+        EstoqueSimulado aberto = new EstoqueSimulado(SALDO_INICIAL, maximoProdutos);
+        aberto.persistirEm(diretorio);
+        return aberto;
+    }
+
+    private List<Path> diarios() throws IOException {
+        try (Stream<Path> arquivos = Files.list(diretorio)) {
+            return arquivos.filter(arquivo -> arquivo.getFileName().toString().startsWith(DiarioEstoque.PREFIXO_DIARIO))
+                    .toList();
+        }
+    }
+
+    private void reiniciar() {
+        estoque.close();
+        estoque = abrir(EstoqueSimulado.MAXIMO_PRODUTOS_PADRAO);
+    }
+}
@@ -0,0 +1,273 @@
+package ecommerce.external.fake;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import ecommerce.dto.DisponibilidadeDTO;
+import ecommerce.dto.ReservaDTO;
+
+@DisplayName("Testes do Livro de Reservas - EstoqueSimulado")
+public class EstoqueSimuladoTest {
+
+    private static final Duration VALIDADE = Duration.ofSeconds(30);
+    private static final int THREADS = 8;
+
+    private Instant agora;
+    private EstoqueSimulado estoque;
+    private ExecutorService executor;
+
+    @BeforeEach
+    void setUp() {
+        agora = Instant.parse("2024-01-01T00:00:00Z");
+        estoque = new EstoqueSimulado(10, new Clock() {
+            @Override
+            public ZoneId getZone() {
+                return ZoneOffset.UTC;
+            }
+
+            @Override
+            public Clock withZone(ZoneId zone) {
+                return this;
+            }
+
+            @Override
+            public Instant instant() {
+                return agora;
+            }
+        });
+        estoque.definirSaldo(1L, 3);
+        executor = Executors.newFixedThreadPool(THREADS);
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    @DisplayName("Reserva deve descontar do disponível até ser confirmada")
+    void testReservaDescontaDisponivel() {
+        ReservaDTO reserva = estoque.reservar(List.of(1L, 2L), List.of(2L, 4L), VALIDADE);
+
+        assertThat(reserva.reservado()).isTrue();
+        assertThat(estoque.disponivel(1L)).isEqualTo(1);
+        assertThat(estoque.disponivel(2L)).isEqualTo(6);
+
+        assertThat(estoque.confirmarReserva(reserva.reservaId()).sucesso()).isTrue();
+        assertThat(estoque.disponivel(1L)).isEqualTo(1);
+        assertThat(estoque.reservasEmAberto()).isZero();
+    }
+
+    @Test
+    @DisplayName("Segunda reserva do último item deve ser recusada com os ids indisponíveis")
+    void testReservaConcorrenteRecusada() {
+        assertThat(estoque.reservar(List.of(1L), List.of(3L), VALIDADE).reservado()).isTrue();
+
+        ReservaDTO segunda = estoque.reservar(List.of(2L, 1L), List.of(1L, 1L), VALIDADE);
+        DisponibilidadeDTO disponibilidade = estoque.verificarDisponibilidade(List.of(1L), List.of(1L));
+
+        assertThat(segunda.reservado()).isFalse();
+        assertThat(segunda.reservaId()).isNull();
+        assertThat(segunda.idsProdutosIndisponiveis()).containsExactly(1L);
+        assertThat(disponibilidade.disponivel()).isFalse();
+        assertThat(estoque.disponivel(2L)).as("Reserva recusada não deve separar nada").isEqualTo(10);
+    }
+
+    @Test
+    @DisplayName("Produto repetido deve somar as quantidades")
+    void testProdutoRepetido() {
+        ReservaDTO reserva = estoque.reservar(List.of(1L, 1L), List.of(2L, 2L), VALIDADE);
+
+        assertThat(reserva.reservado()).isFalse();
+        assertThat(reserva.idsProdutosIndisponiveis()).containsExactly(1L);
+    }
+
+    @Test
+    @DisplayName("Liberar reserva deve devolver ao disponível e impedir a confirmação")
+    void testLiberarReserva() {
+        ReservaDTO reserva = estoque.reservar(List.of(1L), List.of(3L), VALIDADE);
+
+        estoque.liberarReserva(reserva.reservaId());
+        estoque.liberarReserva(reserva.reservaId());
+
+        assertThat(estoque.disponivel(1L)).isEqualTo(3);
+        assertThat(estoque.confirmarReserva(reserva.reservaId()).sucesso()).isFalse();
+        assertThat(estoque.disponivel(1L)).isEqualTo(3);
+    }
+
+    @Test
+    @DisplayName("Reserva vencida deve voltar ao disponível e não poder ser confirmada")
+    void testReservaVencida() {
+        ReservaDTO reserva = estoque.reservar(List.of(1L), List.of(3L), VALIDADE);
+
+        agora = agora.plus(VALIDADE).minusMillis(1);
+        assertThat(estoque.disponivel(1L)).isZero();
+
+        agora = agora.plusMillis(1);
+        estoque.expirarReservas();
+
+        assertThat(estoque.reservasEmAberto()).isZero();
+        assertThat(estoque.disponivel(1L)).isEqualTo(3);
+        assertThat(estoque.confirmarReserva(reserva.reservaId()).sucesso()).isFalse();
+    }
+
+    @Test
+    @DisplayName("Baixa direta deve respeitar as reservas em aberto e ser tudo ou nada")
+    void testBaixaRespeitaReservas() {
+        estoque.reservar(List.of(1L), List.of(2L), VALIDADE);
+
+        assertThat(estoque.darBaixa(List.of(2L, 1L), List.of(5L, 2L)).sucesso()).isFalse();
+        assertThat(estoque.disponivel(2L)).isEqualTo(10);
+
+        assertThat(estoque.darBaixa(List.of(2L, 1L), List.of(5L, 1L)).sucesso()).isTrue();
+        assertThat(estoque.disponivel(1L)).isZero();
+        assertThat(estoque.disponivel(2L)).isEqualTo(5);
+    }
+
+    @Test
+    @DisplayName("Quantidade não positiva deve ser rejeitada")
+    void testQuantidadeInvalida() {
+        assertThrows(IllegalArgumentException.class, () -> estoque.reservar(List.of(1L), List.of(0L), VALIDADE));
+        assertThrows(IllegalArgumentException.class, () -> estoque.darBaixa(List.of(1L, 2L), List.of(1L)));
+    }
+
+    @Test
+    @DisplayName("Produto fora da faixa de ids deve ser rejeitado")
+    void testProdutoForaDaFaixa() {
+        EstoqueSimulado pequeno = new EstoqueSimulado(10, 100, Clock.systemUTC());
+
+        assertThrows(IllegalArgumentException.class, () -> pequeno.darBaixa(List.of(1L, 100L), List.of(1L, 1L)));
+        assertThrows(IllegalArgumentException.class, () -> pequeno.disponivel(-1L));
+        assertThat(pequeno.disponivel(1L)).as("Baixa rejeitada não deve descontar nada").isEqualTo(10);
+        assertThat(pequeno.darBaixa(List.of(99L), List.of(10L)).sucesso()).isTrue();
+    }
+
+    @Test
+    @DisplayName("Disponibilidade deve listar só os produtos que faltam, sem descontar nada")
+    void testDisponibilidadeListaFaltantes() {
+        DisponibilidadeDTO disponibilidade = estoque.verificarDisponibilidade(List.of(3L, 1L, 2L, 1L),
+                List.of(11L, 2L, 10L, 2L));
+
+        assertThat(disponibilidade.disponivel()).isFalse();
+        assertThat(disponibilidade.idsProdutosIndisponiveis()).containsExactly(1L, 3L);
+        assertThat(estoque.disponivel(2L)).isEqualTo(10);
+    }
+
+    @Test
+    @DisplayName("Baixas simultâneas não devem vender além do saldo")
+    void testBaixasSimultaneasSemVendaAlemDoSaldo() throws Exception {
+        estoque.definirSaldo(1L, 1_000);
+        int tentativasPorThread = 1_000;
+
+        List<Future<Integer>> threads = iniciar(() -> {
+            int sucessos = 0;
+            for (int i = 0; i < tentativasPorThread; i++) {
+                if (estoque.darBaixa(List.of(1L), List.of(1L)).sucesso()) {
+                    sucessos++;
+                }
+            }
+            return sucessos;
+        });
+
+        assertThat(somar(threads)).isEqualTo(1_000);
+        assertThat(estoque.disponivel(1L)).isZero();
+    }
+
+    @Test
+    @DisplayName("Baixa de vários produtos deve ser tudo ou nada sob disputa")
+    void testBaixaTudoOuNadaSobDisputa() throws Exception {
+        // Cada compra leva um de cada; com 1.000 do produto 1 e 600 do 2, só 600 compras cabem
+        estoque.definirSaldo(1L, 1_000);
+        estoque.definirSaldo(2L, 600);
+        estoque.definirSaldo(3L, 1_000);
+
+        List<Future<Integer>> threads = iniciar(() -> {
+            int sucessos = 0;
+            for (int i = 0; i < 500; i++) {
+                // Ordens diferentes entre threads: o desconto segue a ordem dos ids
+                List<Long> ids = i % 2 == 0 ? List.of(1L, 2L, 3L) : List.of(3L, 2L, 1L);
+                if (estoque.darBaixa(ids, List.of(1L, 1L, 1L)).sucesso()) {
+                    sucessos++;
+                }
+            }
+            return sucessos;
+        });
+
+        assertThat(somar(threads)).isEqualTo(600);
+        assertThat(estoque.disponivel(1L)).isEqualTo(400);
+        assertThat(estoque.disponivel(2L)).isZero();
+        assertThat(estoque.disponivel(3L)).isEqualTo(400);
+    }
+
+    @Test
+    @DisplayName("Reservas, confirmações e liberações simultâneas devem manter o disponível consistente")
+    void testReservasSimultaneas() throws Exception {
+        estoque.definirSaldo(1L, 100);
+
+        List<Future<Integer>> threads = iniciar(() -> {
+            int confirmadas = 0;
+            for (int i = 0; i < 2_000; i++) {
+                ReservaDTO reserva = estoque.reservar(List.of(1L, 2L), List.of(1L, 1L), VALIDADE);
+                if (!reserva.reservado()) {
+                    continue;
+                }
+                if (i % 4 == 0 && estoque.confirmarReserva(reserva.reservaId()).sucesso()) {
+                    confirmadas++;
+                } else {
+                    estoque.liberarReserva(reserva.reservaId());
+                }
+            }
+            return confirmadas;
+        });
+
+        int confirmadas = somar(threads);
+        assertThat(confirmadas).isPositive();
+        assertThat(estoque.reservasEmAberto()).isZero();
+        assertThat(estoque.disponivel(1L)).isEqualTo(100 - confirmadas);
+        assertThat(estoque.disponivel(2L)).isEqualTo(10 - confirmadas);
+    }
+
+    // ============================================================================
+    // MÉTODOS AUXILIARES
+    // ============================================================================
+
+    /** Roda a tarefa em {@value #THREADS} threads liberadas ao mesmo tempo. */
+    private List<Future<Integer>> iniciar(Callable<Integer> tarefa) {
+        CountDownLatch largada = new CountDownLatch(1);
+        List<Future<Integer>> threads = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            threads.add(executor.submit(() -> {
+                largada.await();
+                return tarefa.call();
+            }));
+        }
+        largada.countDown();
+        return threads;
+    }
+
+    private static int somar(List<Future<Integer>> threads) throws Exception {
+        int total = 0;
+        for (Future<Integer> thread : threads) {
+            total += thread.get(30, TimeUnit.SECONDS);
+        }
+        return total;
+    }
+}
@@ -0,0 +1,48 @@
+package ecommerce.external.protecao;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+@DisplayName("Testes do Fechamento dos Decoradores - CadeiaDecoradores")
+public class CadeiaDecoradoresTest {
+
+    @Test
+    @DisplayName("Decoradores devem fechar do mais externo para o mais interno, mesmo com falha em um deles")
+    void testFechaDeForaParaDentro() {
+        List<String> fechados = new ArrayList<>();
+        CadeiaDecoradores cadeia = new CadeiaDecoradores();
+        cadeia.registrar(fechavel("protegido", fechados));
+        cadeia.registrar((AutoCloseable) () -> {
+            fechados.add("lote");
+            throw new IllegalStateException("Falha ao fechar");
+        });
+        cadeia.registrar(fechavel("cache", fechados));
+
+        cadeia.close();
+        cadeia.close();
+
+        assertThat(fechados).containsExactly("cache", "lote", "protegido");
+    }
+
+    @Test
+    @DisplayName("Decorador sem recursos deve ser devolvido sem entrar na cadeia")
+    void testDecoradorSemRecursos() {
+        CadeiaDecoradores cadeia = new CadeiaDecoradores();
+        Object decorador = new Object();
+
+        assertThat(cadeia.registrar(decorador)).isSameAs(decorador);
+        cadeia.close();
+    }
+
+    // ============================================================================
+    // MÉTODOS AUXILIARES
+    // ============================================================================
+
+    private static AutoCloseable fechavel(String nome, List<String> fechados) {
+        return () -> fechados.add(nome);
+    }
+}
@@ -0,0 +1,321 @@
+package ecommerce.external.protecao;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import ecommerce.dto.DisponibilidadeDTO;
+import ecommerce.dto.EstoqueBaixaDTO;
+import ecommerce.dto.PagamentoDTO;
+import ecommerce.dto.ReservaDTO;
+import ecommerce.entity.CarrinhoDeCompras;
+import ecommerce.entity.Cliente;
+import ecommerce.entity.ItemCompra;
+import ecommerce.entity.Produto;
+import ecommerce.entity.Regiao;
+import ecommerce.entity.TipoCliente;
+import ecommerce.entity.TipoProduto;
+import ecommerce.external.IEstoqueExternal;
+import ecommerce.external.IPagamentoExternal;
+import ecommerce.external.ServicoExternoIndisponivelException;
+import ecommerce.service.CarrinhoDeComprasService;
+import ecommerce.service.ClienteService;
+import ecommerce.service.CompraService;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerConfig;
+
+@DisplayName("Testes de Timeout e Circuit Breaker - ChamadasProtegidas")
+public class ChamadasProtegidasTest {
+
+    private static final int JANELA = 4;
+    private static final Duration TIMEOUT = Duration.ofMillis(100);
+    private static final Duration ESPERA_ABERTO = Duration.ofMillis(200);
+
+    private CircuitBreaker circuito;
+    private ChamadasProtegidas chamadas;
+    private AtomicInteger execucoes;
+
+    @BeforeEach
+    void setUp() {
+        circuito = CircuitBreaker.of("estoque", CircuitBreakerConfig.custom()
+                .slidingWindowType(CircuitBreakerConfig.SlidingWindowType.COUNT_BASED)
+                .slidingWindowSize(JANELA)
+                .minimumNumberOfCalls(JANELA)
+                .failureRateThreshold(50)
+                .waitDurationInOpenState(ESPERA_ABERTO)
+                .permittedNumberOfCallsInHalfOpenState(2)
+                .ignoreExceptions(IllegalArgumentException.class)
+                .build());
+        chamadas = new ChamadasProtegidas("estoque", circuito, Duration.ofSeconds(5),
+                Map.of("verificarDisponibilidade", TIMEOUT));
+        execucoes = new AtomicInteger();
+    }
+
+    @AfterEach
+    void tearDown() {
+        chamadas.close();
+    }
+
+    @Test
+    @DisplayName("Chamada acima do timeout deve falhar no timeout e interromper a chamada")
+    void testTimeout() throws Exception {
+        CountDownLatch interrompida = new CountDownLatch(1);
+
+        long inicio = System.nanoTime();
+        assertThrows(ServicoExternoIndisponivelException.class,
+                () -> chamadas.executar("verificarDisponibilidade", () -> {
+                    try {
+                        Thread.sleep(10_000);
+                    } catch (InterruptedException e) {
+                        interrompida.countDown();
+                    }
+                    return null;
+                }));
+        long duracaoMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - inicio);
+
+        assertThat(duracaoMs).isGreaterThanOrEqualTo(TIMEOUT.toMillis()).isLessThan(1_000);
+        assertThat(interrompida.await(1, TimeUnit.SECONDS)).isTrue();
+        assertThat(circuito.getMetrics().getNumberOfFailedCalls()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Operação sem timeout próprio deve usar o padrão")
+    void testTimeoutPadrao() {
+        assertThat(chamadas.timeout("verificarDisponibilidade")).isEqualTo(TIMEOUT);
+        assertThat(chamadas.timeout("darBaixa")).isEqualTo(Duration.ofSeconds(5));
+    }
+
+    @Test
+    @DisplayName("Circuito aberto deve falhar na hora sem chamar o serviço")
+    void testCircuitoAbertoFalhaRapido() {
+        for (int i = 0; i < JANELA; i++) {
+            assertThrows(IllegalStateException.class, () -> chamadas.executar("darBaixa", this::falhar));
+        }
+        assertThat(circuito.getState()).isEqualTo(CircuitBreaker.State.OPEN);
+
+        long inicio = System.nanoTime();
+        ServicoExternoIndisponivelException erro = assertThrows(ServicoExternoIndisponivelException.class,
+                () -> chamadas.executar("darBaixa", this::responder));
+
+        assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - inicio)).isLessThan(50);
+        assertThat(erro.getMessage()).contains("estoque");
+        assertThat(execucoes.get()).isEqualTo(JANELA);
+    }
+
+    @Test
+    @DisplayName("Após a espera, chamadas de teste bem-sucedidas devem fechar o circuito")
+    void testRecuperacao() throws Exception {
+        for (int i = 0; i < JANELA; i++) {
+            assertThrows(IllegalStateException.class, () -> chamadas.executar("darBaixa", this::falhar));
+        }
+        Thread.sleep(ESPERA_ABERTO.toMillis() + 50);
+
+        assertThat(chamadas.executar("darBaixa", this::responder)).isEqualTo("ok");
+        assertThat(chamadas.executar("darBaixa", this::responder)).isEqualTo("ok");
+
+        assertThat(circuito.getState()).isEqualTo(CircuitBreaker.State.CLOSED);
+    }
+
+    @Test
+    @DisplayName("Pedido inválido não deve contar como falha do serviço")
+    void testPedidoInvalidoNaoAbreCircuito() {
+        for (int i = 0; i < JANELA * 2; i++) {
+            assertThrows(IllegalArgumentException.class, () -> chamadas.executar("darBaixa", () -> {
+                throw new IllegalArgumentException("Quantidade inválida");
+            }));
+        }
+
+        assertThat(circuito.getState()).isEqualTo(CircuitBreaker.State.CLOSED);
+        assertThat(chamadas.executar("darBaixa", this::responder)).isEqualTo("ok");
+    }
+
+    @Test
+    @DisplayName("Acima das chamadas simultâneas, a chamada deve falhar na hora sem contar para o circuito")
+    void testBulkhead() throws Exception {
+        chamadas.close();
+        chamadas = new ChamadasProtegidas("estoque", circuito, Duration.ofSeconds(5), Map.of(), 2);
+        CountDownLatch emAndamento = new CountDownLatch(2);
+        CountDownLatch liberar = new CountDownLatch(1);
+        List<Thread> ocupando = new ArrayList<>();
+        for (int i = 0; i < 2; i++) {
+            Thread thread = new Thread(() -> chamadas.executar("darBaixa", () -> {
+                emAndamento.countDown();
+                try {
+                    liberar.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return responder();
+            }));
+            thread.start();
+            ocupando.add(thread);
+        }
+        assertThat(emAndamento.await(1, TimeUnit.SECONDS)).isTrue();
+
+        ServicoExternoIndisponivelException erro = assertThrows(ServicoExternoIndisponivelException.class,
+                () -> chamadas.executar("darBaixa", this::responder));
+
+        assertThat(erro.getMessage()).isEqualTo("Serviço de estoque sem vagas (2 chamadas em andamento).");
+        liberar.countDown();
+        for (Thread thread : ocupando) {
+            thread.join();
+        }
+        assertThat(chamadas.executar("darBaixa", this::responder)).isEqualTo("ok");
+        assertThat(execucoes.get()).isEqualTo(3);
+        assertThat(circuito.getMetrics().getNumberOfFailedCalls()).isZero();
+    }
+
+    @Test
+    @DisplayName("Com executor injetado, o bulkhead deve limitar as chamadas e o executor fechar junto")
+    void testBulkheadComExecutorInjetado() throws Exception {
+        chamadas.close();
+        ExecutorService executor = Executors.newCachedThreadPool();
+        chamadas = new ChamadasProtegidas("estoque", circuito, Duration.ofSeconds(5), Map.of(), 3, executor);
+        CountDownLatch emAndamento = new CountDownLatch(3);
+        CountDownLatch liberar = new CountDownLatch(1);
+        List<Thread> ocupando = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            Thread thread = new Thread(() -> chamadas.executar("darBaixa", () -> {
+                emAndamento.countDown();
+                try {
+                    liberar.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return responder();
+            }));
+            thread.start();
+            ocupando.add(thread);
+        }
+        assertThat(emAndamento.await(1, TimeUnit.SECONDS)).isTrue();
+
+        ServicoExternoIndisponivelException erro = assertThrows(ServicoExternoIndisponivelException.class,
+                () -> chamadas.executar("darBaixa", this::responder));
+
+        assertThat(erro.getMessage()).isEqualTo("Serviço de estoque sem vagas (3 chamadas em andamento).");
+        liberar.countDown();
+        for (Thread thread : ocupando) {
+            thread.join();
+        }
+        chamadas.close();
+        assertThat(executor.isShutdown()).isTrue();
+    }
+
+    @Test
+    @DisplayName("Timeout na baixa após o pagamento deve cancelar o pagamento")
+    void testTimeoutNaBaixaCompensaPagamento() {
+        List<Long> cancelados = new ArrayList<>();
+        IEstoqueExternal estoqueLento = new IEstoqueExternal() {
+            @Override
+            public EstoqueBaixaDTO darBaixa(List<Long> produtosIds, List<Long> produtosQuantidades) {
+                try {
+                    Thread.sleep(10_000);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return new EstoqueBaixaDTO(true);
+            }
+
+            @Override
+            public DisponibilidadeDTO verificarDisponibilidade(List<Long> produtosIds, List<Long> produtosQuantidades) {
+                return new DisponibilidadeDTO(true, List.of());
+            }
+
+            @Override
+            public ReservaDTO reservar(List<Long> produtosIds, List<Long> produtosQuantidades, Duration validade) {
+                DisponibilidadeDTO disponibilidade = verificarDisponibilidade(produtosIds, produtosQuantidades);
+                return new ReservaDTO(disponibilidade.disponivel(), disponibilidade.disponivel() ? 1L : null,
+                        disponibilidade.idsProdutosIndisponiveis());
+            }
+
+            @Override
+            public EstoqueBaixaDTO confirmarReserva(Long reservaId) {
+                return new EstoqueBaixaDTO(true);
+            }
+
+            @Override
+            public void liberarReserva(Long reservaId) {
+            }
+
+            @Override
+            public Map<Long, Long> consultarSaldos(List<Long> produtosIds) {
+                Map<Long, Long> saldos = new HashMap<>();
+                produtosIds.forEach(produtoId -> saldos.put(produtoId, Long.MAX_VALUE));
+                return saldos;
+            }
+        };
+        IPagamentoExternal pagamento = new IPagamentoExternal() {
+            @Override
+            public PagamentoDTO autorizarPagamento(Long clienteId, Double custoTotal) {
+                return new PagamentoDTO(true, 10L);
+            }
+
+            @Override
+            public void cancelarPagamento(Long clienteId, Long pagamentoTransacaoId) {
+                cancelados.add(pagamentoTransacaoId);
+            }
+        };
+        chamadas.close();
+        chamadas = new ChamadasProtegidas("estoque", circuito, TIMEOUT, Map.of());
+        CompraService compraService = criarCompraService(new EstoqueExternoProtegido(estoqueLento, chamadas),
+                pagamento);
+
+        assertThrows(ServicoExternoIndisponivelException.class, () -> compraService.finalizarCompra(1L, 1L));
+
+        assertThat(cancelados).containsExactly(10L);
+    }
+
+    // ============================================================================
+    // MÉTODOS AUXILIARES
+    // ============================================================================
+
+    private String responder() {
+        execucoes.incrementAndGet();
+        return "ok";
+    }
+
+    private String falhar() {
+        execucoes.incrementAndGet();
+        throw new IllegalStateException("Estoque fora do ar");
+    }
+
+    private static CompraService criarCompraService(IEstoqueExternal estoque, IPagamentoExternal pagamento) {
+        CarrinhoDeCompras carrinho = new CarrinhoDeCompras();
+        carrinho.setId(1L);
+        carrinho.setCliente(new Cliente(1L, "Cliente Teste", Regiao.SUL, TipoCliente.BRONZE));
+        carrinho.setItens(new ArrayList<>());
+        BigDecimal dimensao = new BigDecimal("10.0");
+        carrinho.getItens().add(new ItemCompra(1L, new Produto(1L, "Produto 1", "Descrição do Produto 1",
+                new BigDecimal("45.90"), new BigDecimal("1.0"), dimensao, dimensao, dimensao, false,
+                TipoProduto.LIVRO), 2L));
+
+        ClienteService clienteService = new ClienteService(null) {
+            @Override
+            public Cliente buscarPorId(Long clienteId) {
+                return carrinho.getCliente();
+            }
+        };
+        CarrinhoDeComprasService carrinhoService = new CarrinhoDeComprasService(null) {
+            @Override
+            public CarrinhoDeCompras buscarPorCarrinhoIdEClienteId(Long carrinhoId, Cliente cliente) {
+                return carrinho;
+            }
+        };
+        return new CompraService(carrinhoService, clienteService, estoque, pagamento);
+    }
+}
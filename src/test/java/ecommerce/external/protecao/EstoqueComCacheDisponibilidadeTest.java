@@ -0,0 +1,228 @@
+package ecommerce.external.protecao;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import ecommerce.dto.DisponibilidadeDTO;
+import ecommerce.dto.EstoqueBaixaDTO;
+import ecommerce.dto.ReservaDTO;
+import ecommerce.external.IEstoqueExternal;
+import ecommerce.external.fake.EstoqueSimulado;
+
+@DisplayName("Testes do Cache de Disponibilidade - EstoqueComCacheDisponibilidade")
+public class EstoqueComCacheDisponibilidadeTest {
+
+    private static final long MARGEM = 10;
+    private static final Duration VALIDADE_POSITIVA = Duration.ofSeconds(1);
+    private static final Duration VALIDADE_ESGOTADO = Duration.ofSeconds(2);
+    private static final Duration VALIDADE_RESERVA = Duration.ofSeconds(30);
+
+    private Instant agora;
+    private Clock relogio;
+    private EstoqueSimulado simulado;
+    private AtomicInteger consultasDeSaldo;
+    private AtomicInteger reservas;
+    private EstoqueComCacheDisponibilidade cache;
+
+    @BeforeEach
+    void setUp() {
+        agora = Instant.parse("2024-01-01T00:00:00Z");
+        relogio = new Clock() {
+            @Override
+            public ZoneId getZone() {
+                return ZoneOffset.UTC;
+            }
+
+            @Override
+            public Clock withZone(ZoneId zone) {
+                return this;
+            }
+
+            @Override
+            public Instant instant() {
+                return agora;
+            }
+        };
+        simulado = new EstoqueSimulado(100);
+        simulado.definirSaldo(2L, 0);
+        consultasDeSaldo = new AtomicInteger();
+        reservas = new AtomicInteger();
+        cache = criarCache(contando(simulado, List.of()));
+    }
+
+    @Test
+    @DisplayName("Produto esgotado deve ser recusado localmente até a validade de esgotado")
+    void testEsgotadoRespondidoLocalmente() {
+        assertThat(cache.verificarDisponibilidade(List.of(2L), List.of(1L)).disponivel()).isFalse();
+        assertThat(consultasDeSaldo.get()).isEqualTo(1);
+
+        DisponibilidadeDTO local = cache.verificarDisponibilidade(List.of(1L, 2L), List.of(1L, 1L));
+
+        assertThat(local.disponivel()).isFalse();
+        assertThat(local.idsProdutosIndisponiveis()).containsExactly(2L);
+        assertThat(consultasDeSaldo.get()).isEqualTo(1);
+
+        agora = agora.plus(VALIDADE_ESGOTADO);
+        simulado.definirSaldo(2L, 5);
+
+        assertThat(cache.verificarDisponibilidade(List.of(2L), List.of(1L)).disponivel()).isTrue();
+        assertThat(consultasDeSaldo.get()).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("Pedido até saldo menos margem deve ser aprovado localmente; acima disso vai ao serviço")
+    void testMargem() {
+        cache.verificarDisponibilidade(List.of(1L), List.of(1L));
+        assertThat(consultasDeSaldo.get()).isEqualTo(1);
+
+        assertThat(cache.verificarDisponibilidade(List.of(1L), List.of(100 - MARGEM)).disponivel()).isTrue();
+        assertThat(consultasDeSaldo.get()).isEqualTo(1);
+
+        assertThat(cache.verificarDisponibilidade(List.of(1L), List.of(100 - MARGEM + 1)).disponivel()).isTrue();
+        assertThat(consultasDeSaldo.get()).isEqualTo(2);
+
+        assertThat(cache.verificarDisponibilidade(List.of(1L), List.of(101L)).disponivel()).isFalse();
+        assertThat(consultasDeSaldo.get()).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("Saldo na margem não deve ser aprovado localmente")
+    void testSaldoNaMargemNaoAprova() {
+        simulado.definirSaldo(3L, MARGEM);
+
+        cache.verificarDisponibilidade(List.of(3L), List.of(1L));
+        cache.verificarDisponibilidade(List.of(3L), List.of(1L));
+
+        assertThat(consultasDeSaldo.get()).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("Baixa deve remover as entradas dos produtos baixados")
+    void testBaixaInvalida() {
+        cache.verificarDisponibilidade(List.of(1L, 3L), List.of(1L, 1L));
+
+        EstoqueBaixaDTO baixa = cache.darBaixa(List.of(1L), List.of(95L));
+        DisponibilidadeDTO depois = cache.verificarDisponibilidade(List.of(1L), List.of(10L));
+
+        assertThat(baixa.sucesso()).isTrue();
+        assertThat(depois.disponivel()).isFalse();
+        assertThat(consultasDeSaldo.get()).isEqualTo(2);
+
+        cache.verificarDisponibilidade(List.of(3L), List.of(1L));
+        assertThat(consultasDeSaldo.get()).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("Reserva de produto esgotado deve ser recusada sem chamar o serviço")
+    void testReservaRecusadaLocalmente() {
+        cache.verificarDisponibilidade(List.of(2L), List.of(1L));
+
+        ReservaDTO reserva = cache.reservar(List.of(1L, 2L), List.of(1L, 1L), VALIDADE_RESERVA);
+
+        assertThat(reserva.reservado()).isFalse();
+        assertThat(reserva.idsProdutosIndisponiveis()).containsExactly(2L);
+        assertThat(reservas.get()).isZero();
+    }
+
+    @Test
+    @DisplayName("Reserva aceita deve remover as entradas; reserva recusada deve guardar a recusa")
+    void testReservaAtualizaCache() {
+        cache.verificarDisponibilidade(List.of(1L), List.of(1L));
+
+        assertThat(cache.reservar(List.of(1L), List.of(95L), VALIDADE_RESERVA).reservado()).isTrue();
+        assertThat(cache.verificarDisponibilidade(List.of(1L), List.of(10L)).disponivel()).isFalse();
+        assertThat(consultasDeSaldo.get()).isEqualTo(2);
+
+        simulado.definirSaldo(4L, 3);
+        assertThat(cache.reservar(List.of(4L), List.of(5L), VALIDADE_RESERVA).reservado()).isFalse();
+        assertThat(cache.reservar(List.of(4L), List.of(6L), VALIDADE_RESERVA).reservado()).isFalse();
+        assertThat(reservas.get()).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("Produto ausente da consulta de saldos deve ser recusado e guardado como esgotado")
+    void testProdutoDesconhecido() {
+        cache = criarCache(contando(simulado, List.of(7L)));
+
+        DisponibilidadeDTO resposta = cache.verificarDisponibilidade(List.of(1L, 7L), List.of(1L, 1L));
+        DisponibilidadeDTO local = cache.verificarDisponibilidade(List.of(7L), List.of(1L));
+
+        assertThat(resposta.idsProdutosIndisponiveis()).containsExactly(7L);
+        assertThat(local.disponivel()).isFalse();
+        assertThat(consultasDeSaldo.get()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Saldo guardado deve valer até a validade positiva e a taxa de acertos deve contar as respostas locais")
+    void testValidadePositivaETaxaDeAcertos() {
+        for (int i = 0; i < 4; i++) {
+            cache.verificarDisponibilidade(List.of(1L), List.of(1L));
+        }
+        agora = agora.plus(VALIDADE_POSITIVA);
+        cache.verificarDisponibilidade(List.of(1L), List.of(1L));
+
+        assertThat(consultasDeSaldo.get()).isEqualTo(2);
+        assertThat(cache.getConsultas()).isEqualTo(5);
+        assertThat(cache.getLocais()).isEqualTo(3);
+        assertThat(cache.taxaAcertos()).isEqualTo(0.6);
+    }
+
+    // ============================================================================
+    // MÉTODOS AUXILIARES
+    // ============================================================================
+
+    private EstoqueComCacheDisponibilidade criarCache(IEstoqueExternal estoque) {
+        return new EstoqueComCacheDisponibilidade(estoque, MARGEM, VALIDADE_POSITIVA, VALIDADE_ESGOTADO, 1000, null,
+                relogio);
+    }
+
+    /** Conta as chamadas que chegam ao serviço; os produtos {@code desconhecidos} ficam fora dos saldos. */
+    private IEstoqueExternal contando(EstoqueSimulado estoque, List<Long> desconhecidos) {
+        return new IEstoqueExternal() {
+            @Override
+            public DisponibilidadeDTO verificarDisponibilidade(List<Long> produtosIds, List<Long> produtosQuantidades) {
+                return estoque.verificarDisponibilidade(produtosIds, produtosQuantidades);
+            }
+
+            @Override
+            public Map<Long, Long> consultarSaldos(List<Long> produtosIds) {
+                consultasDeSaldo.incrementAndGet();
+                Map<Long, Long> saldos = estoque.consultarSaldos(produtosIds);
+                saldos.keySet().removeAll(desconhecidos);
+                return saldos;
+            }
+
+            @Override
+            public EstoqueBaixaDTO darBaixa(List<Long> produtosIds, List<Long> produtosQuantidades) {
+                return estoque.darBaixa(produtosIds, produtosQuantidades);
+            }
+
+            @Override
+            public ReservaDTO reservar(List<Long> produtosIds, List<Long> produtosQuantidades, Duration validade) {
+                reservas.incrementAndGet();
+                return estoque.reservar(produtosIds, produtosQuantidades, validade);
+            }
+
+            @Override
+            public EstoqueBaixaDTO confirmarReserva(Long reservaId) {
+                return estoque.confirmarReserva(reservaId);
+            }
+
+            @Override
+            public void liberarReserva(Long reservaId) {
+                estoque.liberarReserva(reservaId);
+            }
+        };
+    }
+}
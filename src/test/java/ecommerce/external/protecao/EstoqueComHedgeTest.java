@@ -0,0 +1,285 @@
+package ecommerce.external.protecao;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import ecommerce.dto.DisponibilidadeDTO;
+import ecommerce.dto.EstoqueBaixaDTO;
+import ecommerce.dto.ReservaDTO;
+import ecommerce.external.IEstoqueExternal;
+
+@DisplayName("Testes do Hedge da Consulta de Disponibilidade - EstoqueComHedge")
+public class EstoqueComHedgeTest {
+
+    private static final List<Long> IDS = List.of(1L, 2L);
+    private static final List<Long> QUANTIDADES = List.of(1L, 1L);
+    private static final int MINIMO_AMOSTRAS = 20;
+
+    /** Latência de cada chamada, na ordem; vazia, as chamadas levam {@link #latenciaPadraoMs}. */
+    private ConcurrentLinkedQueue<Long> latenciasProgramadas;
+    private long latenciaPadraoMs;
+    private AtomicInteger chamadas;
+    private AtomicInteger baixas;
+    private RuntimeException erro;
+
+    /** Início de cada consulta, na ordem, e as threads em que rodaram. */
+    private ConcurrentLinkedQueue<Long> inicios;
+    private Set<String> threads;
+    /** Faz a próxima consulta esperar {@link #liberarOriginal}. */
+    private AtomicBoolean bloquearProxima;
+    private CountDownLatch originalBloqueada;
+    private CountDownLatch liberarOriginal;
+
+    private IEstoqueExternal estoque;
+    private EstoqueComHedge comHedge;
+
+    @BeforeEach
+    void setUp() {
+        latenciasProgramadas = new ConcurrentLinkedQueue<>();
+        latenciaPadraoMs = 1;
+        chamadas = new AtomicInteger();
+        baixas = new AtomicInteger();
+        erro = null;
+        inicios = new ConcurrentLinkedQueue<>();
+        threads = ConcurrentHashMap.newKeySet();
+        bloquearProxima = new AtomicBoolean();
+        originalBloqueada = new CountDownLatch(1);
+        liberarOriginal = new CountDownLatch(1);
+
+        estoque = new IEstoqueExternal() {
+            @Override
+            public EstoqueBaixaDTO darBaixa(List<Long> produtosIds, List<Long> produtosQuantidades) {
+                baixas.incrementAndGet();
+                dormir(500);
+                return new EstoqueBaixaDTO(true);
+            }
+
+            @Override
+            public DisponibilidadeDTO verificarDisponibilidade(List<Long> produtosIds, List<Long> produtosQuantidades) {
+                chamadas.incrementAndGet();
+                inicios.add(System.nanoTime());
+                threads.add(Thread.currentThread().getName());
+                if (bloquearProxima.compareAndSet(true, false)) {
+                    originalBloqueada.countDown();
+                    try {
+                        liberarOriginal.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                Long latencia = latenciasProgramadas.poll();
+                dormir(latencia != null ? latencia : latenciaPadraoMs);
+                if (erro != null) {
+                    throw erro;
+                }
+                return new DisponibilidadeDTO(true, List.of());
+            }
+
+            @Override
+            public ReservaDTO reservar(List<Long> produtosIds, List<Long> produtosQuantidades, Duration validade) {
+                DisponibilidadeDTO disponibilidade = verificarDisponibilidade(produtosIds, produtosQuantidades);
+                return new ReservaDTO(disponibilidade.disponivel(), disponibilidade.disponivel() ? 1L : null,
+                        disponibilidade.idsProdutosIndisponiveis());
+            }
+
+            @Override
+            public EstoqueBaixaDTO confirmarReserva(Long reservaId) {
+                return new EstoqueBaixaDTO(true);
+            }
+
+            @Override
+            public void liberarReserva(Long reservaId) {
+            }
+
+            @Override
+            public Map<Long, Long> consultarSaldos(List<Long> produtosIds) {
+                Map<Long, Long> saldos = new HashMap<>();
+                produtosIds.forEach(produtoId -> saldos.put(produtoId, Long.MAX_VALUE));
+                return saldos;
+            }
+        };
+        comHedge = criarComHedge(0.05, 10);
+    }
+
+    @AfterEach
+    void tearDown() {
+        liberarOriginal.countDown();
+        comHedge.close();
+    }
+
+    @Test
+    @DisplayName("Antes do mínimo de amostras não deve repetir")
+    void testSemRepeticaoAntesDoMinimo() {
+        for (int i = 0; i < MINIMO_AMOSTRAS - 1; i++) {
+            assertThat(comHedge.verificarDisponibilidade(IDS, QUANTIDADES).disponivel()).isTrue();
+        }
+
+        assertThat(comHedge.getAtraso()).isNull();
+        assertThat(comHedge.getDisparados()).isZero();
+        assertThat(chamadas.get()).isEqualTo(MINIMO_AMOSTRAS - 1);
+    }
+
+    @Test
+    @DisplayName("Chamada mais lenta que o percentil deve ser repetida e a repetição deve responder")
+    void testRepeticaoResponde() throws Exception {
+        aquecer();
+        latenciasProgramadas.add(1_000L);
+
+        long inicio = System.nanoTime();
+        assertThat(comHedge.verificarDisponibilidade(IDS, QUANTIDADES).disponivel()).isTrue();
+        long duracaoMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - inicio);
+
+        assertThat(duracaoMs).isLessThan(500);
+        assertThat(comHedge.getDisparados()).isEqualTo(1);
+        aguardarAte(() -> comHedge.getVencedores() == 1);
+        assertThat(comHedge.getVencedores()).isEqualTo(1);
+
+        // O ganho é registrado quando a chamada original termina
+        aguardarAte(() -> !comHedge.getGanhoTotal().isZero());
+        assertThat(comHedge.getGanhoTotal()).isGreaterThan(Duration.ofMillis(500));
+    }
+
+    @Test
+    @DisplayName("Repetições devem ficar dentro do orçamento")
+    void testOrcamentoLimitaRepeticoes() {
+        comHedge.close();
+        comHedge = criarComHedge(0.1, 1);
+        aquecer();
+
+        latenciaPadraoMs = 10;
+        int consultas = MINIMO_AMOSTRAS;
+        for (int i = 0; i < 40; i++) {
+            comHedge.verificarDisponibilidade(IDS, QUANTIDADES);
+            consultas++;
+        }
+
+        assertThat(comHedge.getDisparados()).isGreaterThan(0).isLessThanOrEqualTo(1 + (long) (0.1 * consultas));
+        assertThat(comHedge.getNegados()).isGreaterThan(0);
+        assertThat(chamadas.get()).isEqualTo(consultas + (int) comHedge.getDisparados());
+    }
+
+    @Test
+    @DisplayName("Falha da chamada original deve chegar sem repetição")
+    void testFalhaSemRepeticao() {
+        // Atraso longo: a falha chega antes dele mesmo com a thread demorando a rodar
+        comHedge.close();
+        comHedge = criarComHedge(0.05, 10, 10, Duration.ofSeconds(5));
+        aquecer();
+        erro = new IllegalStateException("Estoque fora do ar");
+
+        RuntimeException lancada = assertThrows(IllegalStateException.class,
+                () -> comHedge.verificarDisponibilidade(IDS, QUANTIDADES));
+
+        assertThat(lancada).isSameAs(erro);
+        assertThat(comHedge.getDisparados()).isZero();
+    }
+
+    @Test
+    @DisplayName("Operações que alteram o estoque não devem ser repetidas")
+    void testBaixaSemRepeticao() {
+        aquecer();
+
+        assertThat(comHedge.darBaixa(IDS, QUANTIDADES).sucesso()).isTrue();
+
+        assertThat(baixas.get()).isEqualTo(1);
+        assertThat(comHedge.getDisparados()).isZero();
+    }
+
+    @Test
+    @DisplayName("Segunda chamada deve sair só depois do atraso e responder no lugar da original presa")
+    void testRepeticaoDisparadaAposAtraso() throws Exception {
+        aquecer();
+        Duration atraso = comHedge.getAtraso();
+        bloquearProxima.set(true);
+        inicios.clear();
+
+        long antes = System.nanoTime();
+        assertThat(comHedge.verificarDisponibilidade(IDS, QUANTIDADES).disponivel()).isTrue();
+
+        List<Long> consultas = new ArrayList<>(inicios);
+        assertThat(consultas).hasSize(2);
+        assertThat(consultas.get(1) - antes).isGreaterThanOrEqualTo(atraso.toNanos());
+        assertThat(comHedge.getDisparados()).isEqualTo(1);
+        // A vitória é contada na thread da repetição, logo depois da resposta
+        aguardarAte(() -> comHedge.getVencedores() == 1);
+        assertThat(comHedge.getVencedores()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Com as threads ocupadas, a consulta deve rodar em quem chamou, sem repetição")
+    void testThreadsLimitadas() throws Exception {
+        comHedge.close();
+        comHedge = criarComHedge(0.05, 10, 1);
+        bloquearProxima.set(true);
+        Thread presa = new Thread(() -> comHedge.verificarDisponibilidade(IDS, QUANTIDADES));
+        presa.start();
+        assertThat(originalBloqueada.await(5, TimeUnit.SECONDS)).isTrue();
+
+        assertThat(comHedge.verificarDisponibilidade(IDS, QUANTIDADES).disponivel()).isTrue();
+
+        assertThat(presa.isAlive()).isTrue();
+        assertThat(comHedge.getNegados()).isEqualTo(1);
+        assertThat(threads).contains(Thread.currentThread().getName());
+        liberarOriginal.countDown();
+        presa.join();
+        assertThat(threads.stream().filter(nome -> nome.startsWith("estoque-hedge-")).toList()).hasSize(1);
+    }
+
+    // ============================================================================
+    // MÉTODOS AUXILIARES
+    // ============================================================================
+
+    private EstoqueComHedge criarComHedge(double orcamento, int rajada) {
+        return criarComHedge(orcamento, rajada, 10);
+    }
+
+    private EstoqueComHedge criarComHedge(double orcamento, int rajada, int threads) {
+        return criarComHedge(orcamento, rajada, threads, Duration.ofMillis(1));
+    }
+
+    private EstoqueComHedge criarComHedge(double orcamento, int rajada, int threads, Duration atrasoMinimo) {
+        return new EstoqueComHedge(estoque, 0.95, orcamento, rajada, 100, MINIMO_AMOSTRAS, atrasoMinimo, threads,
+                null);
+    }
+
+    /** Chamadas rápidas até o percentil ficar disponível. */
+    private void aquecer() {
+        for (int i = 0; i < MINIMO_AMOSTRAS; i++) {
+            comHedge.verificarDisponibilidade(IDS, QUANTIDADES);
+        }
+        assertThat(comHedge.getAtraso()).isNotNull();
+    }
+
+    private static void aguardarAte(BooleanSupplier condicao) throws InterruptedException {
+        long limite = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condicao.getAsBoolean() && System.nanoTime() < limite) {
+            Thread.sleep(10);
+        }
+    }
+
+    private static void dormir(long ms) {
+        try {
+            Thread.sleep(ms);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
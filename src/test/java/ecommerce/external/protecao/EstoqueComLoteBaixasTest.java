@@ -0,0 +1,332 @@
+package ecommerce.external.protecao;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import ecommerce.dto.BaixaEstoqueDTO;
+import ecommerce.dto.CompraDTO;
+import ecommerce.dto.DisponibilidadeDTO;
+import ecommerce.dto.EstoqueBaixaDTO;
+import ecommerce.dto.PagamentoDTO;
+import ecommerce.dto.ReservaDTO;
+import ecommerce.entity.CarrinhoDeCompras;
+import ecommerce.entity.Cliente;
+import ecommerce.entity.ItemCompra;
+import ecommerce.entity.Produto;
+import ecommerce.entity.Regiao;
+import ecommerce.entity.TipoCliente;
+import ecommerce.entity.TipoProduto;
+import ecommerce.external.IEstoqueExternal;
+import ecommerce.external.IPagamentoExternal;
+import ecommerce.external.ServicoExternoIndisponivelException;
+import ecommerce.external.fake.EstoqueSimulado;
+import ecommerce.service.CarrinhoDeComprasService;
+import ecommerce.service.ClienteService;
+import ecommerce.service.CompraService;
+
+@DisplayName("Testes das Baixas em Lote - EstoqueComLoteBaixas")
+public class EstoqueComLoteBaixasTest {
+
+    private static final int COMPRAS = 20;
+    /** Quantidade máxima que o serviço simulado aceita por pedido. */
+    private static final long LIMITE_POR_PEDIDO = 5;
+    private static final BigDecimal DIMENSAO_PADRAO = new BigDecimal("10.0");
+
+    private ExecutorService executor;
+    private ConcurrentLinkedQueue<Integer> tamanhosDosLotes;
+    private AtomicInteger baixasIndividuais;
+    private long latenciaMs;
+    private RuntimeException erro;
+    private boolean respostaIncompleta;
+
+    private IEstoqueExternal servico;
+    private EstoqueComLoteBaixas comLote;
+
+    @BeforeEach
+    void setUp() {
+        executor = Executors.newFixedThreadPool(COMPRAS);
+        tamanhosDosLotes = new ConcurrentLinkedQueue<>();
+        baixasIndividuais = new AtomicInteger();
+        latenciaMs = 20;
+        erro = null;
+        respostaIncompleta = false;
+
+        servico = new IEstoqueExternal() {
+            @Override
+            public EstoqueBaixaDTO darBaixa(List<Long> produtosIds, List<Long> produtosQuantidades) {
+                baixasIndividuais.incrementAndGet();
+                return new EstoqueBaixaDTO(produtosQuantidades.get(0) <= LIMITE_POR_PEDIDO);
+            }
+
+            @Override
+            public List<EstoqueBaixaDTO> darBaixaEmLote(List<BaixaEstoqueDTO> baixas) {
+                tamanhosDosLotes.add(baixas.size());
+                dormir(latenciaMs);
+                if (erro != null) {
+                    throw erro;
+                }
+                List<EstoqueBaixaDTO> resultados = new ArrayList<>();
+                for (BaixaEstoqueDTO baixa : baixas) {
+                    resultados.add(new EstoqueBaixaDTO(baixa.produtosQuantidades().get(0) <= LIMITE_POR_PEDIDO));
+                }
+                return respostaIncompleta ? resultados.subList(1, resultados.size()) : resultados;
+            }
+
+            @Override
+            public DisponibilidadeDTO verificarDisponibilidade(List<Long> produtosIds, List<Long> produtosQuantidades) {
+                return new DisponibilidadeDTO(true, List.of());
+            }
+
+            @Override
+            public ReservaDTO reservar(List<Long> produtosIds, List<Long> produtosQuantidades, Duration validade) {
+                DisponibilidadeDTO disponibilidade = verificarDisponibilidade(produtosIds, produtosQuantidades);
+                return new ReservaDTO(disponibilidade.disponivel(), disponibilidade.disponivel() ? 1L : null,
+                        disponibilidade.idsProdutosIndisponiveis());
+            }
+
+            @Override
+            public EstoqueBaixaDTO confirmarReserva(Long reservaId) {
+                return new EstoqueBaixaDTO(true);
+            }
+
+            @Override
+            public void liberarReserva(Long reservaId) {
+            }
+
+            @Override
+            public Map<Long, Long> consultarSaldos(List<Long> produtosIds) {
+                Map<Long, Long> saldos = new HashMap<>();
+                produtosIds.forEach(produtoId -> saldos.put(produtoId, Long.MAX_VALUE));
+                return saldos;
+            }
+        };
+        comLote = new EstoqueComLoteBaixas(servico, Duration.ofMillis(200), 100, 4, null);
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        comLote.close();
+        executor.shutdownNow();
+    }
+
+    @Test
+    @DisplayName("Baixas simultâneas devem sair em um lote, cada compra com o resultado do seu pedido")
+    void testBaixasSimultaneasEmUmLote() throws Exception {
+        List<Future<Boolean>> compras = iniciar(COMPRAS,
+                i -> comLote.darBaixa(List.of(1L), List.of(quantidade(i))).sucesso());
+
+        for (int i = 0; i < COMPRAS; i++) {
+            assertThat(compras.get(i).get(5, TimeUnit.SECONDS)).as("Compra %d", i)
+                    .isEqualTo(quantidade(i) <= LIMITE_POR_PEDIDO);
+        }
+        assertThat(tamanhosDosLotes.size()).isLessThanOrEqualTo(2);
+        assertThat(tamanhosDosLotes.stream().mapToInt(Integer::intValue).sum()).isEqualTo(COMPRAS);
+        assertThat(baixasIndividuais.get()).isZero();
+    }
+
+    @Test
+    @DisplayName("Lote não deve passar do tamanho máximo nem esperar a janela quando enche")
+    void testTamanhoMaximo() throws Exception {
+        comLote.close();
+        comLote = new EstoqueComLoteBaixas(servico, Duration.ofSeconds(10), 4, 2, null);
+
+        List<Future<Boolean>> compras = iniciar(16, i -> comLote.darBaixa(List.of(1L), List.of(1L)).sucesso());
+
+        for (Future<Boolean> compra : compras) {
+            assertThat(compra.get(5, TimeUnit.SECONDS)).isTrue();
+        }
+        assertThat(Collections.max(tamanhosDosLotes)).isLessThanOrEqualTo(4);
+        assertThat(tamanhosDosLotes.stream().mapToInt(Integer::intValue).sum()).isEqualTo(16);
+    }
+
+    @Test
+    @DisplayName("Falha da chamada em lote deve chegar a todas as compras do lote")
+    void testFalhaDoLoteChegaATodas() throws Exception {
+        erro = new ServicoExternoIndisponivelException("estoque.darBaixaEmLote não respondeu em 1000 ms.");
+
+        List<Future<Boolean>> compras = iniciar(5, i -> comLote.darBaixa(List.of(1L), List.of(1L)).sucesso());
+
+        for (Future<Boolean> compra : compras) {
+            ExecutionException falha = assertThrows(ExecutionException.class, () -> compra.get(5, TimeUnit.SECONDS));
+            assertThat(falha.getCause()).isSameAs(erro);
+        }
+    }
+
+    @Test
+    @DisplayName("Resposta com quantidade errada de resultados deve falhar em vez de trocar resultados")
+    void testRespostaIncompleta() {
+        respostaIncompleta = true;
+
+        IllegalStateException falha = assertThrows(IllegalStateException.class,
+                () -> comLote.darBaixa(List.of(1L), List.of(1L)));
+
+        assertThat(falha.getMessage()).isEqualTo("Lote de 1 baixas respondido com 0 resultados.");
+    }
+
+    @Test
+    @DisplayName("Baixa pedida depois de fechar deve ir direto ao serviço")
+    void testDepoisDeFechar() throws Exception {
+        comLote.close();
+
+        assertThat(comLote.darBaixa(List.of(1L), List.of(9L)).sucesso()).isFalse();
+        assertThat(baixasIndividuais.get()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Fechar o lote não deve fechar o serviço decorado")
+    void testFecharNaoFechaServico() throws Exception {
+        AtomicBoolean servicoFechado = new AtomicBoolean();
+        EstoqueSimulado estoque = new EstoqueSimulado(100) {
+            @Override
+            public synchronized void close() {
+                servicoFechado.set(true);
+            }
+        };
+        comLote.close();
+        comLote = new EstoqueComLoteBaixas(estoque, Duration.ofMillis(200), 100, 4, null);
+
+        comLote.close();
+
+        assertThat(servicoFechado.get()).isFalse();
+        assertThat(comLote.darBaixa(List.of(1L), List.of(1L)).sucesso()).isTrue();
+    }
+
+    @Test
+    @DisplayName("finalizarCompra deve compensar só as compras cuja baixa falhou no lote")
+    void testCompensacaoPorCompra() throws Exception {
+        int compras = 5;
+        EstoqueSimulado estoque = new EstoqueSimulado(100);
+        estoque.definirSaldo(1L, 3);
+        comLote.close();
+        comLote = new EstoqueComLoteBaixas(estoque, Duration.ofMillis(200), 100, 4, null);
+
+        // Todas passam da verificação de estoque antes de qualquer baixa
+        CyclicBarrier pagamentos = new CyclicBarrier(compras);
+        AtomicInteger transacoes = new AtomicInteger();
+        List<Long> cancelados = new ArrayList<>();
+        IPagamentoExternal pagamento = new IPagamentoExternal() {
+            @Override
+            public PagamentoDTO autorizarPagamento(Long clienteId, Double custoTotal) {
+                aguardar(pagamentos);
+                return new PagamentoDTO(true, (long) transacoes.incrementAndGet());
+            }
+
+            @Override
+            public synchronized void cancelarPagamento(Long clienteId, Long pagamentoTransacaoId) {
+                cancelados.add(pagamentoTransacaoId);
+            }
+        };
+        CompraService compraService = criarCompraService(comLote, pagamento);
+
+        List<Future<Boolean>> resultados = iniciar(compras, i -> {
+            try {
+                CompraDTO compra = compraService.finalizarCompra(1L, 1L);
+                return compra.sucesso();
+            } catch (IllegalStateException e) {
+                assertThat(e.getMessage()).isEqualTo("Erro ao dar baixa no estoque.");
+                return false;
+            }
+        });
+
+        int sucessos = 0;
+        for (Future<Boolean> resultado : resultados) {
+            sucessos += resultado.get(5, TimeUnit.SECONDS) ? 1 : 0;
+        }
+        assertThat(sucessos).isEqualTo(3);
+        assertThat(cancelados).hasSize(2);
+        assertThat(estoque.disponivel(1L)).isZero();
+    }
+
+    // ============================================================================
+    // MÉTODOS AUXILIARES
+    // ============================================================================
+
+    /** 1 a 10 unidades: as compras com mais de {@value #LIMITE_POR_PEDIDO} são recusadas. */
+    private static long quantidade(int compra) {
+        return compra % 10 + 1L;
+    }
+
+    private interface Compra {
+        boolean executar(int indice) throws Exception;
+    }
+
+    /** Dispara as compras ao mesmo tempo. */
+    private List<Future<Boolean>> iniciar(int quantidade, Compra compra) {
+        CountDownLatch largada = new CountDownLatch(1);
+        List<Future<Boolean>> futuros = new ArrayList<>();
+        for (int i = 0; i < quantidade; i++) {
+            int indice = i;
+            Callable<Boolean> chamada = () -> {
+                largada.await();
+                return compra.executar(indice);
+            };
+            futuros.add(executor.submit(chamada));
+        }
+        largada.countDown();
+        return futuros;
+    }
+
+    private static CompraService criarCompraService(IEstoqueExternal estoque, IPagamentoExternal pagamento) {
+        CarrinhoDeCompras carrinho = new CarrinhoDeCompras();
+        carrinho.setId(1L);
+        carrinho.setCliente(new Cliente(1L, "Cliente Teste", Regiao.SUL, TipoCliente.BRONZE));
+        carrinho.setItens(new ArrayList<>());
+        carrinho.getItens().add(new ItemCompra(1L, new Produto(1L, "Produto 1", "Descrição do Produto 1",
+                new BigDecimal("45.90"), new BigDecimal("1.0"), DIMENSAO_PADRAO, DIMENSAO_PADRAO, DIMENSAO_PADRAO,
+                false, TipoProduto.LIVRO), 1L));
+
+        ClienteService clienteService = new ClienteService(null) {
+            @Override
+            public Cliente buscarPorId(Long clienteId) {
+                return carrinho.getCliente();
+            }
+        };
+        CarrinhoDeComprasService carrinhoService = new CarrinhoDeComprasService(null) {
+            @Override
+            public CarrinhoDeCompras buscarPorCarrinhoIdEClienteId(Long carrinhoId, Cliente cliente) {
+                return carrinho;
+            }
+        };
+        return new CompraService(carrinhoService, clienteService, estoque, pagamento);
+    }
+
+    private static void aguardar(CyclicBarrier barreira) {
+        try {
+            barreira.await(5, TimeUnit.SECONDS);
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void dormir(long ms) {
+        try {
+            Thread.sleep(ms);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+}
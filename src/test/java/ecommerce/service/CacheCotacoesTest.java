@@ -0,0 +1,197 @@
+package ecommerce.service;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import ecommerce.entity.CarrinhoDeCompras;
+import ecommerce.entity.Cliente;
+import ecommerce.entity.ItemCompra;
+import ecommerce.entity.Produto;
+import ecommerce.entity.Regiao;
+import ecommerce.entity.TipoCliente;
+import ecommerce.entity.TipoProduto;
+
+@DisplayName("Testes do Cache de Cotações - CompraService")
+public class CacheCotacoesTest {
+
+    private static final BigDecimal DIMENSAO_PADRAO = new BigDecimal("10.0");
+
+    private CacheCotacoes cache;
+    private ProvedorTabelaFaixas provedor;
+    private CompraService servicoComCache;
+    private CompraService servicoSemCache;
+
+    private Produto livro;
+    private Produto eletronico;
+
+    @BeforeEach
+    void setUp() {
+        cache = new CacheCotacoes(100, Duration.ofMinutes(5));
+        provedor = new ProvedorTabelaFaixas();
+
+        servicoComCache = new CompraService(null, null, null, null);
+        servicoComCache.setProvedorTabelaFaixas(provedor);
+        servicoComCache.setCacheCotacoes(cache);
+
+        servicoSemCache = new CompraService(null, null, null, null);
+        servicoSemCache.setProvedorTabelaFaixas(provedor);
+
+        livro = criarProduto(1L, "45.90", TipoProduto.LIVRO, false);
+        eletronico = criarProduto(2L, "899.00", TipoProduto.ELETRONICO, true);
+    }
+
+    @Test
+    @DisplayName("Cotações repetidas do mesmo carrinho devem vir do cache")
+    void testCotacaoRepetida() {
+        CarrinhoDeCompras carrinho = criarCarrinho(Regiao.NORDESTE, TipoCliente.PRATA);
+        adicionarItem(carrinho, livro, 4);
+        adicionarItem(carrinho, eletronico, 1);
+
+        BigDecimal primeira = servicoComCache.calcularCustoTotal(carrinho, null, null);
+        BigDecimal segunda = servicoComCache.calcularCustoTotal(carrinho, null, null);
+
+        assertThat(segunda).isEqualTo(primeira).isEqualTo(servicoSemCache.calcularCustoTotal(carrinho, null, null));
+        assertThat(cache.estatisticas().missCount()).isEqualTo(1);
+        assertThat(cache.estatisticas().hitCount()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Carrinhos com o mesmo conteúdo em outra ordem ou em linhas repetidas devem ter a mesma chave")
+    void testChaveCanonica() {
+        CarrinhoDeCompras carrinho = criarCarrinho(Regiao.SUL, TipoCliente.BRONZE);
+        adicionarItem(carrinho, livro, 3);
+        adicionarItem(carrinho, eletronico, 2);
+
+        CarrinhoDeCompras mesmoConteudo = criarCarrinho(Regiao.SUL, TipoCliente.BRONZE);
+        adicionarItem(mesmoConteudo, eletronico, 2);
+        adicionarItem(mesmoConteudo, livro, 1);
+        adicionarItem(mesmoConteudo, livro, 2);
+
+        CarrinhoDeCompras outraRegiao = criarCarrinho(Regiao.NORTE, TipoCliente.BRONZE);
+        adicionarItem(outraRegiao, livro, 3);
+        adicionarItem(outraRegiao, eletronico, 2);
+
+        BigDecimal custo = servicoComCache.calcularCustoTotal(carrinho, null, null);
+
+        assertThat(servicoComCache.calcularCustoTotal(mesmoConteudo, null, null))
+            .isEqualTo(custo)
+            .isEqualTo(servicoSemCache.calcularCustoTotal(mesmoConteudo, null, null));
+        assertThat(servicoComCache.calcularCustoTotal(outraRegiao, null, null))
+            .isEqualTo(servicoSemCache.calcularCustoTotal(outraRegiao, null, null));
+        assertThat(cache.estatisticas().hitCount()).isEqualTo(1);
+        assertThat(cache.tamanho()).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("Alterar o produto ou as faixas, sem invalidar o cache, deve gerar uma nova cotação")
+    void testAlteracaoDeProdutoOuFaixas() {
+        CarrinhoDeCompras carrinho = criarCarrinho(Regiao.SUDESTE, TipoCliente.BRONZE);
+        adicionarItem(carrinho, livro, 5);
+
+        BigDecimal antes = servicoComCache.calcularCustoTotal(carrinho, null, null);
+
+        // O produto avisa o carrinho, que recalcula os totais usados na chave
+        livro.setPreco(new BigDecimal("39.90"));
+
+        BigDecimal depoisDoPreco = servicoComCache.calcularCustoTotal(carrinho, null, null);
+        assertThat(depoisDoPreco)
+            .isNotEqualTo(antes)
+            .isEqualTo(servicoSemCache.calcularCustoTotal(carrinho, null, null));
+
+        livro.setPesoFisico(new BigDecimal("6.00"));
+        BigDecimal depoisDoPeso = servicoComCache.calcularCustoTotal(carrinho, null, null);
+        assertThat(depoisDoPeso)
+            .isNotEqualTo(depoisDoPreco)
+            .isEqualTo(servicoSemCache.calcularCustoTotal(carrinho, null, null));
+
+        provedor.substituir(TabelaFaixas.carregar(Map.of("compra.faixas.quantidade.percentuais", "0.05,0.20,0.25")::get));
+
+        assertThat(servicoComCache.calcularCustoTotal(carrinho, null, null))
+            .isNotEqualTo(depoisDoPeso)
+            .isEqualTo(servicoSemCache.calcularCustoTotal(carrinho, null, null));
+        assertThat(cache.estatisticas().hitCount()).isZero();
+    }
+
+    @Test
+    @DisplayName("Carrinhos com produtos diferentes mas os mesmos totais devem compartilhar a cotação")
+    void testMesmosTotais() {
+        Produto outroLivro = criarProduto(3L, "45.90", TipoProduto.LIVRO, false);
+        CarrinhoDeCompras carrinho = criarCarrinho(Regiao.SUL, TipoCliente.OURO);
+        adicionarItem(carrinho, livro, 2);
+        CarrinhoDeCompras mesmosTotais = criarCarrinho(Regiao.SUL, TipoCliente.OURO);
+        adicionarItem(mesmosTotais, livro, 1);
+        adicionarItem(mesmosTotais, outroLivro, 1);
+
+        BigDecimal custo = servicoComCache.calcularCustoTotal(carrinho, null, null);
+
+        assertThat(servicoComCache.calcularCustoTotal(mesmosTotais, null, null))
+            .isEqualTo(custo)
+            .isEqualTo(servicoSemCache.calcularCustoTotal(mesmosTotais, null, null));
+        assertThat(cache.estatisticas().hitCount()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("A cotação guardada não deve mudar com as alterações seguintes do carrinho")
+    void testChaveGuardadaIndependenteDoCarrinho() {
+        CarrinhoDeCompras carrinho = criarCarrinho(Regiao.SUL, TipoCliente.OURO);
+        adicionarItem(carrinho, livro, 1);
+        BigDecimal umLivro = servicoComCache.calcularCustoTotal(carrinho, null, null);
+
+        adicionarItem(carrinho, livro, 1);
+        servicoComCache.calcularCustoTotal(carrinho, null, null);
+
+        CarrinhoDeCompras outro = criarCarrinho(Regiao.SUL, TipoCliente.OURO);
+        adicionarItem(outro, livro, 1);
+        assertThat(servicoComCache.calcularCustoTotal(outro, null, null)).isEqualTo(umLivro);
+        assertThat(cache.estatisticas().hitCount()).isEqualTo(1);
+        assertThat(cache.tamanho()).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("Carrinhos com quantidade inválida não devem ser cacheados")
+    void testCarrinhosNaoCacheaveis() {
+        CarrinhoDeCompras valido = criarCarrinho(Regiao.SUL, TipoCliente.OURO);
+        adicionarItem(valido, livro, 2);
+        servicoComCache.calcularCustoTotal(valido, null, null);
+
+        // Mesmas quantidades somadas que o carrinho válido, mas com uma linha inválida
+        CarrinhoDeCompras quantidadeInvalida = criarCarrinho(Regiao.SUL, TipoCliente.OURO);
+        adicionarItem(quantidadeInvalida, livro, 3);
+        adicionarItem(quantidadeInvalida, livro, -1);
+
+        assertThrows(IllegalArgumentException.class,
+                () -> servicoComCache.calcularCustoTotal(quantidadeInvalida, null, null));
+        assertThat(cache.tamanho()).isEqualTo(1);
+    }
+
+    // ============================================================================
+    // MÉTODOS AUXILIARES
+    // ============================================================================
+
+    private CarrinhoDeCompras criarCarrinho(Regiao regiao, TipoCliente tipo) {
+        CarrinhoDeCompras carrinho = new CarrinhoDeCompras();
+        carrinho.setCliente(new Cliente(1L, "Cliente Teste", regiao, tipo));
+        carrinho.setItens(new ArrayList<>());
+        return carrinho;
+    }
+
+    private Produto criarProduto(Long id, String preco, TipoProduto tipo, boolean fragil) {
+        return new Produto(id, "Produto " + id, "Descrição do Produto " + id, new BigDecimal(preco),
+                new BigDecimal("1.20"), DIMENSAO_PADRAO, DIMENSAO_PADRAO, DIMENSAO_PADRAO, fragil, tipo);
+    }
+
+    private void adicionarItem(CarrinhoDeCompras carrinho, Produto produto, long quantidade) {
+        ItemCompra item = new ItemCompra();
+        item.setProduto(produto);
+        item.setQuantidade(quantidade);
+        carrinho.getItens().add(item);
+    }
+}
@@ -0,0 +1,160 @@
+package ecommerce.service;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import ecommerce.entity.CarrinhoDeCompras;
+import ecommerce.entity.Cliente;
+import ecommerce.entity.ItemCompra;
+import ecommerce.entity.Produto;
+import ecommerce.entity.Regiao;
+import ecommerce.entity.TipoCliente;
+import ecommerce.entity.TipoProduto;
+
+/**
+ * Testes de equivalência entre o motor em ponto fixo (CENTAVOS) e o cálculo em BigDecimal.
+ */
+@DisplayName("Testes do Motor de Precificação em Centavos - CompraService")
+public class CalculadoraCustoCentavosTest {
+
+    private CompraService servicoBigDecimal;
+    private CompraService servicoCentavos;
+
+    private static final int CARRINHOS_POR_SEMENTE = 2_000;
+    private static final BigDecimal DIMENSAO_PADRAO = new BigDecimal("10.0");
+
+    @BeforeEach
+    void setUp() {
+        servicoBigDecimal = new CompraService(null, null, null, null);
+        servicoCentavos = new CompraService(null, null, null, null);
+        servicoCentavos.setMotorPrecificacao(MotorPrecificacao.CENTAVOS);
+    }
+
+    @ParameterizedTest(name = "Semente {0}")
+    @ValueSource(longs = {1L, 7L, 42L, 2025L})
+    @DisplayName("Carrinhos aleatórios devem ter o mesmo custo nos dois motores")
+    void testCarrinhosAleatoriosMesmoResultado(long semente) {
+        Random aleatorio = new Random(semente);
+
+        for (int i = 0; i < CARRINHOS_POR_SEMENTE; i++) {
+            CarrinhoDeCompras carrinho = criarCarrinhoAleatorio(aleatorio);
+
+            BigDecimal esperado = servicoBigDecimal.calcularCustoTotal(carrinho, null, null);
+            BigDecimal obtido = servicoCentavos.calcularCustoTotal(carrinho, null, null);
+
+            assertThat(obtido)
+                .as("Carrinho %d da semente %d", i, semente)
+                .isEqualTo(esperado);
+        }
+    }
+
+    @Test
+    @DisplayName("Combinação Qtd 5% + Sub 20% + Frete Faixa C/Prata/Sul/Frágil")
+    void testCombinacaoComplexa() {
+        Cliente cliente = new Cliente(1L, "Cliente Teste", Regiao.SUL, TipoCliente.PRATA);
+        CarrinhoDeCompras carrinho = criarCarrinho(cliente);
+        adicionarItem(carrinho, criarProduto(new BigDecimal("375.00"), new BigDecimal("5.00"), true,
+                TipoProduto.ELETRONICO), 4);
+
+        BigDecimal custoTotal = servicoCentavos.calcularCustoTotal(carrinho, cliente.getRegiao(), cliente.getTipo());
+
+        assertThat(custoTotal)
+            .as("Mesmo valor de DecisoesTest ID 60")
+            .isEqualByComparingTo("1198.80");
+    }
+
+    @Test
+    @DisplayName("Preço com mais de 2 casas deve usar o cálculo em BigDecimal")
+    void testPrecoNaoRepresentavelEmCentavos() {
+        Cliente cliente = new Cliente(1L, "Cliente Teste", Regiao.NORTE, TipoCliente.BRONZE);
+        CarrinhoDeCompras carrinho = criarCarrinho(cliente);
+        adicionarItem(carrinho, criarProduto(new BigDecimal("33.333"), new BigDecimal("2.0"), false,
+                TipoProduto.LIVRO), 3);
+
+        assertThat(new CalculadoraCustoCentavos().calcularCustoTotal(carrinho, cliente.getRegiao(), cliente.getTipo(),
+                TabelaFaixas.PADRAO))
+            .as("Preço 33.333 não cabe em centavos")
+            .isEqualTo(CalculadoraCustoCentavos.NAO_REPRESENTAVEL);
+        assertThat(servicoCentavos.calcularCustoTotal(carrinho, cliente.getRegiao(), cliente.getTipo()))
+            .as("Deve cair no cálculo em BigDecimal")
+            .isEqualTo(servicoBigDecimal.calcularCustoTotal(carrinho, cliente.getRegiao(), cliente.getTipo()));
+    }
+
+    @Test
+    @DisplayName("Robustez: Qtd <= 0 deve lançar exceção também no motor em centavos")
+    void testRobustezQuantidadeInvalida() {
+        Cliente cliente = new Cliente(1L, "Cliente Teste", Regiao.SUDESTE, TipoCliente.OURO);
+        CarrinhoDeCompras carrinho = criarCarrinho(cliente);
+        adicionarItem(carrinho, criarProduto(new BigDecimal("10.00"), new BigDecimal("1.0"), false,
+                TipoProduto.ROUPA), 0);
+
+        assertThrows(IllegalArgumentException.class,
+                () -> servicoCentavos.calcularCustoTotal(carrinho, cliente.getRegiao(), cliente.getTipo()));
+    }
+
+    // ============================================================================
+    // MÉTODOS AUXILIARES
+    // ============================================================================
+
+    private CarrinhoDeCompras criarCarrinhoAleatorio(Random aleatorio) {
+        Cliente cliente = new Cliente(1L, "Cliente Teste",
+                Regiao.values()[aleatorio.nextInt(Regiao.values().length)],
+                TipoCliente.values()[aleatorio.nextInt(TipoCliente.values().length)]);
+        CarrinhoDeCompras carrinho = criarCarrinho(cliente);
+
+        int quantidadeItens = aleatorio.nextInt(8);
+        for (int i = 0; i < quantidadeItens; i++) {
+            Produto produto = new Produto(
+                    (long) i,
+                    "Produto " + i,
+                    "Descrição do Produto " + i,
+                    BigDecimal.valueOf(aleatorio.nextInt(200_000), aleatorio.nextInt(3)),
+                    BigDecimal.valueOf(aleatorio.nextInt(20_000), aleatorio.nextInt(4)),
+                    BigDecimal.valueOf(aleatorio.nextInt(1_000), aleatorio.nextInt(3)),
+                    BigDecimal.valueOf(aleatorio.nextInt(1_000), aleatorio.nextInt(2)),
+                    BigDecimal.valueOf(aleatorio.nextInt(1_000), aleatorio.nextInt(2)),
+                    aleatorio.nextBoolean(),
+                    TipoProduto.values()[aleatorio.nextInt(TipoProduto.values().length)]);
+            adicionarItem(carrinho, produto, 1 + aleatorio.nextInt(10));
+        }
+        return carrinho;
+    }
+
+    private CarrinhoDeCompras criarCarrinho(Cliente cliente) {
+        CarrinhoDeCompras carrinho = new CarrinhoDeCompras();
+        carrinho.setCliente(cliente);
+        carrinho.setItens(new ArrayList<>());
+        return carrinho;
+    }
+
+    private Produto criarProduto(BigDecimal preco, BigDecimal peso, boolean fragil, TipoProduto tipo) {
+        return new Produto(
+                1L,
+                "Produto",
+                "Descrição do Produto",
+                preco,
+                peso,
+                DIMENSAO_PADRAO, // comprimento
+                DIMENSAO_PADRAO, // largura
+                DIMENSAO_PADRAO, // altura
+                fragil,
+                tipo
+        );
+    }
+
+    private void adicionarItem(CarrinhoDeCompras carrinho, Produto produto, long quantidade) {
+        ItemCompra item = new ItemCompra();
+        item.setProduto(produto);
+        item.setQuantidade(quantidade);
+        carrinho.getItens().add(item);
+    }
+}
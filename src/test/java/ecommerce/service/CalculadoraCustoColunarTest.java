@@ -0,0 +1,157 @@
+package ecommerce.service;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import ecommerce.entity.CarrinhoDeCompras;
+import ecommerce.entity.Cliente;
+import ecommerce.entity.ItemCompra;
+import ecommerce.entity.Produto;
+import ecommerce.entity.Regiao;
+import ecommerce.entity.TipoCliente;
+import ecommerce.entity.TipoProduto;
+
+/**
+ * Testes de equivalência entre a precificação em lote colunar e o cálculo por carrinho.
+ */
+@DisplayName("Testes da Precificação Colunar em Lote - CompraService")
+public class CalculadoraCustoColunarTest {
+
+    private static final int CARRINHOS_POR_SEMENTE = 2_000;
+    private static final BigDecimal DIMENSAO_PADRAO = new BigDecimal("10.0");
+
+    private CompraService compraService;
+
+    @BeforeEach
+    void setUp() {
+        compraService = new CompraService(null, null, null, null);
+    }
+
+    @ParameterizedTest(name = "Semente {0}")
+    @ValueSource(longs = {3L, 11L, 99L, 2025L})
+    @DisplayName("Lote de carrinhos aleatórios deve ter o mesmo custo do cálculo por carrinho")
+    void testLoteAleatorioMesmoResultado(long semente) {
+        Random aleatorio = new Random(semente);
+        List<CarrinhoDeCompras> carrinhos = new ArrayList<>();
+        for (int i = 0; i < CARRINHOS_POR_SEMENTE; i++) {
+            carrinhos.add(criarCarrinhoAleatorio(aleatorio));
+        }
+
+        BigDecimal[] custos = compraService.calcularCustosTotais(carrinhos);
+
+        for (int i = 0; i < carrinhos.size(); i++) {
+            assertThat(custos[i])
+                .as("Carrinho %d da semente %d", i, semente)
+                .isEqualTo(compraService.calcularCustoTotal(carrinhos.get(i), null, null));
+        }
+    }
+
+    @Test
+    @DisplayName("Carrinhos fora do formato colunar devem ser marcados e calculados individualmente")
+    void testCarrinhosNaoRepresentaveis() {
+        CarrinhoDeCompras precoComTresCasas = criarCarrinho(Regiao.NORTE, TipoCliente.BRONZE);
+        adicionarItem(precoComTresCasas, criarProduto(1L, "33.333", "2.0", TipoProduto.LIVRO), 3);
+        CarrinhoDeCompras valido = criarCarrinho(Regiao.SUL, TipoCliente.PRATA);
+        adicionarItem(valido, criarProduto(2L, "120.00", "4.5", TipoProduto.MOVEL), 2);
+
+        CarrinhosColunares lote = CarrinhosColunares.de(List.of(precoComTresCasas, valido));
+
+        assertThat(lote.isRepresentavel(0)).isFalse();
+        assertThat(lote.isRepresentavel(1)).isTrue();
+        assertThat(lote.getQuantidadeLinhas()).isEqualTo(1);
+        assertThat(compraService.calcularCustosTotais(List.of(precoComTresCasas, valido)))
+            .containsExactly(compraService.calcularCustoTotal(precoComTresCasas, null, null),
+                    compraService.calcularCustoTotal(valido, null, null));
+    }
+
+    @Test
+    @DisplayName("Robustez: carrinho com Qtd <= 0 no lote deve lançar exceção como no cálculo por carrinho")
+    void testRobustezQuantidadeInvalida() {
+        CarrinhoDeCompras invalido = criarCarrinho(Regiao.SUDESTE, TipoCliente.OURO);
+        adicionarItem(invalido, criarProduto(1L, "10.00", "1.0", TipoProduto.ROUPA), 0);
+
+        assertThrows(IllegalArgumentException.class, () -> compraService.calcularCustosTotais(List.of(invalido)));
+    }
+
+    @Test
+    @DisplayName("Alterar o preço no lote deve dar o mesmo custo que alterar o produto")
+    void testAlterarPrecoNoLote() {
+        Produto livro = criarProduto(1L, "45.90", "0.8", TipoProduto.LIVRO);
+        Produto roupa = criarProduto(2L, "129.90", "0.4", TipoProduto.ROUPA);
+        List<CarrinhoDeCompras> carrinhos = new ArrayList<>();
+        for (Regiao regiao : Regiao.values()) {
+            CarrinhoDeCompras carrinho = criarCarrinho(regiao, TipoCliente.BRONZE);
+            adicionarItem(carrinho, livro, 4);
+            adicionarItem(carrinho, roupa, 1);
+            adicionarItem(carrinho, livro, 2);
+            carrinhos.add(carrinho);
+        }
+
+        CarrinhosColunares lote = CarrinhosColunares.de(carrinhos);
+        lote.alterarPreco(livro.getId(), 3_990L);
+        long[] custos = CalculadoraCustoColunar.calcularCustosTotais(lote, TabelaFaixas.PADRAO);
+
+        livro.setPreco(new BigDecimal("39.90"));
+        for (int i = 0; i < carrinhos.size(); i++) {
+            assertThat(BigDecimal.valueOf(custos[i], 2))
+                .as("Carrinho da região %s", carrinhos.get(i).getCliente().getRegiao())
+                .isEqualTo(compraService.calcularCustoTotal(carrinhos.get(i), null, null));
+        }
+    }
+
+    // ============================================================================
+    // MÉTODOS AUXILIARES
+    // ============================================================================
+
+    private CarrinhoDeCompras criarCarrinhoAleatorio(Random aleatorio) {
+        CarrinhoDeCompras carrinho = criarCarrinho(
+                Regiao.values()[aleatorio.nextInt(Regiao.values().length)],
+                TipoCliente.values()[aleatorio.nextInt(TipoCliente.values().length)]);
+
+        int quantidadeItens = aleatorio.nextInt(12);
+        for (int i = 0; i < quantidadeItens; i++) {
+            Produto produto = new Produto(
+                    (long) i,
+                    "Produto " + i,
+                    "Descrição do Produto " + i,
+                    BigDecimal.valueOf(aleatorio.nextInt(200_000), aleatorio.nextInt(3)),
+                    BigDecimal.valueOf(aleatorio.nextInt(20_000), aleatorio.nextInt(4)),
+                    BigDecimal.valueOf(aleatorio.nextInt(1_000), aleatorio.nextInt(3)),
+                    BigDecimal.valueOf(aleatorio.nextInt(1_000), aleatorio.nextInt(2)),
+                    BigDecimal.valueOf(aleatorio.nextInt(1_000), aleatorio.nextInt(2)),
+                    aleatorio.nextBoolean(),
+                    TipoProduto.values()[aleatorio.nextInt(TipoProduto.values().length)]);
+            adicionarItem(carrinho, produto, 1 + aleatorio.nextInt(10));
+        }
+        return carrinho;
+    }
+
+    private CarrinhoDeCompras criarCarrinho(Regiao regiao, TipoCliente tipo) {
+        CarrinhoDeCompras carrinho = new CarrinhoDeCompras();
+        carrinho.setCliente(new Cliente(1L, "Cliente Teste", regiao, tipo));
+        carrinho.setItens(new ArrayList<>());
+        return carrinho;
+    }
+
+    private Produto criarProduto(Long id, String preco, String peso, TipoProduto tipo) {
+        return new Produto(id, "Produto " + id, "Descrição do Produto " + id, new BigDecimal(preco),
+                new BigDecimal(peso), DIMENSAO_PADRAO, DIMENSAO_PADRAO, DIMENSAO_PADRAO, false, tipo);
+    }
+
+    private void adicionarItem(CarrinhoDeCompras carrinho, Produto produto, long quantidade) {
+        ItemCompra item = new ItemCompra();
+        item.setProduto(produto);
+        item.setQuantidade(quantidade);
+        carrinho.getItens().add(item);
+    }
+}
@@ -0,0 +1,179 @@
+package ecommerce.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import ecommerce.dto.CompraDTO;
+
+@DisplayName("Testes da União de Finalizações Simultâneas - CoalescedorFinalizacoes")
+public class CoalescedorFinalizacoesTest {
+
+    private static final int CHAMADAS = 8;
+
+    private ExecutorService executor;
+    private CountDownLatch liberar;
+    private CountDownLatch iniciadas;
+    private AtomicInteger execucoes;
+    private RuntimeException erro;
+
+    private CoalescedorFinalizacoes coalescedor;
+
+    @BeforeEach
+    void setUp() {
+        executor = Executors.newFixedThreadPool(CHAMADAS);
+        liberar = new CountDownLatch(1);
+        iniciadas = new CountDownLatch(1);
+        execucoes = new AtomicInteger();
+        erro = null;
+
+        CompraService compraService = new CompraService(null, null, null, null) {
+            @Override
+            public CompraDTO finalizarCompra(Long carrinhoId, Long clienteId) {
+                int execucao = execucoes.incrementAndGet();
+                iniciadas.countDown();
+                aguardar(liberar);
+                if (erro != null) {
+                    throw erro;
+                }
+                return new CompraDTO(true, carrinhoId * 1000 + execucao, "Compra finalizada com sucesso.");
+            }
+        };
+        coalescedor = new CoalescedorFinalizacoes(compraService, 100);
+    }
+
+    @AfterEach
+    void tearDown() {
+        liberar.countDown();
+        executor.shutdownNow();
+    }
+
+    @Test
+    @DisplayName("Chamadas simultâneas para o mesmo carrinho devem compartilhar uma execução")
+    void testChamadasUnidas() throws Exception {
+        List<Future<CompraDTO>> chamadas = iniciarChamadas(1L, 1L);
+        aguardarEsperando(CHAMADAS - 1);
+        liberar.countDown();
+
+        for (Future<CompraDTO> chamada : chamadas) {
+            assertThat(chamada.get(5, TimeUnit.SECONDS).transacaoPagamentoId()).isEqualTo(1001L);
+        }
+        assertThat(execucoes.get()).isEqualTo(1);
+        assertThat(coalescedor.emAndamento()).isZero();
+    }
+
+    @Test
+    @DisplayName("Falha deve chegar a todas as chamadas unidas e a chamada seguinte deve executar de novo")
+    void testFalhaCompartilhadaELimpa() throws Exception {
+        erro = new IllegalStateException("Pagamento não autorizado.");
+        List<Future<CompraDTO>> chamadas = iniciarChamadas(1L, 1L);
+        aguardarEsperando(CHAMADAS - 1);
+        liberar.countDown();
+
+        for (Future<CompraDTO> chamada : chamadas) {
+            ExecutionException falha = assertThrows(ExecutionException.class, () -> chamada.get(5, TimeUnit.SECONDS));
+            assertThat(falha.getCause()).isSameAs(erro);
+        }
+        assertThat(coalescedor.emAndamento()).isZero();
+
+        erro = null;
+        assertThat(coalescedor.finalizarCompra(1L, 1L).sucesso()).isTrue();
+        assertThat(execucoes.get()).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("Carrinhos ou clientes diferentes não devem ser unidos")
+    void testChavesDiferentes() throws Exception {
+        liberar.countDown();
+        Future<CompraDTO> primeira = executor.submit(() -> coalescedor.finalizarCompra(1L, 1L));
+        Future<CompraDTO> outroCarrinho = executor.submit(() -> coalescedor.finalizarCompra(2L, 1L));
+        Future<CompraDTO> outroCliente = executor.submit(() -> coalescedor.finalizarCompra(1L, 2L));
+
+        primeira.get(5, TimeUnit.SECONDS);
+        outroCarrinho.get(5, TimeUnit.SECONDS);
+        outroCliente.get(5, TimeUnit.SECONDS);
+
+        assertThat(execucoes.get()).isEqualTo(3);
+    }
+
+    @Test
+    @DisplayName("Com o máximo em andamento, novas chaves devem executar sem união")
+    void testLimiteDeMemoria() throws Exception {
+        coalescedor = new CoalescedorFinalizacoes(new CompraService(null, null, null, null) {
+            @Override
+            public CompraDTO finalizarCompra(Long carrinhoId, Long clienteId) {
+                execucoes.incrementAndGet();
+                iniciadas.countDown();
+                if (carrinhoId == 1L) {
+                    aguardar(liberar);
+                }
+                return new CompraDTO(true, carrinhoId, "Compra finalizada com sucesso.");
+            }
+        }, 1);
+
+        Future<CompraDTO> ocupante = executor.submit(() -> coalescedor.finalizarCompra(1L, 1L));
+        assertThat(iniciadas.await(5, TimeUnit.SECONDS)).isTrue();
+
+        assertThat(coalescedor.finalizarCompra(2L, 1L).sucesso()).isTrue();
+        assertThat(coalescedor.finalizarCompra(3L, 1L).sucesso()).isTrue();
+        assertThat(coalescedor.emAndamento()).isEqualTo(1);
+
+        liberar.countDown();
+        ocupante.get(5, TimeUnit.SECONDS);
+        assertThat(coalescedor.emAndamento()).isZero();
+        assertThat(execucoes.get()).isEqualTo(3);
+    }
+
+    // ============================================================================
+    // MÉTODOS AUXILIARES
+    // ============================================================================
+
+    private List<Future<CompraDTO>> iniciarChamadas(Long carrinhoId, Long clienteId) throws InterruptedException {
+        List<Future<CompraDTO>> chamadas = new ArrayList<>();
+        chamadas.add(executor.submit(() -> coalescedor.finalizarCompra(carrinhoId, clienteId)));
+        assertThat(iniciadas.await(5, TimeUnit.SECONDS)).isTrue();
+        for (int i = 1; i < CHAMADAS; i++) {
+            chamadas.add(executor.submit(() -> coalescedor.finalizarCompra(carrinhoId, clienteId)));
+        }
+        return chamadas;
+    }
+
+    /** Espera as demais threads chegarem à espera pelo resultado da primeira. */
+    private void aguardarEsperando(int quantidade) throws InterruptedException {
+        long limite = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (contarEsperando() < quantidade && System.nanoTime() < limite) {
+            Thread.sleep(10);
+        }
+    }
+
+    private static long contarEsperando() {
+        return Thread.getAllStackTraces().entrySet().stream()
+                .filter(e -> e.getKey().getState() == Thread.State.WAITING)
+                .filter(e -> List.of(e.getValue()).stream()
+                        .anyMatch(quadro -> quadro.getClassName().equals(CoalescedorFinalizacoes.class.getName())
+                                && quadro.getMethodName().equals("aguardar")))
+                .count();
+    }
+
+    private static void aguardar(CountDownLatch sinal) {
+        try {
+            assertThat(sinal.await(5, TimeUnit.SECONDS)).isTrue();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+}
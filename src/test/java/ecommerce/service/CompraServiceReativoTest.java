@@ -0,0 +1,251 @@
+package ecommerce.service;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import ecommerce.dto.CompraDTO;
+import ecommerce.dto.DisponibilidadeDTO;
+import ecommerce.dto.EstoqueBaixaDTO;
+import ecommerce.dto.PagamentoDTO;
+import ecommerce.dto.ReservaDTO;
+import ecommerce.entity.CarrinhoDeCompras;
+import ecommerce.entity.Cliente;
+import ecommerce.entity.ItemCompra;
+import ecommerce.entity.Produto;
+import ecommerce.entity.Regiao;
+import ecommerce.entity.TipoCliente;
+import ecommerce.entity.TipoProduto;
+import ecommerce.external.IEstoqueExternal;
+import ecommerce.external.IEstoqueExternalReativo;
+import ecommerce.external.IPagamentoExternal;
+import ecommerce.external.IPagamentoExternalReativo;
+import ecommerce.external.fake.EstoqueSimulado;
+import ecommerce.external.fake.EstoqueSimuladoReativo;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+@DisplayName("Testes da Finalização Reativa - CompraServiceReativo")
+public class CompraServiceReativoTest {
+
+    private static final BigDecimal DIMENSAO_PADRAO = new BigDecimal("10.0");
+    private static final int THREADS = 8;
+    private static final int COMPRAS = 200;
+
+    private ExecutorService executorBloqueante;
+    private Scheduler agendadorBloqueante;
+    private CarrinhoDeCompras carrinho;
+    private EstoqueSimulado estoque;
+
+    private boolean pagamentoAutorizado;
+    private final List<Long> cancelados = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        executorBloqueante = Executors.newFixedThreadPool(THREADS);
+        agendadorBloqueante = Schedulers.fromExecutorService(executorBloqueante);
+        carrinho = new CarrinhoDeCompras();
+        carrinho.setId(1L);
+        carrinho.setCliente(new Cliente(1L, "Cliente Teste", Regiao.SUL, TipoCliente.BRONZE));
+        carrinho.setItens(new ArrayList<>());
+        carrinho.getItens().add(new ItemCompra(1L, new Produto(1L, "Produto 1", "Descrição do Produto 1",
+                new BigDecimal("45.90"), new BigDecimal("1.0"), DIMENSAO_PADRAO, DIMENSAO_PADRAO, DIMENSAO_PADRAO,
+                false, TipoProduto.LIVRO), 2L));
+
+        estoque = new EstoqueSimulado(100);
+        pagamentoAutorizado = true;
+    }
+
+    @AfterEach
+    void tearDown() {
+        agendadorBloqueante.dispose();
+    }
+
+    @Test
+    @DisplayName("Compra deve reservar, pagar e confirmar a reserva")
+    void testCompraFinalizada() {
+        CompraServiceReativo servico = criarServicoReativo(new EstoqueSimuladoReativo(estoque));
+
+        CompraDTO compra = servico.finalizarCompra(1L, 1L).block(Duration.ofSeconds(5));
+
+        assertThat(compra.sucesso()).isTrue();
+        assertThat(compra.transacaoPagamentoId()).isEqualTo(10L);
+        assertThat(estoque.disponivel(1L)).isEqualTo(98L);
+        assertThat(estoque.reservasEmAberto()).isZero();
+    }
+
+    @Test
+    @DisplayName("Pagamento negado deve liberar a reserva")
+    void testPagamentoNegadoLiberaReserva() {
+        pagamentoAutorizado = false;
+        CompraServiceReativo servico = criarServicoReativo(new EstoqueSimuladoReativo(estoque));
+
+        IllegalStateException erro = assertThrows(IllegalStateException.class,
+                () -> servico.finalizarCompra(1L, 1L).block(Duration.ofSeconds(5)));
+
+        assertThat(erro.getMessage()).isEqualTo("Pagamento não autorizado.");
+        assertThat(estoque.disponivel(1L)).isEqualTo(100L);
+        assertThat(estoque.reservasEmAberto()).isZero();
+    }
+
+    @Test
+    @DisplayName("Falta de estoque deve recusar a compra antes do pagamento")
+    void testSemEstoque() {
+        estoque.definirSaldo(1L, 1);
+        CompraServiceReativo servico = criarServicoReativo(new EstoqueSimuladoReativo(estoque));
+
+        IllegalStateException erro = assertThrows(IllegalStateException.class,
+                () -> servico.finalizarCompra(1L, 1L).block(Duration.ofSeconds(5)));
+
+        assertThat(erro.getMessage()).isEqualTo("Itens fora de estoque.");
+        assertThat(cancelados).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Falha na baixa deve cancelar o pagamento")
+    void testBaixaFalhaCancelaPagamento() {
+        CompraServiceReativo servico = criarServicoReativo(new EstoqueSimuladoReativo(estoque) {
+            @Override
+            public Mono<EstoqueBaixaDTO> confirmarReserva(Long reservaId) {
+                return Mono.just(new EstoqueBaixaDTO(false));
+            }
+        });
+
+        IllegalStateException erro = assertThrows(IllegalStateException.class,
+                () -> servico.finalizarCompra(1L, 1L).block(Duration.ofSeconds(5)));
+
+        assertThat(erro.getMessage()).isEqualTo("Erro ao dar baixa no estoque.");
+        assertThat(cancelados).containsExactly(10L);
+    }
+
+    @Test
+    @DisplayName("Com poucas threads, a finalização reativa deve manter todas as compras esperando o estoque")
+    void testComprasEsperandoSemThreads() throws Exception {
+        AtomicInteger emAndamento = new AtomicInteger();
+        AtomicInteger maximoEmAndamento = new AtomicInteger();
+        CompraServiceReativo servico = new CompraServiceReativo(criarCompraService(null, null),
+                estoqueReativoRetido(emAndamento, maximoEmAndamento), pagamentoReativo(), agendadorBloqueante);
+
+        List<CompletableFuture<CompraDTO>> compras = new ArrayList<>();
+        for (int i = 0; i < COMPRAS; i++) {
+            compras.add(servico.finalizarCompra(1L, 1L).toFuture());
+        }
+
+        for (CompletableFuture<CompraDTO> compra : compras) {
+            assertThat(compra.get(30, TimeUnit.SECONDS).sucesso()).isTrue();
+        }
+        assertThat(maximoEmAndamento.get()).isEqualTo(COMPRAS);
+    }
+
+    // ============================================================================
+    // MÉTODOS AUXILIARES
+    // ============================================================================
+
+    private CompraServiceReativo criarServicoReativo(IEstoqueExternalReativo estoqueReativo) {
+        CompraService compraService = criarCompraService(estoque, null);
+        compraService.setReservaHabilitada(true);
+        return new CompraServiceReativo(compraService, estoqueReativo, new IPagamentoExternalReativo() {
+            @Override
+            public Mono<PagamentoDTO> autorizarPagamento(Long clienteId, Double custoTotal) {
+                return Mono.just(new PagamentoDTO(pagamentoAutorizado, pagamentoAutorizado ? 10L : null));
+            }
+
+            @Override
+            public Mono<Void> cancelarPagamento(Long clienteId, Long pagamentoTransacaoId) {
+                return Mono.fromRunnable(() -> cancelados.add(pagamentoTransacaoId));
+            }
+        }, agendadorBloqueante);
+    }
+
+    private CompraService criarCompraService(IEstoqueExternal estoqueExterno, IPagamentoExternal pagamento) {
+        ClienteService clienteService = new ClienteService(null) {
+            @Override
+            public Cliente buscarPorId(Long clienteId) {
+                return carrinho.getCliente();
+            }
+        };
+        CarrinhoDeComprasService carrinhoService = new CarrinhoDeComprasService(null) {
+            @Override
+            public CarrinhoDeCompras buscarPorCarrinhoIdEClienteId(Long carrinhoId, Cliente cliente) {
+                return carrinho;
+            }
+        };
+        return new CompraService(carrinhoService, clienteService, estoqueExterno, pagamento);
+    }
+
+    /**
+     * Estoque que segura todas as verificações até as {@value #COMPRAS} compras estarem esperando por
+     * ele ao mesmo tempo; as demais chamadas respondem na hora.
+     */
+    private static IEstoqueExternalReativo estoqueReativoRetido(AtomicInteger emAndamento,
+            AtomicInteger maximoEmAndamento) {
+        CompletableFuture<Void> todasEsperando = new CompletableFuture<>();
+        return new IEstoqueExternalReativo() {
+            @Override
+            public Mono<EstoqueBaixaDTO> darBaixa(List<Long> produtosIds, List<Long> produtosQuantidades) {
+                return Mono.just(new EstoqueBaixaDTO(true));
+            }
+
+            @Override
+            public Mono<DisponibilidadeDTO> verificarDisponibilidade(List<Long> produtosIds,
+                    List<Long> produtosQuantidades) {
+                return Mono.defer(() -> {
+                    int atual = emAndamento.incrementAndGet();
+                    maximoEmAndamento.accumulateAndGet(atual, Math::max);
+                    if (atual == COMPRAS) {
+                        todasEsperando.complete(null);
+                    }
+                    return Mono.fromFuture(todasEsperando);
+                }).then(Mono.fromCallable(() -> {
+                    emAndamento.decrementAndGet();
+                    return new DisponibilidadeDTO(true, List.of());
+                }));
+            }
+
+            @Override
+            public Mono<ReservaDTO> reservar(List<Long> produtosIds, List<Long> produtosQuantidades,
+                    Duration validade) {
+                return verificarDisponibilidade(produtosIds, produtosQuantidades)
+                        .map(disponibilidade -> new ReservaDTO(true, 1L, List.of()));
+            }
+
+            @Override
+            public Mono<EstoqueBaixaDTO> confirmarReserva(Long reservaId) {
+                return Mono.just(new EstoqueBaixaDTO(true));
+            }
+
+            @Override
+            public Mono<Void> liberarReserva(Long reservaId) {
+                return Mono.empty();
+            }
+        };
+    }
+
+    private static IPagamentoExternalReativo pagamentoReativo() {
+        return new IPagamentoExternalReativo() {
+            @Override
+            public Mono<PagamentoDTO> autorizarPagamento(Long clienteId, Double custoTotal) {
+                return Mono.just(new PagamentoDTO(true, 10L));
+            }
+
+            @Override
+            public Mono<Void> cancelarPagamento(Long clienteId, Long pagamentoTransacaoId) {
+                return Mono.empty();
+            }
+        };
+    }
+}
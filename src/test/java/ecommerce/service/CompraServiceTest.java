@@ -116,4 +116,60 @@ public class CompraServiceTest
 		// e não precisa instanciar um BigDecimal para fazer a comparação
 		assertThat(custoTotal).as("Custo Total da Compra").isEqualByComparingTo("1710.00");
 	}
+
+	@Test
+	public void calcularDescontoPorMultiplosItensMesmoTipo()
+	{
+		CompraService service = new CompraService(null, null, null, null);
+
+		CarrinhoDeCompras carrinho = new CarrinhoDeCompras();
+		carrinho.setCliente(new Cliente(1L, "João Silva", Regiao.SUDESTE, TipoCliente.BRONZE));
+
+		List<ItemCompra> itens = new ArrayList<>();
+		// Livros em duas linhas diferentes: 2 + 3 = 5 unidades (10%)
+		itens.add(new ItemCompra(1L, criarProduto(1L, "40.00", TipoProduto.LIVRO, true), 2L));
+		itens.add(new ItemCompra(2L, criarProduto(2L, "20.00", TipoProduto.LIVRO, false), 3L));
+		// Roupas: 3 unidades (5%)
+		itens.add(new ItemCompra(3L, criarProduto(3L, "100.00", TipoProduto.ROUPA, true), 3L));
+		// Alimento: 1 unidade (sem desconto)
+		itens.add(new ItemCompra(4L, criarProduto(4L, "10.00", TipoProduto.ALIMENTO, false), 1L));
+		carrinho.setItens(itens);
+
+		ResumoCarrinho resumo = service.resumirCarrinho(carrinho);
+
+		// Livros: (80 + 60) * 0.10 = 14.00; Roupas: 300 * 0.05 = 15.00
+		assertThat(service.calcularDescontoPorMultiplosItensMesmoTipo(resumo)).isEqualByComparingTo("29.00");
+		assertThat(service.calcularDescontoPorMultiplosItensMesmoTipo(carrinho)).isEqualByComparingTo("29.00");
+		assertThat(resumo.getQuantidade(TipoProduto.LIVRO)).isEqualTo(5L);
+		assertThat(resumo.getSubtotal(TipoProduto.LIVRO)).isEqualByComparingTo("140.00");
+		assertThat(resumo.getSubtotal()).isEqualByComparingTo("450.00");
+
+		// Frágeis: 2 livros + 3 roupas = 5 itens * R$ 5,00
+		assertThat(service.calcularTaxaProdutoFragil(resumo)).isEqualByComparingTo("25.00");
+		assertThat(service.calcularTaxaProdutoFragil(carrinho)).isEqualByComparingTo("25.00");
+	}
+
+	@Test
+	public void calcularPesoTributavelTotalAposAlterarDimensoes()
+	{
+		CompraService service = new CompraService(null, null, null, null);
+
+		Produto produto = criarProduto(1L, "10.00", TipoProduto.MOVEL, false);
+		ItemCompra item = new ItemCompra(1L, produto, 3L);
+
+		// Volumétrico: 10 * 10 * 10 / 6000 = 0.17 kg < peso físico 0.5 kg
+		assertThat(service.calcularPesoTributavelTotal(item)).isEqualByComparingTo("1.50");
+
+		// Volumétrico: 10 * 10 * 120 / 6000 = 2.00 kg; o valor em cache não pode ficar velho
+		produto.setAltura(new BigDecimal("120"));
+		assertThat(produto.getPesoTributavelUnitario()).isEqualByComparingTo("2.00");
+		assertThat(produto.getPesoTributavelUnitarioGramas()).isEqualTo(2000L);
+		assertThat(service.calcularPesoTributavelTotal(item)).isEqualByComparingTo("6.00");
+	}
+
+	private Produto criarProduto(Long id, String preco, TipoProduto tipo, boolean fragil)
+	{
+		return new Produto(id, "Produto " + id, "Descrição", new BigDecimal(preco), new BigDecimal("0.5"),
+				new BigDecimal("10"), new BigDecimal("10"), new BigDecimal("10"), fragil, tipo);
+	}
 }
@@ -0,0 +1,166 @@
+package ecommerce.service;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import ecommerce.dto.CarrinhoCotacaoDTO;
+import ecommerce.dto.CotacaoDTO;
+import ecommerce.dto.CotacaoRequestDTO;
+import ecommerce.dto.ItemCotacaoDTO;
+import ecommerce.entity.CarrinhoDeCompras;
+import ecommerce.entity.Cliente;
+import ecommerce.entity.ItemCompra;
+import ecommerce.entity.Produto;
+import ecommerce.entity.Regiao;
+import ecommerce.entity.TipoCliente;
+import ecommerce.entity.TipoProduto;
+
+@DisplayName("Testes da Cotação em Lote - CotacaoService")
+public class CotacaoServiceTest {
+
+    private static final int TAMANHO_LOTE = 100;
+    private static final BigDecimal DIMENSAO_PADRAO = new BigDecimal("10.0");
+
+    private Map<Long, CarrinhoDeCompras> carrinhosSalvos;
+    private Map<Long, Produto> produtosSalvos;
+    private List<Integer> tamanhosDasConsultas;
+
+    private CompraService compraService;
+    private CotacaoService cotacaoService;
+
+    @BeforeEach
+    void setUp() {
+        produtosSalvos = LongStream.rangeClosed(1, 4)
+                .mapToObj(id -> criarProduto(id, BigDecimal.valueOf(25 * id), TipoProduto.values()[(int) id % 3]))
+                .collect(Collectors.toMap(Produto::getId, Function.identity()));
+        carrinhosSalvos = LongStream.rangeClosed(1, 1_000)
+                .mapToObj(this::criarCarrinhoSalvo)
+                .collect(Collectors.toMap(CarrinhoDeCompras::getId, Function.identity()));
+        tamanhosDasConsultas = new ArrayList<>();
+
+        CarrinhoDeComprasService carrinhoService = new CarrinhoDeComprasService(null) {
+            @Override
+            public List<CarrinhoDeCompras> buscarComItens(Collection<Long> carrinhoIds) {
+                tamanhosDasConsultas.add(carrinhoIds.size());
+                return carrinhoIds.stream().map(carrinhosSalvos::get).filter(c -> c != null).toList();
+            }
+        };
+        ProdutoService produtoService = new ProdutoService(null) {
+            @Override
+            public Map<Long, Produto> buscarPorIds(Collection<Long> ids) {
+                return ids.stream().filter(produtosSalvos::containsKey)
+                        .collect(Collectors.toMap(Function.identity(), produtosSalvos::get));
+            }
+        };
+
+        compraService = new CompraService(null, null, null, null);
+        cotacaoService = new CotacaoService(compraService, carrinhoService, produtoService, 4, TAMANHO_LOTE, 5_000);
+    }
+
+    @AfterEach
+    void tearDown() {
+        cotacaoService.encerrar();
+    }
+
+    @Test
+    @DisplayName("Carrinhos salvos devem ser carregados em lotes e cotados uma única vez")
+    void testCarrinhosSalvosEmLotes() {
+        List<Long> ids = new ArrayList<>(carrinhosSalvos.keySet());
+        ids.add(9_999L);
+
+        List<CotacaoDTO> cotacoes = new ArrayList<>();
+        cotacaoService.cotar(new CotacaoRequestDTO(ids, null), cotacoes::add);
+
+        assertThat(cotacoes).hasSize(ids.size());
+        assertThat(cotacoes.stream().map(CotacaoDTO::carrinhoId).toList()).doesNotHaveDuplicates();
+        assertThat(tamanhosDasConsultas)
+            .as("Uma consulta por lote de até %d carrinhos", TAMANHO_LOTE)
+            .hasSize(11);
+        assertThat(Collections.max(tamanhosDasConsultas)).isLessThanOrEqualTo(TAMANHO_LOTE);
+
+        for (CotacaoDTO cotacao : cotacoes) {
+            CarrinhoDeCompras carrinho = carrinhosSalvos.get(cotacao.carrinhoId());
+            if (carrinho == null) {
+                assertThat(cotacao.erro()).isEqualTo("Carrinho não encontrado.");
+            } else {
+                assertThat(cotacao.custoTotal())
+                    .as("Carrinho %d", cotacao.carrinhoId())
+                    .isEqualTo(compraService.calcularCustoTotal(carrinho, null, null));
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("Carrinhos informados no pedido devem ser cotados sem interromper os demais em caso de erro")
+    void testCarrinhosInformados() {
+        List<CarrinhoCotacaoDTO> carrinhos = List.of(
+                new CarrinhoCotacaoDTO("valido", Regiao.NORTE, TipoCliente.PRATA,
+                        List.of(new ItemCotacaoDTO(1L, 3L), new ItemCotacaoDTO(2L, 1L))),
+                new CarrinhoCotacaoDTO("produto-inexistente", Regiao.SUL, TipoCliente.OURO,
+                        List.of(new ItemCotacaoDTO(42L, 1L))),
+                new CarrinhoCotacaoDTO("sem-regiao", null, TipoCliente.BRONZE,
+                        List.of(new ItemCotacaoDTO(1L, 1L))),
+                new CarrinhoCotacaoDTO("quantidade-zero", Regiao.SUDESTE, TipoCliente.BRONZE,
+                        List.of(new ItemCotacaoDTO(1L, 0L))));
+
+        List<CotacaoDTO> cotacoes = new ArrayList<>();
+        cotacaoService.cotar(new CotacaoRequestDTO(null, carrinhos), cotacoes::add);
+
+        Map<String, CotacaoDTO> porReferencia = cotacoes.stream()
+                .collect(Collectors.toMap(CotacaoDTO::referencia, Function.identity()));
+
+        CarrinhoDeCompras esperado = new CarrinhoDeCompras(null, new Cliente(null, null, Regiao.NORTE, TipoCliente.PRATA),
+                List.of(new ItemCompra(null, produtosSalvos.get(1L), 3L), new ItemCompra(null, produtosSalvos.get(2L), 1L)),
+                null);
+        assertThat(porReferencia.get("valido").custoTotal())
+            .isEqualTo(compraService.calcularCustoTotal(esperado, null, null));
+        assertThat(porReferencia.get("produto-inexistente").erro()).isEqualTo("Produto não encontrado: 42");
+        assertThat(porReferencia.get("sem-regiao").erro()).isEqualTo("Região e tipo do cliente são obrigatórios.");
+        assertThat(porReferencia.get("quantidade-zero").custoTotal()).isNull();
+        assertThat(porReferencia.get("quantidade-zero").erro()).isNotNull();
+    }
+
+    @Test
+    @DisplayName("Pedido vazio ou acima do limite deve ser rejeitado")
+    void testPedidoInvalido() {
+        assertThrows(IllegalArgumentException.class,
+                () -> cotacaoService.cotar(new CotacaoRequestDTO(List.of(), null), cotacao -> { }));
+
+        List<Long> muitos = LongStream.rangeClosed(1, 5_001).boxed().toList();
+        assertThrows(IllegalArgumentException.class,
+                () -> cotacaoService.cotar(new CotacaoRequestDTO(muitos, null), cotacao -> { }));
+    }
+
+    // ============================================================================
+    // MÉTODOS AUXILIARES
+    // ============================================================================
+
+    private CarrinhoDeCompras criarCarrinhoSalvo(long id) {
+        Cliente cliente = new Cliente(id, "Cliente " + id, Regiao.values()[(int) id % Regiao.values().length],
+                TipoCliente.values()[(int) id % TipoCliente.values().length]);
+        List<ItemCompra> itens = new ArrayList<>();
+        for (long produtoId = 1; produtoId <= 1 + id % 4; produtoId++) {
+            itens.add(new ItemCompra(produtoId, produtosSalvos.get(produtoId), 1 + id % 9));
+        }
+        return new CarrinhoDeCompras(id, cliente, itens, null);
+    }
+
+    private Produto criarProduto(Long id, BigDecimal preco, TipoProduto tipo) {
+        return new Produto(id, "Produto " + id, "Descrição do Produto " + id, preco, new BigDecimal("1.5"),
+                DIMENSAO_PADRAO, DIMENSAO_PADRAO, DIMENSAO_PADRAO, id % 2 == 0, tipo);
+    }
+}
@@ -0,0 +1,365 @@
+package ecommerce.service;
+
+import java.math.BigDecimal;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import ecommerce.dto.DisponibilidadeDTO;
+import ecommerce.dto.EstoqueBaixaDTO;
+import ecommerce.dto.PagamentoDTO;
+import ecommerce.dto.ReservaDTO;
+import ecommerce.entity.CarrinhoDeCompras;
+import ecommerce.entity.Cliente;
+import ecommerce.entity.CompensacaoPagamento;
+import ecommerce.entity.ItemCompra;
+import ecommerce.entity.Produto;
+import ecommerce.entity.Regiao;
+import ecommerce.entity.SituacaoCompensacao;
+import ecommerce.entity.TipoCliente;
+import ecommerce.entity.TipoProduto;
+import ecommerce.external.IEstoqueExternal;
+import ecommerce.external.IPagamentoExternal;
+
+@DisplayName("Testes do Outbox de Compensações - DespachanteCompensacoes")
+public class DespachanteCompensacoesTest {
+
+    private static final int TAMANHO_LOTE = 100;
+    private static final int MAXIMO_TENTATIVAS = 4;
+    private static final Duration ESPERA_INICIAL = Duration.ofSeconds(1);
+    private static final Duration ESPERA_MAXIMA = Duration.ofSeconds(3);
+    private static final Duration ARRENDAMENTO = Duration.ofSeconds(30);
+
+    private Instant agora;
+    private Clock relogio;
+
+    private List<CompensacaoPagamento> outbox;
+    private List<Integer> tamanhosDasConsultas;
+    private List<Long> cancelados;
+    private List<Long> gravadas;
+    private int falhasRestantes;
+    private Runnable duranteCancelamento;
+
+    private CompensacaoPagamentoService compensacoes;
+    private IPagamentoExternal pagamento;
+    private DespachanteCompensacoes despachante;
+
+    @BeforeEach
+    void setUp() {
+        agora = Instant.parse("2024-01-01T00:00:00Z");
+        relogio = new Clock() {
+            @Override
+            public ZoneId getZone() {
+                return ZoneOffset.UTC;
+            }
+
+            @Override
+            public Clock withZone(ZoneId zone) {
+                return this;
+            }
+
+            @Override
+            public Instant instant() {
+                return agora;
+            }
+        };
+        outbox = new ArrayList<>();
+        tamanhosDasConsultas = new ArrayList<>();
+        cancelados = new ArrayList<>();
+        gravadas = new ArrayList<>();
+        falhasRestantes = 0;
+        duranteCancelamento = () -> {
+        };
+
+        compensacoes = new CompensacaoPagamentoService(null) {
+            @Override
+            public void registrar(Long clienteId, Long transacaoId) {
+                if (outbox.stream().noneMatch(c -> c.getTransacaoId().equals(transacaoId))) {
+                    outbox.add(new CompensacaoPagamento(clienteId, transacaoId, agora));
+                }
+            }
+
+            @Override
+            public List<CompensacaoPagamento> buscarPendentes(Instant momento, int limite) {
+                List<CompensacaoPagamento> pendentes = outbox.stream()
+                        .filter(c -> aEnviar(c, momento))
+                        .sorted(Comparator.comparing(CompensacaoPagamento::getProximaTentativa))
+                        .limit(limite)
+                        .toList();
+                tamanhosDasConsultas.add(pendentes.size());
+                return pendentes;
+            }
+
+            @Override
+            public boolean reivindicar(CompensacaoPagamento compensacao, Instant momento, Duration arrendamento) {
+                // Como o update condicional: a linha só muda se ainda estiver a enviar
+                if (!aEnviar(compensacao, momento)) {
+                    return false;
+                }
+                compensacao.setSituacao(SituacaoCompensacao.EM_ENVIO);
+                compensacao.setProximaTentativa(momento.plus(arrendamento));
+                return true;
+            }
+
+            @Override
+            public void salvar(CompensacaoPagamento compensacao) {
+                gravadas.add(compensacao.getTransacaoId());
+            }
+        };
+        pagamento = new IPagamentoExternal() {
+            @Override
+            public PagamentoDTO autorizarPagamento(Long clienteId, Double custoTotal) {
+                return new PagamentoDTO(true, 10L);
+            }
+
+            @Override
+            public void cancelarPagamento(Long clienteId, Long pagamentoTransacaoId) {
+                duranteCancelamento.run();
+                if (falhasRestantes > 0) {
+                    falhasRestantes--;
+                    throw new IllegalStateException("Pagamento fora do ar");
+                }
+                cancelados.add(pagamentoTransacaoId);
+            }
+        };
+        despachante = criarDespachante();
+    }
+
+    @Test
+    @DisplayName("Falha na baixa deve gravar a compensação sem cancelar o pagamento na requisição")
+    void testCompensacaoGravadaNoOutbox() {
+        CompraService compraService = criarCompraComBaixaFalhando();
+
+        assertThrows(IllegalStateException.class, () -> compraService.finalizarCompra(1L, 1L));
+        assertThrows(IllegalStateException.class, () -> compraService.finalizarCompra(1L, 1L));
+
+        assertThat(cancelados).isEmpty();
+        assertThat(outbox).hasSize(1);
+        assertThat(outbox.get(0).getTransacaoId()).isEqualTo(10L);
+
+        assertThat(despachante.despachar()).isEqualTo(1);
+        assertThat(cancelados).containsExactly(10L);
+        assertThat(outbox.get(0).getSituacao()).isEqualTo(SituacaoCompensacao.ENVIADA);
+        assertThat(despachante.despachar()).isZero();
+    }
+
+    @Test
+    @DisplayName("Falha no envio deve reagendar com espera exponencial")
+    void testEsperaExponencial() {
+        compensacoes.registrar(1L, 10L);
+        falhasRestantes = 2;
+
+        assertThat(despachante.despachar()).isZero();
+        CompensacaoPagamento compensacao = outbox.get(0);
+        assertThat(compensacao.getSituacao()).isEqualTo(SituacaoCompensacao.PENDENTE);
+        assertThat(compensacao.getTentativas()).isEqualTo(1);
+        assertThat(compensacao.getProximaTentativa()).isEqualTo(agora.plusSeconds(1));
+        assertThat(compensacao.getUltimoErro()).contains("Pagamento fora do ar");
+
+        agora = agora.plusMillis(999);
+        assertThat(despachante.despachar()).as("Ainda não venceu").isZero();
+        assertThat(compensacao.getTentativas()).isEqualTo(1);
+
+        agora = agora.plusMillis(1);
+        despachante.despachar();
+        assertThat(compensacao.getProximaTentativa()).isEqualTo(agora.plusSeconds(2));
+
+        agora = agora.plusSeconds(2);
+        assertThat(despachante.despachar()).isEqualTo(1);
+        assertThat(compensacao.getSituacao()).isEqualTo(SituacaoCompensacao.ENVIADA);
+        assertThat(compensacao.getTentativas()).isEqualTo(3);
+    }
+
+    @Test
+    @DisplayName("Esgotar as tentativas deve abandonar a compensação")
+    void testCompensacaoAbandonada() {
+        compensacoes.registrar(1L, 10L);
+        falhasRestantes = Integer.MAX_VALUE;
+
+        for (int i = 0; i < MAXIMO_TENTATIVAS + 2; i++) {
+            despachante.despachar();
+            agora = agora.plus(ESPERA_MAXIMA);
+        }
+
+        assertThat(outbox.get(0).getSituacao()).isEqualTo(SituacaoCompensacao.ABANDONADA);
+        assertThat(outbox.get(0).getTentativas()).isEqualTo(MAXIMO_TENTATIVAS);
+    }
+
+    @Test
+    @DisplayName("Espera deve dobrar até o máximo")
+    void testEsperaLimitada() {
+        assertThat(despachante.espera(1)).isEqualTo(Duration.ofSeconds(1));
+        assertThat(despachante.espera(2)).isEqualTo(Duration.ofSeconds(2));
+        assertThat(despachante.espera(3)).isEqualTo(ESPERA_MAXIMA);
+        assertThat(despachante.espera(60)).isEqualTo(ESPERA_MAXIMA);
+    }
+
+    @Test
+    @DisplayName("Fila maior que o lote deve ser enviada em lotes na mesma execução")
+    void testEnvioEmLotes() {
+        for (long transacao = 1; transacao <= 250; transacao++) {
+            compensacoes.registrar(1L, transacao);
+        }
+
+        assertThat(despachante.despachar()).isEqualTo(250);
+
+        assertThat(tamanhosDasConsultas).containsExactly(100, 100, 50);
+        assertThat(cancelados).hasSize(250).doesNotHaveDuplicates();
+    }
+
+    @Test
+    @DisplayName("Despacho sobreposto não deve enviar a compensação que outro despachante tomou")
+    void testCompensacaoTomadaPorOutroDespachante() {
+        compensacoes.registrar(1L, 10L);
+        compensacoes.registrar(1L, 11L);
+        DespachanteCompensacoes outraInstancia = criarDespachante();
+        AtomicInteger enviadasPelaOutra = new AtomicInteger(-1);
+        duranteCancelamento = () -> {
+            if (enviadasPelaOutra.compareAndSet(-1, 0)) {
+                enviadasPelaOutra.set(outraInstancia.despachar());
+            }
+        };
+
+        int enviadas = despachante.despachar();
+
+        // A outra instância começou no meio do primeiro envio: fica só com a compensação não tomada
+        assertThat(enviadas).isEqualTo(1);
+        assertThat(enviadasPelaOutra.get()).isEqualTo(1);
+        assertThat(cancelados).containsExactlyInAnyOrder(10L, 11L);
+        assertThat(outbox.get(0).getSituacao()).isEqualTo(SituacaoCompensacao.ENVIADA);
+        assertThat(outbox.get(1).getSituacao()).isEqualTo(SituacaoCompensacao.ENVIADA);
+    }
+
+    @Test
+    @DisplayName("O resultado de cada envio deve ser gravado antes do envio seguinte")
+    void testResultadoGravadoACadaEnvio() {
+        for (long transacao = 1; transacao <= 3; transacao++) {
+            compensacoes.registrar(1L, transacao);
+        }
+        List<List<Long>> gravadasAntesDoEnvio = new ArrayList<>();
+        duranteCancelamento = () -> gravadasAntesDoEnvio.add(List.copyOf(gravadas));
+
+        assertThat(despachante.despachar()).isEqualTo(3);
+
+        assertThat(gravadasAntesDoEnvio).containsExactly(List.of(), List.of(1L), List.of(1L, 2L));
+        assertThat(gravadas).containsExactly(1L, 2L, 3L);
+    }
+
+    @Test
+    @DisplayName("Compensação de uma instância que parou no envio deve ser retomada quando o arrendamento vencer")
+    void testArrendamentoVencido() {
+        compensacoes.registrar(1L, 10L);
+        CompensacaoPagamento compensacao = outbox.get(0);
+        // Instância que tomou a compensação e parou antes de gravar o resultado
+        assertThat(compensacoes.reivindicar(compensacao, agora, ARRENDAMENTO)).isTrue();
+        assertThat(compensacoes.reivindicar(compensacao, agora, ARRENDAMENTO)).isFalse();
+
+        agora = agora.plus(ARRENDAMENTO).minusMillis(1);
+        assertThat(despachante.despachar()).as("Arrendamento ainda vale").isZero();
+        assertThat(cancelados).isEmpty();
+
+        agora = agora.plusMillis(1);
+        assertThat(despachante.despachar()).isEqualTo(1);
+        assertThat(cancelados).containsExactly(10L);
+        assertThat(compensacao.getSituacao()).isEqualTo(SituacaoCompensacao.ENVIADA);
+    }
+
+    @Test
+    @DisplayName("Arrendamento não positivo deve ser recusado")
+    void testArrendamentoInvalido() {
+        assertThrows(IllegalArgumentException.class, () -> new DespachanteCompensacoes(compensacoes, pagamento,
+                TAMANHO_LOTE, ESPERA_INICIAL, ESPERA_MAXIMA, MAXIMO_TENTATIVAS, Duration.ZERO, relogio));
+    }
+
+    // ============================================================================
+    // MÉTODOS AUXILIARES
+    // ============================================================================
+
+    private DespachanteCompensacoes criarDespachante() {
+        return new DespachanteCompensacoes(compensacoes, pagamento, TAMANHO_LOTE, ESPERA_INICIAL, ESPERA_MAXIMA,
+                MAXIMO_TENTATIVAS, ARRENDAMENTO, relogio);
+    }
+
+    /** Pendente vencida, ou em envio com o arrendamento vencido. */
+    private static boolean aEnviar(CompensacaoPagamento compensacao, Instant momento) {
+        return (compensacao.getSituacao() == SituacaoCompensacao.PENDENTE
+                || compensacao.getSituacao() == SituacaoCompensacao.EM_ENVIO)
+                && !compensacao.getProximaTentativa().isAfter(momento);
+    }
+
+    private CompraService criarCompraComBaixaFalhando() {
+        CarrinhoDeCompras carrinho = new CarrinhoDeCompras();
+        carrinho.setId(1L);
+        carrinho.setCliente(new Cliente(1L, "Cliente Teste", Regiao.SUL, TipoCliente.BRONZE));
+        carrinho.setItens(new ArrayList<>());
+        BigDecimal dimensao = new BigDecimal("10.0");
+        carrinho.getItens().add(new ItemCompra(1L, new Produto(1L, "Produto 1", "Descrição do Produto 1",
+                new BigDecimal("45.90"), new BigDecimal("1.0"), dimensao, dimensao, dimensao, false,
+                TipoProduto.LIVRO), 2L));
+
+        ClienteService clienteService = new ClienteService(null) {
+            @Override
+            public Cliente buscarPorId(Long clienteId) {
+                return carrinho.getCliente();
+            }
+        };
+        CarrinhoDeComprasService carrinhoService = new CarrinhoDeComprasService(null) {
+            @Override
+            public CarrinhoDeCompras buscarPorCarrinhoIdEClienteId(Long carrinhoId, Cliente cliente) {
+                return carrinho;
+            }
+        };
+        IEstoqueExternal estoque = new IEstoqueExternal() {
+            @Override
+            public EstoqueBaixaDTO darBaixa(List<Long> produtosIds, List<Long> produtosQuantidades) {
+                return new EstoqueBaixaDTO(false);
+            }
+
+            @Override
+            public DisponibilidadeDTO verificarDisponibilidade(List<Long> produtosIds, List<Long> produtosQuantidades) {
+                return new DisponibilidadeDTO(true, List.of());
+            }
+
+            @Override
+            public ReservaDTO reservar(List<Long> produtosIds, List<Long> produtosQuantidades, Duration validade) {
+                DisponibilidadeDTO disponibilidade = verificarDisponibilidade(produtosIds, produtosQuantidades);
+                return new ReservaDTO(disponibilidade.disponivel(), disponibilidade.disponivel() ? 1L : null,
+                        disponibilidade.idsProdutosIndisponiveis());
+            }
+
+            @Override
+            public EstoqueBaixaDTO confirmarReserva(Long reservaId) {
+                return new EstoqueBaixaDTO(false);
+            }
+
+            @Override
+            public void liberarReserva(Long reservaId) {
+            }
+
+            @Override
+            public Map<Long, Long> consultarSaldos(List<Long> produtosIds) {
+                Map<Long, Long> saldos = new HashMap<>();
+                produtosIds.forEach(produtoId -> saldos.put(produtoId, Long.MAX_VALUE));
+                return saldos;
+            }
+        };
+
+        CompraService compraService = new CompraService(carrinhoService, clienteService, estoque, pagamento);
+        compraService.setCompensacoes(compensacoes);
+        return compraService;
+    }
+}
@@ -0,0 +1,256 @@
+package ecommerce.service;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import ecommerce.dto.CompraDTO;
+import ecommerce.dto.DisponibilidadeDTO;
+import ecommerce.dto.EstoqueBaixaDTO;
+import ecommerce.dto.PagamentoDTO;
+import ecommerce.dto.ReservaDTO;
+import ecommerce.entity.CarrinhoDeCompras;
+import ecommerce.entity.Cliente;
+import ecommerce.entity.ItemCompra;
+import ecommerce.entity.Produto;
+import ecommerce.entity.Regiao;
+import ecommerce.entity.TipoCliente;
+import ecommerce.entity.TipoProduto;
+import ecommerce.external.IEstoqueExternal;
+import ecommerce.external.IPagamentoExternal;
+
+@DisplayName("Testes da Finalização Concorrente - CompraService")
+public class FinalizacaoConcorrenteTest {
+
+    private static final BigDecimal DIMENSAO_PADRAO = new BigDecimal("10.0");
+
+    private ExecutorService executor;
+    private CarrinhoDeCompras carrinho;
+
+    private boolean estoqueDisponivel;
+    private RuntimeException erroEstoque;
+    private boolean baixaComSucesso;
+    private final AtomicInteger autorizacoes = new AtomicInteger();
+    private final AtomicInteger cancelamentos = new AtomicInteger();
+
+    @BeforeEach
+    void setUp() {
+        executor = Executors.newFixedThreadPool(2);
+        carrinho = new CarrinhoDeCompras();
+        carrinho.setId(1L);
+        carrinho.setCliente(new Cliente(1L, "Cliente Teste", Regiao.SUL, TipoCliente.BRONZE));
+        carrinho.setItens(new ArrayList<>());
+        adicionarItem(criarProduto(1L, "45.90", TipoProduto.LIVRO), 2L);
+        adicionarItem(criarProduto(2L, "899.00", TipoProduto.ELETRONICO), 1L);
+
+        estoqueDisponivel = true;
+        erroEstoque = null;
+        baixaComSucesso = true;
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    @DisplayName("Verificação de estoque e cálculo do custo devem rodar ao mesmo tempo")
+    void testEtapasSobrepostas() {
+        CountDownLatch calculoIniciado = new CountDownLatch(1);
+        CountDownLatch estoqueIniciado = new CountDownLatch(1);
+
+        IEstoqueExternal estoque = criarEstoque(() -> {
+            estoqueIniciado.countDown();
+            aguardar(calculoIniciado);
+        });
+        // Cada etapa só termina depois que a outra começou: no modo sequencial, não terminaria
+        CompraService compraService = new CompraService(criarCarrinhoService(), criarClienteService(), estoque,
+                criarPagamento()) {
+            @Override
+            public BigDecimal calcularCustoTotal(CarrinhoDeCompras carrinho, Regiao regiao, TipoCliente tipoCliente) {
+                calculoIniciado.countDown();
+                aguardar(estoqueIniciado);
+                return super.calcularCustoTotal(carrinho, regiao, tipoCliente);
+            }
+        };
+        compraService.setModoFinalizacao(ModoFinalizacao.CONCORRENTE);
+        compraService.setExecutorFinalizacao(executor);
+
+        CompraDTO compra = compraService.finalizarCompra(1L, 1L);
+
+        assertThat(compra.sucesso()).isTrue();
+        assertThat(autorizacoes.get()).isEqualTo(1);
+    }
+
+    @ParameterizedTest(name = "Modo {0}")
+    @EnumSource(ModoFinalizacao.class)
+    @DisplayName("Falta de estoque deve ter precedência sobre erro no cálculo do custo")
+    void testPrecedenciaDoEstoque(ModoFinalizacao modo) {
+        estoqueDisponivel = false;
+        carrinho.getItens().get(0).setQuantidade(0L);
+
+        IllegalStateException erro = assertThrows(IllegalStateException.class,
+                () -> criarCompraService(modo).finalizarCompra(1L, 1L));
+
+        assertThat(erro.getMessage()).isEqualTo("Itens fora de estoque.");
+        assertThat(autorizacoes.get()).isZero();
+    }
+
+    @ParameterizedTest(name = "Modo {0}")
+    @EnumSource(ModoFinalizacao.class)
+    @DisplayName("Erro no cálculo do custo deve impedir o pagamento")
+    void testErroNoCalculo(ModoFinalizacao modo) {
+        carrinho.getItens().get(0).setQuantidade(0L);
+
+        assertThrows(IllegalArgumentException.class, () -> criarCompraService(modo).finalizarCompra(1L, 1L));
+        assertThat(autorizacoes.get()).isZero();
+    }
+
+    @ParameterizedTest(name = "Modo {0}")
+    @EnumSource(ModoFinalizacao.class)
+    @DisplayName("Falha do serviço de estoque deve chegar ao chamador sem ser embrulhada")
+    void testFalhaDoServicoDeEstoque(ModoFinalizacao modo) {
+        erroEstoque = new IllegalStateException("Estoque fora do ar");
+
+        IllegalStateException erro = assertThrows(IllegalStateException.class,
+                () -> criarCompraService(modo).finalizarCompra(1L, 1L));
+
+        assertThat(erro).isSameAs(erroEstoque);
+        assertThat(autorizacoes.get()).isZero();
+    }
+
+    @ParameterizedTest(name = "Modo {0}")
+    @EnumSource(ModoFinalizacao.class)
+    @DisplayName("Falha na baixa do estoque deve cancelar o pagamento")
+    void testCompensacaoDoPagamento(ModoFinalizacao modo) {
+        baixaComSucesso = false;
+
+        assertThrows(IllegalStateException.class, () -> criarCompraService(modo).finalizarCompra(1L, 1L));
+        assertThat(autorizacoes.get()).isEqualTo(1);
+        assertThat(cancelamentos.get()).isEqualTo(1);
+    }
+
+    // ============================================================================
+    // MÉTODOS AUXILIARES
+    // ============================================================================
+
+    private CompraService criarCompraService(ModoFinalizacao modo) {
+        CompraService compraService = new CompraService(criarCarrinhoService(), criarClienteService(),
+                criarEstoque(() -> {}), criarPagamento());
+        compraService.setModoFinalizacao(modo);
+        compraService.setExecutorFinalizacao(executor);
+        return compraService;
+    }
+
+    private ClienteService criarClienteService() {
+        return new ClienteService(null) {
+            @Override
+            public Cliente buscarPorId(Long clienteId) {
+                return carrinho.getCliente();
+            }
+        };
+    }
+
+    private CarrinhoDeComprasService criarCarrinhoService() {
+        return new CarrinhoDeComprasService(null) {
+            @Override
+            public CarrinhoDeCompras buscarPorCarrinhoIdEClienteId(Long carrinhoId, Cliente cliente) {
+                return carrinho;
+            }
+        };
+    }
+
+    private IEstoqueExternal criarEstoque(Runnable aoVerificar) {
+        return new IEstoqueExternal() {
+            @Override
+            public EstoqueBaixaDTO darBaixa(List<Long> produtosIds, List<Long> produtosQuantidades) {
+                return new EstoqueBaixaDTO(baixaComSucesso);
+            }
+
+            @Override
+            public DisponibilidadeDTO verificarDisponibilidade(List<Long> produtosIds, List<Long> produtosQuantidades) {
+                aoVerificar.run();
+                if (erroEstoque != null) {
+                    throw erroEstoque;
+                }
+                return new DisponibilidadeDTO(estoqueDisponivel, estoqueDisponivel ? List.of() : produtosIds);
+            }
+
+            @Override
+            public ReservaDTO reservar(List<Long> produtosIds, List<Long> produtosQuantidades, Duration validade) {
+                DisponibilidadeDTO disponibilidade = verificarDisponibilidade(produtosIds, produtosQuantidades);
+                return new ReservaDTO(disponibilidade.disponivel(), disponibilidade.disponivel() ? 1L : null,
+                        disponibilidade.idsProdutosIndisponiveis());
+            }
+
+            @Override
+            public EstoqueBaixaDTO confirmarReserva(Long reservaId) {
+                return new EstoqueBaixaDTO(baixaComSucesso);
+            }
+
+            @Override
+            public void liberarReserva(Long reservaId) {
+            }
+
+            @Override
+            public Map<Long, Long> consultarSaldos(List<Long> produtosIds) {
+                Map<Long, Long> saldos = new HashMap<>();
+                produtosIds.forEach(produtoId -> saldos.put(produtoId, Long.MAX_VALUE));
+                return saldos;
+            }
+        };
+    }
+
+    private IPagamentoExternal criarPagamento() {
+        return new IPagamentoExternal() {
+            @Override
+            public PagamentoDTO autorizarPagamento(Long clienteId, Double custoTotal) {
+                autorizacoes.incrementAndGet();
+                return new PagamentoDTO(true, 10L);
+            }
+
+            @Override
+            public void cancelarPagamento(Long clienteId, Long pagamentoTransacaoId) {
+                cancelamentos.incrementAndGet();
+            }
+        };
+    }
+
+    private static void aguardar(CountDownLatch sinal) {
+        try {
+            assertThat(sinal.await(5, TimeUnit.SECONDS)).as("A outra etapa deveria ter começado").isTrue();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private Produto criarProduto(Long id, String preco, TipoProduto tipo) {
+        return new Produto(id, "Produto " + id, "Descrição do Produto " + id, new BigDecimal(preco),
+                new BigDecimal("1.0"), DIMENSAO_PADRAO, DIMENSAO_PADRAO, DIMENSAO_PADRAO, false, tipo);
+    }
+
+    private void adicionarItem(Produto produto, long quantidade) {
+        ItemCompra item = new ItemCompra();
+        item.setProduto(produto);
+        item.setQuantidade(quantidade);
+        carrinho.getItens().add(item);
+    }
+}
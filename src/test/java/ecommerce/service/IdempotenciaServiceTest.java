@@ -0,0 +1,174 @@
+package ecommerce.service;
+
+import java.lang.reflect.Proxy;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataIntegrityViolationException;
+
+import ecommerce.dto.CompraDTO;
+import ecommerce.entity.RespostaIdempotente;
+import ecommerce.entity.SituacaoRespostaIdempotente;
+import ecommerce.repository.RespostaIdempotenteRepository;
+
+@DisplayName("Testes das Respostas Idempotentes - IdempotenciaService")
+public class IdempotenciaServiceTest {
+
+    private static final Duration VALIDADE = Duration.ofHours(24);
+    private static final Duration VALIDADE_ANDAMENTO = Duration.ofMinutes(2);
+
+    private Instant agora;
+    private Map<String, RespostaIdempotente> tabela;
+    private IdempotenciaService servico;
+
+    @BeforeEach
+    void setUp() {
+        agora = Instant.parse("2024-01-01T00:00:00Z");
+        tabela = new HashMap<>();
+        Clock relogio = new Clock() {
+            @Override
+            public ZoneId getZone() {
+                return ZoneOffset.UTC;
+            }
+
+            @Override
+            public Clock withZone(ZoneId zone) {
+                return this;
+            }
+
+            @Override
+            public Instant instant() {
+                return agora;
+            }
+        };
+        servico = new IdempotenciaService(repositorioEmMemoria(), VALIDADE, VALIDADE_ANDAMENTO,
+                Duration.ofSeconds(1), relogio);
+    }
+
+    @Test
+    @DisplayName("Chave reservada deve ser devolvida em andamento a outra requisição e concluída com a resposta")
+    void testReservaEmAndamento() {
+        assertThat(servico.reservar("chave-1", 1L, 1L)).isEmpty();
+
+        RespostaIdempotente concorrente = servico.reservar("chave-1", 1L, 1L).orElseThrow();
+        assertThat(concorrente.getSituacao()).isEqualTo(SituacaoRespostaIdempotente.EM_ANDAMENTO);
+
+        servico.concluir("chave-1", 1L, 1L, 200, new CompraDTO(true, 10L, "Compra finalizada com sucesso."));
+
+        RespostaIdempotente gravada = servico.buscar("chave-1").orElseThrow();
+        assertThat(gravada.getSituacao()).isEqualTo(SituacaoRespostaIdempotente.CONCLUIDA);
+        assertThat(gravada.getStatus()).isEqualTo(200);
+        assertThat(gravada.getTransacaoPagamentoId()).isEqualTo(10L);
+        assertThat(gravada.getExpiraEm()).isEqualTo(agora.plus(VALIDADE));
+    }
+
+    @Test
+    @DisplayName("Reserva de compra que nunca terminou deve expirar e liberar a chave")
+    void testReservaAbandonadaExpira() {
+        servico.reservar("chave-1", 1L, 1L);
+        agora = agora.plus(VALIDADE_ANDAMENTO);
+
+        assertThat(servico.buscar("chave-1")).isEmpty();
+        assertThat(servico.reservar("chave-1", 1L, 1L)).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Reserva liberada deve deixar a repetição rodar de novo")
+    void testReservaLiberada() {
+        servico.reservar("chave-1", 1L, 1L);
+
+        servico.liberar("chave-1");
+
+        assertThat(servico.buscar("chave-1")).isEmpty();
+        assertThat(servico.reservar("chave-1", 1L, 1L)).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Chave expirada ainda não excluída pela limpeza deve ser substituída pela reserva nova")
+    void testChaveExpiradaSubstituida() {
+        registrar("chave-1", 1L, 200, new CompraDTO(true, 10L, "Compra finalizada com sucesso."));
+        agora = agora.plus(VALIDADE);
+
+        assertThat(servico.buscar("chave-1")).isEmpty();
+
+        RespostaIdempotente nova = registrar("chave-1", 2L, 409, new CompraDTO(false, null, "Itens fora de estoque."));
+
+        RespostaIdempotente gravada = servico.buscar("chave-1").orElseThrow();
+        assertThat(nova.getCarrinhoId()).isEqualTo(2L);
+        assertThat(gravada.getCarrinhoId()).isEqualTo(2L);
+        assertThat(gravada.getStatus()).isEqualTo(409);
+    }
+
+    @Test
+    @DisplayName("Chave ainda válida concluída por outra requisição deve ser mantida e devolvida")
+    void testChaveValidaMantida() {
+        registrar("chave-1", 1L, 200, new CompraDTO(true, 10L, "Compra finalizada com sucesso."));
+        agora = agora.plus(Duration.ofHours(1));
+
+        RespostaIdempotente repetida = servico.reservar("chave-1", 1L, 1L).orElseThrow();
+
+        assertThat(repetida.getStatus()).isEqualTo(200);
+        assertThat(repetida.getTransacaoPagamentoId()).isEqualTo(10L);
+    }
+
+    // ============================================================================
+    // MÉTODOS AUXILIARES
+    // ============================================================================
+
+    private RespostaIdempotente registrar(String chave, Long carrinhoId, int status, CompraDTO compra) {
+        assertThat(servico.reservar(chave, carrinhoId, 1L)).isEmpty();
+        return servico.concluir(chave, carrinhoId, 1L, status, compra);
+    }
+
+    /** Tabela com índice único na chave, como a do banco, para os métodos usados pelo serviço. */
+    private RespostaIdempotenteRepository repositorioEmMemoria() {
+        return (RespostaIdempotenteRepository) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[] { RespostaIdempotenteRepository.class }, (proxy, metodo, argumentos) -> {
+                    switch (metodo.getName()) {
+                        case "findByChaveAndExpiraEmAfter": {
+                            RespostaIdempotente resposta = tabela.get((String) argumentos[0]);
+                            return Optional.ofNullable(resposta)
+                                    .filter(r -> r.getExpiraEm().isAfter((Instant) argumentos[1]));
+                        }
+                        case "findByChave":
+                            return Optional.ofNullable(tabela.get((String) argumentos[0]));
+                        case "excluirPorSituacao": {
+                            RespostaIdempotente resposta = tabela.get((String) argumentos[0]);
+                            if (resposta == null || resposta.getSituacao() != argumentos[1]) {
+                                return 0;
+                            }
+                            tabela.remove(argumentos[0]);
+                            return 1;
+                        }
+                        case "excluirExpirada": {
+                            RespostaIdempotente resposta = tabela.get((String) argumentos[0]);
+                            if (resposta == null || resposta.getExpiraEm().isAfter((Instant) argumentos[1])) {
+                                return 0;
+                            }
+                            tabela.remove(argumentos[0]);
+                            return 1;
+                        }
+                        case "saveAndFlush": {
+                            RespostaIdempotente resposta = (RespostaIdempotente) argumentos[0];
+                            if (tabela.putIfAbsent(resposta.getChave(), resposta) != null
+                                    && tabela.get(resposta.getChave()) != resposta) {
+                                throw new DataIntegrityViolationException("uk_resposta_idempotente_chave");
+                            }
+                            return resposta;
+                        }
+                        default:
+                            throw new UnsupportedOperationException(metodo.getName());
+                    }
+                });
+    }
+}
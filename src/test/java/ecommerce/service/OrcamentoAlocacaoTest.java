@@ -0,0 +1,295 @@
+package ecommerce.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Properties;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import com.sun.management.ThreadMXBean;
+
+import ecommerce.dto.CompraDTO;
+import ecommerce.dto.DisponibilidadeDTO;
+import ecommerce.dto.EstoqueBaixaDTO;
+import ecommerce.dto.PagamentoDTO;
+import ecommerce.dto.ReservaDTO;
+import ecommerce.entity.CarrinhoDeCompras;
+import ecommerce.entity.Cliente;
+import ecommerce.entity.ItemCompra;
+import ecommerce.entity.Produto;
+import ecommerce.entity.Regiao;
+import ecommerce.entity.TipoCliente;
+import ecommerce.entity.TipoProduto;
+import ecommerce.external.IEstoqueExternal;
+import ecommerce.external.IPagamentoExternal;
+
+/**
+ * Testes de regressão de alocação: mede os bytes alocados por chamada no caminho de compra e
+ * falha quando passam do orçamento registrado em {@code orcamento-alocacao.properties}.
+ *
+ * Para registrar novos orçamentos (ex.: depois de uma otimização), executar
+ * {@code ./mvnw test -Dtest=OrcamentoAlocacaoTest -Dorcamento.alocacao.registrar=true} e copiar
+ * {@code target/orcamento-alocacao.properties} para {@code src/test/resources}.
+ */
+@DisplayName("Testes de Orçamento de Alocação - CompraService")
+public class OrcamentoAlocacaoTest {
+
+    private static final String ARQUIVO_ORCAMENTOS = "orcamento-alocacao.properties";
+    private static final boolean REGISTRAR = Boolean.getBoolean("orcamento.alocacao.registrar");
+
+    /**
+     * Folga dos orçamentos registrados sobre o valor medido: 25%, e pelo menos 1 KiB para que
+     * diferenças de JIT entre máquinas não quebrem os orçamentos pequenos.
+     */
+    private static final double FOLGA = 1.25;
+    private static final long FOLGA_MINIMA = 1_024;
+
+    /** Chamadas para o JIT compilar o caminho antes de medir, e chamadas por medição. */
+    private static final int AQUECIMENTO = 5_000;
+    private static final int CHAMADAS = 500;
+    private static final int MEDICOES = 5;
+
+    private static final BigDecimal DIMENSAO_PADRAO = new BigDecimal("10.0");
+
+    private static Properties orcamentos;
+    private static Map<String, Long> medidos;
+
+    @BeforeAll
+    static void carregarOrcamentos() throws IOException {
+        orcamentos = new Properties();
+        try (InputStream entrada = OrcamentoAlocacaoTest.class.getClassLoader()
+                .getResourceAsStream(ARQUIVO_ORCAMENTOS)) {
+            assertThat(entrada).as("Arquivo %s", ARQUIVO_ORCAMENTOS).isNotNull();
+            orcamentos.load(entrada);
+        }
+        medidos = new TreeMap<>();
+    }
+
+    @AfterAll
+    static void registrarOrcamentos() throws IOException {
+        if (!REGISTRAR) {
+            return;
+        }
+        Path destino = Path.of("target", ARQUIVO_ORCAMENTOS);
+        Files.createDirectories(destino.getParent());
+        List<String> linhas = new ArrayList<>();
+        linhas.add("# Bytes alocados por chamada (medido com folga), por método, motor de precificação e linhas");
+        medidos.forEach((chave, bytes) -> linhas.add(chave + "=" + bytes));
+        Files.write(destino, linhas);
+    }
+
+    @ParameterizedTest(name = "{0} com {1} linhas")
+    @CsvSource({
+        "BIG_DECIMAL, 1", "BIG_DECIMAL, 10", "BIG_DECIMAL, 100", "BIG_DECIMAL, 1000",
+        "CENTAVOS, 1", "CENTAVOS, 10", "CENTAVOS, 100", "CENTAVOS, 1000"
+    })
+    @DisplayName("calcularCustoTotal deve respeitar o orçamento de alocação")
+    void testCalcularCustoTotal(MotorPrecificacao motor, int linhas) {
+        CompraService compraService = configurarComoEmProducao(new CompraService(null, null, null, null), motor);
+        CarrinhoDeCompras carrinho = criarCarrinho(linhas);
+
+        // Cotações repetidas do mesmo carrinho: a partir da segunda, vêm do cache
+        long bytes = medirBytesPorChamada(() -> compraService.calcularCustoTotal(carrinho, null, null));
+
+        verificarOrcamento("calcularCustoTotal." + motor + "." + linhas, bytes);
+    }
+
+    @ParameterizedTest(name = "{0} com {1} linhas")
+    @CsvSource({
+        "BIG_DECIMAL, 1", "BIG_DECIMAL, 10", "BIG_DECIMAL, 100", "BIG_DECIMAL, 1000",
+        "CENTAVOS, 1", "CENTAVOS, 10", "CENTAVOS, 100", "CENTAVOS, 1000"
+    })
+    @DisplayName("Uma cotação fora do cache deve respeitar o orçamento de alocação")
+    void testCotacaoNova(MotorPrecificacao motor, int linhas) {
+        CompraService compraService = configurarComoEmProducao(new CompraService(null, null, null, null), motor);
+        // Sem o cache, toda chamada passa pelo motor de precificação, como uma cotação ainda não cacheada
+        compraService.setCacheCotacoes(null);
+        CarrinhoDeCompras carrinho = criarCarrinho(linhas);
+
+        long bytes = medirBytesPorChamada(() -> compraService.calcularCustoTotal(carrinho, null, null));
+
+        verificarOrcamento("cotacaoNova." + motor + "." + linhas, bytes);
+    }
+
+    @ParameterizedTest(name = "{0} com {1} linhas")
+    @CsvSource({
+        "BIG_DECIMAL, 1", "BIG_DECIMAL, 10", "BIG_DECIMAL, 100", "BIG_DECIMAL, 1000",
+        "CENTAVOS, 1", "CENTAVOS, 10", "CENTAVOS, 100", "CENTAVOS, 1000"
+    })
+    @DisplayName("finalizarCompra deve respeitar o orçamento de alocação")
+    void testFinalizarCompra(MotorPrecificacao motor, int linhas) {
+        CarrinhoDeCompras carrinho = criarCarrinho(linhas);
+        List<ItemCompra> itens = new ArrayList<>(carrinho.getItens());
+
+        ClienteService clienteService = new ClienteService(null) {
+            @Override
+            public Cliente buscarPorId(Long clienteId) {
+                return carrinho.getCliente();
+            }
+        };
+        CarrinhoDeComprasService carrinhoService = new CarrinhoDeComprasService(null) {
+            @Override
+            public CarrinhoDeCompras buscarPorCarrinhoIdEClienteId(Long carrinhoId, Cliente cliente) {
+                // Como um carrinho recém-carregado do banco: os totais são recalculados a cada compra
+                carrinho.setItens(itens);
+                return carrinho;
+            }
+        };
+
+        // Respostas pré-alocadas, para que só o CompraService entre na medição
+        DisponibilidadeDTO disponivel = new DisponibilidadeDTO(true, List.of());
+        ReservaDTO reservado = new ReservaDTO(true, 1L, List.of());
+        PagamentoDTO autorizado = new PagamentoDTO(true, 1L);
+        EstoqueBaixaDTO baixa = new EstoqueBaixaDTO(true);
+        IEstoqueExternal estoque = new IEstoqueExternal() {
+            @Override
+            public EstoqueBaixaDTO darBaixa(List<Long> produtosIds, List<Long> produtosQuantidades) {
+                return baixa;
+            }
+
+            @Override
+            public DisponibilidadeDTO verificarDisponibilidade(List<Long> produtosIds, List<Long> produtosQuantidades) {
+                return disponivel;
+            }
+
+            @Override
+            public ReservaDTO reservar(List<Long> produtosIds, List<Long> produtosQuantidades, Duration validade) {
+                return reservado;
+            }
+
+            @Override
+            public EstoqueBaixaDTO confirmarReserva(Long reservaId) {
+                return baixa;
+            }
+
+            @Override
+            public void liberarReserva(Long reservaId) {
+            }
+
+            @Override
+            public Map<Long, Long> consultarSaldos(List<Long> produtosIds) {
+                Map<Long, Long> saldos = new HashMap<>();
+                produtosIds.forEach(produtoId -> saldos.put(produtoId, Long.MAX_VALUE));
+                return saldos;
+            }
+        };
+        IPagamentoExternal pagamento = new IPagamentoExternal() {
+            @Override
+            public PagamentoDTO autorizarPagamento(Long clienteId, Double custoTotal) {
+                return autorizado;
+            }
+
+            @Override
+            public void cancelarPagamento(Long clienteId, Long pagamentoTransacaoId) {
+            }
+        };
+
+        CompraService compraService = configurarComoEmProducao(
+                new CompraService(carrinhoService, clienteService, estoque, pagamento), motor);
+        CompraDTO compra = compraService.finalizarCompra(1L, 1L);
+        assertThat(compra.sucesso()).isTrue();
+
+        long bytes = medirBytesPorChamada(() -> compraService.finalizarCompra(1L, 1L));
+
+        verificarOrcamento("finalizarCompra." + motor + "." + linhas, bytes);
+    }
+
+    // ============================================================================
+    // MÉTODOS AUXILIARES
+    // ============================================================================
+
+    /**
+     * Configura o serviço como em {@code application.properties}: reserva de estoque, cache de
+     * cotações e outbox de compensações. Fica de fora só o gerenciador de transações, que precisa
+     * de banco; a alocação do Spring nas transações não entra no orçamento do CompraService.
+     */
+    private CompraService configurarComoEmProducao(CompraService compraService, MotorPrecificacao motor) {
+        compraService.setMotorPrecificacao(motor);
+        compraService.setReservaHabilitada(true);
+        compraService.setValidadeReserva(Duration.ofSeconds(30));
+        compraService.setCacheCotacoes(new CacheCotacoes(10_000, Duration.ofMinutes(5)));
+        // Nenhuma compra medida chega à compensação; o outbox só precisa estar configurado
+        compraService.setCompensacoes(new CompensacaoPagamentoService(null) {
+            @Override
+            public void registrar(Long clienteId, Long transacaoId) {
+                throw new IllegalStateException("Compensação inesperada na medição de alocação.");
+            }
+        });
+        return compraService;
+    }
+
+    /**
+     * Média de bytes alocados pela thread atual por chamada, depois do aquecimento. Usa a menor
+     * de várias medições, já que uma recompilação do JIT no meio da medição só aumenta o valor.
+     */
+    private long medirBytesPorChamada(Runnable chamada) {
+        ThreadMXBean threads = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+        assumeTrue(threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled(),
+                "JVM sem contagem de alocação por thread");
+
+        for (int i = 0; i < AQUECIMENTO; i++) {
+            chamada.run();
+        }
+
+        long menor = Long.MAX_VALUE;
+        for (int medicao = 0; medicao < MEDICOES; medicao++) {
+            long antes = threads.getCurrentThreadAllocatedBytes();
+            for (int i = 0; i < CHAMADAS; i++) {
+                chamada.run();
+            }
+            menor = Math.min(menor, (threads.getCurrentThreadAllocatedBytes() - antes) / CHAMADAS);
+        }
+        return menor;
+    }
+
+    private void verificarOrcamento(String chave, long bytes) {
+        medidos.put(chave, Math.max((long) Math.ceil(bytes * FOLGA), bytes + FOLGA_MINIMA));
+        if (REGISTRAR) {
+            return;
+        }
+
+        String orcamento = orcamentos.getProperty(chave);
+        assertThat(orcamento).as("Orçamento de %s em %s", chave, ARQUIVO_ORCAMENTOS).isNotNull();
+        assertThat(bytes)
+            .as("Bytes alocados por chamada em %s (orçamento %s)", chave, orcamento)
+            .isLessThanOrEqualTo(Long.parseLong(orcamento));
+    }
+
+    /** Carrinho com a mesma distribuição de itens dos benchmarks JMH, com semente fixa. */
+    private CarrinhoDeCompras criarCarrinho(int linhas) {
+        Random aleatorio = new Random(2025L);
+        TipoProduto[] tipos = TipoProduto.values();
+
+        CarrinhoDeCompras carrinho = new CarrinhoDeCompras();
+        carrinho.setId(1L);
+        carrinho.setCliente(new Cliente(1L, "Cliente Teste", Regiao.NORDESTE, TipoCliente.PRATA));
+        carrinho.setItens(new ArrayList<>(linhas));
+
+        for (int i = 0; i < linhas; i++) {
+            Produto produto = new Produto((long) i, "Produto " + i, "Descrição do Produto " + i,
+                    BigDecimal.valueOf(500 + aleatorio.nextInt(19_500), 2),
+                    BigDecimal.valueOf(10 + aleatorio.nextInt(1_990), 3),
+                    DIMENSAO_PADRAO, DIMENSAO_PADRAO, DIMENSAO_PADRAO,
+                    aleatorio.nextInt(5) == 0, tipos[aleatorio.nextInt(tipos.length)]);
+            carrinho.getItens().add(new ItemCompra((long) i, produto, aleatorio.nextInt(4) == 0 ? 3L : 1L));
+        }
+        return carrinho;
+    }
+}
@@ -0,0 +1,181 @@
+package ecommerce.service;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import ecommerce.dto.PagamentoDTO;
+import ecommerce.entity.CarrinhoDeCompras;
+import ecommerce.entity.Cliente;
+import ecommerce.entity.ItemCompra;
+import ecommerce.entity.Produto;
+import ecommerce.entity.Regiao;
+import ecommerce.entity.TipoCliente;
+import ecommerce.entity.TipoProduto;
+import ecommerce.external.IPagamentoExternal;
+import ecommerce.external.fake.EstoqueSimulado;
+
+@DisplayName("Testes da Reserva de Estoque - CompraService")
+public class ReservaEstoqueTest {
+
+    private static final BigDecimal DIMENSAO_PADRAO = new BigDecimal("10.0");
+
+    private ExecutorService executor;
+    private CarrinhoDeCompras carrinho;
+    private EstoqueSimulado estoque;
+
+    private boolean pagamentoAutorizado;
+    private Runnable aoAutorizar;
+    private final AtomicInteger autorizacoes = new AtomicInteger();
+    private final AtomicInteger cancelamentos = new AtomicInteger();
+
+    @BeforeEach
+    void setUp() {
+        executor = Executors.newFixedThreadPool(2);
+        carrinho = new CarrinhoDeCompras();
+        carrinho.setId(1L);
+        carrinho.setCliente(new Cliente(1L, "Cliente Teste", Regiao.SUL, TipoCliente.BRONZE));
+        carrinho.setItens(new ArrayList<>());
+        adicionarItem(criarProduto(1L, "45.90", TipoProduto.LIVRO), 2L);
+        adicionarItem(criarProduto(2L, "899.00", TipoProduto.ELETRONICO), 1L);
+
+        estoque = new EstoqueSimulado(100);
+        estoque.definirSaldo(2L, 1);
+        pagamentoAutorizado = true;
+        aoAutorizar = () -> {};
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @ParameterizedTest(name = "Modo {0}")
+    @EnumSource(ModoFinalizacao.class)
+    @DisplayName("Compra com reserva deve dar baixa no estoque ao confirmar")
+    void testCompraConfirmaReserva(ModoFinalizacao modo) {
+        assertThat(criarCompraService(modo).finalizarCompra(1L, 1L).sucesso()).isTrue();
+
+        assertThat(estoque.disponivel(1L)).isEqualTo(98);
+        assertThat(estoque.disponivel(2L)).isZero();
+        assertThat(estoque.reservasEmAberto()).isZero();
+    }
+
+    @Test
+    @DisplayName("Compra que perde o último item deve ser recusada antes do pagamento")
+    void testFaltaDetectadaAntesDoPagamento() {
+        CompraService compraService = criarCompraService(ModoFinalizacao.SEQUENCIAL);
+        // Outra compra reserva o último eletrônico enquanto a primeira está no pagamento
+        aoAutorizar = () -> {
+            aoAutorizar = () -> {};
+            IllegalStateException erro = assertThrows(IllegalStateException.class,
+                    () -> compraService.finalizarCompra(1L, 1L));
+            assertThat(erro.getMessage()).isEqualTo("Itens fora de estoque.");
+        };
+
+        assertThat(compraService.finalizarCompra(1L, 1L).sucesso()).isTrue();
+        assertThat(autorizacoes.get()).isEqualTo(1);
+        assertThat(cancelamentos.get()).isZero();
+    }
+
+    @Test
+    @DisplayName("Pagamento não autorizado deve liberar a reserva")
+    void testPagamentoRecusadoLiberaReserva() {
+        pagamentoAutorizado = false;
+
+        assertThrows(IllegalStateException.class,
+                () -> criarCompraService(ModoFinalizacao.SEQUENCIAL).finalizarCompra(1L, 1L));
+
+        assertThat(estoque.disponivel(2L)).isEqualTo(1);
+        assertThat(estoque.reservasEmAberto()).isZero();
+    }
+
+    @ParameterizedTest(name = "Modo {0}")
+    @EnumSource(ModoFinalizacao.class)
+    @DisplayName("Erro no cálculo do custo deve liberar a reserva")
+    void testErroNoCalculoLiberaReserva(ModoFinalizacao modo) {
+        carrinho.getItens().get(1).getProduto().setPreco(new BigDecimal("-1"));
+
+        assertThrows(IllegalArgumentException.class, () -> criarCompraService(modo).finalizarCompra(1L, 1L));
+
+        assertThat(autorizacoes.get()).isZero();
+        assertThat(estoque.disponivel(2L)).isEqualTo(1);
+        assertThat(estoque.reservasEmAberto()).isZero();
+    }
+
+    @Test
+    @DisplayName("Reserva vencida durante o pagamento deve cancelar o pagamento")
+    void testReservaVencidaCancelaPagamento() {
+        CompraService compraService = criarCompraService(ModoFinalizacao.SEQUENCIAL);
+        compraService.setValidadeReserva(Duration.ZERO);
+
+        assertThrows(IllegalStateException.class, () -> compraService.finalizarCompra(1L, 1L));
+
+        assertThat(autorizacoes.get()).isEqualTo(1);
+        assertThat(cancelamentos.get()).isEqualTo(1);
+        assertThat(estoque.disponivel(2L)).isEqualTo(1);
+    }
+
+    // ============================================================================
+    // MÉTODOS AUXILIARES
+    // ============================================================================
+
+    private CompraService criarCompraService(ModoFinalizacao modo) {
+        ClienteService clienteService = new ClienteService(null) {
+            @Override
+            public Cliente buscarPorId(Long clienteId) {
+                return carrinho.getCliente();
+            }
+        };
+        CarrinhoDeComprasService carrinhoService = new CarrinhoDeComprasService(null) {
+            @Override
+            public CarrinhoDeCompras buscarPorCarrinhoIdEClienteId(Long carrinhoId, Cliente cliente) {
+                return carrinho;
+            }
+        };
+        IPagamentoExternal pagamento = new IPagamentoExternal() {
+            @Override
+            public PagamentoDTO autorizarPagamento(Long clienteId, Double custoTotal) {
+                autorizacoes.incrementAndGet();
+                aoAutorizar.run();
+                return new PagamentoDTO(pagamentoAutorizado, 10L);
+            }
+
+            @Override
+            public void cancelarPagamento(Long clienteId, Long pagamentoTransacaoId) {
+                cancelamentos.incrementAndGet();
+            }
+        };
+
+        CompraService compraService = new CompraService(carrinhoService, clienteService, estoque, pagamento);
+        compraService.setModoFinalizacao(modo);
+        compraService.setExecutorFinalizacao(executor);
+        compraService.setReservaHabilitada(true);
+        return compraService;
+    }
+
+    private Produto criarProduto(Long id, String preco, TipoProduto tipo) {
+        return new Produto(id, "Produto " + id, "Descrição do Produto " + id, new BigDecimal(preco),
+                new BigDecimal("1.0"), DIMENSAO_PADRAO, DIMENSAO_PADRAO, DIMENSAO_PADRAO, false, tipo);
+    }
+
+    private void adicionarItem(Produto produto, long quantidade) {
+        ItemCompra item = new ItemCompra();
+        item.setProduto(produto);
+        item.setQuantidade(quantidade);
+        carrinho.getItens().add(item);
+    }
+}
@@ -0,0 +1,160 @@
+package ecommerce.service;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import ecommerce.entity.CarrinhoDeCompras;
+import ecommerce.entity.Cliente;
+import ecommerce.entity.ItemCompra;
+import ecommerce.entity.Produto;
+import ecommerce.entity.Regiao;
+import ecommerce.entity.TipoCliente;
+import ecommerce.entity.TipoProduto;
+
+/**
+ * Testes das faixas de desconto e frete configuráveis.
+ */
+@DisplayName("Testes da Tabela de Faixas - CompraService")
+public class TabelaFaixasTest {
+
+    private static final BigDecimal DIMENSAO_PADRAO = new BigDecimal("10.0");
+
+    /** Campanha: 12,5% a partir de 2 unidades, 30% acima de R$ 200, frete grátis até 20kg. */
+    private static final Map<String, String> CAMPANHA = Map.of(
+            "compra.faixas.quantidade.minimos", "2",
+            "compra.faixas.quantidade.percentuais", "0.125",
+            "compra.faixas.valor.limites", "200",
+            "compra.faixas.valor.percentuais", "0.30",
+            "compra.faixas.peso.limites", "20",
+            "compra.faixas.peso.valores-por-kg", "0,3.5",
+            "compra.faixas.peso.taxas-fixas", "0,10");
+
+    private ProvedorTabelaFaixas provedor;
+    private CompraService servicoBigDecimal;
+    private CompraService servicoCentavos;
+
+    @BeforeEach
+    void setUp() {
+        provedor = new ProvedorTabelaFaixas();
+
+        servicoBigDecimal = new CompraService(null, null, null, null);
+        servicoBigDecimal.setProvedorTabelaFaixas(provedor);
+
+        servicoCentavos = new CompraService(null, null, null, null);
+        servicoCentavos.setProvedorTabelaFaixas(provedor);
+        servicoCentavos.setMotorPrecificacao(MotorPrecificacao.CENTAVOS);
+    }
+
+    @Test
+    @DisplayName("Faixas padrão devem reproduzir as regras originais")
+    void testFaixasPadrao() {
+        TabelaFaixas faixas = TabelaFaixas.PADRAO;
+
+        assertThat(faixas.percentualDescontoPorQuantidade(2)).isEqualByComparingTo("0");
+        assertThat(faixas.percentualDescontoPorQuantidade(3)).isEqualByComparingTo("0.05");
+        assertThat(faixas.percentualDescontoPorQuantidade(7)).isEqualByComparingTo("0.10");
+        assertThat(faixas.percentualDescontoPorQuantidade(8)).isEqualByComparingTo("0.15");
+
+        assertThat(faixas.percentualDescontoPorValor(new BigDecimal("500.00"))).isEqualByComparingTo("0");
+        assertThat(faixas.percentualDescontoPorValor(new BigDecimal("500.01"))).isEqualByComparingTo("0.10");
+        assertThat(faixas.percentualDescontoPorValor(new BigDecimal("1000.01"))).isEqualByComparingTo("0.20");
+
+        assertThat(faixas.calcularFretePorPeso(new BigDecimal("5.00"))).isEqualByComparingTo("0");
+        assertThat(faixas.calcularFretePorPeso(new BigDecimal("10.00"))).isEqualByComparingTo("32.00");
+        assertThat(faixas.calcularFretePorPeso(new BigDecimal("50.01"))).isEqualByComparingTo("362.07");
+
+        assertThat(faixas.multiplicadorRegiao(Regiao.NORTE)).isEqualByComparingTo("1.30");
+    }
+
+    @Test
+    @DisplayName("Troca de tabela em tempo de execução deve valer para as próximas cotações")
+    void testTrocaDeTabela() {
+        CarrinhoDeCompras carrinho = criarCarrinho(TipoCliente.BRONZE, Regiao.SUL);
+        adicionarItem(carrinho, criarProduto(new BigDecimal("100.00"), new BigDecimal("8.00"), TipoProduto.LIVRO), 3);
+
+        // Padrão: 300 - 5% = 285; peso 24kg → (24 * 4 + 12) * 1.05 = 113.40
+        assertThat(servicoBigDecimal.calcularCustoTotal(carrinho, null, null)).isEqualByComparingTo("398.40");
+
+        provedor.substituir(TabelaFaixas.carregar(CAMPANHA::get));
+
+        // Campanha: 300 - 12,5% = 262.50; > 200 → -30% = 183.75; peso 24kg → (24 * 3.5 + 10) * 1.05 = 98.70
+        assertThat(servicoBigDecimal.calcularCustoTotal(carrinho, null, null)).isEqualByComparingTo("282.45");
+        assertThat(servicoCentavos.calcularCustoTotal(carrinho, null, null)).isEqualByComparingTo("282.45");
+    }
+
+    @Test
+    @DisplayName("Faixas com mais casas que o ponto fixo suporta devem cair no cálculo em BigDecimal")
+    void testFaixasNaoRepresentaveisEmPontoFixo() {
+        TabelaFaixas faixas = TabelaFaixas.carregar(Map.of(
+                "compra.faixas.quantidade.percentuais", "0.0525,0.10,0.15")::get);
+        provedor.substituir(faixas);
+
+        CarrinhoDeCompras carrinho = criarCarrinho(TipoCliente.PRATA, Regiao.NORDESTE);
+        adicionarItem(carrinho, criarProduto(new BigDecimal("99.99"), new BigDecimal("3.00"), TipoProduto.ROUPA), 4);
+
+        assertThat(faixas.isRepresentavelEmPontoFixo()).isFalse();
+        assertThat(servicoCentavos.calcularCustoTotal(carrinho, null, null))
+            .isEqualTo(servicoBigDecimal.calcularCustoTotal(carrinho, null, null));
+    }
+
+    @Test
+    @DisplayName("Faixas inválidas devem ser rejeitadas")
+    void testFaixasInvalidas() {
+        assertThrows(IllegalArgumentException.class, () -> TabelaFaixas.carregar(Map.of(
+                "compra.faixas.quantidade.minimos", "5,3,8")::get), "Mínimos fora de ordem");
+        assertThrows(IllegalArgumentException.class, () -> TabelaFaixas.carregar(Map.of(
+                "compra.faixas.valor.percentuais", "0.10")::get), "Quantidade de percentuais diferente dos limites");
+        assertThrows(IllegalArgumentException.class, () -> TabelaFaixas.carregar(Map.of(
+                "compra.faixas.peso.valores-por-kg", "0,2,4")::get), "Falta a última faixa de peso");
+        assertThrows(IllegalArgumentException.class, () -> TabelaFaixas.carregar(Map.of(
+                "compra.faixas.regiao.multiplicadores", "SUL:1.05")::get), "Regiões sem multiplicador");
+    }
+
+    @Test
+    @DisplayName("Valores fora do tipo esperado devem ser rejeitados com a chave na mensagem")
+    void testValoresMalFormados() {
+        IllegalArgumentException minimoFracionario = assertThrows(IllegalArgumentException.class,
+                () -> TabelaFaixas.carregar(Map.of("compra.faixas.quantidade.minimos", "2.5")::get));
+        IllegalArgumentException naoNumerico = assertThrows(IllegalArgumentException.class,
+                () -> TabelaFaixas.carregar(Map.of("compra.faixas.peso.limites", "5,dez,50")::get));
+        IllegalArgumentException regiaoDesconhecida = assertThrows(IllegalArgumentException.class,
+                () -> TabelaFaixas.carregar(Map.of("compra.faixas.regiao.multiplicadores", "OESTE:1.1")::get));
+
+        assertThat(minimoFracionario.getMessage())
+            .isEqualTo("Faixas inválidas: compra.faixas.quantidade.minimos deve ter só inteiros: 2.5");
+        assertThat(naoNumerico.getMessage())
+            .isEqualTo("Faixas inválidas: compra.faixas.peso.limites com valor não numérico: 5,dez,50");
+        assertThat(regiaoDesconhecida.getMessage())
+            .isEqualTo("Faixas inválidas: compra.faixas.regiao.multiplicadores com multiplicador inválido: OESTE:1.1");
+    }
+
+    // ============================================================================
+    // MÉTODOS AUXILIARES
+    // ============================================================================
+
+    private CarrinhoDeCompras criarCarrinho(TipoCliente tipo, Regiao regiao) {
+        CarrinhoDeCompras carrinho = new CarrinhoDeCompras();
+        carrinho.setCliente(new Cliente(1L, "Cliente Teste", regiao, tipo));
+        carrinho.setItens(new ArrayList<>());
+        return carrinho;
+    }
+
+    private Produto criarProduto(BigDecimal preco, BigDecimal peso, TipoProduto tipo) {
+        return new Produto(1L, "Produto", "Descrição do Produto", preco, peso,
+                DIMENSAO_PADRAO, DIMENSAO_PADRAO, DIMENSAO_PADRAO, false, tipo);
+    }
+
+    private void adicionarItem(CarrinhoDeCompras carrinho, Produto produto, long quantidade) {
+        ItemCompra item = new ItemCompra();
+        item.setProduto(produto);
+        item.setQuantidade(quantidade);
+        carrinho.getItens().add(item);
+    }
+}
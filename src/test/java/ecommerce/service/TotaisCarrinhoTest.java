@@ -0,0 +1,225 @@
+package ecommerce.service;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import ecommerce.entity.CarrinhoDeCompras;
+import ecommerce.entity.Cliente;
+import ecommerce.entity.ItemCompra;
+import ecommerce.entity.Produto;
+import ecommerce.entity.Regiao;
+import ecommerce.entity.TipoCliente;
+import ecommerce.entity.TipoProduto;
+import ecommerce.entity.TotaisCarrinho;
+
+/**
+ * Testes dos totais mantidos incrementalmente por {@link CarrinhoDeCompras}.
+ */
+@DisplayName("Testes dos Totais Incrementais do Carrinho - CompraService")
+public class TotaisCarrinhoTest {
+
+    private static final BigDecimal DIMENSAO_PADRAO = new BigDecimal("10.0");
+
+    private CompraService compraService;
+
+    @BeforeEach
+    void setUp() {
+        compraService = new CompraService(null, null, null, null);
+    }
+
+    @ParameterizedTest(name = "Semente {0}")
+    @ValueSource(longs = {5L, 17L, 2025L})
+    @DisplayName("Adicionar, remover e alterar itens deve manter os totais iguais aos recalculados")
+    void testAlteracoesAleatorias(long semente) {
+        Random aleatorio = new Random(semente);
+        List<Produto> produtos = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            produtos.add(criarProdutoAleatorio(aleatorio, (long) i));
+        }
+        CarrinhoDeCompras carrinho = criarCarrinho(Regiao.NORDESTE, TipoCliente.PRATA);
+
+        for (int passo = 0; passo < 500; passo++) {
+            List<ItemCompra> itens = carrinho.getItens();
+            int operacao = aleatorio.nextInt(6);
+            if (operacao <= 1 || itens.isEmpty()) {
+                itens.add(new ItemCompra(null, produtos.get(aleatorio.nextInt(5)), 1L + aleatorio.nextInt(5)));
+            } else if (operacao == 2) {
+                itens.remove(aleatorio.nextInt(itens.size()));
+            } else if (operacao == 3) {
+                itens.get(aleatorio.nextInt(itens.size())).setQuantidade(1L + aleatorio.nextInt(9));
+            } else if (operacao == 4) {
+                itens.get(aleatorio.nextInt(itens.size())).setProduto(produtos.get(aleatorio.nextInt(5)));
+            } else {
+                produtos.get(aleatorio.nextInt(5)).setPreco(BigDecimal.valueOf(aleatorio.nextInt(50_000), 2));
+            }
+
+            assertThat(carrinho.getTotais().equivalente(TotaisCarrinho.calcular(new ArrayList<>(itens))))
+                .as("Passo %d da semente %d", passo, semente)
+                .isTrue();
+            assertThat(compraService.calcularCustoTotal(carrinho, null, null))
+                .as("Passo %d da semente %d", passo, semente)
+                .isEqualTo(compraService.calcularCustoTotal(copiar(carrinho), null, null));
+        }
+        assertThat(carrinho.verificarTotais()).isTrue();
+    }
+
+    @Test
+    @DisplayName("Alterações concorrentes de itens devem manter os totais consistentes")
+    void testAlteracoesConcorrentes() throws Exception {
+        CarrinhoDeCompras carrinho = criarCarrinho(Regiao.SUL, TipoCliente.BRONZE);
+        Produto livro = criarProduto(1L, "45.90", "0.8", TipoProduto.LIVRO, false);
+        Produto eletronico = criarProduto(2L, "899.00", "2.5", TipoProduto.ELETRONICO, true);
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> tarefas = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                Random aleatorio = new Random(t);
+                tarefas.add(executor.submit(() -> {
+                    List<ItemCompra> meusItens = new ArrayList<>();
+                    for (int i = 0; i < 5_000; i++) {
+                        int operacao = aleatorio.nextInt(3);
+                        if (operacao == 0 || meusItens.isEmpty()) {
+                            ItemCompra item = new ItemCompra(null, aleatorio.nextBoolean() ? livro : eletronico,
+                                    1L + aleatorio.nextInt(5));
+                            carrinho.getItens().add(item);
+                            meusItens.add(item);
+                        } else if (operacao == 1) {
+                            carrinho.getItens().remove(meusItens.remove(meusItens.size() - 1));
+                        } else {
+                            meusItens.get(aleatorio.nextInt(meusItens.size())).setQuantidade(1L + aleatorio.nextInt(9));
+                        }
+                    }
+                }));
+            }
+            for (Future<?> tarefa : tarefas) {
+                tarefa.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        assertThat(carrinho.verificarTotais()).isTrue();
+    }
+
+    @Test
+    @DisplayName("Verificação deve detectar e corrigir alterações que não passaram pelo carrinho")
+    void testVerificacaoDetectaDivergencia() {
+        Produto livro = criarProduto(1L, "45.90", "0.8", TipoProduto.LIVRO, false);
+        Produto movel = criarProduto(2L, "1200.00", "30.0", TipoProduto.MOVEL, false);
+        List<ItemCompra> itens = new ArrayList<>();
+        itens.add(new ItemCompra(null, livro, 2L));
+        CarrinhoDeCompras carrinho = criarCarrinho(Regiao.NORTE, TipoCliente.BRONZE);
+        carrinho.setItens(itens);
+        BigDecimal custoComLivro = compraService.calcularCustoTotal(carrinho, null, null);
+
+        // Troca direta na lista original, sem mudar o tamanho: não é percebida pelo carrinho
+        itens.set(0, new ItemCompra(null, movel, 1L));
+        assertThat(compraService.calcularCustoTotal(carrinho, null, null)).isEqualTo(custoComLivro);
+
+        CompraService servicoComVerificacao = new CompraService(null, null, null, null);
+        servicoComVerificacao.setVerificarTotais(true);
+        BigDecimal custoCorrigido = servicoComVerificacao.calcularCustoTotal(carrinho, null, null);
+
+        assertThat(custoCorrigido)
+            .isNotEqualTo(custoComLivro)
+            .isEqualTo(compraService.calcularCustoTotal(copiar(carrinho), null, null));
+        assertThat(carrinho.verificarTotais()).isTrue();
+    }
+
+    @Test
+    @DisplayName("Alteração de produto deve recalcular só os carrinhos com itens desse produto")
+    void testAlteracaoDeProdutoAvisaSoSeusCarrinhos() {
+        Produto livro = criarProduto(1L, "45.90", "0.8", TipoProduto.LIVRO, false);
+        Produto roupa = criarProduto(2L, "79.90", "0.4", TipoProduto.ROUPA, false);
+        Produto movel = criarProduto(3L, "1200.00", "30.0", TipoProduto.MOVEL, false);
+        Produto eletronico = criarProduto(4L, "899.00", "2.5", TipoProduto.ELETRONICO, true);
+        List<ItemCompra> itens = new ArrayList<>();
+        itens.add(new ItemCompra(null, livro, 2L));
+        itens.add(new ItemCompra(null, roupa, 1L));
+        CarrinhoDeCompras carrinho = criarCarrinho(Regiao.SUL, TipoCliente.PRATA);
+        carrinho.setItens(itens);
+        CarrinhoDeCompras outro = criarCarrinho(Regiao.SUL, TipoCliente.PRATA);
+        outro.getItens().add(new ItemCompra(null, eletronico, 1L));
+        BigDecimal custoAntigo = compraService.calcularCustoTotal(carrinho, null, null);
+        compraService.calcularCustoTotal(outro, null, null);
+
+        // Troca direta na lista original: só um recálculo dos totais a percebe
+        itens.set(1, new ItemCompra(null, movel, 1L));
+        eletronico.setPreco(new BigDecimal("799.00"));
+
+        assertThat(compraService.calcularCustoTotal(carrinho, null, null)).isEqualTo(custoAntigo);
+        assertThat(compraService.calcularCustoTotal(outro, null, null))
+            .isEqualTo(compraService.calcularCustoTotal(copiar(outro), null, null));
+
+        livro.setPreco(new BigDecimal("49.90"));
+
+        assertThat(compraService.calcularCustoTotal(carrinho, null, null))
+            .isEqualTo(compraService.calcularCustoTotal(copiar(carrinho), null, null));
+    }
+
+    @Test
+    @DisplayName("Robustez: item inválido deve lançar exceção até ser corrigido")
+    void testItemInvalidoCorrigido() {
+        CarrinhoDeCompras carrinho = criarCarrinho(Regiao.SUDESTE, TipoCliente.OURO);
+        ItemCompra item = new ItemCompra(null, criarProduto(1L, "10.00", "1.0", TipoProduto.ROUPA, false), 0L);
+        carrinho.getItens().add(item);
+
+        assertThrows(IllegalArgumentException.class, () -> compraService.calcularCustoTotal(carrinho, null, null));
+        assertThat(carrinho.getTotais().getQuantidadeItensInvalidos()).isEqualTo(1);
+
+        item.setQuantidade(2L);
+
+        assertThat(carrinho.getTotais().getQuantidadeItensInvalidos()).isZero();
+        assertThat(compraService.calcularCustoTotal(carrinho, null, null)).isEqualByComparingTo("20.00");
+    }
+
+    // ============================================================================
+    // MÉTODOS AUXILIARES
+    // ============================================================================
+
+    /** Carrinho novo com os mesmos itens, cujos totais são calculados do zero. */
+    private CarrinhoDeCompras copiar(CarrinhoDeCompras carrinho) {
+        CarrinhoDeCompras copia = criarCarrinho(carrinho.getCliente().getRegiao(), carrinho.getCliente().getTipo());
+        for (ItemCompra item : carrinho.getItens()) {
+            copia.getItens().add(new ItemCompra(null, item.getProduto(), item.getQuantidade()));
+        }
+        return copia;
+    }
+
+    private CarrinhoDeCompras criarCarrinho(Regiao regiao, TipoCliente tipo) {
+        CarrinhoDeCompras carrinho = new CarrinhoDeCompras();
+        carrinho.setCliente(new Cliente(1L, "Cliente Teste", regiao, tipo));
+        carrinho.setItens(new ArrayList<>());
+        return carrinho;
+    }
+
+    private Produto criarProdutoAleatorio(Random aleatorio, Long id) {
+        return new Produto(id, "Produto " + id, "Descrição do Produto " + id,
+                BigDecimal.valueOf(aleatorio.nextInt(200_000), aleatorio.nextInt(3)),
+                BigDecimal.valueOf(aleatorio.nextInt(20_000), aleatorio.nextInt(4)),
+                BigDecimal.valueOf(aleatorio.nextInt(1_000), aleatorio.nextInt(3)),
+                BigDecimal.valueOf(aleatorio.nextInt(1_000), aleatorio.nextInt(2)),
+                BigDecimal.valueOf(aleatorio.nextInt(1_000), aleatorio.nextInt(2)),
+                aleatorio.nextBoolean(),
+                TipoProduto.values()[aleatorio.nextInt(TipoProduto.values().length)]);
+    }
+
+    private Produto criarProduto(Long id, String preco, String peso, TipoProduto tipo, boolean fragil) {
+        return new Produto(id, "Produto " + id, "Descrição do Produto " + id, new BigDecimal(preco),
+                new BigDecimal(peso), DIMENSAO_PADRAO, DIMENSAO_PADRAO, DIMENSAO_PADRAO, fragil, tipo);
+    }
+}
@@ -0,0 +1,241 @@
+package ecommerce.service;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+
+import ecommerce.dto.DisponibilidadeDTO;
+import ecommerce.dto.EstoqueBaixaDTO;
+import ecommerce.dto.PagamentoDTO;
+import ecommerce.dto.ReservaDTO;
+import ecommerce.entity.CarrinhoDeCompras;
+import ecommerce.entity.Cliente;
+import ecommerce.entity.ItemCompra;
+import ecommerce.entity.Produto;
+import ecommerce.entity.Regiao;
+import ecommerce.entity.TipoCliente;
+import ecommerce.entity.TipoProduto;
+import ecommerce.external.IEstoqueExternal;
+import ecommerce.external.IPagamentoExternal;
+
+/**
+ * Pool de conexões real (Hikari sobre H2) com apenas {@value #CONEXOES} conexões e espera máxima
+ * de 1 s por conexão. No teste de carga, os serviços externos só respondem quando as
+ * {@value #COMPRAS} compras estão esperando por eles ao mesmo tempo: se finalizarCompra segurasse
+ * a conexão durante as chamadas externas, só {@value #CONEXOES} chegariam lá e as demais falhariam
+ * por timeout. O tempo de finalização com o pool pequeno é medido em
+ * {@code FinalizacaoPoolConexoesBenchmark} (profile jmh).
+ */
+@DisplayName("Testes das Transações da Finalização - CompraService")
+public class TransacoesFinalizacaoTest {
+
+    private static final int CONEXOES = 2;
+    private static final int COMPRAS = 40;
+    private static final BigDecimal DIMENSAO_PADRAO = new BigDecimal("10.0");
+
+    private HikariDataSource dataSource;
+    private ExecutorService executor;
+    private CarrinhoDeCompras carrinho;
+
+    /** Retém as chamadas externas até todas as compras esperadas chegarem a elas. */
+    private CountDownLatch chamadasSimultaneas;
+    private boolean baixaComSucesso;
+    private final AtomicInteger chamadasComTransacao = new AtomicInteger();
+    private final AtomicInteger cargasSemTransacao = new AtomicInteger();
+    private final AtomicInteger compensacoesSemTransacao = new AtomicInteger();
+
+    private CompraService compraService;
+
+    @BeforeEach
+    void setUp() {
+        HikariConfig configuracao = new HikariConfig();
+        configuracao.setJdbcUrl("jdbc:h2:mem:transacoes-finalizacao;DB_CLOSE_DELAY=-1");
+        configuracao.setMaximumPoolSize(CONEXOES);
+        configuracao.setConnectionTimeout(1_000);
+        dataSource = new HikariDataSource(configuracao);
+        executor = Executors.newFixedThreadPool(COMPRAS);
+
+        carrinho = new CarrinhoDeCompras();
+        carrinho.setId(1L);
+        carrinho.setCliente(new Cliente(1L, "Cliente Teste", Regiao.SUL, TipoCliente.BRONZE));
+        carrinho.setItens(new ArrayList<>());
+        carrinho.getItens().add(new ItemCompra(1L, new Produto(1L, "Produto 1", "Descrição do Produto 1",
+                new BigDecimal("45.90"), new BigDecimal("1.0"), DIMENSAO_PADRAO, DIMENSAO_PADRAO, DIMENSAO_PADRAO,
+                false, TipoProduto.LIVRO), 2L));
+        chamadasSimultaneas = new CountDownLatch(1);
+        baixaComSucesso = true;
+
+        compraService = criarCompraService();
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+        dataSource.close();
+    }
+
+    @Test
+    @DisplayName("Carga deve usar transação somente leitura e chamadas externas devem rodar sem transação")
+    void testFasesDaFinalizacao() {
+        assertThat(compraService.finalizarCompra(1L, 1L).sucesso()).isTrue();
+
+        assertThat(cargasSemTransacao.get()).isZero();
+        assertThat(chamadasComTransacao.get()).isZero();
+    }
+
+    @Test
+    @DisplayName("Compensação deve ser gravada em transação de escrita")
+    void testCompensacaoEmTransacao() {
+        baixaComSucesso = false;
+
+        assertThrows(IllegalStateException.class, () -> compraService.finalizarCompra(1L, 1L));
+
+        assertThat(compensacoesSemTransacao.get()).isZero();
+        assertThat(chamadasComTransacao.get()).isZero();
+    }
+
+    @Test
+    @DisplayName("Todas as compras devem poder esperar os serviços externos ao mesmo tempo com um pool pequeno")
+    void testChamadasExternasSemConexao() throws Exception {
+        chamadasSimultaneas = new CountDownLatch(COMPRAS);
+
+        List<Future<Boolean>> compras = new ArrayList<>();
+        for (int i = 0; i < COMPRAS; i++) {
+            compras.add(executor.submit(() -> compraService.finalizarCompra(1L, 1L).sucesso()));
+        }
+
+        for (Future<Boolean> compra : compras) {
+            assertThat(compra.get(30, TimeUnit.SECONDS)).isTrue();
+        }
+        assertThat(chamadasComTransacao.get()).isZero();
+    }
+
+    // ============================================================================
+    // MÉTODOS AUXILIARES
+    // ============================================================================
+
+    private CompraService criarCompraService() {
+        ClienteService clienteService = new ClienteService(null) {
+            @Override
+            public Cliente buscarPorId(Long clienteId) {
+                verificarTransacaoDeLeitura();
+                return carrinho.getCliente();
+            }
+        };
+        CarrinhoDeComprasService carrinhoService = new CarrinhoDeComprasService(null) {
+            @Override
+            public CarrinhoDeCompras buscarPorCarrinhoIdEClienteId(Long carrinhoId, Cliente cliente) {
+                verificarTransacaoDeLeitura();
+                return carrinho;
+            }
+        };
+        IEstoqueExternal estoque = new IEstoqueExternal() {
+            @Override
+            public EstoqueBaixaDTO darBaixa(List<Long> produtosIds, List<Long> produtosQuantidades) {
+                esperarServicoExterno();
+                return new EstoqueBaixaDTO(baixaComSucesso);
+            }
+
+            @Override
+            public DisponibilidadeDTO verificarDisponibilidade(List<Long> produtosIds, List<Long> produtosQuantidades) {
+                esperarServicoExterno();
+                return new DisponibilidadeDTO(true, List.of());
+            }
+
+            @Override
+            public ReservaDTO reservar(List<Long> produtosIds, List<Long> produtosQuantidades, Duration validade) {
+                DisponibilidadeDTO disponibilidade = verificarDisponibilidade(produtosIds, produtosQuantidades);
+                return new ReservaDTO(disponibilidade.disponivel(), disponibilidade.disponivel() ? 1L : null,
+                        disponibilidade.idsProdutosIndisponiveis());
+            }
+
+            @Override
+            public EstoqueBaixaDTO confirmarReserva(Long reservaId) {
+                esperarServicoExterno();
+                return new EstoqueBaixaDTO(baixaComSucesso);
+            }
+
+            @Override
+            public void liberarReserva(Long reservaId) {
+                esperarServicoExterno();
+            }
+
+            @Override
+            public Map<Long, Long> consultarSaldos(List<Long> produtosIds) {
+                Map<Long, Long> saldos = new HashMap<>();
+                produtosIds.forEach(produtoId -> saldos.put(produtoId, Long.MAX_VALUE));
+                return saldos;
+            }
+        };
+        IPagamentoExternal pagamento = new IPagamentoExternal() {
+            @Override
+            public PagamentoDTO autorizarPagamento(Long clienteId, Double custoTotal) {
+                esperarServicoExterno();
+                return new PagamentoDTO(true, 1L);
+            }
+
+            @Override
+            public void cancelarPagamento(Long clienteId, Long pagamentoTransacaoId) {
+                esperarServicoExterno();
+            }
+        };
+        CompensacaoPagamentoService compensacoes = new CompensacaoPagamentoService(null) {
+            @Override
+            public void registrar(Long clienteId, Long transacaoId) {
+                if (!TransactionSynchronizationManager.isActualTransactionActive()
+                        || TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+                    compensacoesSemTransacao.incrementAndGet();
+                }
+            }
+        };
+
+        CompraService servico = new CompraService(carrinhoService, clienteService, estoque, pagamento);
+        servico.setCompensacoes(compensacoes);
+        servico.setGerenciadorTransacoes(new DataSourceTransactionManager(dataSource));
+        return servico;
+    }
+
+    private void verificarTransacaoDeLeitura() {
+        if (!TransactionSynchronizationManager.isActualTransactionActive()
+                || !TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            cargasSemTransacao.incrementAndGet();
+        }
+    }
+
+    private void esperarServicoExterno() {
+        if (TransactionSynchronizationManager.isActualTransactionActive()
+                || TransactionSynchronizationManager.getResource(dataSource) != null) {
+            chamadasComTransacao.incrementAndGet();
+        }
+        chamadasSimultaneas.countDown();
+        try {
+            if (!chamadasSimultaneas.await(30, TimeUnit.SECONDS)) {
+                throw new IllegalStateException("Compras esperadas não chegaram juntas aos serviços externos.");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+}